@@ -0,0 +1,98 @@
+package com.example.nagoyameshi.cache;
+
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.IntFunction;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+// ユーザーごとのお気に入り（店舗id→お気に入りid）を一定時間メモリ上に保持する
+// 他のサーバーでの追加や解除は、FavoriteServiceが変更履歴をポーリングして該当するユーザーを破棄することで反映する
+// 各ユーザーのマップは更新のたびに複製して差し替えるため、読み取り側はロックなしで参照できる
+@Component
+public class FavoriteCache {
+    // 存在しない場合に返す値（お気に入りidは1以上のため0とする）
+    public static final int NOT_FAVORITE = 0;
+
+    private final Map<Integer, Entry> entries = new ConcurrentHashMap<>();
+    private final long ttlMillis;
+    private final int maxUsers;
+    private final LongAdder hitCount = new LongAdder();
+    private final LongAdder missCount = new LongAdder();
+
+    private record Entry(IntIntHashMap favoriteIdsByRestaurantId, long loadedAt) {
+    }
+
+    public FavoriteCache(@Value("${favorite-cache.ttl-seconds:300}") long ttlSeconds,
+                         @Value("${favorite-cache.max-users:100000}") int maxUsers)
+    {
+        this.ttlMillis = ttlSeconds * 1000;
+        this.maxUsers = maxUsers;
+    }
+
+    // 指定したユーザーのお気に入りを返す（キャッシュにないか期限切れの場合はloaderで読み込む）
+    public IntIntHashMap get(int userId, IntFunction<List<int[]>> loader) {
+        Entry entry = entries.get(userId);
+        long now = System.currentTimeMillis();
+
+        if (entry != null && now - entry.loadedAt() < ttlMillis) {
+            hitCount.increment();
+            return entry.favoriteIdsByRestaurantId();
+        }
+
+        missCount.increment();
+
+        List<int[]> pairs = loader.apply(userId);
+        IntIntHashMap favoriteIdsByRestaurantId = new IntIntHashMap(pairs.size(), NOT_FAVORITE);
+
+        for (int[] pair : pairs) {
+            favoriteIdsByRestaurantId.put(pair[0], pair[1]);
+        }
+
+        // 上限を超えた場合はすべて破棄する（次のアクセスから必要な分だけ読み込み直される）
+        if (entries.size() >= maxUsers) {
+            entries.clear();
+        }
+
+        entries.put(userId, new Entry(favoriteIdsByRestaurantId, now));
+
+        return favoriteIdsByRestaurantId;
+    }
+
+    // お気に入りの追加を反映する（キャッシュにないユーザーは次回の読み込みに任せる）
+    public void put(int userId, int restaurantId, int favoriteId) {
+        entries.computeIfPresent(userId, (key, entry) -> {
+            IntIntHashMap copy = entry.favoriteIdsByRestaurantId().copy();
+            copy.put(restaurantId, favoriteId);
+            return new Entry(copy, entry.loadedAt());
+        });
+    }
+
+    // お気に入りの解除を反映する
+    public void remove(int userId, int restaurantId) {
+        entries.computeIfPresent(userId, (key, entry) -> {
+            IntIntHashMap copy = entry.favoriteIdsByRestaurantId().copy();
+            copy.remove(restaurantId);
+            return new Entry(copy, entry.loadedAt());
+        });
+    }
+
+    public void evict(int userId) {
+        entries.remove(userId);
+    }
+
+    public int size() {
+        return entries.size();
+    }
+
+    public long getHitCount() {
+        return hitCount.sum();
+    }
+
+    public long getMissCount() {
+        return missCount.sum();
+    }
+}
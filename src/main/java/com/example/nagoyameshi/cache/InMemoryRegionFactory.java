@@ -0,0 +1,49 @@
+package com.example.nagoyameshi.cache;
+
+import java.util.Map;
+
+import org.hibernate.boot.spi.SessionFactoryOptions;
+import org.hibernate.cache.cfg.spi.DomainDataRegionBuildingContext;
+import org.hibernate.cache.cfg.spi.DomainDataRegionConfig;
+import org.hibernate.cache.spi.support.DomainDataStorageAccess;
+import org.hibernate.cache.spi.support.RegionFactoryTemplate;
+import org.hibernate.cache.spi.support.StorageAccess;
+import org.hibernate.engine.spi.SessionFactoryImplementor;
+
+// Hibernateの2次キャッシュ（エンティティ・クエリ）をサーバーのメモリ上に保持する
+// hibernate.cache.region.factory_classに指定し、保持期間と領域ごとの上限は次の設定で変更する
+//  ・hibernate.cache.in_memory.time_to_live_seconds：他のサーバーでの更新を反映するまでの最大の時間
+//  ・hibernate.cache.in_memory.max_entries：1つの領域に保持する最大の件数
+// テーブルごとの最終更新時刻（クエリの結果が古くなったかどうかの判定に使う）は件数が少なく、失うと古い結果を返しうるため、期限と上限を設けない
+public class InMemoryRegionFactory extends RegionFactoryTemplate {
+    public static final String TIME_TO_LIVE_SECONDS = "hibernate.cache.in_memory.time_to_live_seconds";
+    public static final String MAX_ENTRIES = "hibernate.cache.in_memory.max_entries";
+
+    private long timeToLiveSeconds;
+    private int maxEntries;
+
+    @Override
+    protected void prepareForUse(SessionFactoryOptions settings, Map<String, Object> configValues) {
+        timeToLiveSeconds = Long.parseLong(String.valueOf(configValues.getOrDefault(TIME_TO_LIVE_SECONDS, "60")));
+        maxEntries = Integer.parseInt(String.valueOf(configValues.getOrDefault(MAX_ENTRIES, "10000")));
+    }
+
+    @Override
+    protected void releaseFromUse() {
+    }
+
+    @Override
+    protected DomainDataStorageAccess createDomainDataStorageAccess(DomainDataRegionConfig regionConfig, DomainDataRegionBuildingContext buildingContext) {
+        return new InMemoryStorageAccess(timeToLiveSeconds, maxEntries);
+    }
+
+    @Override
+    protected StorageAccess createQueryResultsRegionStorageAccess(String regionName, SessionFactoryImplementor sessionFactory) {
+        return new InMemoryStorageAccess(timeToLiveSeconds, maxEntries);
+    }
+
+    @Override
+    protected StorageAccess createTimestampsRegionStorageAccess(String regionName, SessionFactoryImplementor sessionFactory) {
+        return new InMemoryStorageAccess(0, 0);
+    }
+}
@@ -0,0 +1,73 @@
+package com.example.nagoyameshi.cache;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+
+import org.hibernate.cache.spi.support.DomainDataStorageAccess;
+import org.hibernate.engine.spi.SharedSessionContractImplementor;
+
+// Hibernateの2次キャッシュの1つの領域の値をメモリ上に保持する
+// 保持期間を過ぎた値は読み込み直し（他のサーバーでの更新を反映するため）、上限を超えた場合はすべて破棄する（保持期間または上限が0以下の場合は無制限）
+public class InMemoryStorageAccess implements DomainDataStorageAccess {
+    private final Map<Object, Entry> entries = new ConcurrentHashMap<>();
+    private final long timeToLiveNanos;
+    private final int maxEntries;
+
+    private record Entry(Object value, long storedAt) {
+    }
+
+    public InMemoryStorageAccess(long timeToLiveSeconds, int maxEntries) {
+        this.timeToLiveNanos = TimeUnit.SECONDS.toNanos(timeToLiveSeconds);
+        this.maxEntries = maxEntries;
+    }
+
+    @Override
+    public Object getFromCache(Object key, SharedSessionContractImplementor session) {
+        Entry entry = entries.get(key);
+
+        if (entry == null) {
+            return null;
+        }
+
+        if (timeToLiveNanos > 0 && System.nanoTime() - entry.storedAt() >= timeToLiveNanos) {
+            entries.remove(key, entry);
+            return null;
+        }
+
+        return entry.value();
+    }
+
+    @Override
+    public void putIntoCache(Object key, Object value, SharedSessionContractImplementor session) {
+        if (maxEntries > 0 && entries.size() >= maxEntries && !entries.containsKey(key)) {
+            entries.clear();
+        }
+
+        entries.put(key, new Entry(value, System.nanoTime()));
+    }
+
+    @Override
+    public boolean contains(Object key) {
+        return entries.containsKey(key);
+    }
+
+    @Override
+    public void evictData() {
+        entries.clear();
+    }
+
+    @Override
+    public void evictData(Object key) {
+        entries.remove(key);
+    }
+
+    @Override
+    public void release() {
+        entries.clear();
+    }
+
+    public int size() {
+        return entries.size();
+    }
+}
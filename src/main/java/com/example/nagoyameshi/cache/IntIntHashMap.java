@@ -0,0 +1,142 @@
+package com.example.nagoyameshi.cache;
+
+import java.util.Arrays;
+
+// intのキーとintの値を保持するオープンアドレス法のハッシュマップ（ボクシングを行わないため省メモリ）
+// キーには0以外の値を使う。スレッドセーフではないため、共有する場合は更新後に公開し直すこと
+public class IntIntHashMap {
+    private static final int EMPTY_KEY = 0;
+
+    private int[] keys;
+    private int[] values;
+    private int size;
+    private final int missingValue;
+
+    public IntIntHashMap(int expectedSize, int missingValue) {
+        int capacity = Integer.highestOneBit(Math.max(4, expectedSize * 2 - 1)) << 1;
+        this.keys = new int[capacity];
+        this.values = new int[capacity];
+        this.missingValue = missingValue;
+    }
+
+    // 指定したキーの値を返す（存在しない場合はmissingValueを返す）
+    public int get(int key) {
+        int mask = keys.length - 1;
+        int index = mix(key) & mask;
+
+        while (keys[index] != EMPTY_KEY) {
+            if (keys[index] == key) {
+                return values[index];
+            }
+
+            index = (index + 1) & mask;
+        }
+
+        return missingValue;
+    }
+
+    public boolean containsKey(int key) {
+        return get(key) != missingValue;
+    }
+
+    public void put(int key, int value) {
+        if (key == EMPTY_KEY) {
+            throw new IllegalArgumentException("キーに0は使用できません。");
+        }
+
+        // 使用率が50%を超えたら拡張する
+        if ((size + 1) * 2 > keys.length) {
+            resize(keys.length * 2);
+        }
+
+        int mask = keys.length - 1;
+        int index = mix(key) & mask;
+
+        while (keys[index] != EMPTY_KEY) {
+            if (keys[index] == key) {
+                values[index] = value;
+                return;
+            }
+
+            index = (index + 1) & mask;
+        }
+
+        keys[index] = key;
+        values[index] = value;
+        size++;
+    }
+
+    public void remove(int key) {
+        int mask = keys.length - 1;
+        int index = mix(key) & mask;
+
+        while (keys[index] != EMPTY_KEY) {
+            if (keys[index] == key) {
+                keys[index] = EMPTY_KEY;
+                size--;
+
+                // 後続の要素を詰め直し、探索が途切れないようにする
+                int next = (index + 1) & mask;
+
+                while (keys[next] != EMPTY_KEY) {
+                    int nextKey = keys[next];
+                    int nextValue = values[next];
+                    keys[next] = EMPTY_KEY;
+                    size--;
+                    put(nextKey, nextValue);
+                    next = (next + 1) & mask;
+                }
+
+                return;
+            }
+
+            index = (index + 1) & mask;
+        }
+    }
+
+    public int size() {
+        return size;
+    }
+
+    // 登録されているキーを配列で返す（順序は不定）
+    public int[] keys() {
+        int[] result = new int[size];
+        int count = 0;
+
+        for (int key : keys) {
+            if (key != EMPTY_KEY) {
+                result[count++] = key;
+            }
+        }
+
+        return result;
+    }
+
+    public IntIntHashMap copy() {
+        IntIntHashMap copy = new IntIntHashMap(1, missingValue);
+        copy.keys = Arrays.copyOf(keys, keys.length);
+        copy.values = Arrays.copyOf(values, values.length);
+        copy.size = size;
+
+        return copy;
+    }
+
+    private void resize(int capacity) {
+        int[] oldKeys = keys;
+        int[] oldValues = values;
+        keys = new int[capacity];
+        values = new int[capacity];
+        size = 0;
+
+        for (int i = 0; i < oldKeys.length; i++) {
+            if (oldKeys[i] != EMPTY_KEY) {
+                put(oldKeys[i], oldValues[i]);
+            }
+        }
+    }
+
+    private static int mix(int key) {
+        int h = key * 0x9E3779B9;
+        return h ^ (h >>> 16);
+    }
+}
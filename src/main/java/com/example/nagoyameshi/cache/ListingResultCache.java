@@ -0,0 +1,194 @@
+package com.example.nagoyameshi.cache;
+
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+// 店舗一覧の検索結果（検索条件とページごとの店舗idの一覧と総件数）をメモリ上に保持する
+// 各結果には作成時点の世代番号を記録しておき、更新時は世代番号を進めるだけで関係する結果をまとめて無効にする（キーの走査はしない）
+//  ・全体の世代：店舗の作成・更新・削除とカテゴリの変更で進める（キーワード・予算・すべての店舗の一覧が依存する）
+//  ・カテゴリごとの世代：そのカテゴリに属する（属していた）店舗の変更で進める（カテゴリで絞り込んだ一覧が依存する）
+//  ・並び順ごとの世代：評価順・予約数順・注目度順の値の変更で進める（その並び順の一覧が依存する）
+// 世代番号は自サーバーでの更新でしか進まないため、他のサーバーでの更新やスコアの再計算は一定時間（ttlSeconds）が経過した結果を破棄することで反映する
+@Component
+public class ListingResultCache {
+    private final Map<Key, Entry> entries = new ConcurrentHashMap<>();
+    private final Map<Criteria, Statistics> statistics = new ConcurrentHashMap<>();
+    private final AtomicLong globalGeneration = new AtomicLong();
+    private final Map<Integer, AtomicLong> categoryGenerations = new ConcurrentHashMap<>();
+    private final Map<String, AtomicLong> orderGenerations = new ConcurrentHashMap<>();
+    private final LongAdder hitCount = new LongAdder();
+    private final LongAdder missCount = new LongAdder();
+    private final int maxEntries;
+    private final long ttlMillis;
+
+    // 正規化した検索条件（優先される条件のみを残し、並び順は既定値で補う）
+    public record Criteria(String keyword, Integer categoryId, Integer price, String order) {
+        public static Criteria of(String keyword, Integer categoryId, Integer price, String order) {
+            String normalizedOrder = switch (order == null ? "" : order) {
+                case "lowestPriceAsc", "ratingDesc", "popularDesc", "trendingDesc" -> order;
+                default -> "createdAtDesc";
+            };
+
+            if (keyword != null && !keyword.isBlank()) {
+                return new Criteria(keyword.strip(), null, null, normalizedOrder);
+            } else if (categoryId != null) {
+                return new Criteria(null, categoryId, null, normalizedOrder);
+            } else {
+                return new Criteria(null, null, price, normalizedOrder);
+            }
+        }
+    }
+
+    // 1ページ分の検索結果
+    public record Result(int[] restaurantIds, long totalCount) {
+    }
+
+    // キャッシュを引いた結果（見つからなかった場合はresultがnullで、取得した結果はputで登録する）
+    public record Lookup(Key key, Result result, long scopeGeneration, long orderGeneration) {
+    }
+
+    // 検索条件ごとのヒット数とミス数
+    public record CriteriaStatistics(Criteria criteria, long hits, long misses) {
+    }
+
+    private record Key(Criteria criteria, int page, int size, String sort) {
+    }
+
+    private record Entry(Result result, long scopeGeneration, long orderGeneration, long createdAt) {
+    }
+
+    private static class Statistics {
+        private final LongAdder hits = new LongAdder();
+        private final LongAdder misses = new LongAdder();
+    }
+
+    public ListingResultCache(@Value("${listing-cache.max-entries:10000}") int maxEntries,
+                              @Value("${listing-cache.ttl-seconds:30}") long ttlSeconds)
+    {
+        this.maxEntries = maxEntries;
+        this.ttlMillis = ttlSeconds * 1000;
+    }
+
+    // 指定した条件・ページの検索結果を引く（世代番号は結果を取得する前に読んでおき、取得中の更新で古い結果が残らないようにする）
+    public Lookup lookup(Criteria criteria, int page, int size, String sort) {
+        Key key = new Key(criteria, page, size, sort);
+        long scopeGeneration = scopeGeneration(criteria);
+        long orderGeneration = orderGeneration(criteria.order());
+        Entry entry = entries.get(key);
+        Statistics criteriaStatistics = statistics(criteria);
+        boolean expired = entry != null && System.currentTimeMillis() - entry.createdAt() >= ttlMillis;
+
+        if (entry != null && !expired && entry.scopeGeneration() == scopeGeneration && entry.orderGeneration() == orderGeneration) {
+            criteriaStatistics.hits.increment();
+            hitCount.increment();
+            return new Lookup(key, entry.result(), scopeGeneration, orderGeneration);
+        }
+
+        criteriaStatistics.misses.increment();
+        missCount.increment();
+
+        return new Lookup(key, null, scopeGeneration, orderGeneration);
+    }
+
+    // lookupで見つからなかった検索結果を登録する
+    public void put(Lookup lookup, int[] restaurantIds, long totalCount) {
+        // 上限を超えた場合はすべて破棄する（次のアクセスから必要な分だけ登録し直される）
+        if (entries.size() >= maxEntries) {
+            entries.clear();
+        }
+
+        entries.put(lookup.key(), new Entry(new Result(restaurantIds, totalCount), lookup.scopeGeneration(), lookup.orderGeneration(), System.currentTimeMillis()));
+    }
+
+    // 店舗やカテゴリの変更を反映する（指定したカテゴリと、カテゴリで絞り込まない一覧を無効にする）
+    public void invalidateRestaurants(Collection<Integer> categoryIds) {
+        List<Integer> affectedCategoryIds = List.copyOf(categoryIds);
+
+        afterCommit(() -> {
+            globalGeneration.incrementAndGet();
+            affectedCategoryIds.forEach(categoryId -> generation(categoryGenerations, categoryId).incrementAndGet());
+        });
+    }
+
+    // 並び順に使う値の変更を反映する（その並び順の一覧のみを無効にする）
+    public void invalidateOrder(String order) {
+        afterCommit(() -> generation(orderGenerations, order).incrementAndGet());
+    }
+
+    // ヒット数とミス数の合計が多い順に、検索条件ごとの統計を最大limit件返す
+    public List<CriteriaStatistics> findTopStatistics(int limit) {
+        return statistics.entrySet().stream()
+                         .map(entry -> new CriteriaStatistics(entry.getKey(), entry.getValue().hits.sum(), entry.getValue().misses.sum()))
+                         .sorted(Comparator.comparingLong((CriteriaStatistics criteriaStatistics) -> criteriaStatistics.hits() + criteriaStatistics.misses()).reversed())
+                         .limit(limit)
+                         .toList();
+    }
+
+    public int size() {
+        return entries.size();
+    }
+
+    public long getHitCount() {
+        return hitCount.sum();
+    }
+
+    public long getMissCount() {
+        return missCount.sum();
+    }
+
+    private Statistics statistics(Criteria criteria) {
+        Statistics criteriaStatistics = statistics.get(criteria);
+
+        if (criteriaStatistics == null) {
+            if (statistics.size() >= maxEntries) {
+                statistics.clear();
+            }
+
+            criteriaStatistics = statistics.computeIfAbsent(criteria, key -> new Statistics());
+        }
+
+        return criteriaStatistics;
+    }
+
+    private long scopeGeneration(Criteria criteria) {
+        if (criteria.categoryId() != null) {
+            return generation(categoryGenerations, criteria.categoryId()).get();
+        }
+
+        return globalGeneration.get();
+    }
+
+    private long orderGeneration(String order) {
+        AtomicLong generation = orderGenerations.get(order);
+
+        return generation != null ? generation.get() : 0;
+    }
+
+    private static <K> AtomicLong generation(Map<K, AtomicLong> generations, K key) {
+        return generations.computeIfAbsent(key, k -> new AtomicLong());
+    }
+
+    // トランザクション内であればコミット後に実行する（コミット前に世代を進めると、更新前の結果が新しい世代で登録されうるため）
+    private static void afterCommit(Runnable runnable) {
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    runnable.run();
+                }
+            });
+        } else {
+            runnable.run();
+        }
+    }
+}
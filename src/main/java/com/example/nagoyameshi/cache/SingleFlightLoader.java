@@ -0,0 +1,191 @@
+package com.example.nagoyameshi.cache;
+
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Function;
+import java.util.function.LongSupplier;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+// キーごとに読み込んだ値を一定時間保持し、同じキーの読み込みが同時に発生した場合は1回にまとめる
+//  ・保持期間内：保持している値を返す
+//  ・保持期間を過ぎても猶予期間内：保持している値をそのまま返し、裏側で1回だけ読み込み直す
+//  ・猶予期間も過ぎた（または値がない）：最初の呼び出し元が読み込み、同時に来た呼び出し元はその完了を待つ
+// 待機はキーごとにtimeoutMillisまでとし、読み込みがそれより長くかかった場合は次の呼び出し元が読み込み直す
+public class SingleFlightLoader<K, V> {
+    private static final Logger logger = LoggerFactory.getLogger(SingleFlightLoader.class);
+
+    private final Map<K, Entry<V>> entries = new ConcurrentHashMap<>();
+    private final long freshNanos;
+    private final long staleNanos;
+    private final long timeoutNanos;
+    private final int maxEntries;
+    private final LongSupplier clock;
+    private final LongAdder hitCount = new LongAdder();
+    private final LongAdder staleHitCount = new LongAdder();
+    private final LongAdder loadCount = new LongAdder();
+    private final LongAdder coalescedCount = new LongAdder();
+
+    // 読み込んだ値と、実行中の読み込み
+    private record Entry<V>(V value, boolean hasValue, long loadedAt, CompletableFuture<V> loading, long loadingStartedAt) {
+    }
+
+    public SingleFlightLoader(long freshMillis, long staleMillis, long timeoutMillis, int maxEntries) {
+        this(freshMillis, staleMillis, timeoutMillis, maxEntries, System::nanoTime);
+    }
+
+    SingleFlightLoader(long freshMillis, long staleMillis, long timeoutMillis, int maxEntries, LongSupplier clock) {
+        this.freshNanos = TimeUnit.MILLISECONDS.toNanos(freshMillis);
+        this.staleNanos = TimeUnit.MILLISECONDS.toNanos(staleMillis);
+        this.timeoutNanos = TimeUnit.MILLISECONDS.toNanos(timeoutMillis);
+        this.maxEntries = maxEntries;
+        this.clock = clock;
+    }
+
+    // 指定したキーの値を返す（保持していないか古すぎる場合はloaderで読み込む）
+    public V get(K key, Function<K, V> loader) {
+        long now = clock.getAsLong();
+        Entry<V> entry = entries.get(key);
+
+        if (entry != null && entry.hasValue() && now - entry.loadedAt() < freshNanos) {
+            hitCount.increment();
+            return entry.value();
+        }
+
+        if (entry != null && entry.hasValue() && now - entry.loadedAt() < freshNanos + staleNanos) {
+            // 古くなった値を返しつつ、読み込み中でなければ裏側で読み込み直す
+            CompletableFuture<V> loading = new CompletableFuture<>();
+
+            if (startLoading(key, loading, now).loading() == loading) {
+                Thread.ofVirtual().start(() -> {
+                    try {
+                        load(key, loader, loading);
+                    } catch (RuntimeException e) {
+                        logger.warn("値を読み込み直せませんでした（古い値を引き続き返します）: {}", key, e);
+                    }
+                });
+            }
+
+            staleHitCount.increment();
+            return entry.value();
+        }
+
+        CompletableFuture<V> loading = new CompletableFuture<>();
+        Entry<V> current = startLoading(key, loading, now);
+
+        if (current.loading() == loading) {
+            return load(key, loader, loading);
+        }
+
+        coalescedCount.increment();
+
+        return await(key, current);
+    }
+
+    // 指定したキーの値を破棄する（実行中の読み込みの結果も保持しない）
+    public void invalidate(K key) {
+        entries.remove(key);
+    }
+
+    public void invalidateAll() {
+        entries.clear();
+    }
+
+    public int size() {
+        return entries.size();
+    }
+
+    // 保持期間内の値を返した件数
+    public long getHitCount() {
+        return hitCount.sum();
+    }
+
+    // 猶予期間内の古い値を返した件数
+    public long getStaleHitCount() {
+        return staleHitCount.sum();
+    }
+
+    // 読み込んだ件数（裏側での読み込み直しを含む）
+    public long getLoadCount() {
+        return loadCount.sum();
+    }
+
+    // 他の呼び出し元の読み込みを待った件数
+    public long getCoalescedCount() {
+        return coalescedCount.sum();
+    }
+
+    // 読み込みを開始する（すでに他の呼び出し元が読み込み中であれば、その読み込みを持つ値を返す）
+    private Entry<V> startLoading(K key, CompletableFuture<V> loading, long now) {
+        return entries.compute(key, (k, current) -> {
+            if (current != null && current.loading() != null && now - current.loadingStartedAt() < timeoutNanos) {
+                return current;
+            }
+
+            return current != null && current.hasValue()
+                   ? new Entry<>(current.value(), true, current.loadedAt(), loading, now)
+                   : new Entry<>(null, false, 0, loading, now);
+        });
+    }
+
+    private V load(K key, Function<K, V> loader, CompletableFuture<V> loading) {
+        loadCount.increment();
+
+        try {
+            V value = loader.apply(key);
+
+            // 読み込み中に破棄または読み込み直しされた場合は、結果を保持しない
+            entries.computeIfPresent(key, (k, current) -> current.loading() == loading ? new Entry<>(value, true, clock.getAsLong(), null, 0) : current);
+            loading.complete(value);
+
+            // 上限を超えた場合はすべて破棄する（次のアクセスから必要な分だけ読み込み直される）
+            if (entries.size() > maxEntries) {
+                entries.clear();
+            }
+
+            return value;
+        } catch (RuntimeException e) {
+            entries.computeIfPresent(key, (k, current) -> {
+                if (current.loading() != loading) {
+                    return current;
+                }
+
+                return current.hasValue() ? new Entry<>(current.value(), true, current.loadedAt(), null, 0) : null;
+            });
+            loading.completeExceptionally(e);
+
+            throw e;
+        }
+    }
+
+    // 他の呼び出し元の読み込みの完了を待つ（待ちきれない場合は、古い値があればそれを返す）
+    private V await(K key, Entry<V> entry) {
+        long remainingNanos = entry.loadingStartedAt() + timeoutNanos - clock.getAsLong();
+
+        try {
+            return entry.loading().get(Math.max(remainingNanos, 0), TimeUnit.NANOSECONDS);
+        } catch (TimeoutException e) {
+            if (entry.hasValue()) {
+                return entry.value();
+            }
+
+            throw new IllegalStateException("値の読み込みがタイムアウトしました: " + key, e);
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof RuntimeException runtimeException) {
+                throw runtimeException;
+            }
+
+            throw new IllegalStateException(e.getCause());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+
+            throw new IllegalStateException(e);
+        }
+    }
+}
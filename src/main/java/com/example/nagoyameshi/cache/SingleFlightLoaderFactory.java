@@ -0,0 +1,42 @@
+package com.example.nagoyameshi.cache;
+
+import java.util.Collections;
+import java.util.Map;
+import java.util.concurrent.ConcurrentSkipListMap;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+// 設定ファイルの保持期間・猶予期間・タイムアウトでSingleFlightLoaderを作成する
+@Component
+public class SingleFlightLoaderFactory {
+    private final long freshMillis;
+    private final long staleMillis;
+    private final long timeoutMillis;
+    private final int maxEntries;
+    private final Map<String, SingleFlightLoader<?, ?>> loaders = new ConcurrentSkipListMap<>();
+
+    public SingleFlightLoaderFactory(@Value("${single-flight.fresh-ms:10000}") long freshMillis,
+                                     @Value("${single-flight.stale-ms:60000}") long staleMillis,
+                                     @Value("${single-flight.timeout-ms:3000}") long timeoutMillis,
+                                     @Value("${single-flight.max-entries:10000}") int maxEntries)
+    {
+        this.freshMillis = freshMillis;
+        this.staleMillis = staleMillis;
+        this.timeoutMillis = timeoutMillis;
+        this.maxEntries = maxEntries;
+    }
+
+    // 名前を付けてSingleFlightLoaderを作成する（名前は計測値のラベルに使う）
+    public <K, V> SingleFlightLoader<K, V> create(String name) {
+        SingleFlightLoader<K, V> singleFlightLoader = new SingleFlightLoader<>(freshMillis, staleMillis, timeoutMillis, maxEntries);
+        loaders.put(name, singleFlightLoader);
+
+        return singleFlightLoader;
+    }
+
+    // 作成したSingleFlightLoaderを名前順に返す
+    public Map<String, SingleFlightLoader<?, ?>> getLoaders() {
+        return Collections.unmodifiableMap(loaders);
+    }
+}
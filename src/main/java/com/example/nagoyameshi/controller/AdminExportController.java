@@ -0,0 +1,98 @@
+package com.example.nagoyameshi.controller;
+
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeFormatter;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.format.annotation.DateTimeFormat;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.stereotype.Controller;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
+
+import com.example.nagoyameshi.service.ExportService;
+
+import jakarta.servlet.http.HttpServletRequest;
+
+@Controller
+@RequestMapping("/admin/exports")
+public class AdminExportController {
+    private final ExportService exportService;
+    private final long timeoutMillis;
+
+    public AdminExportController(ExportService exportService,
+                                 @Value("${export.async-timeout-ms:3600000}") long timeoutMillis)
+    {
+        this.exportService = exportService;
+        this.timeoutMillis = timeoutMillis;
+    }
+
+    @GetMapping
+    public String index() {
+        return "admin/exports/index";
+    }
+
+    @GetMapping("/reservations")
+    public ResponseEntity<StreamingResponseBody> reservations(@RequestParam(name = "format", required = false) String format,
+                                                              @RequestParam(name = "from", required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate from,
+                                                              @RequestParam(name = "to", required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate to,
+                                                              @RequestParam(name = "restaurantId", required = false) Integer restaurantId,
+                                                              HttpServletRequest request)
+    {
+        ExportService.Format exportFormat = toFormat(format);
+        StreamingResponseBody body = outputStream -> exportService.exportReservations(from, to, restaurantId, exportFormat, outputStream);
+
+        return toResponse("reservations", exportFormat, body, request);
+    }
+
+    @GetMapping("/users")
+    public ResponseEntity<StreamingResponseBody> users(@RequestParam(name = "format", required = false) String format,
+                                                       @RequestParam(name = "from", required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate from,
+                                                       @RequestParam(name = "to", required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate to,
+                                                       HttpServletRequest request)
+    {
+        ExportService.Format exportFormat = toFormat(format);
+        StreamingResponseBody body = outputStream -> exportService.exportUsers(from, to, exportFormat, outputStream);
+
+        return toResponse("users", exportFormat, body, request);
+    }
+
+    @GetMapping("/reviews")
+    public ResponseEntity<StreamingResponseBody> reviews(@RequestParam(name = "format", required = false) String format,
+                                                         @RequestParam(name = "from", required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate from,
+                                                         @RequestParam(name = "to", required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate to,
+                                                         @RequestParam(name = "restaurantId", required = false) Integer restaurantId,
+                                                         HttpServletRequest request)
+    {
+        ExportService.Format exportFormat = toFormat(format);
+        StreamingResponseBody body = outputStream -> exportService.exportReviews(from, to, restaurantId, exportFormat, outputStream);
+
+        return toResponse("reviews", exportFormat, body, request);
+    }
+
+    // 出力形式の指定がない場合や不明な場合はCSVとする
+    private ExportService.Format toFormat(String format) {
+        if (format != null && format.equalsIgnoreCase("ndjson")) {
+            return ExportService.Format.NDJSON;
+        }
+
+        return ExportService.Format.CSV;
+    }
+
+    // 大量の行の出力に時間がかかるため、非同期処理のタイムアウトを延長する
+    private ResponseEntity<StreamingResponseBody> toResponse(String name, ExportService.Format format, StreamingResponseBody body, HttpServletRequest request) {
+        AsyncTimeoutConfig.setTimeout(request, timeoutMillis);
+
+        String fileName = name + "_" + LocalDateTime.now().format(DateTimeFormatter.ofPattern("yyyyMMddHHmmss")) + "." + format.getExtension();
+
+        return ResponseEntity.ok()
+                             .header(HttpHeaders.CONTENT_DISPOSITION, "attachment; filename=\"" + fileName + "\"")
+                             .contentType(MediaType.parseMediaType(format.getContentType() + ";charset=UTF-8"))
+                             .body(body);
+    }
+}
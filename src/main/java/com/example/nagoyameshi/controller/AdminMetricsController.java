@@ -0,0 +1,28 @@
+package com.example.nagoyameshi.controller;
+
+import org.springframework.stereotype.Controller;
+import org.springframework.ui.Model;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.RequestMapping;
+
+import com.example.nagoyameshi.metrics.MetricsRegistry;
+
+@Controller
+@RequestMapping("/admin/metrics")
+public class AdminMetricsController {
+    private static final int TIMER_LIMIT = 20;
+
+    private final MetricsRegistry metricsRegistry;
+
+    public AdminMetricsController(MetricsRegistry metricsRegistry) {
+        this.metricsRegistry = metricsRegistry;
+    }
+
+    @GetMapping
+    public String index(Model model) {
+        model.addAttribute("timers", metricsRegistry.findSlowestTimers(TIMER_LIMIT));
+        model.addAttribute("values", metricsRegistry.findValues(null));
+
+        return "admin/metrics/index";
+    }
+}
@@ -0,0 +1,64 @@
+package com.example.nagoyameshi.controller;
+
+import java.time.LocalDateTime;
+import java.time.format.DateTimeFormatter;
+import java.util.concurrent.TimeUnit;
+
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.stereotype.Controller;
+import org.springframework.ui.Model;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PostMapping;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
+
+import com.example.nagoyameshi.metrics.FlightRecorderProfiler;
+
+import jakarta.servlet.http.HttpServletRequest;
+
+@Controller
+@RequestMapping("/admin/profiling")
+public class AdminProfilingController {
+    private final FlightRecorderProfiler flightRecorderProfiler;
+
+    public AdminProfilingController(FlightRecorderProfiler flightRecorderProfiler) {
+        this.flightRecorderProfiler = flightRecorderProfiler;
+    }
+
+    @GetMapping
+    public String index(Model model) {
+        model.addAttribute("profiles", FlightRecorderProfiler.Profile.values());
+        model.addAttribute("maxDurationSeconds", flightRecorderProfiler.getMaxDurationSeconds());
+        model.addAttribute("recording", flightRecorderProfiler.isRecording());
+        model.addAttribute("summary", flightRecorderProfiler.getLastSummary());
+
+        return "admin/profiling/index";
+    }
+
+    // 指定した秒数だけ記録し、終了後に記録ファイルを返す（別の記録が実行中の場合は409エラーを返す）
+    @PostMapping("/recordings")
+    public ResponseEntity<StreamingResponseBody> record(@RequestParam(name = "profile") FlightRecorderProfiler.Profile profile,
+                                                        @RequestParam(name = "duration", defaultValue = "30") int duration,
+                                                        HttpServletRequest request)
+    {
+        FlightRecorderProfiler.Session session = flightRecorderProfiler.start(profile, duration);
+
+        if (session == null) {
+            return ResponseEntity.status(HttpStatus.CONFLICT).build();
+        }
+
+        // 記録の終了を待ってから出力するため、記録時間に余裕を加えたタイムアウトにする
+        AsyncTimeoutConfig.setTimeout(request, TimeUnit.SECONDS.toMillis(session.getDurationSeconds() + 60));
+
+        String fileName = "profile_" + profile.name().toLowerCase() + "_" + LocalDateTime.now().format(DateTimeFormatter.ofPattern("yyyyMMddHHmmss")) + ".jfr";
+
+        return ResponseEntity.ok()
+                             .header(HttpHeaders.CONTENT_DISPOSITION, "attachment; filename=\"" + fileName + "\"")
+                             .contentType(MediaType.APPLICATION_OCTET_STREAM)
+                             .body(session::streamTo);
+    }
+}
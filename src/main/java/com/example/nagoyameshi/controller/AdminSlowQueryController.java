@@ -0,0 +1,45 @@
+package com.example.nagoyameshi.controller;
+
+import java.time.LocalDateTime;
+import java.time.format.DateTimeFormatter;
+import java.util.List;
+
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.stereotype.Controller;
+import org.springframework.ui.Model;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.RequestMapping;
+
+import com.example.nagoyameshi.metrics.SlowQuery;
+import com.example.nagoyameshi.metrics.SlowQueryLog;
+
+@Controller
+@RequestMapping("/admin/slow-queries")
+public class AdminSlowQueryController {
+    private final SlowQueryLog slowQueryLog;
+
+    public AdminSlowQueryController(SlowQueryLog slowQueryLog) {
+        this.slowQueryLog = slowQueryLog;
+    }
+
+    @GetMapping
+    public String index(Model model) {
+        model.addAttribute("slowQueries", slowQueryLog.findAll());
+        model.addAttribute("thresholdMillis", slowQueryLog.getThresholdNanos() / 1_000_000);
+        model.addAttribute("droppedExplainCount", slowQueryLog.getDroppedExplainCount());
+
+        return "admin/slow-queries/index";
+    }
+
+    @GetMapping("/export")
+    public ResponseEntity<List<SlowQuery>> export() {
+        String fileName = "slow_queries_" + LocalDateTime.now().format(DateTimeFormatter.ofPattern("yyyyMMddHHmmss")) + ".json";
+
+        return ResponseEntity.ok()
+                             .header(HttpHeaders.CONTENT_DISPOSITION, "attachment; filename=\"" + fileName + "\"")
+                             .contentType(MediaType.APPLICATION_JSON)
+                             .body(slowQueryLog.findAll());
+    }
+}
@@ -34,7 +34,7 @@ public class AdminUserController {
         Page<User> userPage;
 
         if (keyword != null && !keyword.isEmpty()) {
-            userPage = userService.findUsersByNameLikeOrFuriganaLike(keyword, keyword, pageable);
+            userPage = userService.searchUsers(keyword, pageable);
         } else {
             userPage = userService.findAllUsers(pageable);
         }
@@ -0,0 +1,39 @@
+package com.example.nagoyameshi.controller;
+
+import java.util.concurrent.Callable;
+
+import org.springframework.context.annotation.Configuration;
+import org.springframework.web.context.request.NativeWebRequest;
+import org.springframework.web.context.request.RequestAttributes;
+import org.springframework.web.context.request.async.AsyncWebRequest;
+import org.springframework.web.context.request.async.CallableProcessingInterceptor;
+import org.springframework.web.servlet.config.annotation.AsyncSupportConfigurer;
+import org.springframework.web.servlet.config.annotation.WebMvcConfigurer;
+
+import jakarta.servlet.http.HttpServletRequest;
+
+// 時間のかかるダウンロード（データ出力・プロファイリング）のリクエストのみ、非同期処理のタイムアウトを延長する
+// ハンドラがsetTimeoutでリクエストにタイムアウトを設定し、StreamingResponseBodyの非同期処理を開始する直前に反映する
+@Configuration
+public class AsyncTimeoutConfig implements WebMvcConfigurer {
+    private static final String TIMEOUT_ATTRIBUTE = AsyncTimeoutConfig.class.getName() + ".timeout";
+
+    // このリクエストで開始する非同期処理のタイムアウト（ミリ秒）を設定する
+    public static void setTimeout(HttpServletRequest request, long timeoutMillis) {
+        request.setAttribute(TIMEOUT_ATTRIBUTE, timeoutMillis);
+    }
+
+    @Override
+    public void configureAsyncSupport(AsyncSupportConfigurer configurer) {
+        configurer.registerCallableInterceptors(new CallableProcessingInterceptor() {
+            @Override
+            public <T> void beforeConcurrentHandling(NativeWebRequest request, Callable<T> task) {
+                if (request.getAttribute(TIMEOUT_ATTRIBUTE, RequestAttributes.SCOPE_REQUEST) instanceof Long timeoutMillis
+                        && request instanceof AsyncWebRequest asyncWebRequest)
+                {
+                    asyncWebRequest.setTimeout(timeoutMillis);
+                }
+            }
+        });
+    }
+}
@@ -1,5 +1,6 @@
 package com.example.nagoyameshi.controller;
 
+import org.springframework.security.crypto.password.PasswordEncoder;
 import org.springframework.stereotype.Controller;
 import org.springframework.ui.Model;
 import org.springframework.validation.BindingResult;
@@ -15,6 +16,7 @@ import com.example.nagoyameshi.entity.User;
 import com.example.nagoyameshi.entity.VerificationToken;
 import com.example.nagoyameshi.event.SignupEventPublisher;
 import com.example.nagoyameshi.form.SignupForm;
+import com.example.nagoyameshi.security.PasswordHashingRejectedException;
 import com.example.nagoyameshi.service.UserService;
 import com.example.nagoyameshi.service.VerificationTokenService;
 
@@ -25,11 +27,15 @@ public class AuthController {
     private final UserService userService;
     private final SignupEventPublisher signupEventPublisher;
     private final VerificationTokenService verificationTokenService;    
+    private final PasswordEncoder passwordEncoder;
 
-    public AuthController(UserService userService, SignupEventPublisher signupEventPublisher, VerificationTokenService verificationTokenService) {
+    public AuthController(UserService userService, SignupEventPublisher signupEventPublisher, VerificationTokenService verificationTokenService,
+                          PasswordEncoder passwordEncoder)
+    {
         this.userService = userService;        
         this.signupEventPublisher = signupEventPublisher;
         this.verificationTokenService = verificationTokenService;        
+        this.passwordEncoder = passwordEncoder;
     }
 
     @GetMapping("/login")
@@ -68,7 +74,20 @@ public class AuthController {
             return "auth/signup";
         }
 
-        User createdUser = userService.createUser(signupForm);
+        User createdUser;
+
+        // パスワードの処理が混雑している場合は、入力内容を保持したまま再試行を促す
+        // （ハッシュ化の待ち時間と計算の間にデータベースのコネクションを占有しないよう、トランザクションの前にハッシュ化する）
+        try {
+            String encodedPassword = passwordEncoder.encode(signupForm.getPassword());
+            createdUser = userService.createUser(signupForm, encodedPassword);
+        } catch (PasswordHashingRejectedException e) {
+            model.addAttribute("signupForm", signupForm);
+            model.addAttribute("errorMessage", "ただいま混み合っています。しばらくしてから再度お試しください。");
+
+            return "auth/signup";
+        }
+
         String requestUrl = new String(httpServletRequest.getRequestURL());
         signupEventPublisher.publishSignupEvent(createdUser, requestUrl);
         redirectAttributes.addFlashAttribute("successMessage", "ご入力いただいたメールアドレスに認証メールを送信しました。メールに記載されているリンクをクリックし、会員登録を完了してください。");        
@@ -2,6 +2,7 @@ package com.example.nagoyameshi.controller;
 
 import java.util.Optional;
 
+import org.springframework.dao.DataIntegrityViolationException;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.Pageable;
 import org.springframework.data.domain.Sort.Direction;
@@ -17,9 +18,11 @@ import org.springframework.web.servlet.mvc.support.RedirectAttributes;
 import com.example.nagoyameshi.entity.Favorite;
 import com.example.nagoyameshi.entity.Restaurant;
 import com.example.nagoyameshi.entity.User;
+import com.example.nagoyameshi.repository.FavoriteRepository.FavoriteListItem;
 import com.example.nagoyameshi.security.UserDetailsImpl;
 import com.example.nagoyameshi.service.FavoriteService;
 import com.example.nagoyameshi.service.RestaurantService;
+import com.example.nagoyameshi.service.UserService;
 
 import jakarta.servlet.http.HttpServletRequest;
 
@@ -27,10 +30,12 @@ import jakarta.servlet.http.HttpServletRequest;
 public class FavoriteController {
     private final RestaurantService restaurantService;
     private final FavoriteService favoriteService;
+    private final UserService userService;
 
-    public FavoriteController(RestaurantService restaurantService, FavoriteService favoriteService) {
+    public FavoriteController(RestaurantService restaurantService, FavoriteService favoriteService, UserService userService) {
         this.restaurantService = restaurantService;
         this.favoriteService = favoriteService;
+        this.userService = userService;
     }
 
     @GetMapping("/favorites")
@@ -39,15 +44,15 @@ public class FavoriteController {
                         RedirectAttributes redirectAttributes,
                         Model model)
     {
-        User user = userDetailsImpl.getUser();
+        User user = userService.getUserReference(userDetailsImpl.getUserId());
 
-        if (user.getRole().getName().equals("ROLE_FREE_MEMBER")) {
+        if (userDetailsImpl.getRoleName().equals("ROLE_FREE_MEMBER")) {
             redirectAttributes.addFlashAttribute("subscriptionMessage", "この機能を利用するには有料プランへの登録が必要です。");
 
             return "redirect:/subscription/register";
         }
 
-        Page<Favorite> favoritePage = favoriteService.findFavoritesByUserOrderByCreatedAtDesc(user, pageable);
+        Page<FavoriteListItem> favoritePage = favoriteService.findFavoritesByUserOrderByCreatedAtDesc(user, pageable);
 
         model.addAttribute("favoritePage", favoritePage);
 
@@ -60,9 +65,9 @@ public class FavoriteController {
                          RedirectAttributes redirectAttributes,
                          Model model)
     {
-        User user = userDetailsImpl.getUser();
+        User user = userService.getUserReference(userDetailsImpl.getUserId());
 
-        if (user.getRole().getName().equals("ROLE_FREE_MEMBER")) {
+        if (userDetailsImpl.getRoleName().equals("ROLE_FREE_MEMBER")) {
             redirectAttributes.addFlashAttribute("subscriptionMessage", "この機能を利用するには有料プランへの登録が必要です。");
 
             return "redirect:/subscription/register";
@@ -78,7 +83,12 @@ public class FavoriteController {
 
         Restaurant restaurant = optionalRestaurant.get();
 
-        favoriteService.createFavorite(restaurant, user);
+        try {
+            favoriteService.createFavorite(restaurant, user);
+        } catch (DataIntegrityViolationException e) {
+            // 他のサーバーで同時に追加された場合は一意制約に違反するが、お気に入りには追加済みのため成功として扱う
+        }
+
         redirectAttributes.addFlashAttribute("successMessage", "お気に入りに追加しました。");
 
         return "redirect:/restaurants/{restaurantId}";
@@ -90,9 +100,9 @@ public class FavoriteController {
                          RedirectAttributes redirectAttributes,
                          HttpServletRequest httpServletRequest)
     {
-        User user = userDetailsImpl.getUser();
+        User user = userService.getUserReference(userDetailsImpl.getUserId());
 
-        if (user.getRole().getName().equals("ROLE_FREE_MEMBER")) {
+        if (userDetailsImpl.getRoleName().equals("ROLE_FREE_MEMBER")) {
             redirectAttributes.addFlashAttribute("subscriptionMessage", "この機能を利用するには有料プランへの登録が必要です。");
 
             return "redirect:/subscription/register";
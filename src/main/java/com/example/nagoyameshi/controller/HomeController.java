@@ -1,9 +1,9 @@
 package com.example.nagoyameshi.controller;
 
+import java.util.ArrayList;
 import java.util.List;
+import java.util.Set;
 
-import org.springframework.data.domain.Page;
-import org.springframework.data.domain.PageRequest;
 import org.springframework.security.core.annotation.AuthenticationPrincipal;
 import org.springframework.stereotype.Controller;
 import org.springframework.ui.Model;
@@ -11,28 +11,43 @@ import org.springframework.web.bind.annotation.GetMapping;
 
 import com.example.nagoyameshi.entity.Category;
 import com.example.nagoyameshi.entity.Restaurant;
+import com.example.nagoyameshi.repository.RestaurantRepository.RestaurantCard;
 import com.example.nagoyameshi.security.UserDetailsImpl;
 import com.example.nagoyameshi.service.CategoryService;
+import com.example.nagoyameshi.service.FavoriteService;
+import com.example.nagoyameshi.service.RecommendationService;
 import com.example.nagoyameshi.service.RestaurantService;
+import com.example.nagoyameshi.service.RestaurantService.HomeRestaurants;
 
 @Controller
 public class HomeController {
     private final RestaurantService restaurantService;
     private final CategoryService categoryService;
+    private final FavoriteService favoriteService;
+    private final RecommendationService recommendationService;
 
-    public HomeController(RestaurantService restaurantService, CategoryService categoryService) {
+    public HomeController(RestaurantService restaurantService,
+                          CategoryService categoryService,
+                          FavoriteService favoriteService,
+                          RecommendationService recommendationService)
+    {
         this.restaurantService = restaurantService;
         this.categoryService = categoryService;
+        this.favoriteService = favoriteService;
+        this.recommendationService = recommendationService;
     }
     
     @GetMapping("/")
     public String index(@AuthenticationPrincipal UserDetailsImpl userDetailsImpl, Model model) {
         // ログインユーザーが管理者なら管理者用のトップページにリダイレクト
-        if (userDetailsImpl != null && userDetailsImpl.getUser().getRole().getName().equals("ROLE_ADMIN")) {
+        if (userDetailsImpl != null && userDetailsImpl.getRoleName().equals("ROLE_ADMIN")) {
             return "redirect:/admin";
         }
-        Page<Restaurant> highlyRatedRestaurants = restaurantService.findAllRestaurantsByOrderByAverageScoreDesc(PageRequest.of(0, 6));
-        Page<Restaurant> newRestaurants = restaurantService.findAllRestaurantsByOrderByCreatedAtDesc(PageRequest.of(0, 6));
+        // ログインの有無によらない部分は、同時にアクセスがあっても読み込みが1回にまとめられる
+        HomeRestaurants homeRestaurants = restaurantService.findHomeRestaurants();
+        List<Restaurant> highlyRatedRestaurants = homeRestaurants.highlyRatedRestaurants();
+        List<Restaurant> newRestaurants = homeRestaurants.newRestaurants();
+        List<Restaurant> trendingRestaurants = homeRestaurants.trendingRestaurants();
         Category washoku = categoryService.findFirstCategoryByName("和食");
         Category udon = categoryService.findFirstCategoryByName("うどん");
         Category don = categoryService.findFirstCategoryByName("丼物");
@@ -41,15 +56,32 @@ public class HomeController {
         Category fried = categoryService.findFirstCategoryByName("揚げ物");
         List<Category> categories = categoryService.findAllCategories();
 
+        // ログイン中であれば、お気に入りや予約の履歴に基づくおすすめの店舗と、表示する店舗のうちお気に入りに追加済みの店舗のidを取得する
+        List<RestaurantCard> recommendedRestaurants = List.of();
+        Set<Integer> favoriteRestaurantIds = Set.of();
+
+        if (userDetailsImpl != null) {
+            recommendedRestaurants = restaurantService.findRestaurantCardsByIds(recommendationService.findRecommendedRestaurantIds(userDetailsImpl.getUserId()));
+
+            List<Integer> restaurantIds = new ArrayList<>();
+            highlyRatedRestaurants.forEach(restaurant -> restaurantIds.add(restaurant.getId()));
+            newRestaurants.forEach(restaurant -> restaurantIds.add(restaurant.getId()));
+            trendingRestaurants.forEach(restaurant -> restaurantIds.add(restaurant.getId()));
+            favoriteRestaurantIds = favoriteService.isFavorite(userDetailsImpl.getUserId(), restaurantIds);
+        }
+
+        model.addAttribute("recommendedRestaurants", recommendedRestaurants);
         model.addAttribute("highlyRatedRestaurants", highlyRatedRestaurants);
         model.addAttribute("newRestaurants", newRestaurants);
+        model.addAttribute("trendingRestaurants", trendingRestaurants);
         model.addAttribute("washoku", washoku);
         model.addAttribute("udon", udon);
         model.addAttribute("don", don);
         model.addAttribute("ramen", ramen);
         model.addAttribute("oden", oden);
         model.addAttribute("fried", fried);
-        model.addAttribute("categories", categories);        
+        model.addAttribute("categories", categories);
+        model.addAttribute("favoriteRestaurantIds", favoriteRestaurantIds);
         
         return "index";
     }
@@ -26,18 +26,22 @@ import com.example.nagoyameshi.entity.Reservation;
 import com.example.nagoyameshi.entity.Restaurant;
 import com.example.nagoyameshi.entity.User;
 import com.example.nagoyameshi.form.ReservationRegisterForm;
+import com.example.nagoyameshi.repository.ReservationRepository.ReservationListItem;
 import com.example.nagoyameshi.security.UserDetailsImpl;
 import com.example.nagoyameshi.service.ReservationService;
 import com.example.nagoyameshi.service.RestaurantService;
+import com.example.nagoyameshi.service.UserService;
 
 @Controller
 public class ReservationController {
     private final ReservationService reservationService;
     private final RestaurantService restaurantService;
+    private final UserService userService;
 
-    public ReservationController(ReservationService reservationService, RestaurantService restaurantService) {
+    public ReservationController(ReservationService reservationService, RestaurantService restaurantService, UserService userService) {
         this.reservationService = reservationService;
         this.restaurantService = restaurantService;
+        this.userService = userService;
     }
 
     @GetMapping("/reservations")
@@ -46,15 +50,15 @@ public class ReservationController {
                         RedirectAttributes redirectAttributes,
                         Model model)
     {
-        User user = userDetailsImpl.getUser();
+        User user = userService.getUserReference(userDetailsImpl.getUserId());
 
-        if (user.getRole().getName().equals("ROLE_FREE_MEMBER")) {
+        if (userDetailsImpl.getRoleName().equals("ROLE_FREE_MEMBER")) {
             redirectAttributes.addFlashAttribute("subscriptionMessage", "この機能を利用するには有料プランへの登録が必要です。");
 
             return "redirect:/subscription/register";
         }
 
-        Page<Reservation> reservationPage = reservationService.findReservationsByUserOrderByReservedDatetimeDesc(user, pageable);
+        Page<ReservationListItem> reservationPage = reservationService.findReservationsByUserOrderByReservedDatetimeDesc(user, pageable);
 
         model.addAttribute("reservationPage", reservationPage);
         model.addAttribute("currentDateTime", LocalDateTime.now());
@@ -68,9 +72,9 @@ public class ReservationController {
                            RedirectAttributes redirectAttributes,
                            Model model)
     {
-        User user = userDetailsImpl.getUser();
+        User user = userService.getUserReference(userDetailsImpl.getUserId());
 
-        if (user.getRole().getName().equals("ROLE_FREE_MEMBER")) {
+        if (userDetailsImpl.getRoleName().equals("ROLE_FREE_MEMBER")) {
             redirectAttributes.addFlashAttribute("subscriptionMessage", "この機能を利用するには有料プランへの登録が必要です。");
 
             return "redirect:/subscription/register";
@@ -102,9 +106,9 @@ public class ReservationController {
                          RedirectAttributes redirectAttributes,
                          Model model)
     {
-        User user = userDetailsImpl.getUser();
+        User user = userService.getUserReference(userDetailsImpl.getUserId());
 
-        if (user.getRole().getName().equals("ROLE_FREE_MEMBER")) {
+        if (userDetailsImpl.getRoleName().equals("ROLE_FREE_MEMBER")) {
             redirectAttributes.addFlashAttribute("subscriptionMessage", "この機能を利用するには有料プランへの登録が必要です。");
 
             return "redirect:/subscription/register";
@@ -153,9 +157,9 @@ public class ReservationController {
                          @AuthenticationPrincipal UserDetailsImpl userDetailsImpl,
                          RedirectAttributes redirectAttributes)
     {
-        User user = userDetailsImpl.getUser();
+        User user = userService.getUserReference(userDetailsImpl.getUserId());
 
-        if (user.getRole().getName().equals("ROLE_FREE_MEMBER")) {
+        if (userDetailsImpl.getRoleName().equals("ROLE_FREE_MEMBER")) {
             redirectAttributes.addFlashAttribute("subscriptionMessage", "この機能を利用するには有料プランへの登録が必要です。");
 
             return "redirect:/subscription/register";
@@ -1,12 +1,18 @@
 package com.example.nagoyameshi.controller;
 
+import java.time.LocalTime;
+import java.util.BitSet;
 import java.util.List;
+import java.util.Map;
 import java.util.Optional;
+import java.util.Set;
 
 import org.springframework.data.domain.Page;
+import org.springframework.data.domain.PageImpl;
 import org.springframework.data.domain.Pageable;
 import org.springframework.data.domain.Sort.Direction;
 import org.springframework.data.web.PageableDefault;
+import org.springframework.format.annotation.DateTimeFormat;
 import org.springframework.security.core.annotation.AuthenticationPrincipal;
 import org.springframework.stereotype.Controller;
 import org.springframework.ui.Model;
@@ -14,16 +20,27 @@ import org.springframework.web.bind.annotation.GetMapping;
 import org.springframework.web.bind.annotation.PathVariable;
 import org.springframework.web.bind.annotation.RequestMapping;
 import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.bind.annotation.ResponseBody;
 import org.springframework.web.servlet.mvc.support.RedirectAttributes;
 
 import com.example.nagoyameshi.entity.Category;
-import com.example.nagoyameshi.entity.Favorite;
 import com.example.nagoyameshi.entity.Restaurant;
-import com.example.nagoyameshi.entity.User;
+import com.example.nagoyameshi.repository.RestaurantRepository.RestaurantCard;
 import com.example.nagoyameshi.security.UserDetailsImpl;
+import com.example.nagoyameshi.service.AutocompleteService;
+import com.example.nagoyameshi.service.AutocompleteService.Suggestion;
 import com.example.nagoyameshi.service.CategoryService;
 import com.example.nagoyameshi.service.FavoriteService;
+import com.example.nagoyameshi.service.OpeningHoursIndexService;
+import com.example.nagoyameshi.service.RecommendationService;
+import com.example.nagoyameshi.service.RegularHolidayService;
+import com.example.nagoyameshi.service.RestaurantActivityService;
+import com.example.nagoyameshi.service.RestaurantCatalogService;
+import com.example.nagoyameshi.service.RestaurantCatalogService.CatalogPage;
+import com.example.nagoyameshi.service.RestaurantCatalogService.CatalogQuery;
+import com.example.nagoyameshi.service.RestaurantCatalogService.Facets;
 import com.example.nagoyameshi.service.RestaurantService;
+import com.example.nagoyameshi.service.RestaurantService.RestaurantDetail;
 
 @Controller
 @RequestMapping("/restaurants")
@@ -31,71 +48,108 @@ public class RestaurantController {
     private final RestaurantService restaurantService;
     private final CategoryService categoryService;
     private final FavoriteService favoriteService;
-
-    public RestaurantController(RestaurantService restaurantService, CategoryService categoryService, FavoriteService favoriteService) {
+    private final RecommendationService recommendationService;
+    private final RestaurantActivityService restaurantActivityService;
+    private final OpeningHoursIndexService openingHoursIndexService;
+    private final AutocompleteService autocompleteService;
+    private final RestaurantCatalogService restaurantCatalogService;
+    private final RegularHolidayService regularHolidayService;
+
+    public RestaurantController(RestaurantService restaurantService,
+                                CategoryService categoryService,
+                                FavoriteService favoriteService,
+                                RecommendationService recommendationService,
+                                RestaurantActivityService restaurantActivityService,
+                                OpeningHoursIndexService openingHoursIndexService,
+                                AutocompleteService autocompleteService,
+                                RestaurantCatalogService restaurantCatalogService,
+                                RegularHolidayService regularHolidayService)
+    {
         this.restaurantService = restaurantService;
         this.categoryService = categoryService;
         this.favoriteService = favoriteService;
+        this.recommendationService = recommendationService;
+        this.restaurantActivityService = restaurantActivityService;
+        this.openingHoursIndexService = openingHoursIndexService;
+        this.autocompleteService = autocompleteService;
+        this.restaurantCatalogService = restaurantCatalogService;
+        this.regularHolidayService = regularHolidayService;
     }
 
     @GetMapping
     public String index(@RequestParam(name = "keyword", required = false) String keyword,
                         @RequestParam(name = "categoryId", required = false) Integer categoryId,
                         @RequestParam(name = "price", required = false) Integer price,
+                        @RequestParam(name = "holidayId", required = false) Integer holidayId,
+                        @RequestParam(name = "near", required = false) String near,
+                        @RequestParam(name = "radius", required = false, defaultValue = "3") Integer radius,
+                        @RequestParam(name = "open", required = false) String open,
+                        @RequestParam(name = "day", required = false) Integer day,
+                        @RequestParam(name = "time", required = false) @DateTimeFormat(pattern = "HH:mm") LocalTime time,
                         @RequestParam(name = "order", required = false) String order,
                         @PageableDefault(page = 0, size = 15, sort = "id", direction = Direction.ASC) Pageable pageable,
+                        @AuthenticationPrincipal UserDetailsImpl userDetailsImpl,
                         Model model)
     {
         Page<Restaurant> restaurantPage;
+        Map<Integer, Double> distances = Map.of();
+        Facets facets = null;
+
+        // 営業時間で絞り込む場合は、該当する店舗のidを営業時間のビットマップから求める
+        BitSet openRestaurantIds = null;
+
+        if (open != null && open.equals("now")) {
+            openRestaurantIds = openingHoursIndexService.findOpenNowRestaurantIds();
+        } else if (open != null && open.equals("at") && day != null && day >= 0 && day <= 6 && time != null) {
+            openRestaurantIds = openingHoursIndexService.findOpenRestaurantIds(day, time);
+        } else if (open != null && open.equals("late")) {
+            openRestaurantIds = openingHoursIndexService.findOpenLateRestaurantIds();
+        }
 
-        if (keyword != null && !keyword.isEmpty()) {
-            if (order != null && order.equals("lowestPriceAsc")) {
-                restaurantPage = restaurantService.findRestaurantsByNameLikeOrAddressLikeOrCategoryNameLikeOrderByLowestPriceAsc(keyword, keyword, keyword, pageable);
-            } else if (order != null && order.equals("ratingDesc")) {
-                restaurantPage = restaurantService.findRestaurantsByNameLikeOrAddressLikeOrCategoryNameLikeOrderByAverageScoreDesc(keyword, keyword, keyword, pageable);
-            } else if (order != null && order.equals("popularDesc")) {
-                restaurantPage = restaurantService.findRestaurantsByNameLikeOrAddressLikeOrCategoryNameLikeOrderByReservationCountDesc(keyword, keyword, keyword, pageable);                
-            } else {
-                restaurantPage = restaurantService.findRestaurantsByNameLikeOrAddressLikeOrCategoryNameLikeOrderByCreatedAtDesc(keyword, keyword, keyword, pageable);
-            }
-        } else if (categoryId != null) {
-            if (order != null && order.equals("lowestPriceAsc")) {
-                restaurantPage = restaurantService.findRestaurantsByCategoryIdOrderByLowestPriceAsc(categoryId, pageable);
-            } else if (order != null && order.equals("ratingDesc")) {
-                restaurantPage = restaurantService.findRestaurantsByCategoryIdOrderByAverageScoreDesc(categoryId, pageable);
-            } else if (order != null && order.equals("popularDesc")) {
-                restaurantPage = restaurantService.findRestaurantsByCategoryIdOrderByReservationCountDesc(categoryId, pageable);                
-            } else {
-                restaurantPage = restaurantService.findRestaurantsByCategoryIdOrderByCreatedAtDesc(categoryId, pageable);
-            }
-        } else if (price != null) {
-            if (order != null && order.equals("lowestPriceAsc")) {
-                restaurantPage = restaurantService.findRestaurantsByLowestPriceLessThanEqualOrderByLowestPriceAsc(price, pageable);
-            } else if (order != null && order.equals("ratingDesc")) {
-                restaurantPage = restaurantService.findRestaurantsByLowestPriceLessThanEqualOrderByAverageScoreDesc(price, pageable);
-            } else if (order != null && order.equals("popularDesc")) {
-                restaurantPage = restaurantService.findRestaurantsByLowestPriceLessThanEqualOrderByReservationCountDesc(price, pageable);                
-            } else {
-                restaurantPage = restaurantService.findRestaurantsByLowestPriceLessThanEqualOrderByCreatedAtDesc(price, pageable);
-            }
+        if (near != null && !near.isEmpty()) {
+            // 郵便番号の地域から指定した半径以内の店舗を、位置情報の索引から検索する（並べ替えの指定がなければ近い順）
+            restaurantPage = restaurantService.findRestaurantsNear(near, Math.min(Math.max(radius, 1), 10), openRestaurantIds, order, pageable);
+            distances = restaurantService.findDistances(near, restaurantPage.getContent());
+        } else if (keyword != null && !keyword.isEmpty() && openRestaurantIds != null) {
+            // キーワードに一致する店舗のidを営業時間のビットマップと掛け合わせ、カタログで並べ替える
+            restaurantPage = restaurantService.findRestaurantsByKeywordIn(keyword, openRestaurantIds, order, pageable);
+        } else if (keyword != null && !keyword.isEmpty()) {
+            restaurantPage = restaurantService.findRestaurantsByCriteria(keyword, null, null, order, pageable);
+        } else if (restaurantCatalogService.isLoaded()) {
+            // カテゴリ・予算・営業日・営業時間の条件を組み合わせて、メモリ上のカタログから検索し、表示するページの店舗のみ読み込む
+            CatalogPage catalogPage = restaurantCatalogService.search(new CatalogQuery(categoryId, price, holidayId, openRestaurantIds), order, pageable.getOffset(), pageable.getPageSize());
+            restaurantPage = new PageImpl<>(restaurantService.findRestaurantsByIds(catalogPage.restaurantIds()), pageable, catalogPage.totalCount());
+            facets = catalogPage.facets();
+        } else if (openRestaurantIds != null) {
+            restaurantPage = restaurantService.findRestaurantsByIdIn(openRestaurantIds, order, pageable);
         } else {
-            if (order != null && order.equals("lowestPriceAsc")) {
-                restaurantPage = restaurantService.findAllRestaurantsByOrderByLowestPriceAsc(pageable);
-            } else if (order != null && order.equals("ratingDesc")) {
-                restaurantPage = restaurantService.findAllRestaurantsByOrderByAverageScoreDesc(pageable);
-            } else if (order != null && order.equals("popularDesc")) {
-                restaurantPage = restaurantService.findAllRestaurantsByOrderByReservationCountDesc(pageable);                
-            } else {
-                restaurantPage = restaurantService.findAllRestaurantsByOrderByCreatedAtDesc(pageable);
-            }
+            restaurantPage = restaurantService.findRestaurantsByCriteria(null, categoryId, price, order, pageable);
         }
 
         List<Category> categories = categoryService.findAllCategories();
+
+        // ログイン中であれば、表示する店舗のうちお気に入りに追加済みの店舗のidを取得する
+        Set<Integer> favoriteRestaurantIds = Set.of();
+
+        if (userDetailsImpl != null) {
+            favoriteRestaurantIds = favoriteService.isFavorite(userDetailsImpl.getUserId(), restaurantPage.map(Restaurant::getId).getContent());
+        }
+
         model.addAttribute("restaurantPage", restaurantPage);
+        model.addAttribute("favoriteRestaurantIds", favoriteRestaurantIds);
         model.addAttribute("categories", categories);
         model.addAttribute("keyword", keyword);
         model.addAttribute("categoryId", categoryId);
         model.addAttribute("price", price);
+        model.addAttribute("holidayId", holidayId);
+        model.addAttribute("regularHolidays", regularHolidayService.findAllRegularHolidays());
+        model.addAttribute("facets", facets);
+        model.addAttribute("near", near != null && !near.isEmpty() ? near : null);
+        model.addAttribute("radius", radius);
+        model.addAttribute("distances", distances);
+        model.addAttribute("open", openRestaurantIds != null ? open : null);
+        model.addAttribute("day", day);
+        model.addAttribute("time", time);
         model.addAttribute("order", order);
 
         return "restaurants/index";
@@ -108,7 +162,8 @@ public class RestaurantController {
                        RedirectAttributes redirectAttributes,
                        Model model)
     {
-        Optional<Restaurant> optionalRestaurant  = restaurantService.findRestaurantById(id);
+        // 人気の店舗に同時にアクセスがあっても、店舗の読み込みは1回にまとめられる
+        Optional<RestaurantDetail> optionalRestaurant  = restaurantService.findCachedRestaurantById(id);
 
         if (optionalRestaurant.isEmpty()) {
             redirectAttributes.addFlashAttribute("errorMessage", "店舗が存在しません。");
@@ -116,24 +171,35 @@ public class RestaurantController {
             return "redirect:/restaurants";
         }
 
-        Restaurant restaurant = optionalRestaurant.get();
-        Favorite favorite = null;
-        boolean isFavorite = false;
+        RestaurantDetail restaurant = optionalRestaurant.get();
+        Integer favoriteId = null;
 
+        // 閲覧数はメモリ上で数え、まとめて書き込まれる
+        restaurantActivityService.recordView(restaurant.id());
+
+        // お気に入りの状態はユーザーごとにキャッシュされたお気に入りの一覧から判定する
         if (userDetailsImpl != null) {
-            User user = userDetailsImpl.getUser();
-            isFavorite = favoriteService.isFavorite(restaurant, user);
-
-            if (isFavorite) {
-                favorite = favoriteService.findFavoriteByRestaurantAndUser(restaurant, user);
-            }
-        }        
-        
+            favoriteId = favoriteService.findFavoriteIdByRestaurantIdAndUserId(restaurant.id(), userDetailsImpl.getUserId());
+        }
+
+        // この店舗を好きな人が好きな店舗
+        List<RestaurantCard> similarRestaurants = restaurantService.findRestaurantCardsByIds(recommendationService.findSimilarRestaurantIds(restaurant.id()));
+        // この店舗の近くにある店舗
+        List<RestaurantCard> nearbyRestaurants = restaurantService.findNearbyRestaurants(restaurant, 3);
+
         model.addAttribute("restaurant", restaurant);
-        model.addAttribute("favorite", favorite);
-        model.addAttribute("isFavorite", isFavorite);        
+        model.addAttribute("favoriteId", favoriteId);
+        model.addAttribute("isFavorite", favoriteId != null);
+        model.addAttribute("similarRestaurants", similarRestaurants);
+        model.addAttribute("nearbyRestaurants", nearbyRestaurants);
 
         return "restaurants/show";
     }
-}
 
+    // 検索ボックスの入力候補をJSON形式で返す
+    @GetMapping("/suggestions")
+    @ResponseBody
+    public List<Suggestion> suggestions(@RequestParam(name = "q", required = false) String query) {
+        return autocompleteService.suggest(query, 10);
+    }
+}
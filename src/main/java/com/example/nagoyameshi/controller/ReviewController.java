@@ -24,19 +24,24 @@ import com.example.nagoyameshi.entity.Review;
 import com.example.nagoyameshi.entity.User;
 import com.example.nagoyameshi.form.ReviewEditForm;
 import com.example.nagoyameshi.form.ReviewRegisterForm;
+import com.example.nagoyameshi.repository.ReviewRepository.ReviewListItem;
 import com.example.nagoyameshi.security.UserDetailsImpl;
 import com.example.nagoyameshi.service.RestaurantService;
+import com.example.nagoyameshi.service.RestaurantService.RestaurantDetail;
 import com.example.nagoyameshi.service.ReviewService;
+import com.example.nagoyameshi.service.UserService;
 
 @Controller
 @RequestMapping("/restaurants/{restaurantId}/reviews")
 public class ReviewController {
     private final ReviewService reviewService;
     private final RestaurantService restaurantService;
+    private final UserService userService;
 
-    public ReviewController(ReviewService reviewService, RestaurantService restaurantService) {
+    public ReviewController(ReviewService reviewService, RestaurantService restaurantService, UserService userService) {
         this.reviewService = reviewService;
         this.restaurantService = restaurantService;
+        this.userService = userService;
     }
 
     @GetMapping
@@ -46,7 +51,8 @@ public class ReviewController {
                         RedirectAttributes redirectAttributes,
                         Model model)
     {
-        Optional<Restaurant> optionalRestaurant  = restaurantService.findRestaurantById(restaurantId);
+        // 表示するのは店舗名のみのため、店舗詳細ページと同じキャッシュから取得する
+        Optional<RestaurantDetail> optionalRestaurant  = restaurantService.findCachedRestaurantById(restaurantId);
 
         if (optionalRestaurant.isEmpty()) {
             redirectAttributes.addFlashAttribute("errorMessage", "店舗が存在しません。");
@@ -54,18 +60,18 @@ public class ReviewController {
             return "redirect:/restaurants";
         }
 
-        Restaurant restaurant = optionalRestaurant.get();
-        User user = userDetailsImpl.getUser();
-        String userRoleName = user.getRole().getName();
-        Page<Review> reviewPage;
+        RestaurantDetail restaurant = optionalRestaurant.get();
+        User user = userService.getUserReference(userDetailsImpl.getUserId());
+        String userRoleName = userDetailsImpl.getRoleName();
+        Page<ReviewListItem> reviewPage;
 
         if (userRoleName.equals("ROLE_PAID_MEMBER")) {
-            reviewPage = reviewService.findReviewsByRestaurantOrderByCreatedAtDesc(restaurant, pageable);
+            reviewPage = reviewService.findReviewsByRestaurantIdOrderByCreatedAtDesc(restaurant.id(), pageable);
         } else {
-            reviewPage = reviewService.findReviewsByRestaurantOrderByCreatedAtDesc(restaurant, PageRequest.of(0, 3));
+            reviewPage = reviewService.findReviewsByRestaurantIdOrderByCreatedAtDesc(restaurant.id(), PageRequest.of(0, 3));
         }
 
-        boolean hasUserAlreadyReviewed = reviewService.hasUserAlreadyReviewed(restaurant, user);
+        boolean hasUserAlreadyReviewed = reviewService.hasUserAlreadyReviewed(restaurant.id(), user);
 
         model.addAttribute("restaurant", restaurant);
         model.addAttribute("userRoleName", userRoleName);
@@ -81,9 +87,9 @@ public class ReviewController {
                            RedirectAttributes redirectAttributes,
                            Model model)
     {
-        User user = userDetailsImpl.getUser();
+        User user = userService.getUserReference(userDetailsImpl.getUserId());
 
-        if (user.getRole().getName().equals("ROLE_FREE_MEMBER")) {
+        if (userDetailsImpl.getRoleName().equals("ROLE_FREE_MEMBER")) {
             redirectAttributes.addFlashAttribute("subscriptionMessage", "この機能を利用するには有料プランへの登録が必要です。");
 
             return "redirect:/subscription/register";
@@ -115,9 +121,9 @@ public class ReviewController {
                          RedirectAttributes redirectAttributes,
                          Model model)
     {
-        User user = userDetailsImpl.getUser();
+        User user = userService.getUserReference(userDetailsImpl.getUserId());
 
-        if (user.getRole().getName().equals("ROLE_FREE_MEMBER")) {
+        if (userDetailsImpl.getRoleName().equals("ROLE_FREE_MEMBER")) {
             redirectAttributes.addFlashAttribute("subscriptionMessage", "この機能を利用するには有料プランへの登録が必要です。");
 
             return "redirect:/subscription/register";
@@ -153,9 +159,9 @@ public class ReviewController {
                        RedirectAttributes redirectAttributes,
                        Model model)
     {
-        User user = userDetailsImpl.getUser();
+        User user = userService.getUserReference(userDetailsImpl.getUserId());
 
-        if (user.getRole().getName().equals("ROLE_FREE_MEMBER")) {
+        if (userDetailsImpl.getRoleName().equals("ROLE_FREE_MEMBER")) {
             redirectAttributes.addFlashAttribute("subscriptionMessage", "この機能を利用するには有料プランへの登録が必要です。");
 
             return "redirect:/subscription/register";
@@ -197,9 +203,9 @@ public class ReviewController {
                          RedirectAttributes redirectAttributes,
                          Model model)
     {
-        User user = userDetailsImpl.getUser();
+        User user = userService.getUserReference(userDetailsImpl.getUserId());
 
-        if (user.getRole().getName().equals("ROLE_FREE_MEMBER")) {
+        if (userDetailsImpl.getRoleName().equals("ROLE_FREE_MEMBER")) {
             redirectAttributes.addFlashAttribute("subscriptionMessage", "この機能を利用するには有料プランへの登録が必要です。");
 
             return "redirect:/subscription/register";
@@ -244,9 +250,9 @@ public class ReviewController {
                          @AuthenticationPrincipal UserDetailsImpl userDetailsImpl,
                          RedirectAttributes redirectAttributes)
     {
-        User user = userDetailsImpl.getUser();
+        User user = userService.getUserReference(userDetailsImpl.getUserId());
 
-        if (user.getRole().getName().equals("ROLE_FREE_MEMBER")) {
+        if (userDetailsImpl.getRoleName().equals("ROLE_FREE_MEMBER")) {
             redirectAttributes.addFlashAttribute("subscriptionMessage", "この機能を利用するには有料プランへの登録が必要です。");
 
             return "redirect:/subscription/register";
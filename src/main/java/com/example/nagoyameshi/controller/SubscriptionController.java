@@ -42,7 +42,7 @@ public class SubscriptionController {
 
     @PostMapping("/create")
     public String create(@AuthenticationPrincipal UserDetailsImpl userDetailsImpl, @RequestParam String paymentMethodId, RedirectAttributes redirectAttributes) {
-        User user = userDetailsImpl.getUser();
+        User user = userService.findUserById(userDetailsImpl.getUserId()).orElseThrow();
 
         // ユーザーのstripeCustomerIdフィールドがnull、つまりそのユーザーが初めてサブスクリプションに加入する場合の処理
         if (user.getStripeCustomerId() == null) {
@@ -79,7 +79,7 @@ public class SubscriptionController {
 
         // ユーザーのロールを更新する
         userService.updateRole(user, "ROLE_PAID_MEMBER");
-        userService.refreshAuthenticationByRole("ROLE_PAID_MEMBER");
+        userService.refreshAuthentication(user);
 
         redirectAttributes.addFlashAttribute("successMessage", "有料プランへの登録が完了しました。");
 
@@ -88,7 +88,7 @@ public class SubscriptionController {
 
     @GetMapping("/edit")
     public String edit(@AuthenticationPrincipal UserDetailsImpl userDetailsImpl, RedirectAttributes redirectAttributes, Model model) {
-        User user = userDetailsImpl.getUser();
+        User user = userService.findUserById(userDetailsImpl.getUserId()).orElseThrow();
 
         try {
             // 顧客のデフォルトの支払い方法（StripeのPaymentMethodオブジェクト）を取得する
@@ -107,7 +107,7 @@ public class SubscriptionController {
 
     @PostMapping("/update")
     public String update(@AuthenticationPrincipal UserDetailsImpl userDetailsImpl, @RequestParam String paymentMethodId, RedirectAttributes redirectAttributes) {
-        User user = userDetailsImpl.getUser();
+        User user = userService.findUserById(userDetailsImpl.getUserId()).orElseThrow();
         String stripeCustomerId = user.getStripeCustomerId();
 
         try {
@@ -140,7 +140,7 @@ public class SubscriptionController {
 
     @PostMapping("/delete")
     public String delete(@AuthenticationPrincipal UserDetailsImpl userDetailsImpl, RedirectAttributes redirectAttributes) {
-        User user = userDetailsImpl.getUser();
+        User user = userService.findUserById(userDetailsImpl.getUserId()).orElseThrow();
 
         try {
             // 顧客が契約中のサブスクリプション（StripeのSubscriptionオブジェクト）を取得する
@@ -162,7 +162,7 @@ public class SubscriptionController {
 
         // ユーザーのロールを更新する
         userService.updateRole(user, "ROLE_FREE_MEMBER");
-        userService.refreshAuthenticationByRole("ROLE_FREE_MEMBER");
+        userService.refreshAuthentication(user);
 
         redirectAttributes.addFlashAttribute("successMessage", "有料プランを解約しました。");
 
@@ -31,7 +31,7 @@ public class UserController {
 
     @GetMapping
     public String index(@AuthenticationPrincipal UserDetailsImpl userDetailsImpl, Model model) {
-        User user = userDetailsImpl.getUser();
+        User user = userService.findUserById(userDetailsImpl.getUserId()).orElseThrow();
 
         model.addAttribute("user", user);
 
@@ -40,7 +40,7 @@ public class UserController {
 
     @GetMapping("/edit")
     public String edit(@AuthenticationPrincipal UserDetailsImpl userDetailsImpl, Model model) {
-        User user = userDetailsImpl.getUser();
+        User user = userService.findUserById(userDetailsImpl.getUserId()).orElseThrow();
         String birthday = null;
 
         if (user.getBirthday() != null) {
@@ -67,7 +67,7 @@ public class UserController {
                          RedirectAttributes redirectAttributes,
                          Model model)
     {
-        User user = userDetailsImpl.getUser();
+        User user = userService.findUserById(userDetailsImpl.getUserId()).orElseThrow();
 
         // メールアドレスが変更されており、かつ登録済みであれば、BindingResultオブジェクトにエラー内容を追加する
         if (userService.isEmailChanged(userEditForm, user) && userService.isEmailRegistered(userEditForm.getEmail())) {
@@ -82,6 +82,7 @@ public class UserController {
         }
 
         userService.updateUser(userEditForm, user);
+        userService.refreshAuthentication(user);
         redirectAttributes.addFlashAttribute("successMessage", "会員情報を編集しました。");
 
         return "redirect:/user";
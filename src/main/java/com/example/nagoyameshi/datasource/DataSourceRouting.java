@@ -0,0 +1,32 @@
+package com.example.nagoyameshi.datasource;
+
+import java.util.function.Supplier;
+
+// 現在のスレッドの読み込みを、読み取り専用のトランザクションであってもプライマリに振り分けるかどうか
+// 複数のリクエストで共有するキャッシュへの読み込みに使い、レプリカの遅延による古い値がキャッシュに残らないようにする
+public final class DataSourceRouting {
+    private static final ThreadLocal<Boolean> PRIMARY_FORCED = new ThreadLocal<>();
+
+    private DataSourceRouting() {
+    }
+
+    // 処理中の読み込みをすべてプライマリに振り分ける（呼び出しが入れ子になった場合は終了時に元の値に戻す）
+    public static <T> T onPrimary(Supplier<T> supplier) {
+        Boolean previous = PRIMARY_FORCED.get();
+        PRIMARY_FORCED.set(Boolean.TRUE);
+
+        try {
+            return supplier.get();
+        } finally {
+            if (previous != null) {
+                PRIMARY_FORCED.set(previous);
+            } else {
+                PRIMARY_FORCED.remove();
+            }
+        }
+    }
+
+    public static boolean isPrimaryForced() {
+        return PRIMARY_FORCED.get() != null;
+    }
+}
@@ -0,0 +1,71 @@
+package com.example.nagoyameshi.datasource;
+
+import java.util.function.LongSupplier;
+
+import org.aspectj.lang.annotation.AfterReturning;
+import org.aspectj.lang.annotation.Aspect;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.web.context.request.RequestContextHolder;
+import org.springframework.web.context.request.ServletRequestAttributes;
+
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpSession;
+
+// ユーザーが自分で更新した内容を直後の読み込みで確実に読めるよう、プライマリから読み込むべきリクエストを判定する
+//  ・GET・HEAD以外のリクエスト：更新の前に読み込む値（更新対象のエンティティなど）が古くならないよう、常にプライマリから読み込む
+//  ・サービスの更新用のトランザクションを実行したセッション：レプリカが追いつくまでの一定時間、プライマリから読み込む
+// 期限はセッションに保存するため、ほかのサーバーに振り分けられたリクエストにも反映される
+@Aspect
+public class ReadYourWritesTracker {
+    static final String PRIMARY_UNTIL_ATTRIBUTE = ReadYourWritesTracker.class.getName() + ".PRIMARY_UNTIL";
+
+    private final long windowMillis;
+    private final LongSupplier clock;
+
+    public ReadYourWritesTracker(long windowMillis) {
+        this(windowMillis, System::currentTimeMillis);
+    }
+
+    ReadYourWritesTracker(long windowMillis, LongSupplier clock) {
+        this.windowMillis = windowMillis;
+        this.clock = clock;
+    }
+
+    // サービスの更新用のトランザクション（readOnlyでない@Transactional）が正常に終了したら記録する
+    @AfterReturning(pointcut = "execution(* com.example.nagoyameshi.service..*.*(..)) && @annotation(transactional)", argNames = "transactional")
+    public void afterTransaction(Transactional transactional) {
+        if (!transactional.readOnly()) {
+            markWritten();
+        }
+    }
+
+    // 現在のセッションの読み込みを、一定時間プライマリに振り分ける（リクエストの処理中でなければ何もしない）
+    public void markWritten() {
+        HttpServletRequest request = currentRequest();
+
+        if (request != null) {
+            request.getSession().setAttribute(PRIMARY_UNTIL_ATTRIBUTE, clock.getAsLong() + windowMillis);
+        }
+    }
+
+    // 現在のリクエストの読み込みをプライマリに振り分けるべきかどうか
+    public boolean isPrimaryRequired() {
+        HttpServletRequest request = currentRequest();
+
+        if (request == null) {
+            return false;
+        }
+
+        if (!request.getMethod().equals("GET") && !request.getMethod().equals("HEAD")) {
+            return true;
+        }
+
+        HttpSession session = request.getSession(false);
+
+        return session != null && session.getAttribute(PRIMARY_UNTIL_ATTRIBUTE) instanceof Long primaryUntil && clock.getAsLong() < primaryUntil;
+    }
+
+    private static HttpServletRequest currentRequest() {
+        return RequestContextHolder.getRequestAttributes() instanceof ServletRequestAttributes servletRequestAttributes ? servletRequestAttributes.getRequest() : null;
+    }
+}
@@ -0,0 +1,81 @@
+package com.example.nagoyameshi.datasource;
+
+import java.sql.SQLException;
+
+import javax.sql.DataSource;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.autoconfigure.jdbc.DataSourceProperties;
+import org.springframework.boot.autoconfigure.orm.jpa.HibernatePropertiesCustomizer;
+import org.springframework.boot.jdbc.DataSourceBuilder;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.jdbc.datasource.LazyConnectionDataSourceProxy;
+
+import com.zaxxer.hikari.HikariDataSource;
+
+import jakarta.annotation.PreDestroy;
+
+// replica.enabled=trueの場合に、spring.datasourceのプライマリとreplica.datasourceのレプリカに振り分けるDataSourceを作成する
+// （DataSourceの自動設定の代わりに使われ、falseの場合は従来どおりプライマリのみを使う）
+@Configuration
+@ConditionalOnProperty(name = "replica.enabled", havingValue = "true")
+public class ReplicaDataSourceConfig {
+    private ReplicaRoutingDataSource replicaRoutingDataSource;
+
+    // 自分の更新をプライマリから読み込む期間は、許容する遅延に遅延の確認間隔を加えた長さとする
+    @Bean
+    public ReadYourWritesTracker readYourWritesTracker(@Value("${replica.max-lag-seconds:5}") long maxLagSeconds,
+                                                       @Value("${replica.lag-check-interval-ms:5000}") long lagCheckIntervalMillis)
+    {
+        return new ReadYourWritesTracker(maxLagSeconds * 1000 + lagCheckIntervalMillis);
+    }
+
+    @Bean
+    public DataSource dataSource(DataSourceProperties dataSourceProperties,
+                                 ReadYourWritesTracker readYourWritesTracker,
+                                 @Value("${replica.datasource.url}") String url,
+                                 @Value("${replica.datasource.username:}") String username,
+                                 @Value("${replica.datasource.password:}") String password,
+                                 @Value("${replica.datasource.maximum-pool-size:10}") int maximumPoolSize)
+    {
+        HikariDataSource primaryDataSource = dataSourceProperties.initializeDataSourceBuilder().type(HikariDataSource.class).build();
+        primaryDataSource.setPoolName("primary");
+
+        // ユーザー名とパスワードが未設定の場合はプライマリと同じものを使う
+        HikariDataSource replicaDataSource = DataSourceBuilder.create()
+                                                              .type(HikariDataSource.class)
+                                                              .driverClassName(dataSourceProperties.determineDriverClassName())
+                                                              .url(url)
+                                                              .username(username.isEmpty() ? dataSourceProperties.determineUsername() : username)
+                                                              .password(username.isEmpty() ? dataSourceProperties.determinePassword() : password)
+                                                              .build();
+        replicaDataSource.setPoolName("replica");
+        replicaDataSource.setMaximumPoolSize(maximumPoolSize);
+        replicaDataSource.setReadOnly(true);
+
+        replicaRoutingDataSource = new ReplicaRoutingDataSource(primaryDataSource, replicaDataSource, readYourWritesTracker);
+        replicaRoutingDataSource.afterPropertiesSet();
+
+        return new LazyConnectionDataSourceProxy(replicaRoutingDataSource);
+    }
+
+    @Bean
+    public ReplicaLagMonitor replicaLagMonitor(DataSource dataSource, @Value("${replica.max-lag-seconds:5}") long maxLagSeconds) throws SQLException {
+        return new ReplicaLagMonitor(dataSource.unwrap(ReplicaRoutingDataSource.class), maxLagSeconds);
+    }
+
+    // Open Session in Viewでは、最初に取得したコネクションをリクエストの終了まで使い続けるため、トランザクションごとに返却して振り分け直す
+    @Bean
+    public HibernatePropertiesCustomizer connectionHandlingCustomizer() {
+        return hibernateProperties -> hibernateProperties.put("hibernate.connection.handling_mode", "DELAYED_ACQUISITION_AND_RELEASE_AFTER_TRANSACTION");
+    }
+
+    @PreDestroy
+    public void close() {
+        if (replicaRoutingDataSource != null) {
+            replicaRoutingDataSource.close();
+        }
+    }
+}
@@ -0,0 +1,57 @@
+package com.example.nagoyameshi.datasource;
+
+import java.sql.Connection;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.scheduling.annotation.Scheduled;
+
+// レプリカの遅延（SHOW REPLICA STATUSのSeconds_Behind_Source）を定期的に確認し、許容範囲を超えた場合はレプリカへの振り分けを止める
+// レプリカに接続できない場合やレプリケーションが停止している場合も振り分けを止め、最初の確認が終わるまではプライマリのみを使う
+public class ReplicaLagMonitor {
+    private static final Logger logger = LoggerFactory.getLogger(ReplicaLagMonitor.class);
+
+    private final ReplicaRoutingDataSource replicaRoutingDataSource;
+    private final long maxLagSeconds;
+    // 確認に失敗し続けている間は警告を繰り返し出力しない
+    private boolean failing;
+
+    public ReplicaLagMonitor(ReplicaRoutingDataSource replicaRoutingDataSource, long maxLagSeconds) {
+        this.replicaRoutingDataSource = replicaRoutingDataSource;
+        this.maxLagSeconds = maxLagSeconds;
+    }
+
+    @Scheduled(fixedDelayString = "${replica.lag-check-interval-ms:5000}")
+    public void checkLag() {
+        try (Connection connection = replicaRoutingDataSource.getReplicaDataSource().getConnection();
+             Statement statement = connection.createStatement();
+             ResultSet resultSet = statement.executeQuery("SHOW REPLICA STATUS"))
+        {
+            failing = false;
+
+            // レプリケーションが設定されていない（ローカルで2つのデータベースを使う場合など）は遅延なしとみなす
+            if (!resultSet.next()) {
+                replicaRoutingDataSource.updateReplicaStatus(true, 0);
+                return;
+            }
+
+            long lagSeconds = resultSet.getLong("Seconds_Behind_Source");
+
+            if (resultSet.wasNull()) {
+                replicaRoutingDataSource.updateReplicaStatus(false, Double.NaN);
+            } else {
+                replicaRoutingDataSource.updateReplicaStatus(lagSeconds <= maxLagSeconds, lagSeconds);
+            }
+        } catch (SQLException e) {
+            if (!failing) {
+                logger.warn("レプリカの状態を確認できませんでした", e);
+                failing = true;
+            }
+
+            replicaRoutingDataSource.updateReplicaStatus(false, Double.NaN);
+        }
+    }
+}
@@ -0,0 +1,100 @@
+package com.example.nagoyameshi.datasource;
+
+import java.util.Map;
+import java.util.concurrent.atomic.LongAdder;
+
+import javax.sql.DataSource;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.jdbc.datasource.lookup.AbstractRoutingDataSource;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+// 読み取り専用のトランザクションのコネクションをレプリカから、それ以外をプライマリから取得する
+// 次の場合は読み取り専用のトランザクションでもプライマリから取得する
+//  ・レプリカの遅延が許容範囲を超えているか、状態を確認できない場合（ReplicaLagMonitorが更新する）
+//  ・DataSourceRouting.onPrimaryの処理中の場合
+//  ・ReadYourWritesTrackerがプライマリからの読み込みを求める場合
+// トランザクションの開始時にはまだ読み取り専用かどうかが確定しないため、LazyConnectionDataSourceProxyで包み、最初のSQL文の実行時に振り分ける
+public class ReplicaRoutingDataSource extends AbstractRoutingDataSource {
+    private static final Logger logger = LoggerFactory.getLogger(ReplicaRoutingDataSource.class);
+
+    private final DataSource primaryDataSource;
+    private final DataSource replicaDataSource;
+    private final ReadYourWritesTracker readYourWritesTracker;
+    private final LongAdder primaryRouteCount = new LongAdder();
+    private final LongAdder replicaRouteCount = new LongAdder();
+    private volatile boolean replicaAvailable;
+    private volatile double replicaLagSeconds = Double.NaN;
+
+    public enum Route {
+        PRIMARY, REPLICA
+    }
+
+    public ReplicaRoutingDataSource(DataSource primaryDataSource, DataSource replicaDataSource, ReadYourWritesTracker readYourWritesTracker) {
+        this.primaryDataSource = primaryDataSource;
+        this.replicaDataSource = replicaDataSource;
+        this.readYourWritesTracker = readYourWritesTracker;
+
+        setTargetDataSources(Map.of(Route.PRIMARY, primaryDataSource, Route.REPLICA, replicaDataSource));
+        setDefaultTargetDataSource(primaryDataSource);
+    }
+
+    @Override
+    protected Object determineCurrentLookupKey() {
+        if (TransactionSynchronizationManager.isCurrentTransactionReadOnly()
+            && replicaAvailable
+            && !DataSourceRouting.isPrimaryForced()
+            && !readYourWritesTracker.isPrimaryRequired())
+        {
+            replicaRouteCount.increment();
+            return Route.REPLICA;
+        }
+
+        primaryRouteCount.increment();
+        return Route.PRIMARY;
+    }
+
+    // レプリカの状態を更新する（遅延が不明の場合はNaN）
+    public void updateReplicaStatus(boolean available, double lagSeconds) {
+        if (replicaAvailable != available) {
+            logger.info(available ? "レプリカへの振り分けを開始します（遅延: {}秒）" : "レプリカへの振り分けを停止します（遅延: {}秒）", lagSeconds);
+        }
+
+        replicaAvailable = available;
+        replicaLagSeconds = lagSeconds;
+    }
+
+    public DataSource getPrimaryDataSource() {
+        return primaryDataSource;
+    }
+
+    public DataSource getReplicaDataSource() {
+        return replicaDataSource;
+    }
+
+    public boolean isReplicaAvailable() {
+        return replicaAvailable;
+    }
+
+    public double getReplicaLagSeconds() {
+        return replicaLagSeconds;
+    }
+
+    public long getRouteCount(Route route) {
+        return route == Route.REPLICA ? replicaRouteCount.sum() : primaryRouteCount.sum();
+    }
+
+    // プライマリとレプリカのコネクションプールを閉じる
+    public void close() {
+        for (DataSource dataSource : new DataSource[] { primaryDataSource, replicaDataSource }) {
+            if (dataSource instanceof AutoCloseable closeable) {
+                try {
+                    closeable.close();
+                } catch (Exception e) {
+                    logger.warn("コネクションプールを閉じられませんでした", e);
+                }
+            }
+        }
+    }
+}
@@ -2,6 +2,10 @@ package com.example.nagoyameshi.entity;
 
 import java.util.List;
 
+import org.hibernate.annotations.Cache;
+import org.hibernate.annotations.CacheConcurrencyStrategy;
+
+import jakarta.persistence.Cacheable;
 import jakarta.persistence.CascadeType;
 import jakarta.persistence.Column;
 import jakarta.persistence.Entity;
@@ -12,12 +16,17 @@ import jakarta.persistence.Id;
 import jakarta.persistence.OneToMany;
 import jakarta.persistence.Table;
 import lombok.Data;
+import lombok.EqualsAndHashCode;
 import lombok.ToString;
 
 @Entity
 @Table(name = "categories")
 @Data
 @ToString(exclude = "categoriesRestaurants") // 循環参照によるStackOverflowエラー対策
+@EqualsAndHashCode(exclude = "categoriesRestaurants")
+// 管理者による変更はまれなため2次キャッシュに保持する（変更時はコミット後に破棄される）
+@Cacheable
+@Cache(usage = CacheConcurrencyStrategy.NONSTRICT_READ_WRITE)
 public class Category {
     @Id
     @GeneratedValue(strategy = GenerationType.IDENTITY)
@@ -27,7 +36,8 @@ public class Category {
     @Column(name = "name")
     private String name;
     
-    @OneToMany(mappedBy = "category", fetch = FetchType.EAGER, cascade = CascadeType.REMOVE)
+    // カテゴリに属するすべての店舗の読み込みは、カテゴリの削除時のみ必要なため遅延させる
+    @OneToMany(mappedBy = "category", fetch = FetchType.LAZY, cascade = CascadeType.REMOVE)
     private List<CategoryRestaurant> categoriesRestaurants;    
 }
 
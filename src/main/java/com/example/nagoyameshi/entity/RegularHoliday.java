@@ -2,6 +2,10 @@ package com.example.nagoyameshi.entity;
 
 import java.util.List;
 
+import org.hibernate.annotations.Cache;
+import org.hibernate.annotations.CacheConcurrencyStrategy;
+
+import jakarta.persistence.Cacheable;
 import jakarta.persistence.CascadeType;
 import jakarta.persistence.Column;
 import jakarta.persistence.Entity;
@@ -12,12 +16,17 @@ import jakarta.persistence.Id;
 import jakarta.persistence.OneToMany;
 import jakarta.persistence.Table;
 import lombok.Data;
+import lombok.EqualsAndHashCode;
 import lombok.ToString;
 
 @Entity
 @Table(name = "regular_holidays")
 @Data
 @ToString(exclude = "regularHolidaysRestaurants")
+@EqualsAndHashCode(exclude = "regularHolidaysRestaurants")
+// 初期データのみで変更されないため、読み取り専用の2次キャッシュに保持する
+@Cacheable
+@Cache(usage = CacheConcurrencyStrategy.READ_ONLY)
 public class RegularHoliday {
     @Id
     @GeneratedValue(strategy = GenerationType.IDENTITY)
@@ -30,7 +39,7 @@ public class RegularHoliday {
     @Column(name = "day_index")
     private Integer dayIndex;
 
-    @OneToMany(mappedBy = "regularHoliday", fetch = FetchType.EAGER, cascade = CascadeType.REMOVE)
+    @OneToMany(mappedBy = "regularHoliday", fetch = FetchType.LAZY, cascade = CascadeType.REMOVE)
     private List<RegularHolidayRestaurant> regularHolidaysRestaurants;
 }
 
@@ -2,6 +2,9 @@ package com.example.nagoyameshi.entity;
 
 import java.sql.Timestamp;
 
+import org.hibernate.annotations.Fetch;
+import org.hibernate.annotations.FetchMode;
+
 import jakarta.persistence.Column;
 import jakarta.persistence.Entity;
 import jakarta.persistence.GeneratedValue;
@@ -25,7 +28,9 @@ public class RegularHolidayRestaurant {
     @JoinColumn(name = "restaurant_id")
     private Restaurant restaurant;
 
+    // SQL文で結合せずにidで読み込み、2次キャッシュにある定休日はキャッシュから取得する
     @ManyToOne
+    @Fetch(FetchMode.SELECT)
     @JoinColumn(name = "regular_holiday_id")
     private RegularHoliday regularHoliday;
 
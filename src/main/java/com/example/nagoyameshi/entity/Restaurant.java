@@ -4,7 +4,10 @@ import java.sql.Timestamp;
 import java.time.LocalTime;
 import java.util.List;
 
-import jakarta.persistence.CascadeType;
+import org.hibernate.annotations.Fetch;
+import org.hibernate.annotations.FetchMode;
+import org.hibernate.annotations.SQLRestriction;
+
 import jakarta.persistence.Column;
 import jakarta.persistence.Entity;
 import jakarta.persistence.FetchType;
@@ -12,16 +15,21 @@ import jakarta.persistence.GeneratedValue;
 import jakarta.persistence.GenerationType;
 import jakarta.persistence.Id;
 import jakarta.persistence.OneToMany;
+import jakarta.persistence.OneToOne;
 import jakarta.persistence.OrderBy;
+import jakarta.persistence.PrimaryKeyJoinColumn;
 import jakarta.persistence.Table;
 import jakarta.persistence.Transient;
 import lombok.Data;
 import lombok.ToString;
 
+// 論理削除した店舗（deleted_atが設定された店舗）は、一覧・検索・idでの取得のいずれにも含めない
+// 論理削除した店舗とそれに紐づく行は、RestaurantPurgeServiceが後で物理削除する
 @Entity
 @Table(name = "restaurants")
+@SQLRestriction("deleted_at IS NULL")
 @Data
-@ToString(exclude = {"categoriesRestaurants", "regularHolidaysRestaurants", "reviews", "reservations", "favorites"})
+@ToString(exclude = {"categoriesRestaurants", "regularHolidaysRestaurants", "reviews", "reservations", "favorites", "ratingSummary"})
 public class Restaurant {
     @Id
     @GeneratedValue(strategy = GenerationType.IDENTITY)
@@ -58,37 +66,66 @@ public class Restaurant {
     @Column(name = "seating_capacity")
     private Integer seatingCapacity;
 
+    // 郵便番号から求めたおおよその緯度・経度
+    @Column(name = "latitude")
+    private Double latitude;
+
+    @Column(name = "longitude")
+    private Double longitude;
+
+    // 評価の信頼度を加味したランキング用のスコア（RestaurantRankingServiceが更新する）
+    @Column(name = "ranking_score", insertable = false, updatable = false)
+    private Double rankingScore;
+
+    // 直近の閲覧数と予約数に基づく注目度のスコア（RestaurantActivityServiceが更新する）
+    @Column(name = "trending_score", insertable = false, updatable = false)
+    private Double trendingScore;
+
     @Column(name = "created_at", insertable = false, updatable = false)
     private Timestamp createdAt;
 
     @Column(name = "updated_at", insertable = false, updatable = false)
     private Timestamp updatedAt;
+
+    // 論理削除した日時（RestaurantRepository.softDeleteByIdでのみ設定する）
+    @Column(name = "deleted_at", insertable = false, updatable = false)
+    private Timestamp deletedAt;
     
-    @OneToMany(mappedBy = "restaurant", fetch = FetchType.EAGER, cascade = CascadeType.REMOVE)
+    // 一覧で複数の店舗を読み込む場合は、カテゴリと定休日を店舗の件数によらずそれぞれ1回のクエリでまとめて読み込む
+    @OneToMany(mappedBy = "restaurant", fetch = FetchType.EAGER)
+    @Fetch(FetchMode.SUBSELECT)
     @OrderBy("id ASC")
     private List<CategoryRestaurant> categoriesRestaurants; 
     
-    @OneToMany(mappedBy = "restaurant", fetch = FetchType.EAGER, cascade = CascadeType.REMOVE)
+    @OneToMany(mappedBy = "restaurant", fetch = FetchType.EAGER)
+    @Fetch(FetchMode.SUBSELECT)
     @OrderBy("regularHoliday.id ASC")
     private List<RegularHolidayRestaurant> regularHolidaysRestaurants;
     
-    @OneToMany(mappedBy = "restaurant", fetch = FetchType.EAGER, cascade = CascadeType.REMOVE)
+    @OneToMany(mappedBy = "restaurant", fetch = FetchType.LAZY)
     private List<Review> reviews;
     
-    @OneToMany(mappedBy = "restaurant", fetch = FetchType.EAGER, cascade = CascadeType.REMOVE)
+    // 予約とお気に入りは店舗の画面では使わないため、店舗と合わせて読み込まない
+    @OneToMany(mappedBy = "restaurant", fetch = FetchType.LAZY)
     private List<Reservation> reservations;
     
-    @OneToMany(mappedBy = "restaurant", fetch = FetchType.EAGER, cascade = CascadeType.REMOVE)
+    @OneToMany(mappedBy = "restaurant", fetch = FetchType.LAZY)
     private List<Favorite> favorites;
+
+    // 評価の集計（レビューが1件もない店舗ではnull）
+    @OneToOne(fetch = FetchType.EAGER)
+    @PrimaryKeyJoinColumn
+    private RestaurantRatingSummary ratingSummary;
     
     // 平均評価を取得する
     @Transient
     public Double getAverageScore() {
-        Double averageScore = reviews.stream()
-                                     .mapToInt(Review::getScore)
-                                     .average()
-                                     .orElse(0.0);
+        return ratingSummary != null ? ratingSummary.getAverageScore() : 0.0;
+    }
 
-        return averageScore;
-    }    
+    // レビュー数を取得する
+    @Transient
+    public Integer getReviewCount() {
+        return ratingSummary != null ? ratingSummary.getReviewCount() : 0;
+    }
 }
@@ -0,0 +1,75 @@
+package com.example.nagoyameshi.entity;
+
+import java.sql.Timestamp;
+
+import org.hibernate.annotations.Immutable;
+
+import jakarta.persistence.Column;
+import jakarta.persistence.Entity;
+import jakarta.persistence.Id;
+import jakarta.persistence.Table;
+import jakarta.persistence.Transient;
+import lombok.Data;
+
+// 店舗ごとの評価の集計（レビューの投稿・編集・削除時にSQLで加算・減算される）
+@Entity
+@Table(name = "restaurant_rating_summaries")
+@Immutable
+@Data
+public class RestaurantRatingSummary {
+    @Id
+    @Column(name = "restaurant_id")
+    private Integer restaurantId;
+
+    @Column(name = "count_1")
+    private Integer count1;
+
+    @Column(name = "count_2")
+    private Integer count2;
+
+    @Column(name = "count_3")
+    private Integer count3;
+
+    @Column(name = "count_4")
+    private Integer count4;
+
+    @Column(name = "count_5")
+    private Integer count5;
+
+    @Column(name = "review_count")
+    private Integer reviewCount;
+
+    @Column(name = "score_sum")
+    private Integer scoreSum;
+
+    @Column(name = "last_reviewed_at")
+    private Timestamp lastReviewedAt;
+
+    @Column(name = "updated_at")
+    private Timestamp updatedAt;
+
+    // 平均評価を取得する
+    @Transient
+    public Double getAverageScore() {
+        return reviewCount > 0 ? (double) scoreSum / reviewCount : 0.0;
+    }
+
+    // 指定した評価（1～5）のレビュー数を取得する
+    @Transient
+    public int getCount(int score) {
+        return switch (score) {
+            case 1 -> count1;
+            case 2 -> count2;
+            case 3 -> count3;
+            case 4 -> count4;
+            case 5 -> count5;
+            default -> throw new IllegalArgumentException("評価は1～5で指定してください。");
+        };
+    }
+
+    // 指定した評価（1～5）のレビュー数が全体に占める割合（%）を取得する
+    @Transient
+    public int getPercentage(int score) {
+        return reviewCount > 0 ? Math.round(getCount(score) * 100f / reviewCount) : 0;
+    }
+}
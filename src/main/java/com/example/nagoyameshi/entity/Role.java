@@ -1,5 +1,9 @@
 package com.example.nagoyameshi.entity;
 
+import org.hibernate.annotations.Cache;
+import org.hibernate.annotations.CacheConcurrencyStrategy;
+
+import jakarta.persistence.Cacheable;
 import jakarta.persistence.Column;
 import jakarta.persistence.Entity;
 import jakarta.persistence.GeneratedValue;
@@ -11,6 +15,9 @@ import lombok.Data;
 @Entity
 @Table(name = "roles")
 @Data
+// 初期データのみで変更されないため、読み取り専用の2次キャッシュに保持する
+@Cacheable
+@Cache(usage = CacheConcurrencyStrategy.READ_ONLY)
 public class Role {
     @Id
     @GeneratedValue(strategy = GenerationType.IDENTITY)
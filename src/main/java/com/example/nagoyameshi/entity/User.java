@@ -3,6 +3,9 @@ package com.example.nagoyameshi.entity;
 import java.sql.Timestamp;
 import java.time.LocalDate;
 
+import org.hibernate.annotations.Fetch;
+import org.hibernate.annotations.FetchMode;
+
 import jakarta.persistence.Column;
 import jakarta.persistence.Entity;
 import jakarta.persistence.GeneratedValue;
@@ -11,6 +14,7 @@ import jakarta.persistence.Id;
 import jakarta.persistence.JoinColumn;
 import jakarta.persistence.ManyToOne;
 import jakarta.persistence.Table;
+import jakarta.persistence.Version;
 import lombok.Data;
 
 @Entity
@@ -28,6 +32,12 @@ public class User {
     @Column(name = "furigana")
     private String furigana;
 
+    @Column(name = "name_search_key")
+    private String nameSearchKey;
+
+    @Column(name = "furigana_search_key")
+    private String furiganaSearchKey;
+
     @Column(name = "postal_code")
     private String postalCode;
 
@@ -49,7 +59,9 @@ public class User {
     @Column(name = "password")
     private String password;
 
+    // SQL文で結合せずにidで読み込み、2次キャッシュにあるロールはキャッシュから取得する
     @ManyToOne
+    @Fetch(FetchMode.SELECT)
     @JoinColumn(name = "role_id")
     private Role role;
 
@@ -59,6 +71,10 @@ public class User {
     @Column(name = "stripe_customer_id")
     private String stripeCustomerId;
 
+    @Version
+    @Column(name = "version")
+    private Integer version;
+
     @Column(name = "created_at", insertable = false, updatable = false)
     private Timestamp createdAt;
 
@@ -0,0 +1,19 @@
+package com.example.nagoyameshi.event;
+
+import org.springframework.context.ApplicationEvent;
+
+import lombok.Getter;
+
+// 店舗が作成・更新・削除されたことを、店舗の情報をメモリ上に保持するサービスに通知する（他のサーバーでの変更は変更履歴のポーリングで通知される）
+@Getter
+public class RestaurantChangedEvent extends ApplicationEvent {
+    private Integer restaurantId;
+    private boolean deleted;
+
+    public RestaurantChangedEvent(Object source, Integer restaurantId, boolean deleted) {
+        super(source);
+
+        this.restaurantId = restaurantId;
+        this.deleted = deleted;
+    }
+}
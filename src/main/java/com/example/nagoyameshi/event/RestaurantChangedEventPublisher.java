@@ -0,0 +1,88 @@
+package com.example.nagoyameshi.event;
+
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.TreeSet;
+
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.annotation.Transactional;
+
+import com.example.nagoyameshi.entity.RestaurantChange;
+import com.example.nagoyameshi.repository.RestaurantChangeRepository;
+
+import jakarta.annotation.PostConstruct;
+
+// 店舗の変更を自サーバーに通知するとともに変更履歴テーブルに記録し、他のサーバーで記録された変更はポーリングで自サーバーに通知する
+// （店舗の情報をメモリ上に保持するサービスは、どのサーバーで変更されてもonRestaurantChangedで反映する）
+@Component
+public class RestaurantChangedEventPublisher {
+    private static final long POLL_OVERLAP = 100L;
+
+    private final ApplicationEventPublisher applicationEventPublisher;
+    private final RestaurantChangeRepository restaurantChangeRepository;
+    // 直近の一定件数を読み直す際に、同じ変更履歴を何度も通知しないよう処理済みのidを保持する
+    private final TreeSet<Long> polledChangeIds = new TreeSet<>();
+    private volatile long lastChangeId;
+
+    public RestaurantChangedEventPublisher(ApplicationEventPublisher applicationEventPublisher, RestaurantChangeRepository restaurantChangeRepository) {
+        this.applicationEventPublisher = applicationEventPublisher;
+        this.restaurantChangeRepository = restaurantChangeRepository;
+    }
+
+    // 起動時点までの変更履歴は読み飛ばす（店舗の情報は起動時にすべて読み込まれるため）
+    @PostConstruct
+    private void init() {
+        RestaurantChange latestChange = restaurantChangeRepository.findFirstByOrderByIdDesc();
+        lastChangeId = latestChange != null ? latestChange.getId() : 0L;
+    }
+
+    // 店舗の作成・更新を通知する（呼び出し元のトランザクション内で実行し、変更履歴はコミットされた場合のみ他のサーバーに届く）
+    public void publishRestaurantChangedEvent(Integer restaurantId) {
+        recordChange(restaurantId, false);
+        applicationEventPublisher.publishEvent(new RestaurantChangedEvent(this, restaurantId, false));
+    }
+
+    // 店舗の削除を通知する
+    public void publishRestaurantDeletedEvent(Integer restaurantId) {
+        recordChange(restaurantId, true);
+        applicationEventPublisher.publishEvent(new RestaurantChangedEvent(this, restaurantId, true));
+    }
+
+    // 前回以降の変更履歴を取得し、自サーバーに通知する（自サーバーで記録した変更も再度通知されるが、反映は何度行っても同じ結果になる）
+    // （採番順とコミット順が前後する場合に備えて、直近の一定件数は毎回読み直す）
+    @Scheduled(fixedDelayString = "${restaurant-change.poll-interval-ms:2000}")
+    public synchronized void pollChanges() {
+        List<RestaurantChange> restaurantChanges;
+
+        do {
+            restaurantChanges = restaurantChangeRepository.findTop1000ByIdGreaterThanOrderByIdAsc(Math.max(0L, lastChangeId - POLL_OVERLAP));
+
+            for (RestaurantChange restaurantChange : restaurantChanges) {
+                if (polledChangeIds.add(restaurantChange.getId())) {
+                    applicationEventPublisher.publishEvent(new RestaurantChangedEvent(this, restaurantChange.getRestaurantId(), restaurantChange.getDeleted()));
+                }
+
+                lastChangeId = Math.max(lastChangeId, restaurantChange.getId());
+            }
+
+            polledChangeIds.headSet(lastChangeId - POLL_OVERLAP, true).clear();
+        } while (restaurantChanges.size() == 1000);
+    }
+
+    // 全サーバーが読み終えた古い変更履歴を削除する
+    @Scheduled(cron = "${restaurant-change.purge-cron:0 20 4 * * *}")
+    @Transactional
+    public void purgeChanges() {
+        restaurantChangeRepository.deleteByCreatedAtBefore(Timestamp.valueOf(LocalDateTime.now().minusDays(1)));
+    }
+
+    private void recordChange(Integer restaurantId, boolean deleted) {
+        RestaurantChange restaurantChange = new RestaurantChange();
+        restaurantChange.setRestaurantId(restaurantId);
+        restaurantChange.setDeleted(deleted);
+        restaurantChangeRepository.save(restaurantChange);
+    }
+}
@@ -0,0 +1,279 @@
+package com.example.nagoyameshi.metrics;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import jakarta.annotation.PreDestroy;
+import jdk.jfr.Recording;
+import jdk.jfr.RecordingState;
+import jdk.jfr.consumer.RecordedEvent;
+import jdk.jfr.consumer.RecordedFrame;
+import jdk.jfr.consumer.RecordedStackTrace;
+import jdk.jfr.consumer.RecordingFile;
+
+// 管理者の操作でJava Flight Recorderの記録を時間を区切って行い、記録ファイルと上位のフレームの集計を作成する
+// 同時に実行できる記録は1つのみで、記録するイベントと期間・サイズの上限を絞って負荷を抑える
+@Component
+public class FlightRecorderProfiler {
+    private static final Logger logger = LoggerFactory.getLogger(FlightRecorderProfiler.class);
+    private static final String APPLICATION_PACKAGE = "com.example.nagoyameshi.";
+    private static final int SUMMARY_LIMIT = 20;
+
+    private final int maxDurationSeconds;
+    private final long maxSizeBytes;
+    // 開始した記録（streamToが出力を終えるまで保持する）
+    private Recording current;
+    // currentをstreamToが出力中かどうか
+    private boolean streaming;
+    private volatile Summary lastSummary;
+
+    // 記録の種類と、有効にするイベントの設定
+    public enum Profile {
+        CPU("CPU", "サンプル数", Map.of("jdk.ExecutionSample#enabled", "true",
+                                         "jdk.ExecutionSample#period", "20 ms")),
+        ALLOCATION("メモリ割り当て", "推定バイト数", Map.of("jdk.ObjectAllocationSample#enabled", "true",
+                                                         "jdk.ObjectAllocationSample#throttle", "150/s",
+                                                         "jdk.ObjectAllocationSample#stackTrace", "true")),
+        LOCK("ロック競合", "待機時間(ms)", Map.of("jdk.JavaMonitorEnter#enabled", "true",
+                                               "jdk.JavaMonitorEnter#threshold", "10 ms",
+                                               "jdk.JavaMonitorEnter#stackTrace", "true",
+                                               "jdk.ThreadPark#enabled", "true",
+                                               "jdk.ThreadPark#threshold", "10 ms",
+                                               "jdk.ThreadPark#stackTrace", "true"));
+
+        private final String displayName;
+        private final String unit;
+        private final Map<String, String> settings;
+
+        Profile(String displayName, String unit, Map<String, String> settings) {
+            this.displayName = displayName;
+            this.unit = unit;
+            this.settings = settings;
+        }
+
+        public String getDisplayName() {
+            return displayName;
+        }
+
+        public String getUnit() {
+            return unit;
+        }
+    }
+
+    // フレームごとの集計値（CPUはサンプル数、メモリ割り当ては推定バイト数、ロック競合は待機時間のミリ秒）
+    public record FrameStatistics(String frame, long value, double percentage) {
+    }
+
+    // 記録の集計結果（applicationFramesはアプリケーションのパッケージ内で最も内側のフレーム、topFramesはスタックの先頭のフレームで集計する）
+    public record Summary(Profile profile, LocalDateTime startedAt, int durationSeconds, long eventCount, List<FrameStatistics> applicationFrames, List<FrameStatistics> topFrames) {
+    }
+
+    // 開始した記録（streamToで完了を待って出力する）
+    public class Session {
+        private final Recording recording;
+        private final Profile profile;
+        private final LocalDateTime startedAt;
+        private final int durationSeconds;
+
+        private Session(Recording recording, Profile profile, LocalDateTime startedAt, int durationSeconds) {
+            this.recording = recording;
+            this.profile = profile;
+            this.startedAt = startedAt;
+            this.durationSeconds = durationSeconds;
+        }
+
+        public Profile getProfile() {
+            return profile;
+        }
+
+        public int getDurationSeconds() {
+            return durationSeconds;
+        }
+
+        // 記録の期間が終わるまで待ち、記録ファイルを書き出して集計を更新する
+        public void streamTo(OutputStream outputStream) throws IOException {
+            if (!markStreaming(recording)) {
+                throw new IOException("記録はすでに破棄されています");
+            }
+
+            Path file = null;
+
+            try {
+                file = Files.createTempFile("nagoyameshi-profile-", ".jfr");
+                awaitCompletion();
+                recording.dump(file);
+                lastSummary = summarize(file, profile, startedAt, durationSeconds);
+                Files.copy(file, outputStream);
+            } finally {
+                recording.close();
+                release(recording);
+
+                if (file != null) {
+                    Files.deleteIfExists(file);
+                }
+            }
+        }
+
+        private void awaitCompletion() throws IOException {
+            try {
+                Thread.sleep(Duration.ofSeconds(durationSeconds));
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new IOException("記録の待機が中断されました", e);
+            } finally {
+                if (recording.getState() == RecordingState.RUNNING) {
+                    recording.stop();
+                }
+            }
+        }
+    }
+
+    public FlightRecorderProfiler(@Value("${profiling.max-duration-seconds:120}") int maxDurationSeconds,
+                                  @Value("${profiling.max-size-mb:64}") long maxSizeMegabytes)
+    {
+        this.maxDurationSeconds = maxDurationSeconds;
+        this.maxSizeBytes = maxSizeMegabytes * 1024 * 1024;
+    }
+
+    public int getMaxDurationSeconds() {
+        return maxDurationSeconds;
+    }
+
+    public Summary getLastSummary() {
+        return lastSummary;
+    }
+
+    // 記録中かどうか（出力中の記録は記録中とし、期間を過ぎたまま出力されていない記録は記録中としない）
+    public synchronized boolean isRecording() {
+        return current != null && (streaming || current.getState() == RecordingState.RUNNING);
+    }
+
+    // 記録を開始する（期間は1秒以上、上限以下に丸める。別の記録が実行中または出力中の場合はnullを返す）
+    public synchronized Session start(Profile profile, int durationSeconds) {
+        if (isRecording()) {
+            return null;
+        }
+
+        // 期間を過ぎたまま出力されなかった記録は、ディスク上のデータとともに破棄する
+        if (current != null) {
+            logger.info("出力されなかったプロファイルの記録を破棄しました: {}", current.getName());
+            current.close();
+            current = null;
+        }
+
+        int boundedDurationSeconds = Math.max(1, Math.min(durationSeconds, maxDurationSeconds));
+        Recording recording = new Recording(profile.settings);
+        recording.setName("nagoyameshi-" + profile.name().toLowerCase());
+        recording.setToDisk(true);
+        recording.setMaxSize(maxSizeBytes);
+        // 出力されなかった場合も期間を過ぎれば停止する
+        recording.setDuration(Duration.ofSeconds(boundedDurationSeconds));
+        recording.start();
+        current = recording;
+
+        logger.info("プロファイルの記録を開始しました: {} {}秒", profile, boundedDurationSeconds);
+
+        return new Session(recording, profile, LocalDateTime.now(), boundedDurationSeconds);
+    }
+
+    // 出力を始める記録が破棄されていなければ出力中とする
+    private synchronized boolean markStreaming(Recording recording) {
+        if (current != recording) {
+            return false;
+        }
+
+        streaming = true;
+
+        return true;
+    }
+
+    // 出力を終えた記録を手放す（開始時に破棄された記録の場合は何もしない）
+    private synchronized void release(Recording recording) {
+        if (current == recording) {
+            current = null;
+            streaming = false;
+        }
+    }
+
+    @PreDestroy
+    public synchronized void close() {
+        if (current != null) {
+            current.close();
+        }
+    }
+
+    // 記録ファイルのイベントを順に読み、フレームごとに集計する
+    static Summary summarize(Path file, Profile profile, LocalDateTime startedAt, int durationSeconds) throws IOException {
+        Map<String, Long> applicationFrames = new HashMap<>();
+        Map<String, Long> topFrames = new HashMap<>();
+        long eventCount = 0;
+
+        try (RecordingFile recordingFile = new RecordingFile(file)) {
+            while (recordingFile.hasMoreEvents()) {
+                RecordedEvent event = recordingFile.readEvent();
+                long value = value(event, profile);
+
+                if (value < 0 || event.getStackTrace() == null) {
+                    continue;
+                }
+
+                eventCount++;
+
+                RecordedStackTrace stackTrace = event.getStackTrace();
+                List<RecordedFrame> frames = stackTrace.getFrames();
+
+                if (!frames.isEmpty()) {
+                    topFrames.merge(describe(frames.get(0)), value, Long::sum);
+                }
+
+                frames.stream()
+                      .filter(frame -> frame.isJavaFrame() && frame.getMethod().getType().getName().startsWith(APPLICATION_PACKAGE))
+                      .findFirst()
+                      .ifPresent(frame -> applicationFrames.merge(describe(frame), value, Long::sum));
+            }
+        }
+
+        return new Summary(profile, startedAt, durationSeconds, eventCount, top(applicationFrames), top(topFrames));
+    }
+
+    // 集計対象のイベントであれば集計値を、対象外であれば-1を返す
+    private static long value(RecordedEvent event, Profile profile) {
+        String eventName = event.getEventType().getName();
+
+        return switch (profile) {
+            case CPU -> eventName.equals("jdk.ExecutionSample") ? 1 : -1;
+            case ALLOCATION -> eventName.equals("jdk.ObjectAllocationSample") ? event.getLong("weight") : -1;
+            case LOCK -> eventName.equals("jdk.JavaMonitorEnter") || eventName.equals("jdk.ThreadPark") ? event.getDuration().toMillis() : -1;
+        };
+    }
+
+    private static String describe(RecordedFrame frame) {
+        String typeName = frame.getMethod().getType().getName();
+        String description = typeName.substring(typeName.lastIndexOf('.') + 1) + "." + frame.getMethod().getName();
+
+        return frame.getLineNumber() > 0 ? description + ":" + frame.getLineNumber() : description;
+    }
+
+    private static List<FrameStatistics> top(Map<String, Long> values) {
+        long total = values.values().stream().mapToLong(Long::longValue).sum();
+
+        return values.entrySet().stream()
+                     .sorted(Map.Entry.<String, Long>comparingByValue(Comparator.reverseOrder()))
+                     .limit(SUMMARY_LIMIT)
+                     .map(entry -> new FrameStatistics(entry.getKey(), entry.getValue(), total == 0 ? 0 : entry.getValue() * 100.0 / total))
+                     .toList();
+    }
+}
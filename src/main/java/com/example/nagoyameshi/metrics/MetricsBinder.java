@@ -0,0 +1,206 @@
+package com.example.nagoyameshi.metrics;
+
+import java.lang.management.GarbageCollectorMXBean;
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryMXBean;
+import java.lang.management.OperatingSystemMXBean;
+import java.lang.management.ThreadMXBean;
+import java.sql.SQLException;
+
+import javax.sql.DataSource;
+
+import org.hibernate.SessionFactory;
+import org.hibernate.stat.CacheRegionStatistics;
+import org.hibernate.stat.Statistics;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Component;
+
+import com.example.nagoyameshi.cache.FavoriteCache;
+import com.example.nagoyameshi.cache.ListingResultCache;
+import com.example.nagoyameshi.cache.SingleFlightLoaderFactory;
+import com.example.nagoyameshi.datasource.ReplicaRoutingDataSource;
+import com.example.nagoyameshi.security.PasswordHashingExecutor;
+import com.zaxxer.hikari.HikariDataSource;
+import com.zaxxer.hikari.HikariPoolMXBean;
+
+import jakarta.persistence.EntityManagerFactory;
+
+// コネクションプール・Hibernate・キャッシュ・パスワードのハッシュ化・JVMの状態を、ゲージとカウンタとして登録する
+@Component
+public class MetricsBinder {
+    private static final Logger logger = LoggerFactory.getLogger(MetricsBinder.class);
+
+    private final MetricsRegistry metricsRegistry;
+    private final DataSource dataSource;
+    private final EntityManagerFactory entityManagerFactory;
+    private final PasswordHashingExecutor passwordHashingExecutor;
+    private final ListingResultCache listingResultCache;
+    private final FavoriteCache favoriteCache;
+    private final SingleFlightLoaderFactory singleFlightLoaderFactory;
+
+    public MetricsBinder(MetricsRegistry metricsRegistry,
+                         DataSource dataSource,
+                         EntityManagerFactory entityManagerFactory,
+                         PasswordHashingExecutor passwordHashingExecutor,
+                         ListingResultCache listingResultCache,
+                         FavoriteCache favoriteCache,
+                         SingleFlightLoaderFactory singleFlightLoaderFactory)
+    {
+        this.metricsRegistry = metricsRegistry;
+        this.dataSource = dataSource;
+        this.entityManagerFactory = entityManagerFactory;
+        this.passwordHashingExecutor = passwordHashingExecutor;
+        this.listingResultCache = listingResultCache;
+        this.favoriteCache = favoriteCache;
+        this.singleFlightLoaderFactory = singleFlightLoaderFactory;
+    }
+
+    // すべてのキャッシュが作成された後に登録する
+    @EventListener(ApplicationReadyEvent.class)
+    public void onApplicationReady() {
+        bindConnectionPools();
+        bindHibernate();
+        bindCaches();
+        bindPasswordHashing();
+        bindJvm();
+    }
+
+    // レプリカへの振り分けが有効な場合は、プライマリとレプリカのコネクションプールと振り分けの状況を登録する
+    private void bindConnectionPools() {
+        try {
+            if (!dataSource.isWrapperFor(ReplicaRoutingDataSource.class)) {
+                bindConnectionPool(dataSource);
+                return;
+            }
+
+            ReplicaRoutingDataSource replicaRoutingDataSource = dataSource.unwrap(ReplicaRoutingDataSource.class);
+
+            bindConnectionPool(replicaRoutingDataSource.getPrimaryDataSource());
+            bindConnectionPool(replicaRoutingDataSource.getReplicaDataSource());
+
+            for (ReplicaRoutingDataSource.Route route : ReplicaRoutingDataSource.Route.values()) {
+                metricsRegistry.counter("datasource_routes_total", () -> replicaRoutingDataSource.getRouteCount(route), "route", route.name().toLowerCase());
+            }
+
+            metricsRegistry.gauge("datasource_replica_available", () -> replicaRoutingDataSource.isReplicaAvailable() ? 1 : 0);
+            metricsRegistry.gauge("datasource_replica_lag_seconds", replicaRoutingDataSource::getReplicaLagSeconds);
+        } catch (SQLException e) {
+            logger.warn("コネクションプールの計測値を登録できませんでした", e);
+        }
+    }
+
+    private void bindConnectionPool(DataSource pooledDataSource) throws SQLException {
+        if (!pooledDataSource.isWrapperFor(HikariDataSource.class)) {
+            return;
+        }
+
+        HikariDataSource hikariDataSource = pooledDataSource.unwrap(HikariDataSource.class);
+        String pool = hikariDataSource.getPoolName() != null ? hikariDataSource.getPoolName() : "default";
+
+        metricsRegistry.gauge("hikari_connections_active", () -> poolValue(hikariDataSource, HikariPoolMXBean::getActiveConnections), "pool", pool);
+        metricsRegistry.gauge("hikari_connections_idle", () -> poolValue(hikariDataSource, HikariPoolMXBean::getIdleConnections), "pool", pool);
+        metricsRegistry.gauge("hikari_connections_total", () -> poolValue(hikariDataSource, HikariPoolMXBean::getTotalConnections), "pool", pool);
+        metricsRegistry.gauge("hikari_connections_pending", () -> poolValue(hikariDataSource, HikariPoolMXBean::getThreadsAwaitingConnection), "pool", pool);
+        metricsRegistry.gauge("hikari_connections_max", hikariDataSource::getMaximumPoolSize, "pool", pool);
+    }
+
+    private static double poolValue(HikariDataSource hikariDataSource, java.util.function.ToIntFunction<HikariPoolMXBean> getter) {
+        HikariPoolMXBean hikariPoolMXBean = hikariDataSource.getHikariPoolMXBean();
+
+        return hikariPoolMXBean != null ? getter.applyAsInt(hikariPoolMXBean) : Double.NaN;
+    }
+
+    // Hibernateの統計（集計には負荷がかかるため、metrics.hibernate-statistics.enabledが有効な場合のみ登録する）
+    private void bindHibernate() {
+        Statistics statistics = entityManagerFactory.unwrap(SessionFactory.class).getStatistics();
+
+        if (!statistics.isStatisticsEnabled()) {
+            return;
+        }
+
+        metricsRegistry.counter("hibernate_statements_prepared_total", statistics::getPrepareStatementCount);
+        metricsRegistry.counter("hibernate_query_executions_total", statistics::getQueryExecutionCount);
+        metricsRegistry.gauge("hibernate_query_execution_max_seconds", () -> statistics.getQueryExecutionMaxTime() / 1000.0);
+        metricsRegistry.counter("hibernate_entity_loads_total", statistics::getEntityLoadCount);
+        metricsRegistry.counter("hibernate_entity_fetches_total", statistics::getEntityFetchCount);
+        metricsRegistry.counter("hibernate_collection_loads_total", statistics::getCollectionLoadCount);
+        metricsRegistry.counter("hibernate_collection_fetches_total", statistics::getCollectionFetchCount);
+        metricsRegistry.counter("hibernate_transactions_total", statistics::getTransactionCount);
+        metricsRegistry.counter("hibernate_second_level_cache_requests_total", statistics::getSecondLevelCacheHitCount, "result", "hit");
+        metricsRegistry.counter("hibernate_second_level_cache_requests_total", statistics::getSecondLevelCacheMissCount, "result", "miss");
+        metricsRegistry.counter("hibernate_query_cache_requests_total", statistics::getQueryCacheHitCount, "result", "hit");
+        metricsRegistry.counter("hibernate_query_cache_requests_total", statistics::getQueryCacheMissCount, "result", "miss");
+
+        // 2次キャッシュの領域（エンティティごとの領域とクエリキャッシュ）ごとのヒット数とミス数
+        for (String regionName : statistics.getSecondLevelCacheRegionNames()) {
+            metricsRegistry.counter("hibernate_cache_region_requests_total", () -> regionValue(statistics, regionName, CacheRegionStatistics::getHitCount), "region", regionName, "result", "hit");
+            metricsRegistry.counter("hibernate_cache_region_requests_total", () -> regionValue(statistics, regionName, CacheRegionStatistics::getMissCount), "region", regionName, "result", "miss");
+            metricsRegistry.gauge("hibernate_cache_region_entries", () -> regionValue(statistics, regionName, CacheRegionStatistics::getElementCountInMemory), "region", regionName);
+        }
+    }
+
+    private static double regionValue(Statistics statistics, String regionName, java.util.function.ToLongFunction<CacheRegionStatistics> getter) {
+        CacheRegionStatistics cacheRegionStatistics = statistics.getCacheRegionStatistics(regionName);
+
+        return cacheRegionStatistics != null ? getter.applyAsLong(cacheRegionStatistics) : Double.NaN;
+    }
+
+    private void bindCaches() {
+        metricsRegistry.counter("cache_requests_total", listingResultCache::getHitCount, "cache", "listing", "result", "hit");
+        metricsRegistry.counter("cache_requests_total", listingResultCache::getMissCount, "cache", "listing", "result", "miss");
+        metricsRegistry.gauge("cache_size", listingResultCache::size, "cache", "listing");
+
+        metricsRegistry.counter("cache_requests_total", favoriteCache::getHitCount, "cache", "favorite", "result", "hit");
+        metricsRegistry.counter("cache_requests_total", favoriteCache::getMissCount, "cache", "favorite", "result", "miss");
+        metricsRegistry.gauge("cache_size", favoriteCache::size, "cache", "favorite");
+
+        singleFlightLoaderFactory.getLoaders().forEach((name, singleFlightLoader) -> {
+            metricsRegistry.counter("cache_requests_total", singleFlightLoader::getHitCount, "cache", name, "result", "hit");
+            metricsRegistry.counter("cache_requests_total", singleFlightLoader::getStaleHitCount, "cache", name, "result", "stale");
+            metricsRegistry.counter("cache_requests_total", singleFlightLoader::getCoalescedCount, "cache", name, "result", "coalesced");
+            metricsRegistry.counter("cache_loads_total", singleFlightLoader::getLoadCount, "cache", name);
+            metricsRegistry.gauge("cache_size", singleFlightLoader::size, "cache", name);
+        });
+    }
+
+    private void bindPasswordHashing() {
+        metricsRegistry.counter("password_hashing_completed_total", passwordHashingExecutor::getCompletedCount);
+        metricsRegistry.counter("password_hashing_rejected_total", passwordHashingExecutor::getRejectedCount);
+        metricsRegistry.gauge("password_hashing_average_seconds", () -> passwordHashingExecutor.getAverageMillis() / 1000);
+        metricsRegistry.gauge("password_hashing_max_seconds", () -> passwordHashingExecutor.getMaxMillis() / 1000);
+        metricsRegistry.gauge("password_hashing_queue_size", passwordHashingExecutor::getQueueSize);
+        metricsRegistry.gauge("password_hashing_active", passwordHashingExecutor::getActiveCount);
+    }
+
+    private void bindJvm() {
+        MemoryMXBean memoryMXBean = ManagementFactory.getMemoryMXBean();
+        ThreadMXBean threadMXBean = ManagementFactory.getThreadMXBean();
+        OperatingSystemMXBean operatingSystemMXBean = ManagementFactory.getOperatingSystemMXBean();
+
+        metricsRegistry.gauge("jvm_memory_used_bytes", () -> memoryMXBean.getHeapMemoryUsage().getUsed(), "area", "heap");
+        metricsRegistry.gauge("jvm_memory_committed_bytes", () -> memoryMXBean.getHeapMemoryUsage().getCommitted(), "area", "heap");
+        metricsRegistry.gauge("jvm_memory_max_bytes", () -> memoryMXBean.getHeapMemoryUsage().getMax(), "area", "heap");
+        metricsRegistry.gauge("jvm_memory_used_bytes", () -> memoryMXBean.getNonHeapMemoryUsage().getUsed(), "area", "nonheap");
+        metricsRegistry.gauge("jvm_memory_committed_bytes", () -> memoryMXBean.getNonHeapMemoryUsage().getCommitted(), "area", "nonheap");
+
+        for (GarbageCollectorMXBean garbageCollectorMXBean : ManagementFactory.getGarbageCollectorMXBeans()) {
+            metricsRegistry.counter("jvm_gc_collections_total", garbageCollectorMXBean::getCollectionCount, "gc", garbageCollectorMXBean.getName());
+            metricsRegistry.counter("jvm_gc_collection_seconds_total", () -> garbageCollectorMXBean.getCollectionTime() / 1000.0, "gc", garbageCollectorMXBean.getName());
+        }
+
+        metricsRegistry.gauge("jvm_threads_live", threadMXBean::getThreadCount);
+        metricsRegistry.gauge("jvm_threads_daemon", threadMXBean::getDaemonThreadCount);
+        metricsRegistry.gauge("jvm_threads_peak", threadMXBean::getPeakThreadCount);
+        metricsRegistry.gauge("jvm_classes_loaded", ManagementFactory.getClassLoadingMXBean()::getLoadedClassCount);
+        metricsRegistry.gauge("system_load_average_1m", operatingSystemMXBean::getSystemLoadAverage);
+        metricsRegistry.gauge("process_uptime_seconds", () -> ManagementFactory.getRuntimeMXBean().getUptime() / 1000.0);
+
+        if (operatingSystemMXBean instanceof com.sun.management.OperatingSystemMXBean sunOperatingSystemMXBean) {
+            metricsRegistry.gauge("process_cpu_usage", sunOperatingSystemMXBean::getProcessCpuLoad);
+            metricsRegistry.counter("process_cpu_seconds_total", () -> sunOperatingSystemMXBean.getProcessCpuTime() / 1e9);
+        }
+    }
+}
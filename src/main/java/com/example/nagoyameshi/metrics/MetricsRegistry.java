@@ -0,0 +1,191 @@
+package com.example.nagoyameshi.metrics;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.DoubleSupplier;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+// アプリケーション内の計測値（処理時間・カウンタ・ゲージ）を名前とラベルの組み合わせごとに保持する
+// 値はPrometheusのテキスト形式で出力でき、管理者用のダッシュボードにも表示する
+@Component
+public class MetricsRegistry {
+    private static final Logger logger = LoggerFactory.getLogger(MetricsRegistry.class);
+    private static final double[] QUANTILES = { 0.5, 0.95, 0.99 };
+
+    private final Map<MetricId, Timer> timers = new ConcurrentHashMap<>();
+    private final Map<MetricId, Sampled> sampled = new ConcurrentHashMap<>();
+    private final long windowMillis;
+    private final int maxTimers;
+
+    // 計測値の名前とラベル（ラベルは名前と値を交互に並べる）
+    public record MetricId(String name, List<String> labels) {
+        public String labelText() {
+            StringBuilder text = new StringBuilder();
+
+            for (int i = 0; i + 1 < labels.size(); i += 2) {
+                text.append(text.isEmpty() ? "" : ", ").append(labels.get(i)).append('=').append(labels.get(i + 1));
+            }
+
+            return text.toString();
+        }
+    }
+
+    // 処理時間の集計結果
+    public record TimerSnapshot(MetricId id, Timer.Snapshot snapshot) {
+    }
+
+    // カウンタまたはゲージの現在値
+    public record ValueSnapshot(MetricId id, String type, double value) {
+    }
+
+    private record Sampled(String type, DoubleSupplier supplier) {
+    }
+
+    public MetricsRegistry(@Value("${metrics.percentile-window-ms:60000}") long windowMillis,
+                           @Value("${metrics.max-timers:2000}") int maxTimers)
+    {
+        this.windowMillis = windowMillis;
+        this.maxTimers = maxTimers;
+    }
+
+    // 指定した名前とラベルの処理時間を記録する
+    public void record(String name, long elapsedNanos, String... labels) {
+        MetricId id = new MetricId(name, List.of(labels));
+        Timer timer = timers.get(id);
+
+        if (timer == null) {
+            // ラベルの組み合わせが想定外に増えた場合は、それ以上の種類を記録しない
+            if (timers.size() >= maxTimers) {
+                return;
+            }
+
+            timer = timers.computeIfAbsent(id, key -> new Timer(windowMillis));
+        }
+
+        timer.record(elapsedNanos);
+    }
+
+    // 呼び出すたびに現在の累計値を返すカウンタを登録する
+    public void counter(String name, DoubleSupplier supplier, String... labels) {
+        sampled.put(new MetricId(name, List.of(labels)), new Sampled("counter", supplier));
+    }
+
+    // 呼び出すたびに現在値を返すゲージを登録する
+    public void gauge(String name, DoubleSupplier supplier, String... labels) {
+        sampled.put(new MetricId(name, List.of(labels)), new Sampled("gauge", supplier));
+    }
+
+    // 直近のパーセンタイルが大きい順に、処理時間の集計結果を最大limit件返す
+    public List<TimerSnapshot> findSlowestTimers(int limit) {
+        return timers.entrySet().stream()
+                     .map(entry -> new TimerSnapshot(entry.getKey(), entry.getValue().snapshot()))
+                     .filter(timerSnapshot -> timerSnapshot.snapshot().count() > 0)
+                     .sorted(Comparator.comparingDouble((TimerSnapshot timerSnapshot) -> timerSnapshot.snapshot().p99Millis())
+                                       .thenComparingDouble(timerSnapshot -> timerSnapshot.snapshot().totalMillis())
+                                       .reversed())
+                     .limit(limit)
+                     .toList();
+    }
+
+    // 名前で絞り込んだカウンタとゲージの現在値を名前順に返す（prefixがnullの場合はすべて）
+    public List<ValueSnapshot> findValues(String prefix) {
+        List<ValueSnapshot> values = new ArrayList<>();
+
+        sampled.forEach((id, metric) -> {
+            if (prefix == null || id.name().startsWith(prefix)) {
+                values.add(new ValueSnapshot(id, metric.type(), sample(id, metric)));
+            }
+        });
+
+        values.sort(Comparator.comparing((ValueSnapshot valueSnapshot) -> valueSnapshot.id().name()).thenComparing(valueSnapshot -> valueSnapshot.id().labelText()));
+
+        return values;
+    }
+
+    // すべての計測値をPrometheusのテキスト形式で書き出す
+    public void writePrometheus(Writer writer) throws IOException {
+        Map<String, List<Map.Entry<MetricId, Timer>>> timersByName = new TreeMap<>();
+        timers.entrySet().forEach(entry -> timersByName.computeIfAbsent(entry.getKey().name(), key -> new ArrayList<>()).add(entry));
+
+        for (Map.Entry<String, List<Map.Entry<MetricId, Timer>>> group : timersByName.entrySet()) {
+            String name = group.getKey();
+
+            writer.write("# TYPE " + name + " summary\n");
+
+            for (Map.Entry<MetricId, Timer> entry : group.getValue()) {
+                List<String> labels = entry.getKey().labels();
+                Timer timer = entry.getValue();
+
+                for (double quantile : QUANTILES) {
+                    writeSample(writer, name, labels, "quantile", Double.toString(quantile), timer.getPercentileSeconds(quantile));
+                }
+
+                writeSample(writer, name + "_count", labels, null, null, timer.getCount());
+                writeSample(writer, name + "_sum", labels, null, null, timer.getTotalSeconds());
+            }
+
+            writer.write("# TYPE " + name + "_max gauge\n");
+
+            for (Map.Entry<MetricId, Timer> entry : group.getValue()) {
+                writeSample(writer, name + "_max", entry.getKey().labels(), null, null, entry.getValue().getMaxSeconds());
+            }
+        }
+
+        Map<String, List<Map.Entry<MetricId, Sampled>>> sampledByName = new TreeMap<>();
+        sampled.entrySet().forEach(entry -> sampledByName.computeIfAbsent(entry.getKey().name(), key -> new ArrayList<>()).add(entry));
+
+        for (Map.Entry<String, List<Map.Entry<MetricId, Sampled>>> group : sampledByName.entrySet()) {
+            writer.write("# TYPE " + group.getKey() + " " + group.getValue().get(0).getValue().type() + "\n");
+
+            for (Map.Entry<MetricId, Sampled> entry : group.getValue()) {
+                writeSample(writer, group.getKey(), entry.getKey().labels(), null, null, sample(entry.getKey(), entry.getValue()));
+            }
+        }
+    }
+
+    private double sample(MetricId id, Sampled metric) {
+        try {
+            return metric.supplier().getAsDouble();
+        } catch (RuntimeException e) {
+            logger.debug("計測値を取得できませんでした: {}", id, e);
+            return Double.NaN;
+        }
+    }
+
+    private static void writeSample(Writer writer, String name, List<String> labels, String extraLabel, String extraValue, double value) throws IOException {
+        StringBuilder line = new StringBuilder(name);
+        List<String> allLabels = new ArrayList<>(labels);
+
+        if (extraLabel != null) {
+            allLabels.add(extraLabel);
+            allLabels.add(extraValue);
+        }
+
+        if (!allLabels.isEmpty()) {
+            line.append('{');
+
+            for (int i = 0; i + 1 < allLabels.size(); i += 2) {
+                line.append(i == 0 ? "" : ",").append(allLabels.get(i)).append("=\"").append(escape(allLabels.get(i + 1))).append('"');
+            }
+
+            line.append('}');
+        }
+
+        line.append(' ').append(Double.toString(value)).append('\n');
+        writer.write(line.toString());
+    }
+
+    private static String escape(String value) {
+        return value.replace("\\", "\\\\").replace("\"", "\\\"").replace("\n", "\\n");
+    }
+}
@@ -0,0 +1,19 @@
+package com.example.nagoyameshi.metrics;
+
+import org.springframework.context.annotation.Configuration;
+import org.springframework.web.servlet.config.annotation.InterceptorRegistry;
+import org.springframework.web.servlet.config.annotation.WebMvcConfigurer;
+
+@Configuration
+public class MetricsWebConfig implements WebMvcConfigurer {
+    private final ViewRenderTimingInterceptor viewRenderTimingInterceptor;
+
+    public MetricsWebConfig(ViewRenderTimingInterceptor viewRenderTimingInterceptor) {
+        this.viewRenderTimingInterceptor = viewRenderTimingInterceptor;
+    }
+
+    @Override
+    public void addInterceptors(InterceptorRegistry registry) {
+        registry.addInterceptor(viewRenderTimingInterceptor);
+    }
+}
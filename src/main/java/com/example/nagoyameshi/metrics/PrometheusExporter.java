@@ -0,0 +1,87 @@
+package com.example.nagoyameshi.metrics;
+
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.Executors;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Component;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+
+import jakarta.annotation.PreDestroy;
+
+// 計測値をPrometheusのテキスト形式で公開する
+// アプリケーションのポートとは別の管理用ポートで待ち受け、既定ではローカルからのみ接続できる（ポートに-1を指定すると起動しない）
+@Component
+public class PrometheusExporter {
+    private static final Logger logger = LoggerFactory.getLogger(PrometheusExporter.class);
+    private static final String CONTENT_TYPE = "text/plain; version=0.0.4; charset=utf-8";
+
+    private final MetricsRegistry metricsRegistry;
+    private final String address;
+    private final int port;
+    private volatile HttpServer httpServer;
+
+    public PrometheusExporter(MetricsRegistry metricsRegistry,
+                              @Value("${metrics.prometheus.address:127.0.0.1}") String address,
+                              @Value("${metrics.prometheus.port:9464}") int port)
+    {
+        this.metricsRegistry = metricsRegistry;
+        this.address = address;
+        this.port = port;
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void start() {
+        if (port < 0) {
+            return;
+        }
+
+        try {
+            HttpServer server = HttpServer.create(new InetSocketAddress(address, port), 0);
+            server.createContext("/metrics", this::handle);
+            server.setExecutor(Executors.newSingleThreadExecutor(runnable -> Thread.ofPlatform().name("prometheus-exporter").daemon().unstarted(runnable)));
+            server.start();
+            httpServer = server;
+            logger.info("計測値を公開しました: http://{}:{}/metrics", address, server.getAddress().getPort());
+        } catch (IOException e) {
+            // 計測値を公開できなくてもアプリケーションは動作させる
+            logger.warn("計測値を公開できませんでした: {}:{}", address, port, e);
+        }
+    }
+
+    @PreDestroy
+    public void stop() {
+        HttpServer server = httpServer;
+
+        if (server != null) {
+            server.stop(0);
+            httpServer = null;
+        }
+    }
+
+    private void handle(HttpExchange exchange) throws IOException {
+        try (exchange) {
+            if (!"GET".equals(exchange.getRequestMethod())) {
+                exchange.sendResponseHeaders(405, -1);
+                return;
+            }
+
+            exchange.getResponseHeaders().set("Content-Type", CONTENT_TYPE);
+            exchange.sendResponseHeaders(200, 0);
+
+            try (Writer writer = new OutputStreamWriter(exchange.getResponseBody(), StandardCharsets.UTF_8)) {
+                metricsRegistry.writePrometheus(writer);
+            }
+        }
+    }
+}
@@ -0,0 +1,41 @@
+package com.example.nagoyameshi.metrics;
+
+// 現在のスレッドで実行中のコントローラのハンドラとリポジトリのメソッド（遅いSQL文の発生元として記録する）
+// TimingAspectが呼び出しの前後で設定し、呼び出しが入れ子になった場合は終了時に元の値に戻す
+public final class QueryOrigin {
+    private static final ThreadLocal<String> HANDLER = new ThreadLocal<>();
+    private static final ThreadLocal<String> REPOSITORY_METHOD = new ThreadLocal<>();
+
+    private QueryOrigin() {
+    }
+
+    public static String getHandler() {
+        return HANDLER.get();
+    }
+
+    public static String getRepositoryMethod() {
+        return REPOSITORY_METHOD.get();
+    }
+
+    // ハンドラを設定し、それまでの値を返す
+    static String swapHandler(String handler) {
+        return swap(HANDLER, handler);
+    }
+
+    // リポジトリのメソッドを設定し、それまでの値を返す
+    static String swapRepositoryMethod(String repositoryMethod) {
+        return swap(REPOSITORY_METHOD, repositoryMethod);
+    }
+
+    private static String swap(ThreadLocal<String> threadLocal, String value) {
+        String previous = threadLocal.get();
+
+        if (value != null) {
+            threadLocal.set(value);
+        } else {
+            threadLocal.remove();
+        }
+
+        return previous;
+    }
+}
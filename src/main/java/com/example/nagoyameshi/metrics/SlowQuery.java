@@ -0,0 +1,79 @@
+package com.example.nagoyameshi.metrics;
+
+import java.time.LocalDateTime;
+import java.util.List;
+
+// 閾値を超えたSQL文の記録（バインドした値は文字列などを伏せた表示用の値のみを保持する）
+// 実行計画は記録後に別スレッドで取得して設定する
+public class SlowQuery {
+    private final long sequence;
+    private final LocalDateTime capturedAt;
+    private final double elapsedMillis;
+    private final String sql;
+    private final List<String> parameters;
+    private final String handler;
+    private final String repositoryMethod;
+    private final String threadName;
+    private volatile String plan;
+    private volatile String planError;
+
+    public SlowQuery(long sequence, LocalDateTime capturedAt, double elapsedMillis, String sql, List<String> parameters, String handler, String repositoryMethod, String threadName) {
+        this.sequence = sequence;
+        this.capturedAt = capturedAt;
+        this.elapsedMillis = elapsedMillis;
+        this.sql = sql;
+        this.parameters = parameters;
+        this.handler = handler;
+        this.repositoryMethod = repositoryMethod;
+        this.threadName = threadName;
+    }
+
+    public long getSequence() {
+        return sequence;
+    }
+
+    public LocalDateTime getCapturedAt() {
+        return capturedAt;
+    }
+
+    public double getElapsedMillis() {
+        return elapsedMillis;
+    }
+
+    public String getSql() {
+        return sql;
+    }
+
+    public List<String> getParameters() {
+        return parameters;
+    }
+
+    public String getHandler() {
+        return handler;
+    }
+
+    public String getRepositoryMethod() {
+        return repositoryMethod;
+    }
+
+    public String getThreadName() {
+        return threadName;
+    }
+
+    // EXPLAIN FORMAT=JSONの結果（取得前または取得できなかった場合はnull）
+    public String getPlan() {
+        return plan;
+    }
+
+    public String getPlanError() {
+        return planError;
+    }
+
+    void setPlan(String plan) {
+        this.plan = plan;
+    }
+
+    void setPlanError(String planError) {
+        this.planError = planError;
+    }
+}
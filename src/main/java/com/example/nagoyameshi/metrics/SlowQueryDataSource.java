@@ -0,0 +1,136 @@
+package com.example.nagoyameshi.metrics;
+
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.sql.CallableStatement;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.List;
+
+import javax.sql.DataSource;
+
+import org.springframework.jdbc.datasource.DelegatingDataSource;
+
+// SQL文の実行時間を計り、閾値を超えたものをSlowQueryLogに記録するDataSource
+// 閾値以下の文でもロックは使わないが、文ごとにプロキシとハンドラを1つずつ作成し、バインドした値を保持するリストを作成する
+// また、文のすべてのメソッド呼び出し（値のバインドを含む）がリフレクションを経由するため、1回の呼び出しにつき数十ナノ秒程度の負荷がかかる
+// 負荷を避けたい環境ではslow-query.enabled=falseにする（DataSourceを包まない）
+public class SlowQueryDataSource extends DelegatingDataSource {
+    private final SlowQueryLog slowQueryLog;
+
+    public SlowQueryDataSource(DataSource targetDataSource, SlowQueryLog slowQueryLog) {
+        super(targetDataSource);
+        this.slowQueryLog = slowQueryLog;
+    }
+
+    @Override
+    public Connection getConnection() throws SQLException {
+        return wrapConnection(super.getConnection());
+    }
+
+    @Override
+    public Connection getConnection(String username, String password) throws SQLException {
+        return wrapConnection(super.getConnection(username, password));
+    }
+
+    private Connection wrapConnection(Connection connection) {
+        return proxy(Connection.class, connection, (method, args) -> {
+            Object result = invoke(connection, method, args);
+
+            if (result instanceof CallableStatement callableStatement) {
+                return wrapStatement(CallableStatement.class, callableStatement, (String) args[0]);
+            } else if (result instanceof PreparedStatement preparedStatement) {
+                return wrapStatement(PreparedStatement.class, preparedStatement, (String) args[0]);
+            } else if (result instanceof Statement statement) {
+                return wrapStatement(Statement.class, statement, null);
+            }
+
+            return result;
+        });
+    }
+
+    // preparedSqlはPreparedStatementの場合のみ指定する（Statementの場合は実行時の引数のSQL文を記録する）
+    private <T extends Statement> T wrapStatement(Class<T> type, T statement, String preparedSql) {
+        return proxy(type, statement, new StatementHandler(statement, preparedSql));
+    }
+
+    // 文ごとに作成し、バインドした値を記録して、実行時間が閾値を超えた場合のみSlowQueryLogに渡す
+    private class StatementHandler implements Handler {
+        private final Statement statement;
+        private final String preparedSql;
+        // バインドした値（最初の値がバインドされるまで作成しない）
+        private List<Object> parameters;
+
+        private StatementHandler(Statement statement, String preparedSql) {
+            this.statement = statement;
+            this.preparedSql = preparedSql;
+        }
+
+        @Override
+        public Object handle(Method method, Object[] args) throws Throwable {
+            String name = method.getName();
+
+            if (!name.startsWith("execute")) {
+                if (preparedSql != null && name.startsWith("set") && args != null && args.length >= 2 && args[0] instanceof Integer index) {
+                    // setNullの2番目の引数は値ではなくjava.sql.Typesの型のため、値はnullとして記録する
+                    setParameter(index, name.equals("setNull") ? null : args[1]);
+                } else if (name.equals("clearParameters") && parameters != null) {
+                    parameters.clear();
+                }
+
+                return invoke(statement, method, args);
+            }
+
+            long startedAt = System.nanoTime();
+
+            try {
+                return invoke(statement, method, args);
+            } finally {
+                long elapsedNanos = System.nanoTime() - startedAt;
+
+                if (elapsedNanos >= slowQueryLog.getThresholdNanos()) {
+                    String sql = preparedSql != null ? preparedSql : (args != null && args.length > 0 && args[0] instanceof String text ? text : "");
+                    slowQueryLog.record(sql, parameters != null ? parameters : List.of(), elapsedNanos);
+                }
+            }
+        }
+
+        private void setParameter(int index, Object value) {
+            if (parameters == null) {
+                parameters = new ArrayList<>(Math.max(index, 8));
+            }
+
+            while (parameters.size() < index) {
+                parameters.add(null);
+            }
+
+            parameters.set(index - 1, value);
+        }
+    }
+
+    private interface Handler {
+        Object handle(Method method, Object[] args) throws Throwable;
+    }
+
+    private static Object invoke(Object target, Method method, Object[] args) throws Throwable {
+        try {
+            return method.invoke(target, args);
+        } catch (InvocationTargetException e) {
+            throw e.getTargetException();
+        }
+    }
+
+    // equalsとhashCodeはプロキシ自身で判定し、それ以外をhandlerに任せる
+    @SuppressWarnings("unchecked")
+    private static <T> T proxy(Class<T> type, T target, Handler handler) {
+        return (T) Proxy.newProxyInstance(SlowQueryDataSource.class.getClassLoader(), new Class<?>[] { type }, (proxy, method, args) -> switch (method.getName()) {
+            case "equals" -> args.length == 1 && proxy == args[0];
+            case "hashCode" -> args == null ? System.identityHashCode(proxy) : handler.handle(method, args);
+            default -> handler.handle(method, args);
+        });
+    }
+}
@@ -0,0 +1,35 @@
+package com.example.nagoyameshi.metrics;
+
+import javax.sql.DataSource;
+
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.config.BeanPostProcessor;
+import org.springframework.stereotype.Component;
+
+// アプリケーションのDataSourceをSlowQueryDataSourceで包む（slow-query.enabled=falseの場合は包まない）
+@Component
+public class SlowQueryDataSourcePostProcessor implements BeanPostProcessor {
+    private final ObjectProvider<SlowQueryLog> slowQueryLogProvider;
+
+    public SlowQueryDataSourcePostProcessor(ObjectProvider<SlowQueryLog> slowQueryLogProvider) {
+        this.slowQueryLogProvider = slowQueryLogProvider;
+    }
+
+    @Override
+    public Object postProcessAfterInitialization(Object bean, String beanName) {
+        if (!(bean instanceof DataSource dataSource) || bean instanceof SlowQueryDataSource) {
+            return bean;
+        }
+
+        SlowQueryLog slowQueryLog = slowQueryLogProvider.getObject();
+
+        if (!slowQueryLog.isEnabled()) {
+            return bean;
+        }
+
+        // 実行計画の取得は包む前のDataSourceで行い、取得自体を記録しない
+        slowQueryLog.setExplainDataSource(dataSource);
+
+        return new SlowQueryDataSource(dataSource, slowQueryLog);
+    }
+}
@@ -0,0 +1,163 @@
+package com.example.nagoyameshi.metrics;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.time.LocalDateTime;
+import java.time.temporal.Temporal;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.Date;
+import java.util.List;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.concurrent.atomic.LongAdder;
+
+import javax.sql.DataSource;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+// 実行時間が閾値を超えたSQL文を、上限件数のリングバッファに記録する
+// 記録はロックを使わずに行い（古いものから上書きする）、実行計画は別スレッドで別のコネクションを使って取得する
+@Component
+public class SlowQueryLog {
+    private static final Logger logger = LoggerFactory.getLogger(SlowQueryLog.class);
+
+    private final AtomicReferenceArray<SlowQuery> buffer;
+    private final AtomicLong sequence = new AtomicLong();
+    private final LongAdder droppedExplainCount = new LongAdder();
+    private final Semaphore explainPermits;
+    private final boolean enabled;
+    private final long thresholdNanos;
+    private volatile DataSource explainDataSource;
+
+    public SlowQueryLog(@Value("${slow-query.enabled:true}") boolean enabled,
+                        @Value("${slow-query.threshold-ms:200}") long thresholdMillis,
+                        @Value("${slow-query.capacity:200}") int capacity,
+                        @Value("${slow-query.explain-concurrency:1}") int explainConcurrency)
+    {
+        this.enabled = enabled;
+        this.thresholdNanos = TimeUnit.MILLISECONDS.toNanos(thresholdMillis);
+        this.buffer = new AtomicReferenceArray<>(capacity);
+        this.explainPermits = new Semaphore(explainConcurrency);
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    public long getThresholdNanos() {
+        return thresholdNanos;
+    }
+
+    // 実行計画の取得に使うDataSource（計測用のプロキシで包む前のもの）を設定する
+    void setExplainDataSource(DataSource explainDataSource) {
+        this.explainDataSource = explainDataSource;
+    }
+
+    // 閾値を超えたSQL文を記録する（parameterValuesは実行計画の取得にのみ使い、記録には伏せた値を残す）
+    public void record(String sql, List<Object> parameterValues, long elapsedNanos) {
+        long currentSequence = sequence.incrementAndGet();
+        List<String> parameters = parameterValues.stream().map(SlowQueryLog::redact).toList();
+        SlowQuery slowQuery = new SlowQuery(currentSequence,
+                                            LocalDateTime.now(),
+                                            elapsedNanos / 1e6,
+                                            sql,
+                                            parameters,
+                                            QueryOrigin.getHandler(),
+                                            QueryOrigin.getRepositoryMethod(),
+                                            Thread.currentThread().getName());
+
+        buffer.set((int) (currentSequence % buffer.length()), slowQuery);
+        explainLater(slowQuery, new ArrayList<>(parameterValues));
+    }
+
+    // 記録されているSQL文を新しい順に返す
+    public List<SlowQuery> findAll() {
+        List<SlowQuery> slowQueries = new ArrayList<>();
+
+        for (int i = 0; i < buffer.length(); i++) {
+            SlowQuery slowQuery = buffer.get(i);
+
+            if (slowQuery != null) {
+                slowQueries.add(slowQuery);
+            }
+        }
+
+        slowQueries.sort(Comparator.comparingLong(SlowQuery::getSequence).reversed());
+
+        return Collections.unmodifiableList(slowQueries);
+    }
+
+    // 混雑時に実行計画の取得を見送った件数
+    public long getDroppedExplainCount() {
+        return droppedExplainCount.sum();
+    }
+
+    // 同時に取得する実行計画の数を制限し、上限に達している場合は取得しない
+    private void explainLater(SlowQuery slowQuery, List<Object> parameterValues) {
+        DataSource dataSource = explainDataSource;
+
+        if (dataSource == null || !isExplainable(slowQuery.getSql())) {
+            return;
+        }
+
+        if (!explainPermits.tryAcquire()) {
+            droppedExplainCount.increment();
+            return;
+        }
+
+        Thread.ofVirtual().name("slow-query-explain").start(() -> {
+            try {
+                slowQuery.setPlan(explain(dataSource, slowQuery.getSql(), parameterValues));
+            } catch (SQLException | RuntimeException e) {
+                slowQuery.setPlanError(e.getMessage());
+                logger.debug("実行計画を取得できませんでした: {}", slowQuery.getSql(), e);
+            } finally {
+                explainPermits.release();
+            }
+        });
+    }
+
+    private static String explain(DataSource dataSource, String sql, List<Object> parameterValues) throws SQLException {
+        try (Connection connection = dataSource.getConnection();
+             PreparedStatement preparedStatement = connection.prepareStatement("EXPLAIN FORMAT=JSON " + sql))
+        {
+            for (int i = 0; i < parameterValues.size(); i++) {
+                preparedStatement.setObject(i + 1, parameterValues.get(i));
+            }
+
+            try (ResultSet resultSet = preparedStatement.executeQuery()) {
+                return resultSet.next() ? resultSet.getString(1) : null;
+            }
+        }
+    }
+
+    private static boolean isExplainable(String sql) {
+        String head = sql.stripLeading().toLowerCase();
+
+        return head.startsWith("select") || head.startsWith("update") || head.startsWith("delete") || head.startsWith("insert");
+    }
+
+    // 数値・真偽値・日時以外の値は、型と長さのみを残す（個人情報やトークンを記録しない）
+    static String redact(Object value) {
+        if (value == null) {
+            return "NULL";
+        } else if (value instanceof Number || value instanceof Boolean || value instanceof Date || value instanceof Temporal) {
+            return value.toString();
+        } else if (value instanceof CharSequence charSequence) {
+            return "<string:" + charSequence.length() + ">";
+        } else if (value instanceof byte[] bytes) {
+            return "<bytes:" + bytes.length + ">";
+        }
+
+        return "<" + value.getClass().getSimpleName() + ">";
+    }
+}
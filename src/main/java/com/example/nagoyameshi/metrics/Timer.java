@@ -0,0 +1,165 @@
+package com.example.nagoyameshi.metrics;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+
+// 処理時間の件数・合計と、直近の一定期間の分布（パーセンタイルと最大値の算出用）を記録する
+// 分布はマイクロ秒単位の対数目盛（2のべき乗ごとに4分割、誤差は最大で約19%）のヒストグラムで保持し、ロックを使わずに記録する
+// 直近の期間は2つの窓を交互に使い、1つ前の窓と現在の窓を合わせて集計する
+public class Timer {
+    private static final int SUB_BUCKETS = 4;
+    private static final int BUCKET_COUNT = 64 * SUB_BUCKETS;
+
+    private final long windowNanos;
+    private final LongAdder count = new LongAdder();
+    private final LongAdder totalNanos = new LongAdder();
+    private volatile Window current;
+    private volatile Window previous;
+
+    private static class Window {
+        private final long startedAt;
+        private final AtomicLongArray buckets = new AtomicLongArray(BUCKET_COUNT);
+        private final AtomicLong maxNanos = new AtomicLong();
+
+        private Window(long startedAt) {
+            this.startedAt = startedAt;
+        }
+    }
+
+    // 集計結果（時間はミリ秒）
+    public record Snapshot(long count, double totalMillis, double meanMillis, double p50Millis, double p95Millis, double p99Millis, double maxMillis) {
+    }
+
+    public Timer(long windowMillis) {
+        this.windowNanos = TimeUnit.MILLISECONDS.toNanos(windowMillis);
+        this.current = new Window(System.nanoTime());
+        this.previous = new Window(current.startedAt - windowNanos);
+    }
+
+    public void record(long elapsedNanos) {
+        Window window = rotate(System.nanoTime());
+        long nanos = Math.max(elapsedNanos, 0);
+
+        count.increment();
+        totalNanos.add(nanos);
+        window.buckets.incrementAndGet(bucketOf(TimeUnit.NANOSECONDS.toMicros(nanos)));
+        window.maxNanos.accumulateAndGet(nanos, Math::max);
+    }
+
+    public long getCount() {
+        return count.sum();
+    }
+
+    public double getTotalSeconds() {
+        return totalNanos.sum() / 1e9;
+    }
+
+    // 直近の期間のパーセンタイル（秒）を返す（記録がない場合は0、バケットの上限が最大値を超える場合は最大値）
+    public double getPercentileSeconds(double percentile) {
+        Window[] windows = windows(System.nanoTime());
+        long[] merged = new long[BUCKET_COUNT];
+        long total = 0;
+        long maxNanos = 0;
+
+        for (Window window : windows) {
+            maxNanos = Math.max(maxNanos, window.maxNanos.get());
+
+            for (int i = 0; i < BUCKET_COUNT; i++) {
+                long bucketCount = window.buckets.get(i);
+                merged[i] += bucketCount;
+                total += bucketCount;
+            }
+        }
+
+        if (total == 0) {
+            return 0;
+        }
+
+        long rank = (long) Math.ceil(percentile * total);
+        long cumulative = 0;
+
+        for (int i = 0; i < BUCKET_COUNT; i++) {
+            cumulative += merged[i];
+
+            if (cumulative >= rank) {
+                return Math.min(upperBoundMicros(i) / 1e6, maxNanos / 1e9);
+            }
+        }
+
+        return maxNanos / 1e9;
+    }
+
+    // 直近の期間の最大値（秒）を返す
+    public double getMaxSeconds() {
+        long maxNanos = 0;
+
+        for (Window window : windows(System.nanoTime())) {
+            maxNanos = Math.max(maxNanos, window.maxNanos.get());
+        }
+
+        return maxNanos / 1e9;
+    }
+
+    public Snapshot snapshot() {
+        long currentCount = getCount();
+        double totalMillis = getTotalSeconds() * 1000;
+
+        return new Snapshot(currentCount,
+                            totalMillis,
+                            currentCount == 0 ? 0 : totalMillis / currentCount,
+                            getPercentileSeconds(0.5) * 1000,
+                            getPercentileSeconds(0.95) * 1000,
+                            getPercentileSeconds(0.99) * 1000,
+                            getMaxSeconds() * 1000);
+    }
+
+    // 現在の窓が期間を過ぎていれば新しい窓に切り替え、記録先の窓を返す
+    private Window rotate(long now) {
+        Window window = current;
+
+        if (now - window.startedAt < windowNanos) {
+            return window;
+        }
+
+        synchronized (this) {
+            if (current == window) {
+                // 2期間以上記録がなかった場合は、1つ前の窓も空にする
+                previous = now - window.startedAt < windowNanos * 2 ? window : new Window(now - windowNanos);
+                current = new Window(now);
+            }
+
+            return current;
+        }
+    }
+
+    private Window[] windows(long now) {
+        rotate(now);
+
+        return new Window[] { previous, current };
+    }
+
+    static int bucketOf(long micros) {
+        if (micros < SUB_BUCKETS) {
+            return (int) Math.max(micros, 0);
+        }
+
+        int exponent = 63 - Long.numberOfLeadingZeros(micros);
+        int subBucket = (int) (micros >>> (exponent - 2)) & (SUB_BUCKETS - 1);
+
+        return Math.min(exponent * SUB_BUCKETS + subBucket, BUCKET_COUNT - 1);
+    }
+
+    // バケットに含まれる値の上限（マイクロ秒）
+    static long upperBoundMicros(int bucket) {
+        if (bucket < SUB_BUCKETS) {
+            return bucket + 1;
+        }
+
+        int exponent = bucket / SUB_BUCKETS;
+        int subBucket = bucket % SUB_BUCKETS;
+
+        return (1L << exponent) + ((long) (subBucket + 1) << (exponent - 2));
+    }
+}
@@ -0,0 +1,87 @@
+package com.example.nagoyameshi.metrics;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+import org.aspectj.lang.ProceedingJoinPoint;
+import org.aspectj.lang.annotation.Around;
+import org.aspectj.lang.annotation.Aspect;
+import org.springframework.aop.framework.AopProxyUtils;
+import org.springframework.stereotype.Component;
+
+// コントローラのハンドラ・リポジトリのメソッド・Stripeの呼び出し・メール送信の処理時間を記録する
+@Aspect
+@Component
+public class TimingAspect {
+    private static final String REPOSITORY_PACKAGE = "com.example.nagoyameshi.repository";
+
+    private final MetricsRegistry metricsRegistry;
+    // リポジトリの実装クラス（Spring Dataのプロキシ）ごとの、リポジトリのインターフェース名
+    private final Map<Class<?>, String> repositoryNames = new ConcurrentHashMap<>();
+
+    public TimingAspect(MetricsRegistry metricsRegistry) {
+        this.metricsRegistry = metricsRegistry;
+    }
+
+    // 処理中のハンドラを、遅いSQL文の発生元としても記録する
+    @Around("execution(public * com.example.nagoyameshi.controller..*.*(..))")
+    public Object timeHandler(ProceedingJoinPoint joinPoint) throws Throwable {
+        String handler = joinPoint.getSignature().getDeclaringType().getSimpleName() + "." + joinPoint.getSignature().getName();
+        String previous = QueryOrigin.swapHandler(handler);
+
+        try {
+            return time(joinPoint, "http_handler_seconds", "handler", handler);
+        } finally {
+            QueryOrigin.swapHandler(previous);
+        }
+    }
+
+    // 継承したメソッド（findByIdなど）も、呼び出し先のリポジトリの名前で記録する
+    @Around("execution(* org.springframework.data.repository.Repository+.*(..))")
+    public Object timeRepository(ProceedingJoinPoint joinPoint) throws Throwable {
+        String repositoryMethod = repositoryName(joinPoint.getTarget()) + "." + joinPoint.getSignature().getName();
+        String previous = QueryOrigin.swapRepositoryMethod(repositoryMethod);
+
+        try {
+            return time(joinPoint, "repository_query_seconds", "method", repositoryMethod);
+        } finally {
+            QueryOrigin.swapRepositoryMethod(previous);
+        }
+    }
+
+    @Around("execution(public * com.example.nagoyameshi.service.StripeService.*(..))")
+    public Object timeStripe(ProceedingJoinPoint joinPoint) throws Throwable {
+        return time(joinPoint, "stripe_call_seconds", "method", joinPoint.getSignature().getName());
+    }
+
+    @Around("execution(* org.springframework.mail.javamail.JavaMailSender.send(..))")
+    public Object timeMail(ProceedingJoinPoint joinPoint) throws Throwable {
+        return time(joinPoint, "mail_send_seconds", "method", joinPoint.getSignature().getName());
+    }
+
+    private Object time(ProceedingJoinPoint joinPoint, String name, String labelName, String labelValue) throws Throwable {
+        long startedAt = System.nanoTime();
+        String outcome = "success";
+
+        try {
+            return joinPoint.proceed();
+        } catch (Throwable e) {
+            outcome = e.getClass().getSimpleName();
+            throw e;
+        } finally {
+            metricsRegistry.record(name, System.nanoTime() - startedAt, labelName, labelValue, "outcome", outcome);
+        }
+    }
+
+    private String repositoryName(Object target) {
+        return repositoryNames.computeIfAbsent(target.getClass(), targetClass -> {
+            for (Class<?> repositoryInterface : AopProxyUtils.proxiedUserInterfaces(target)) {
+                if (repositoryInterface.getName().startsWith(REPOSITORY_PACKAGE)) {
+                    return repositoryInterface.getSimpleName();
+                }
+            }
+
+            return targetClass.getSimpleName();
+        });
+    }
+}
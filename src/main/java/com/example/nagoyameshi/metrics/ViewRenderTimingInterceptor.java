@@ -0,0 +1,37 @@
+package com.example.nagoyameshi.metrics;
+
+import org.springframework.stereotype.Component;
+import org.springframework.web.servlet.HandlerInterceptor;
+import org.springframework.web.servlet.ModelAndView;
+
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+
+// テンプレートの描画にかかった時間を、テンプレート名ごとに記録する
+@Component
+public class ViewRenderTimingInterceptor implements HandlerInterceptor {
+    private static final String STARTED_AT = ViewRenderTimingInterceptor.class.getName() + ".startedAt";
+    private static final String VIEW_NAME = ViewRenderTimingInterceptor.class.getName() + ".viewName";
+
+    private final MetricsRegistry metricsRegistry;
+
+    public ViewRenderTimingInterceptor(MetricsRegistry metricsRegistry) {
+        this.metricsRegistry = metricsRegistry;
+    }
+
+    // ハンドラの処理が終わり、描画を始める直前の時刻を記録する（リダイレクトは対象外）
+    @Override
+    public void postHandle(HttpServletRequest request, HttpServletResponse response, Object handler, ModelAndView modelAndView) {
+        if (modelAndView != null && modelAndView.getViewName() != null && !modelAndView.getViewName().startsWith("redirect:")) {
+            request.setAttribute(VIEW_NAME, modelAndView.getViewName());
+            request.setAttribute(STARTED_AT, System.nanoTime());
+        }
+    }
+
+    @Override
+    public void afterCompletion(HttpServletRequest request, HttpServletResponse response, Object handler, Exception ex) {
+        if (request.getAttribute(STARTED_AT) instanceof Long startedAt && request.getAttribute(VIEW_NAME) instanceof String viewName) {
+            metricsRegistry.record("view_render_seconds", System.nanoTime() - startedAt, "view", viewName, "outcome", ex == null ? "success" : ex.getClass().getSimpleName());
+        }
+    }
+}
@@ -1,17 +1,23 @@
 package com.example.nagoyameshi.repository;
 
+import org.hibernate.jpa.HibernateHints;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.QueryHints;
 
 import com.example.nagoyameshi.entity.Category;
 
+import jakarta.persistence.QueryHint;
+
 public interface CategoryRepository extends JpaRepository<Category, Integer> {
     
     public Page<Category> findByNameLike(String keyword, Pageable pageable);
 
     public Category findFirstByOrderByIdDesc();
     
+    // 結果をクエリキャッシュに保持する（categoriesテーブルの更新時は自動的に破棄される）
+    @QueryHints(@QueryHint(name = HibernateHints.HINT_CACHEABLE, value = "true"))
     public Category findFirstByName(String name);
 }
 
@@ -0,0 +1,20 @@
+package com.example.nagoyameshi.repository;
+
+import java.sql.Timestamp;
+import java.util.List;
+
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+
+import com.example.nagoyameshi.entity.EntitlementChange;
+
+public interface EntitlementChangeRepository extends JpaRepository<EntitlementChange, Long> {
+    public List<EntitlementChange> findTop1000ByIdGreaterThanOrderByIdAsc(Long id);
+
+    public EntitlementChange findFirstByOrderByIdDesc();
+
+    @Modifying
+    @Query("DELETE FROM EntitlementChange e WHERE e.createdAt < :createdAt")
+    public int deleteByCreatedAtBefore(Timestamp createdAt);
+}
@@ -0,0 +1,20 @@
+package com.example.nagoyameshi.repository;
+
+import java.sql.Timestamp;
+import java.util.List;
+
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+
+import com.example.nagoyameshi.entity.FavoriteChange;
+
+public interface FavoriteChangeRepository extends JpaRepository<FavoriteChange, Long> {
+    public List<FavoriteChange> findTop1000ByIdGreaterThanOrderByIdAsc(Long id);
+
+    public FavoriteChange findFirstByOrderByIdDesc();
+
+    @Modifying
+    @Query("DELETE FROM FavoriteChange f WHERE f.createdAt < :createdAt")
+    public int deleteByCreatedAtBefore(Timestamp createdAt);
+}
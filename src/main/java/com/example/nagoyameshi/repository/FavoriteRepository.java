@@ -1,15 +1,36 @@
 package com.example.nagoyameshi.repository;
 
+import java.util.List;
+
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 
 import com.example.nagoyameshi.entity.Favorite;
 import com.example.nagoyameshi.entity.Restaurant;
 import com.example.nagoyameshi.entity.User;
 
 public interface FavoriteRepository extends JpaRepository<Favorite, Integer> {
+    // お気に入り一覧ページに表示する列
+    public interface FavoriteListItem {
+        Integer getId();
+        Integer getRestaurantId();
+        String getRestaurantName();
+        String getRestaurantPostalCode();
+        String getRestaurantAddress();
+    }
+
     public Favorite findByRestaurantAndUser(Restaurant restaurant, User user);
-    public Page<Favorite> findByUserOrderByCreatedAtDesc(User user, Pageable pageable);
+
+    // 指定したユーザーのお気に入りを、一覧ページに表示する列のみ新しい順に取得する（店舗は結合して1回のクエリで取得する）
+    @Query(value = "SELECT f.id AS id, r.id AS restaurantId, r.name AS restaurantName, r.postalCode AS restaurantPostalCode, r.address AS restaurantAddress FROM Favorite f JOIN f.restaurant r WHERE f.user.id = :userId ORDER BY f.createdAt DESC",
+           countQuery = "SELECT COUNT(f) FROM Favorite f WHERE f.user.id = :userId")
+    public Page<FavoriteListItem> findListItemsByUserIdOrderByCreatedAtDesc(@Param("userId") Integer userId, Pageable pageable);
+
+    // 指定したユーザーのお気に入りの店舗idとお気に入りidの組を取得する
+    @Query("SELECT f.restaurant.id, f.id FROM Favorite f WHERE f.user.id = :userId")
+    public List<Object[]> findRestaurantIdAndIdByUserId(@Param("userId") Integer userId);
 }
 
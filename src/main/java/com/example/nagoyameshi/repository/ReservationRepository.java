@@ -1,14 +1,29 @@
 package com.example.nagoyameshi.repository;
 
+import java.time.LocalDateTime;
+
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 
 import com.example.nagoyameshi.entity.Reservation;
-import com.example.nagoyameshi.entity.User;
 
 public interface ReservationRepository extends JpaRepository<Reservation, Integer> {
-    public Page<Reservation> findByUserOrderByReservedDatetimeDesc(User user, Pageable pageable);
+    // 予約一覧ページに表示する列
+    public interface ReservationListItem {
+        Integer getId();
+        Integer getRestaurantId();
+        String getRestaurantName();
+        LocalDateTime getReservedDatetime();
+        Integer getNumberOfPeople();
+    }
+
     public Reservation findFirstByOrderByIdDesc();
-}
 
+    // 指定したユーザーの予約を、一覧ページに表示する列のみ予約日時の新しい順に取得する（店舗は結合して1回のクエリで取得する）
+    @Query(value = "SELECT r.id AS id, rs.id AS restaurantId, rs.name AS restaurantName, r.reservedDatetime AS reservedDatetime, r.numberOfPeople AS numberOfPeople FROM Reservation r JOIN r.restaurant rs WHERE r.user.id = :userId ORDER BY r.reservedDatetime DESC",
+           countQuery = "SELECT COUNT(r) FROM Reservation r WHERE r.user.id = :userId")
+    public Page<ReservationListItem> findListItemsByUserIdOrderByReservedDatetimeDesc(@Param("userId") Integer userId, Pageable pageable);
+}
@@ -0,0 +1,20 @@
+package com.example.nagoyameshi.repository;
+
+import java.sql.Timestamp;
+import java.util.List;
+
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+
+import com.example.nagoyameshi.entity.RestaurantChange;
+
+public interface RestaurantChangeRepository extends JpaRepository<RestaurantChange, Long> {
+    public List<RestaurantChange> findTop1000ByIdGreaterThanOrderByIdAsc(Long id);
+
+    public RestaurantChange findFirstByOrderByIdDesc();
+
+    @Modifying
+    @Query("DELETE FROM RestaurantChange r WHERE r.createdAt < :createdAt")
+    public int deleteByCreatedAtBefore(Timestamp createdAt);
+}
@@ -0,0 +1,60 @@
+package com.example.nagoyameshi.repository;
+
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+
+import com.example.nagoyameshi.entity.RestaurantRatingSummary;
+
+public interface RestaurantRatingSummaryRepository extends JpaRepository<RestaurantRatingSummary, Integer> {
+    // 指定した店舗の集計に評価を1件加算する（集計が未作成であれば作成する）
+    @Modifying(flushAutomatically = true)
+    @Query(value = "INSERT INTO restaurant_rating_summaries (restaurant_id, count_1, count_2, count_3, count_4, count_5, review_count, score_sum, last_reviewed_at) " +
+                   "VALUES (:restaurantId, " +
+                   "CASE WHEN :score = 1 THEN 1 ELSE 0 END, " +
+                   "CASE WHEN :score = 2 THEN 1 ELSE 0 END, " +
+                   "CASE WHEN :score = 3 THEN 1 ELSE 0 END, " +
+                   "CASE WHEN :score = 4 THEN 1 ELSE 0 END, " +
+                   "CASE WHEN :score = 5 THEN 1 ELSE 0 END, " +
+                   "1, :score, NOW()) " +
+                   "ON DUPLICATE KEY UPDATE " +
+                   "count_1 = count_1 + CASE WHEN :score = 1 THEN 1 ELSE 0 END, " +
+                   "count_2 = count_2 + CASE WHEN :score = 2 THEN 1 ELSE 0 END, " +
+                   "count_3 = count_3 + CASE WHEN :score = 3 THEN 1 ELSE 0 END, " +
+                   "count_4 = count_4 + CASE WHEN :score = 4 THEN 1 ELSE 0 END, " +
+                   "count_5 = count_5 + CASE WHEN :score = 5 THEN 1 ELSE 0 END, " +
+                   "review_count = review_count + 1, " +
+                   "score_sum = score_sum + :score, " +
+                   "last_reviewed_at = NOW()",
+           nativeQuery = true)
+    public void addScore(@Param("restaurantId") Integer restaurantId, @Param("score") Integer score);
+
+    // 指定した店舗の集計から評価を1件減算する（最終レビュー日時は残っているレビューから求め直す）
+    @Modifying(flushAutomatically = true)
+    @Query(value = "UPDATE restaurant_rating_summaries SET " +
+                   "count_1 = count_1 - CASE WHEN :score = 1 THEN 1 ELSE 0 END, " +
+                   "count_2 = count_2 - CASE WHEN :score = 2 THEN 1 ELSE 0 END, " +
+                   "count_3 = count_3 - CASE WHEN :score = 3 THEN 1 ELSE 0 END, " +
+                   "count_4 = count_4 - CASE WHEN :score = 4 THEN 1 ELSE 0 END, " +
+                   "count_5 = count_5 - CASE WHEN :score = 5 THEN 1 ELSE 0 END, " +
+                   "review_count = review_count - 1, " +
+                   "score_sum = score_sum - :score, " +
+                   "last_reviewed_at = (SELECT MAX(created_at) FROM reviews WHERE restaurant_id = :restaurantId) " +
+                   "WHERE restaurant_id = :restaurantId",
+           nativeQuery = true)
+    public void removeScore(@Param("restaurantId") Integer restaurantId, @Param("score") Integer score);
+
+    // 指定した店舗の集計で、評価を変更前の値から変更後の値に付け替える
+    @Modifying(flushAutomatically = true)
+    @Query(value = "UPDATE restaurant_rating_summaries SET " +
+                   "count_1 = count_1 - CASE WHEN :oldScore = 1 THEN 1 ELSE 0 END + CASE WHEN :newScore = 1 THEN 1 ELSE 0 END, " +
+                   "count_2 = count_2 - CASE WHEN :oldScore = 2 THEN 1 ELSE 0 END + CASE WHEN :newScore = 2 THEN 1 ELSE 0 END, " +
+                   "count_3 = count_3 - CASE WHEN :oldScore = 3 THEN 1 ELSE 0 END + CASE WHEN :newScore = 3 THEN 1 ELSE 0 END, " +
+                   "count_4 = count_4 - CASE WHEN :oldScore = 4 THEN 1 ELSE 0 END + CASE WHEN :newScore = 4 THEN 1 ELSE 0 END, " +
+                   "count_5 = count_5 - CASE WHEN :oldScore = 5 THEN 1 ELSE 0 END + CASE WHEN :newScore = 5 THEN 1 ELSE 0 END, " +
+                   "score_sum = score_sum - :oldScore + :newScore " +
+                   "WHERE restaurant_id = :restaurantId",
+           nativeQuery = true)
+    public void changeScore(@Param("restaurantId") Integer restaurantId, @Param("oldScore") Integer oldScore, @Param("newScore") Integer newScore);
+}
@@ -1,40 +1,81 @@
 package com.example.nagoyameshi.repository;
 
+import java.util.Collection;
 import java.util.List;
 
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.Pageable;
+import org.springframework.data.jpa.repository.EntityGraph;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
 import org.springframework.data.jpa.repository.Query;
 import org.springframework.data.repository.query.Param;
 
 import com.example.nagoyameshi.entity.Restaurant;
 
 public interface RestaurantRepository extends JpaRepository<Restaurant, Integer> {
+    // おすすめ・類似・近くの店舗のカードに表示する列（評価は集計から求める）
+    public interface RestaurantCard {
+        Integer getId();
+        String getName();
+        String getImage();
+        Integer getLowestPrice();
+        Integer getReviewCount();
+        Integer getScoreSum();
+
+        default Double getAverageScore() {
+            Integer reviewCount = getReviewCount();
+            return reviewCount != null && reviewCount > 0 ? (double) getScoreSum() / reviewCount : 0.0;
+        }
+    }
+
+    // 指定したidを持つ店舗を、カードに表示する列のみ取得する（店舗のEAGERなコレクションは読み込まない）
+    @Query("SELECT r.id AS id, r.name AS name, r.image AS image, r.lowestPrice AS lowestPrice, s.reviewCount AS reviewCount, s.scoreSum AS scoreSum " +
+           "FROM Restaurant r LEFT JOIN r.ratingSummary s WHERE r.id IN :ids")
+    public List<RestaurantCard> findCardsByIdIn(@Param("ids") Collection<Integer> ids);
+
+    // 指定したidを持つ店舗を、評価の集計と結合して1回のクエリで取得する（店舗ごとに評価の集計を読み込まない）
+    @Query("SELECT r FROM Restaurant r LEFT JOIN FETCH r.ratingSummary WHERE r.id IN :ids")
+    public List<Restaurant> findWithRatingSummaryByIdIn(@Param("ids") Collection<Integer> ids);
+
+    // 管理者用の一覧と以下の一覧ページ用のメソッドは、評価の集計を結合して1回のクエリで読み込む（店舗ごとに評価の集計を読み込まない）
+    @Override
+    @EntityGraph(attributePaths = "ratingSummary")
+    public Page<Restaurant> findAll(Pageable pageable);
     
+    @EntityGraph(attributePaths = "ratingSummary")
     public Page<Restaurant> findByNameLike(String keyword, Pageable pageable);
 
     public Restaurant findFirstByOrderByIdDesc();
     
+    @EntityGraph(attributePaths = "ratingSummary")
     public Page<Restaurant> findAllByOrderByCreatedAtDesc(Pageable pageable);
 
+    @EntityGraph(attributePaths = "ratingSummary")
     public Page<Restaurant> findAllByOrderByLowestPriceAsc(Pageable pageable);
     
-    // すべての店舗を平均評価が高い順に並べ替え、ページングされた状態で取得する
+    // すべての店舗をランキングスコアが高い順に並べ替え、ページングされた状態で取得する
+    @EntityGraph(attributePaths = "ratingSummary")
     @Query("SELECT r FROM Restaurant r " +
-           "LEFT JOIN r.reviews rev " +
-           "GROUP BY r.id " +
-           "ORDER BY AVG(rev.score) DESC")
-    public Page<Restaurant> findAllByOrderByAverageScoreDesc(Pageable pageable); 
+           "ORDER BY r.rankingScore DESC, r.id ASC")
+    public Page<Restaurant> findAllByOrderByRankingScoreDesc(Pageable pageable); 
 
     // すべての店舗を予約数が多い順に並べ替え、ページングされた状態で取得する
+    @EntityGraph(attributePaths = "ratingSummary")
     @Query("SELECT r FROM Restaurant r " +
            "LEFT JOIN r.reservations res " +
            "GROUP BY r.id " +
            "ORDER BY COUNT(res) DESC")
-    public Page<Restaurant> findAllByOrderByReservationCountDesc(Pageable pageable);  
+    public Page<Restaurant> findAllByOrderByReservationCountDesc(Pageable pageable);
+
+    // すべての店舗を注目度が高い順に並べ替え、ページングされた状態で取得する
+    @EntityGraph(attributePaths = "ratingSummary")
+    @Query("SELECT r FROM Restaurant r " +
+           "ORDER BY r.trendingScore DESC, r.id ASC")
+    public Page<Restaurant> findAllByOrderByTrendingScoreDesc(Pageable pageable);  
     
     // 指定されたキーワードを店舗名または住所またはカテゴリ名に含む店舗を作成日時が新しい順に並べ替え、ページングされた状態で取得する
+    @EntityGraph(attributePaths = "ratingSummary")
     @Query("SELECT DISTINCT r FROM Restaurant r " +
            "LEFT JOIN r.categoriesRestaurants cr " +
            "WHERE r.name LIKE %:name% " +
@@ -47,6 +88,7 @@ public interface RestaurantRepository extends JpaRepository<Restaurant, Integer>
                                                                                               Pageable pageable);
 
     // 指定されたキーワードを店舗名または住所またはカテゴリ名に含む店舗を最低価格が安い順に並べ替え、ページングされた状態で取得する
+    @EntityGraph(attributePaths = "ratingSummary")
     @Query("SELECT DISTINCT r FROM Restaurant r " +
            "LEFT JOIN r.categoriesRestaurants cr " +
            "WHERE r.name LIKE %:name% " +
@@ -58,21 +100,21 @@ public interface RestaurantRepository extends JpaRepository<Restaurant, Integer>
                                                                                                @Param("categoryName") String categoryNameKeyword,
                                                                                                Pageable pageable);
 
-    // 指定されたキーワードを店舗名または住所またはカテゴリ名に含む店舗を平均評価が高い順に並べ替え、ページングされた状態で取得する
-    @Query("SELECT r FROM Restaurant r " +
+    // 指定されたキーワードを店舗名または住所またはカテゴリ名に含む店舗をランキングスコアが高い順に並べ替え、ページングされた状態で取得する
+    @EntityGraph(attributePaths = "ratingSummary")
+    @Query("SELECT DISTINCT r FROM Restaurant r " +
            "LEFT JOIN r.categoriesRestaurants cr " +
-           "LEFT JOIN r.reviews rev " +
            "WHERE r.name LIKE %:name% " +
            "OR r.address LIKE %:address% " +
            "OR cr.category.name LIKE %:categoryName% " +
-           "GROUP BY r.id " +
-           "ORDER BY AVG(rev.score) DESC")
-    public Page<Restaurant> findByNameLikeOrAddressLikeOrCategoryNameLikeOrderByAverageScoreDesc(@Param("name") String nameKeyword,
+           "ORDER BY r.rankingScore DESC, r.id ASC")
+    public Page<Restaurant> findByNameLikeOrAddressLikeOrCategoryNameLikeOrderByRankingScoreDesc(@Param("name") String nameKeyword,
                                                                                                  @Param("address") String addressKeyword,
                                                                                                  @Param("categoryName") String categoryNameKeyword,
                                                                                                  Pageable pageable);
     
     // 指定されたキーワードを店舗名または住所またはカテゴリ名に含む店舗を予約数が多い順に並べ替え、ページングされた状態で取得する
+    @EntityGraph(attributePaths = "ratingSummary")
     @Query("SELECT r FROM Restaurant r " +
            "LEFT JOIN r.categoriesRestaurants cr " +
            "LEFT JOIN r.reservations res " +
@@ -84,9 +126,31 @@ public interface RestaurantRepository extends JpaRepository<Restaurant, Integer>
     public Page<Restaurant> findByNameLikeOrAddressLikeOrCategoryNameLikeOrderByReservationCountDesc(@Param("name") String nameKeyword,
                                                                                                      @Param("address") String addressKeyword,
                                                                                                      @Param("categoryName") String categoryNameKeyword,
-                                                                                                     Pageable pageable);    
+                                                                                                     Pageable pageable);
+
+    // 指定されたキーワードを店舗名または住所またはカテゴリ名に含む店舗を注目度が高い順に並べ替え、ページングされた状態で取得する
+    @EntityGraph(attributePaths = "ratingSummary")
+    @Query("SELECT DISTINCT r FROM Restaurant r " +
+           "LEFT JOIN r.categoriesRestaurants cr " +
+           "WHERE r.name LIKE %:name% " +
+           "OR r.address LIKE %:address% " +
+           "OR cr.category.name LIKE %:categoryName% " +
+           "ORDER BY r.trendingScore DESC, r.id ASC")
+    public Page<Restaurant> findByNameLikeOrAddressLikeOrCategoryNameLikeOrderByTrendingScoreDesc(@Param("name") String nameKeyword,
+                                                                                                  @Param("address") String addressKeyword,
+                                                                                                  @Param("categoryName") String categoryNameKeyword,
+                                                                                                  Pageable pageable);    
     
+    // 指定されたキーワードを店舗名または住所またはカテゴリ名に含む店舗のidを取得する（営業時間の条件と組み合わせる場合に、カタログで並べ替えるために使う）
+    @Query("SELECT DISTINCT r.id FROM Restaurant r " +
+           "LEFT JOIN r.categoriesRestaurants cr " +
+           "WHERE r.name LIKE %:keyword% " +
+           "OR r.address LIKE %:keyword% " +
+           "OR cr.category.name LIKE %:keyword%")
+    public List<Integer> findIdsByNameLikeOrAddressLikeOrCategoryNameLike(@Param("keyword") String keyword);
+
     // 指定されたidのカテゴリが設定された店舗を作成日時が新しい順に並べ替え、ページングされた状態で取得する
+    @EntityGraph(attributePaths = "ratingSummary")
     @Query("SELECT r FROM Restaurant r " +
            "INNER JOIN r.categoriesRestaurants cr " +
            "WHERE cr.category.id = :categoryId " +
@@ -94,55 +158,107 @@ public interface RestaurantRepository extends JpaRepository<Restaurant, Integer>
     public Page<Restaurant> findByCategoryIdOrderByCreatedAtDesc(@Param("categoryId") Integer categoryId, Pageable pageable);
 
     // 指定されたidのカテゴリが設定された店舗を最低価格が安い順に並べ替え、ページングされた状態で取得する
+    @EntityGraph(attributePaths = "ratingSummary")
     @Query("SELECT r FROM Restaurant r " +
            "INNER JOIN r.categoriesRestaurants cr " +
            "WHERE cr.category.id = :categoryId " +
            "ORDER BY r.lowestPrice ASC")
     public Page<Restaurant> findByCategoryIdOrderByLowestPriceAsc(@Param("categoryId") Integer categoryId, Pageable pageable);
 
-    // 指定されたidのカテゴリが設定された店舗を平均評価が高い順に並べ替え、ページングされた状態で取得する
+    // 指定されたidのカテゴリが設定された店舗をランキングスコアが高い順に並べ替え、ページングされた状態で取得する
+    @EntityGraph(attributePaths = "ratingSummary")
     @Query("SELECT r FROM Restaurant r " +
            "INNER JOIN r.categoriesRestaurants cr " +
-           "LEFT JOIN r.reviews rev " +
            "WHERE cr.category.id = :categoryId " +
-           "GROUP BY r.id " +
-           "ORDER BY AVG(rev.score) DESC")
-
-    public Page<Restaurant> findByCategoryIdOrderByAverageScoreDesc(@Param("categoryId") Integer categoryId, Pageable pageable);  
+           "ORDER BY r.rankingScore DESC, r.id ASC")
+    public Page<Restaurant> findByCategoryIdOrderByRankingScoreDesc(@Param("categoryId") Integer categoryId, Pageable pageable);  
     
     // 指定されたidのカテゴリが設定された店舗を予約数が多い順に並べ替え、ページングされた状態で取得する
+    @EntityGraph(attributePaths = "ratingSummary")
     @Query("SELECT r FROM Restaurant r " +
            "INNER JOIN r.categoriesRestaurants cr " +
            "LEFT JOIN r.reservations res " +
            "WHERE cr.category.id = :categoryId " +
            "GROUP BY r.id " +
            "ORDER BY COUNT(res) DESC")
-    public Page<Restaurant> findByCategoryIdOrderByReservationCountDesc(@Param("categoryId") Integer categoryId, Pageable pageable);   
+    public Page<Restaurant> findByCategoryIdOrderByReservationCountDesc(@Param("categoryId") Integer categoryId, Pageable pageable);
+
+    // 指定されたidのカテゴリが設定された店舗を注目度が高い順に並べ替え、ページングされた状態で取得する
+    @EntityGraph(attributePaths = "ratingSummary")
+    @Query("SELECT r FROM Restaurant r " +
+           "INNER JOIN r.categoriesRestaurants cr " +
+           "WHERE cr.category.id = :categoryId " +
+           "ORDER BY r.trendingScore DESC, r.id ASC")
+    public Page<Restaurant> findByCategoryIdOrderByTrendingScoreDesc(@Param("categoryId") Integer categoryId, Pageable pageable);   
     
+    @EntityGraph(attributePaths = "ratingSummary")
     public Page<Restaurant> findByLowestPriceLessThanEqualOrderByCreatedAtDesc(Integer price, Pageable pageable);
     
+    @EntityGraph(attributePaths = "ratingSummary")
     public Page<Restaurant> findByLowestPriceLessThanEqualOrderByLowestPriceAsc(Integer price, Pageable pageable);
     
-    // 指定された最低価格以下の店舗を平均評価が高い順に並べ替え、ページングされた状態で取得する
+    // 指定された最低価格以下の店舗をランキングスコアが高い順に並べ替え、ページングされた状態で取得する
+    @EntityGraph(attributePaths = "ratingSummary")
     @Query("SELECT r FROM Restaurant r " +
-           "LEFT JOIN r.reviews rev " +
            "WHERE r.lowestPrice <= :price " +
-           "GROUP BY r.id " +
-           "ORDER BY AVG(rev.score) DESC")
-    public Page<Restaurant> findByLowestPriceLessThanEqualOrderByAverageScoreDesc(@Param("price") Integer price, Pageable pageable);   
+           "ORDER BY r.rankingScore DESC, r.id ASC")
+    public Page<Restaurant> findByLowestPriceLessThanEqualOrderByRankingScoreDesc(@Param("price") Integer price, Pageable pageable);   
     
     // 指定された最低価格以下の店舗を予約数が多い順に並べ替え、ページングされた状態で取得する
+    @EntityGraph(attributePaths = "ratingSummary")
     @Query("SELECT r FROM Restaurant r " +
            "LEFT JOIN r.reservations res " +
            "WHERE r.lowestPrice <= :price " +
            "GROUP BY r.id " +
            "ORDER BY COUNT(res) DESC")
-    public Page<Restaurant> findByLowestPriceLessThanEqualOrderByReservationCountDesc(@Param("price") Integer price, Pageable pageable);  
+    public Page<Restaurant> findByLowestPriceLessThanEqualOrderByReservationCountDesc(@Param("price") Integer price, Pageable pageable);
+
+    // 指定された最低価格以下の店舗を注目度が高い順に並べ替え、ページングされた状態で取得する
+    @EntityGraph(attributePaths = "ratingSummary")
+    @Query("SELECT r FROM Restaurant r " +
+           "WHERE r.lowestPrice <= :price " +
+           "ORDER BY r.trendingScore DESC, r.id ASC")
+    public Page<Restaurant> findByLowestPriceLessThanEqualOrderByTrendingScoreDesc(@Param("price") Integer price, Pageable pageable);  
     
+    @EntityGraph(attributePaths = "ratingSummary")
+    public Page<Restaurant> findByIdInOrderByCreatedAtDesc(Collection<Integer> ids, Pageable pageable);
+
+    @EntityGraph(attributePaths = "ratingSummary")
+    public Page<Restaurant> findByIdInOrderByLowestPriceAsc(Collection<Integer> ids, Pageable pageable);
+
+    // 指定されたidを持つ店舗をランキングスコアが高い順に並べ替え、ページングされた状態で取得する
+    @EntityGraph(attributePaths = "ratingSummary")
+    @Query("SELECT r FROM Restaurant r " +
+           "WHERE r.id IN :ids " +
+           "ORDER BY r.rankingScore DESC, r.id ASC")
+    public Page<Restaurant> findByIdInOrderByRankingScoreDesc(@Param("ids") Collection<Integer> ids, Pageable pageable);
+
+    // 指定されたidを持つ店舗を予約数が多い順に並べ替え、ページングされた状態で取得する
+    @EntityGraph(attributePaths = "ratingSummary")
+    @Query("SELECT r FROM Restaurant r " +
+           "LEFT JOIN r.reservations res " +
+           "WHERE r.id IN :ids " +
+           "GROUP BY r.id " +
+           "ORDER BY COUNT(res) DESC")
+    public Page<Restaurant> findByIdInOrderByReservationCountDesc(@Param("ids") Collection<Integer> ids, Pageable pageable);
+
+    // 指定されたidを持つ店舗を注目度が高い順に並べ替え、ページングされた状態で取得する
+    @EntityGraph(attributePaths = "ratingSummary")
+    @Query("SELECT r FROM Restaurant r " +
+           "WHERE r.id IN :ids " +
+           "ORDER BY r.trendingScore DESC, r.id ASC")
+    public Page<Restaurant> findByIdInOrderByTrendingScoreDesc(@Param("ids") Collection<Integer> ids, Pageable pageable);
+
     // 指定された店舗の定休日のday_indexフィールドの値をリストで取得する
     @Query("SELECT rh.dayIndex FROM RegularHoliday rh " +
            "INNER JOIN rh.regularHolidaysRestaurants rhr " +
            "INNER JOIN rhr.restaurant r " +
            "WHERE r.id = :restaurantId")
     public List<Integer> findDayIndexesByRestaurantId(@Param("restaurantId") Integer restaurantId);    
+
+    // 指定された店舗を論理削除する（紐づく行の削除と店舗の物理削除はRestaurantPurgeServiceが後で行う）
+    @Modifying(flushAutomatically = true, clearAutomatically = true)
+    @Query(value = "UPDATE restaurants SET deleted_at = CURRENT_TIMESTAMP WHERE id = :id AND deleted_at IS NULL",
+           nativeQuery = true)
+    public int softDeleteById(@Param("id") Integer id);
 }
@@ -3,14 +3,27 @@ package com.example.nagoyameshi.repository;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 
-import com.example.nagoyameshi.entity.Restaurant;
 import com.example.nagoyameshi.entity.Review;
 import com.example.nagoyameshi.entity.User;
 
 public interface ReviewRepository extends JpaRepository<Review, Integer> {
-    public Review findByRestaurantAndUser(Restaurant restaurant, User user);
-    public Page<Review> findByRestaurantOrderByCreatedAtDesc(Restaurant restaurant, Pageable pageable);
+    // レビュー一覧ページに表示する列
+    public interface ReviewListItem {
+        Integer getId();
+        Integer getUserId();
+        String getUserName();
+        Integer getScore();
+        String getContent();
+    }
+
+    public boolean existsByRestaurantIdAndUser(Integer restaurantId, User user);
     public Review findFirstByOrderByIdDesc();
-}
 
+    // 指定した店舗のレビューを、一覧ページに表示する列のみ新しい順に取得する（投稿者は結合して1回のクエリで取得する）
+    @Query(value = "SELECT r.id AS id, u.id AS userId, u.name AS userName, r.score AS score, r.content AS content FROM Review r JOIN r.user u WHERE r.restaurant.id = :restaurantId ORDER BY r.createdAt DESC",
+           countQuery = "SELECT COUNT(r) FROM Review r WHERE r.restaurant.id = :restaurantId")
+    public Page<ReviewListItem> findListItemsByRestaurantIdOrderByCreatedAtDesc(@Param("restaurantId") Integer restaurantId, Pageable pageable);
+}
@@ -1,10 +1,16 @@
 package com.example.nagoyameshi.repository;
 
+import org.hibernate.jpa.HibernateHints;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.QueryHints;
 
 import com.example.nagoyameshi.entity.Role;
 
+import jakarta.persistence.QueryHint;
+
 public interface RoleRepository extends JpaRepository<Role, Integer> {
+    // 会員登録やロールの変更のたびに呼ばれるため、結果をクエリキャッシュに保持する（rolesテーブルの更新時は自動的に破棄される）
+    @QueryHints(@QueryHint(name = HibernateHints.HINT_CACHEABLE, value = "true"))
     public Role findByName(String name);
 }
 
@@ -8,7 +8,7 @@ import com.example.nagoyameshi.entity.User;
 
 public interface UserRepository extends JpaRepository<User, Integer> {
     public User findByEmail(String email);
-    public Page<User> findByNameLikeOrFuriganaLike(String nameKeyword, String furiganaKeyword, Pageable pageable);
+    public Page<User> findByNameSearchKeyStartingWithOrFuriganaSearchKeyStartingWithOrEmailStartingWith(String nameSearchKey, String furiganaSearchKey, String email, Pageable pageable);
     public long countByRole_Name(String roleName);
 }
 
@@ -0,0 +1,57 @@
+package com.example.nagoyameshi.security;
+
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import org.springframework.security.crypto.bcrypt.BCryptPasswordEncoder;
+import org.springframework.security.crypto.password.PasswordEncoder;
+
+// BCryptによるハッシュ化と照合を専用のスレッドプールに委譲し、設定したコストと異なるハッシュの再ハッシュ化を促すエンコーダ
+public class AdaptivePasswordEncoder implements PasswordEncoder {
+    private static final Pattern BCRYPT_PATTERN = Pattern.compile("^\\$2[aby]?\\$(\\d\\d)\\$[./0-9A-Za-z]{53}$");
+
+    private final BCryptPasswordEncoder delegate;
+    private final PasswordHashingExecutor passwordHashingExecutor;
+    private final int strength;
+
+    public AdaptivePasswordEncoder(int strength, PasswordHashingExecutor passwordHashingExecutor) {
+        this.delegate = new BCryptPasswordEncoder(strength);
+        this.passwordHashingExecutor = passwordHashingExecutor;
+        this.strength = strength;
+    }
+
+    @Override
+    public String encode(CharSequence rawPassword) {
+        return passwordHashingExecutor.execute(() -> delegate.encode(rawPassword));
+    }
+
+    @Override
+    public boolean matches(CharSequence rawPassword, String encodedPassword) {
+        // BCrypt形式でないハッシュはスレッドプールを使わずに不一致とする
+        if (encodedPassword == null || !BCRYPT_PATTERN.matcher(encodedPassword).matches()) {
+            return false;
+        }
+
+        return passwordHashingExecutor.execute(() -> delegate.matches(rawPassword, encodedPassword));
+    }
+
+    // 保存されているハッシュのコストが設定値と異なる場合はtrueを返す（ログイン成功時に再ハッシュ化される）
+    @Override
+    public boolean upgradeEncoding(String encodedPassword) {
+        if (encodedPassword == null) {
+            return false;
+        }
+
+        Matcher matcher = BCRYPT_PATTERN.matcher(encodedPassword);
+
+        if (!matcher.matches()) {
+            return false;
+        }
+
+        return Integer.parseInt(matcher.group(1)) != strength;
+    }
+
+    public int getStrength() {
+        return strength;
+    }
+}
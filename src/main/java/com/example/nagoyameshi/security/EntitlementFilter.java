@@ -0,0 +1,72 @@
+package com.example.nagoyameshi.security;
+
+import java.io.IOException;
+
+import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
+import org.springframework.security.core.Authentication;
+import org.springframework.security.core.context.SecurityContext;
+import org.springframework.security.core.context.SecurityContextHolder;
+import org.springframework.security.web.context.HttpSessionSecurityContextRepository;
+import org.springframework.web.filter.OncePerRequestFilter;
+
+import com.example.nagoyameshi.entity.User;
+import com.example.nagoyameshi.service.EntitlementService;
+import com.example.nagoyameshi.service.EntitlementService.Entitlement;
+
+import jakarta.servlet.FilterChain;
+import jakarta.servlet.ServletException;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import jakarta.servlet.http.HttpSession;
+
+// リクエストごとにセッションの認証情報のバージョンを確認し、他のセッションやサーバーでユーザーが更新されていれば差し替える
+public class EntitlementFilter extends OncePerRequestFilter {
+    private final EntitlementService entitlementService;
+
+    public EntitlementFilter(EntitlementService entitlementService) {
+        this.entitlementService = entitlementService;
+    }
+
+    @Override
+    protected void doFilterInternal(HttpServletRequest request, HttpServletResponse response, FilterChain filterChain)
+            throws ServletException, IOException
+    {
+        Authentication authentication = SecurityContextHolder.getContext().getAuthentication();
+
+        if (authentication != null && authentication.getPrincipal() instanceof UserDetailsImpl userDetailsImpl) {
+            Entitlement entitlement = entitlementService.getEntitlement(userDetailsImpl.getUserId());
+
+            if (entitlement == null || !entitlement.enabled()) {
+                // ユーザーが削除または無効化されている場合はログアウトさせる
+                SecurityContextHolder.clearContext();
+                HttpSession httpSession = request.getSession(false);
+
+                if (httpSession != null) {
+                    httpSession.invalidate();
+                }
+            } else if (!entitlement.version().equals(userDetailsImpl.getVersion())) {
+                // ロール以外の変更（氏名やメールアドレスなど）も反映するため、ユーザーを読み込み直して認証情報を作り直す
+                User user = entitlementService.findUser(userDetailsImpl.getUserId());
+
+                if (user != null) {
+                    UserDetailsImpl refreshedUserDetailsImpl = new UserDetailsImpl(user);
+                    refreshedUserDetailsImpl.eraseCredentials();
+                    Authentication refreshedAuthentication = new UsernamePasswordAuthenticationToken(refreshedUserDetailsImpl,
+                            null, refreshedUserDetailsImpl.getAuthorities());
+
+                    SecurityContext securityContext = SecurityContextHolder.createEmptyContext();
+                    securityContext.setAuthentication(refreshedAuthentication);
+                    SecurityContextHolder.setContext(securityContext);
+
+                    HttpSession httpSession = request.getSession(false);
+
+                    if (httpSession != null) {
+                        httpSession.setAttribute(HttpSessionSecurityContextRepository.SPRING_SECURITY_CONTEXT_KEY, securityContext);
+                    }
+                }
+            }
+        }
+
+        filterChain.doFilter(request, response);
+    }
+}
@@ -0,0 +1,134 @@
+package com.example.nagoyameshi.security;
+
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import jakarta.annotation.PreDestroy;
+
+// パスワードのハッシュ化と照合を、リクエストスレッドとは別の上限付きスレッドプールで実行する
+// BCryptは割り込みに応答しないため、タイムアウトした処理も実行中であれば最後まで（1件あたり数十〜数百ms）スレッドを占有する
+// そのため最悪の待ち時間はおよそ (queue-capacity / pool-size + 1) × 1件の処理時間となり、これがtimeout-msを超えない値にqueue-capacityを設定する
+@Component
+public class PasswordHashingExecutor {
+    private final ThreadPoolExecutor threadPoolExecutor;
+    private final long timeoutMillis;
+
+    private final LongAdder completedCount = new LongAdder();
+    private final LongAdder rejectedCount = new LongAdder();
+    private final LongAdder totalNanos = new LongAdder();
+    private final AtomicInteger threadNumber = new AtomicInteger();
+    private final AtomicLong maxNanos = new AtomicLong();
+
+    public PasswordHashingExecutor(@Value("${password-hashing.pool-size:#{T(java.lang.Runtime).getRuntime().availableProcessors()}}") int poolSize,
+                                   @Value("${password-hashing.queue-capacity:100}") int queueCapacity,
+                                   @Value("${password-hashing.timeout-ms:5000}") long timeoutMillis)
+    {
+        ThreadFactory threadFactory = runnable -> {
+            Thread thread = new Thread(runnable, "password-hashing-" + threadNumber.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        };
+
+        // キューが満杯になった場合は呼び出し元のスレッドで実行せずに拒否する
+        this.threadPoolExecutor = new ThreadPoolExecutor(poolSize, poolSize, 0L, TimeUnit.MILLISECONDS,
+                                                         new ArrayBlockingQueue<>(queueCapacity), threadFactory,
+                                                         new ThreadPoolExecutor.AbortPolicy());
+        this.timeoutMillis = timeoutMillis;
+    }
+
+    // 処理をスレッドプールで実行し、結果を待って返す（混雑時はPasswordHashingRejectedExceptionをスローする）
+    public <T> T execute(Callable<T> task) {
+        Future<T> future;
+
+        try {
+            future = threadPoolExecutor.submit(() -> {
+                long startedAt = System.nanoTime();
+
+                try {
+                    return task.call();
+                } finally {
+                    record(System.nanoTime() - startedAt);
+                }
+            });
+        } catch (RejectedExecutionException e) {
+            rejectedCount.increment();
+            throw new PasswordHashingRejectedException("パスワードの処理が混雑しています。", e);
+        }
+
+        try {
+            return future.get(timeoutMillis, TimeUnit.MILLISECONDS);
+        } catch (TimeoutException e) {
+            // 実行待ちの処理はキューから取り除いて枠を空ける（実行中の処理は止められないため完了を待たずに拒否する）
+            future.cancel(false);
+            threadPoolExecutor.remove((Runnable) future);
+            rejectedCount.increment();
+            throw new PasswordHashingRejectedException("パスワードの処理がタイムアウトしました。", e);
+        } catch (InterruptedException e) {
+            future.cancel(false);
+            threadPoolExecutor.remove((Runnable) future);
+            Thread.currentThread().interrupt();
+            throw new PasswordHashingRejectedException("パスワードの処理が中断されました。", e);
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof RuntimeException runtimeException) {
+                throw runtimeException;
+            }
+
+            throw new IllegalStateException(e.getCause());
+        }
+    }
+
+    private void record(long elapsedNanos) {
+        completedCount.increment();
+        totalNanos.add(elapsedNanos);
+        maxNanos.accumulateAndGet(elapsedNanos, Math::max);
+    }
+
+    // 処理が完了した件数を返す
+    public long getCompletedCount() {
+        return completedCount.sum();
+    }
+
+    // 混雑またはタイムアウトにより拒否した件数を返す
+    public long getRejectedCount() {
+        return rejectedCount.sum();
+    }
+
+    // 1件あたりの平均処理時間（ミリ秒）を返す
+    public double getAverageMillis() {
+        long count = completedCount.sum();
+        return count == 0 ? 0 : totalNanos.sum() / (double) count / 1_000_000;
+    }
+
+    // 最長の処理時間（ミリ秒）を返す
+    public double getMaxMillis() {
+        return maxNanos.get() / 1_000_000.0;
+    }
+
+    // 実行待ちの件数を返す
+    public int getQueueSize() {
+        return threadPoolExecutor.getQueue().size();
+    }
+
+    // 実行中の件数を返す
+    public int getActiveCount() {
+        return threadPoolExecutor.getActiveCount();
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        threadPoolExecutor.shutdown();
+    }
+}
@@ -0,0 +1,10 @@
+package com.example.nagoyameshi.security;
+
+import org.springframework.security.authentication.AuthenticationServiceException;
+
+// パスワードの処理が混雑などにより受け付けられなかった場合の例外（ログイン時は認証失敗として扱われる）
+public class PasswordHashingRejectedException extends AuthenticationServiceException {
+    public PasswordHashingRejectedException(String message, Throwable cause) {
+        super(message, cause);
+    }
+}
@@ -1,41 +1,76 @@
 package com.example.nagoyameshi.security;
 
 import java.util.Collection;
+import java.util.List;
 
+import org.springframework.security.core.CredentialsContainer;
 import org.springframework.security.core.GrantedAuthority;
+import org.springframework.security.core.authority.SimpleGrantedAuthority;
 import org.springframework.security.core.userdetails.UserDetails;
 
 import com.example.nagoyameshi.entity.User;
 
-public class UserDetailsImpl implements UserDetails {
-    private final User user;
-    private final Collection<GrantedAuthority> authorities;
+// セッションに保存される認証済みユーザーの情報（エンティティは保持せず、必要最小限の値のみを持つ）
+public class UserDetailsImpl implements UserDetails, CredentialsContainer {
+    private static final long serialVersionUID = 1L;
 
-    public UserDetailsImpl(User user, Collection<GrantedAuthority> authorities) {
-        this.user = user;
-        this.authorities = authorities;
+    private final Integer userId;
+    private final String email;
+    private final String name;
+    private final String roleName;
+    private final Integer version;
+    private final boolean enabled;
+    private String password;
+
+    public UserDetailsImpl(User user) {
+        this.userId = user.getId();
+        this.email = user.getEmail();
+        this.name = user.getName();
+        this.roleName = user.getRole().getName();
+        this.version = user.getVersion();
+        this.enabled = Boolean.TRUE.equals(user.getEnabled());
+        this.password = user.getPassword();
+    }
+
+    public Integer getUserId() {
+        return userId;
     }
 
-    public User getUser() {
-        return user;
+    public String getName() {
+        return name;
     }
 
-    // ハッシュ化済みのパスワードを返す
+    public String getRoleName() {
+        return roleName;
+    }
+
+    // ユーザー情報の更新のたびに変わるバージョン（セッションの情報が古いかどうかの判定に利用する）
+    public Integer getVersion() {
+        return version;
+    }
+
+    // ハッシュ化済みのパスワードを返す（認証後は消去されるためnullとなる）
     @Override
     public String getPassword() {
-        return user.getPassword();
+        return password;
+    }
+
+    // 認証後にハッシュ化済みのパスワードを消去する（セッションに保存しないようにするため）
+    @Override
+    public void eraseCredentials() {
+        password = null;
     }
 
     // ログイン時に利用するユーザー名（メールアドレス）を返す
     @Override
     public String getUsername() {
-        return user.getEmail();
+        return email;
     }
 
-    // ロールのコレクションを返す
+    // ロールのコレクションを返す（セッションを小さく保つため、ロール名から都度生成する）
     @Override
     public Collection<? extends GrantedAuthority> getAuthorities() {
-        return authorities;
+        return List.of(new SimpleGrantedAuthority(roleName));
     }
 
     // アカウントが期限切れでなければtrueを返す
@@ -59,7 +94,6 @@ public class UserDetailsImpl implements UserDetails {
     // ユーザーが有効であればtrueを返す
     @Override
     public boolean isEnabled() {
-        return user.getEnabled();
+        return enabled;
     }
 }
-
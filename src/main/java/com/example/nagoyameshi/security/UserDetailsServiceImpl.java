@@ -1,37 +1,47 @@
 package com.example.nagoyameshi.security;
 
-import java.util.ArrayList;
-import java.util.Collection;
-
-import org.springframework.security.core.GrantedAuthority;
-import org.springframework.security.core.authority.SimpleGrantedAuthority;
 import org.springframework.security.core.userdetails.UserDetails;
+import org.springframework.security.core.userdetails.UserDetailsPasswordService;
 import org.springframework.security.core.userdetails.UserDetailsService;
 import org.springframework.security.core.userdetails.UsernameNotFoundException;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
 
 import com.example.nagoyameshi.entity.User;
 import com.example.nagoyameshi.repository.UserRepository;
+import com.example.nagoyameshi.service.EntitlementService;
 
 @Service
-public class UserDetailsServiceImpl implements UserDetailsService {
+public class UserDetailsServiceImpl implements UserDetailsService, UserDetailsPasswordService {
     private final UserRepository userRepository;
+    private final EntitlementService entitlementService;
 
-    public UserDetailsServiceImpl(UserRepository userRepository) {
+    public UserDetailsServiceImpl(UserRepository userRepository, EntitlementService entitlementService) {
         this.userRepository = userRepository;
+        this.entitlementService = entitlementService;
     }
 
     @Override
     public UserDetails loadUserByUsername(String email) throws UsernameNotFoundException {
         try {
             User user = userRepository.findByEmail(email);
-            String userRoleName = user.getRole().getName();
-            Collection<GrantedAuthority> authorities = new ArrayList<>();
-            authorities.add(new SimpleGrantedAuthority(userRoleName));
-            return new UserDetailsImpl(user, authorities);
+            return new UserDetailsImpl(user);
         } catch (Exception e) {
             throw new UsernameNotFoundException("ユーザーが見つかりませんでした。");
         }
     }
-}
 
+    // ログイン成功時、保存されているハッシュのコストが設定値と異なる場合に新しいハッシュで更新する
+    @Override
+    @Transactional
+    public UserDetails updatePassword(UserDetails userDetails, String newPassword) {
+        User user = userRepository.findByEmail(userDetails.getUsername());
+        user.setPassword(newPassword);
+
+        // バージョンが上がるため、他のサーバーにも変更を通知する
+        User savedUser = userRepository.saveAndFlush(user);
+        entitlementService.recordChange(savedUser);
+
+        return new UserDetailsImpl(savedUser);
+    }
+}
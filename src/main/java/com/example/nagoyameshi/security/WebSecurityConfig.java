@@ -1,21 +1,28 @@
 package com.example.nagoyameshi.security;
 
+import java.util.Map;
+
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
 import org.springframework.security.config.annotation.method.configuration.EnableMethodSecurity;
 import org.springframework.security.config.annotation.web.builders.HttpSecurity;
 import org.springframework.security.config.annotation.web.configuration.EnableWebSecurity;
-import org.springframework.security.crypto.bcrypt.BCryptPasswordEncoder;
 import org.springframework.security.crypto.password.PasswordEncoder;
 import org.springframework.security.web.SecurityFilterChain;
+import org.springframework.security.web.access.intercept.AuthorizationFilter;
+import org.springframework.security.web.authentication.ExceptionMappingAuthenticationFailureHandler;
+
+import com.example.nagoyameshi.service.EntitlementService;
 
 @Configuration
 @EnableWebSecurity
 @EnableMethodSecurity
 public class WebSecurityConfig {
     @Bean
-    public SecurityFilterChain securityFilterChain(HttpSecurity http) throws Exception {
+    public SecurityFilterChain securityFilterChain(HttpSecurity http, EntitlementService entitlementService) throws Exception {
         http
+                .addFilterBefore(new EntitlementFilter(entitlementService), AuthorizationFilter.class) // ロールの変更をセッションに反映する
                 .authorizeHttpRequests((requests) -> requests
                         .requestMatchers("/css/**", "/images/**", "/js/**", "/storage/**", "/", "/signup/**")
                         .permitAll() // すべてのユーザーにアクセスを許可するURL
@@ -36,7 +43,7 @@ public class WebSecurityConfig {
                         .loginPage("/login") // ログインページのURL
                         .loginProcessingUrl("/login") // ログインフォームの送信先URL
                         .defaultSuccessUrl("/?loggedIn") // ログイン成功時のリダイレクト先URL
-                        .failureUrl("/login?error") // ログイン失敗時のリダイレクト先URL
+                        .failureHandler(authenticationFailureHandler()) // ログイン失敗時の処理
                         .permitAll())
                 .logout((logout) -> logout
                         .logoutSuccessUrl("/?loggedOut") // ログアウト時のリダイレクト先URL
@@ -45,8 +52,17 @@ public class WebSecurityConfig {
         return http.build();
     }
 
+    // ログイン失敗時のリダイレクト先URL（パスワードの処理が混雑している場合は別のメッセージを表示する）
+    private ExceptionMappingAuthenticationFailureHandler authenticationFailureHandler() {
+        ExceptionMappingAuthenticationFailureHandler failureHandler = new ExceptionMappingAuthenticationFailureHandler();
+        failureHandler.setDefaultFailureUrl("/login?error");
+        failureHandler.setExceptionMappings(Map.of(PasswordHashingRejectedException.class.getName(), "/login?busy"));
+
+        return failureHandler;
+    }
+
     @Bean
-    public PasswordEncoder passwordEncoder() {
-        return new BCryptPasswordEncoder();
+    public PasswordEncoder passwordEncoder(@Value("${password-hashing.strength:10}") int strength, PasswordHashingExecutor passwordHashingExecutor) {
+        return new AdaptivePasswordEncoder(strength, passwordHashingExecutor);
     }
 }
@@ -0,0 +1,455 @@
+package com.example.nagoyameshi.service;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import javax.sql.DataSource;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.event.TransactionalEventListener;
+
+import com.example.nagoyameshi.event.RestaurantChangedEvent;
+
+// 検索ボックスの入力候補（店舗名・カテゴリ名・住所から取り出したエリア名）を、配列で表現したトライ木から返す
+// トライ木はバックグラウンドで作成して丸ごと差し替えるため、入力のたびにデータベースにはアクセスしない
+@Service
+public class AutocompleteService {
+    private static final Logger logger = LoggerFactory.getLogger(AutocompleteService.class);
+    // 住所から「市（郡）」「区（町・村）」「町名」を取り出す（都道府県は除く）
+    private static final Pattern AREA_PATTERN = Pattern.compile("^(?:東京都|北海道|大阪府|京都府|.{2,3}県)?([^0-9０-９X]+?[市郡])?([^0-9０-９X]+?[区町村])?([^0-9０-９X\\-－]+)?");
+    private static final Map<String, String> ROMAJI = createRomajiTable();
+
+    private final JdbcTemplate jdbcTemplate;
+    private final int maxSuggestions;
+    private final long maxAgeMillis;
+
+    private volatile Snapshot snapshot;
+    private volatile boolean dirty = true;
+
+    // 入力候補の種類（restaurant、category、area）、表示名、店舗id（店舗の場合のみ）
+    public record Suggestion(String type, String label, Integer restaurantId) {
+    }
+
+    // 子ノードは親ノードごとに文字の昇順で連続して並べ、二分探索で辿る
+    // 各ノードには、そのノードを接頭辞とするキーを持つ入力候補のうち人気の高いものを上位maxSuggestions件まで保持する
+    private record Snapshot(char[] labels,
+                            int[] firstChildren,
+                            int[] childCounts,
+                            int[] suggestionOffsets,
+                            int[] suggestionIndexes,
+                            Suggestion[] suggestions,
+                            long builtAt)
+    {
+    }
+
+    private record Candidate(Suggestion suggestion, long popularity, Set<String> keys) {
+    }
+
+    private static class Node {
+        private final TreeMap<Character, Node> children = new TreeMap<>();
+        private final List<Integer> candidateIndexes = new ArrayList<>();
+    }
+
+    public AutocompleteService(DataSource dataSource,
+                               @Value("${autocomplete.max-suggestions:10}") int maxSuggestions,
+                               @Value("${autocomplete.max-age-ms:600000}") long maxAgeMillis)
+    {
+        this.jdbcTemplate = new JdbcTemplate(dataSource);
+        this.maxSuggestions = maxSuggestions;
+        this.maxAgeMillis = maxAgeMillis;
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void onApplicationReady() {
+        rebuild();
+    }
+
+    // 店舗が作成・更新・削除された場合は、次回の定期実行で作り直す
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onRestaurantChanged(RestaurantChangedEvent restaurantChangedEvent) {
+        dirty = true;
+    }
+
+    // 店舗が変更された場合、または人気やカテゴリの変更を反映するため一定時間が経過した場合にトライ木を作り直す
+    @Scheduled(fixedDelayString = "${autocomplete.refresh-interval-ms:5000}", initialDelayString = "${autocomplete.refresh-interval-ms:5000}")
+    public void refresh() {
+        Snapshot currentSnapshot = snapshot;
+
+        if (dirty || currentSnapshot == null || System.currentTimeMillis() - currentSnapshot.builtAt() > maxAgeMillis) {
+            rebuild();
+        }
+    }
+
+    public synchronized void rebuild() {
+        long startedAt = System.currentTimeMillis();
+        dirty = false;
+
+        List<Candidate> candidates = findCandidates();
+        // 人気の高い順に登録し、各ノードには先に登録された入力候補から上位の件数分だけを保持する
+        candidates.sort(Comparator.comparingLong(Candidate::popularity).reversed().thenComparing(candidate -> candidate.suggestion().label()));
+
+        Node root = new Node();
+
+        for (int i = 0; i < candidates.size(); i++) {
+            for (String key : candidates.get(i).keys()) {
+                Node node = root;
+
+                for (int j = 0; j < key.length(); j++) {
+                    node = node.children.computeIfAbsent(key.charAt(j), c -> new Node());
+                    List<Integer> candidateIndexes = node.candidateIndexes;
+
+                    if (candidateIndexes.size() < maxSuggestions && !candidateIndexes.contains(i)) {
+                        candidateIndexes.add(i);
+                    }
+                }
+            }
+        }
+
+        snapshot = flatten(root, candidates, startedAt);
+        logger.info("{}件の入力候補からトライ木を作成しました（{}ノード、{}ms）", candidates.size(), snapshot.labels().length, System.currentTimeMillis() - startedAt);
+    }
+
+    // 入力された文字列を接頭辞とする入力候補を、人気の高い順に最大limit件返す
+    public List<Suggestion> suggest(String query, int limit) {
+        Snapshot currentSnapshot = snapshot;
+        String key = SearchKeyNormalizer.normalize(query);
+
+        if (currentSnapshot == null || key == null || key.isEmpty()) {
+            return List.of();
+        }
+
+        int node = 0;
+
+        for (int i = 0; i < key.length() && node >= 0; i++) {
+            node = findChild(currentSnapshot, node, key.charAt(i));
+        }
+
+        if (node < 0) {
+            return List.of();
+        }
+
+        int from = currentSnapshot.suggestionOffsets()[node];
+        int to = Math.min(currentSnapshot.suggestionOffsets()[node + 1], from + limit);
+        List<Suggestion> suggestions = new ArrayList<>(to - from);
+
+        for (int i = from; i < to; i++) {
+            suggestions.add(currentSnapshot.suggestions()[currentSnapshot.suggestionIndexes()[i]]);
+        }
+
+        return suggestions;
+    }
+
+    private static int findChild(Snapshot snapshot, int node, char c) {
+        int low = snapshot.firstChildren()[node];
+        int high = low + snapshot.childCounts()[node] - 1;
+
+        while (low <= high) {
+            int middle = (low + high) >>> 1;
+            char label = snapshot.labels()[middle];
+
+            if (label < c) {
+                low = middle + 1;
+            } else if (label > c) {
+                high = middle - 1;
+            } else {
+                return middle;
+            }
+        }
+
+        return -1;
+    }
+
+    // 幅優先でノードに番号を振り、兄弟ノードが連続するように配列へ詰める（0番目は根）
+    private static Snapshot flatten(Node root, List<Candidate> candidates, long builtAt) {
+        List<Node> nodes = new ArrayList<>();
+        List<Character> labelList = new ArrayList<>();
+        ArrayDeque<Node> queue = new ArrayDeque<>();
+        nodes.add(root);
+        labelList.add('\0');
+        queue.add(root);
+
+        Map<Node, Integer> firstChildByNode = new HashMap<>();
+
+        while (!queue.isEmpty()) {
+            Node node = queue.poll();
+            firstChildByNode.put(node, nodes.size());
+
+            for (Map.Entry<Character, Node> child : node.children.entrySet()) {
+                nodes.add(child.getValue());
+                labelList.add(child.getKey());
+                queue.add(child.getValue());
+            }
+        }
+
+        int size = nodes.size();
+        char[] labels = new char[size];
+        int[] firstChildren = new int[size];
+        int[] childCounts = new int[size];
+        int[] suggestionOffsets = new int[size + 1];
+        int suggestionCount = 0;
+
+        for (int i = 0; i < size; i++) {
+            Node node = nodes.get(i);
+            labels[i] = labelList.get(i);
+            firstChildren[i] = firstChildByNode.get(node);
+            childCounts[i] = node.children.size();
+            suggestionOffsets[i] = suggestionCount;
+            suggestionCount += node.candidateIndexes.size();
+        }
+
+        suggestionOffsets[size] = suggestionCount;
+        int[] suggestionIndexes = new int[suggestionCount];
+
+        for (int i = 0; i < size; i++) {
+            List<Integer> candidateIndexes = nodes.get(i).candidateIndexes;
+
+            for (int j = 0; j < candidateIndexes.size(); j++) {
+                suggestionIndexes[suggestionOffsets[i] + j] = candidateIndexes.get(j);
+            }
+        }
+
+        Suggestion[] suggestions = candidates.stream().map(Candidate::suggestion).toArray(Suggestion[]::new);
+
+        return new Snapshot(labels, firstChildren, childCounts, suggestionOffsets, suggestionIndexes, suggestions, builtAt);
+    }
+
+    // 店舗・カテゴリ・エリアの入力候補と人気（予約数・お気に入り数・レビュー数の合計。カテゴリとエリアは含まれる店舗の合計）を取得する
+    private List<Candidate> findCandidates() {
+        List<Candidate> candidates = new ArrayList<>();
+        Map<Integer, Long> popularityByRestaurantId = new HashMap<>();
+        Map<String, Long> popularityByArea = new HashMap<>();
+
+        jdbcTemplate.query("SELECT r.id, r.name, r.address, " +
+                           "(SELECT COUNT(*) FROM reservations res WHERE res.restaurant_id = r.id) + " +
+                           "(SELECT COUNT(*) FROM favorites f WHERE f.restaurant_id = r.id) + " +
+                           "COALESCE(s.review_count, 0) AS popularity " +
+                           "FROM restaurants r LEFT JOIN restaurant_rating_summaries s ON s.restaurant_id = r.id " +
+                           "WHERE r.deleted_at IS NULL",
+                           resultSet -> {
+                               int restaurantId = resultSet.getInt("id");
+                               String name = resultSet.getString("name");
+                               long popularity = resultSet.getLong("popularity") + 1;
+
+                               popularityByRestaurantId.put(restaurantId, popularity);
+                               candidates.add(new Candidate(new Suggestion("restaurant", name, restaurantId), popularity, keysOf(name)));
+
+                               for (String area : extractAreas(resultSet.getString("address"))) {
+                                   popularityByArea.merge(area, popularity, Long::sum);
+                               }
+                           });
+
+        popularityByArea.forEach((area, popularity) -> {
+            Set<String> keys = new LinkedHashSet<>(keysOf(area));
+
+            // 「名古屋市中区栄」は「中区」「栄」からも引けるようにする
+            for (String part : splitArea(area)) {
+                keys.addAll(keysOf(part));
+            }
+
+            candidates.add(new Candidate(new Suggestion("area", area, null), popularity, keys));
+        });
+
+        Map<String, Long> popularityByCategory = new HashMap<>();
+
+        jdbcTemplate.query("SELECT c.name, cr.restaurant_id FROM categories c LEFT JOIN category_restaurant cr ON cr.category_id = c.id",
+                           resultSet -> {
+                               popularityByCategory.merge(resultSet.getString("name"), popularityByRestaurantId.getOrDefault(resultSet.getInt("restaurant_id"), 0L), Long::sum);
+                           });
+
+        popularityByCategory.forEach((category, popularity) -> {
+            candidates.add(new Candidate(new Suggestion("category", category, null), popularity, keysOf(category)));
+        });
+
+        return candidates;
+    }
+
+    // 表示名から検索用のキーを作成する
+    // 空白で区切った各語と、語の中で文字の種類（漢字・ひらがな・カタカナ・英数字）が切り替わる位置からも引けるようにし、
+    // カナと英数字のみのキーにはローマ字のキーも加える
+    static Set<String> keysOf(String label) {
+        Set<String> keys = new LinkedHashSet<>();
+
+        if (label == null) {
+            return keys;
+        }
+
+        addKey(keys, SearchKeyNormalizer.normalize(label));
+
+        for (String word : label.split("[\\s　]+")) {
+            String key = SearchKeyNormalizer.normalize(word);
+            Character.UnicodeScript previousScript = null;
+
+            for (int i = 0; i < key.length(); i++) {
+                Character.UnicodeScript script = Character.UnicodeScript.of(key.charAt(i));
+
+                // 長音記号などの共通の文字は直前の文字と同じ種類とみなす
+                if (script == Character.UnicodeScript.COMMON && previousScript != null) {
+                    continue;
+                }
+
+                if (script != previousScript) {
+                    addKey(keys, key.substring(i));
+                    previousScript = script;
+                }
+            }
+        }
+
+        return keys;
+    }
+
+    private static void addKey(Set<String> keys, String key) {
+        if (key == null || key.isEmpty()) {
+            return;
+        }
+
+        keys.add(key);
+
+        String romaji = toRomaji(key);
+
+        if (romaji != null) {
+            keys.add(romaji);
+        }
+    }
+
+    // 住所からエリア名（「名古屋市」「名古屋市中区」「名古屋市中区栄」など）を取り出す
+    static List<String> extractAreas(String address) {
+        List<String> areas = new ArrayList<>();
+
+        if (address == null) {
+            return areas;
+        }
+
+        Matcher matcher = AREA_PATTERN.matcher(address);
+
+        if (matcher.find()) {
+            StringBuilder area = new StringBuilder();
+
+            for (int group = 1; group <= 3; group++) {
+                String part = matcher.group(group);
+
+                if (part != null && !part.isBlank()) {
+                    area.append(part.trim());
+                    areas.add(area.toString());
+                }
+            }
+        }
+
+        return areas;
+    }
+
+    private static List<String> splitArea(String area) {
+        List<String> parts = new ArrayList<>();
+        Matcher matcher = AREA_PATTERN.matcher(area);
+
+        if (matcher.find()) {
+            for (int group = 2; group <= 3; group++) {
+                if (matcher.group(group) != null) {
+                    parts.add(matcher.group(group));
+                }
+            }
+        }
+
+        return parts;
+    }
+
+    // カタカナ（SearchKeyNormalizerで正規化したもの）と英数字のみからなるキーをヘボン式のローマ字に変換する（変換できない文字を含む場合はnull）
+    static String toRomaji(String key) {
+        StringBuilder romaji = new StringBuilder(key.length() * 2);
+        boolean containsKana = false;
+        boolean doubleConsonant = false;
+
+        for (int i = 0; i < key.length(); i++) {
+            char c = key.charAt(i);
+
+            if ((c >= 'a' && c <= 'z') || (c >= '0' && c <= '9')) {
+                romaji.append(c);
+                continue;
+            }
+
+            containsKana = true;
+
+            if (c == 'ッ') {
+                doubleConsonant = true;
+                continue;
+            }
+
+            if (c == 'ー') {
+                continue;
+            }
+
+            String syllable = i + 1 < key.length() ? ROMAJI.get(key.substring(i, i + 2)) : null;
+
+            if (syllable != null) {
+                i++;
+            } else {
+                syllable = ROMAJI.get(String.valueOf(c));
+            }
+
+            if (syllable == null) {
+                return null;
+            }
+
+            if (doubleConsonant) {
+                romaji.append(syllable.startsWith("ch") ? 't' : syllable.charAt(0));
+                doubleConsonant = false;
+            }
+
+            romaji.append(syllable);
+        }
+
+        return containsKana ? romaji.toString() : null;
+    }
+
+    private static Map<String, String> createRomajiTable() {
+        String[] pairs = {
+            "ア", "a", "イ", "i", "ウ", "u", "エ", "e", "オ", "o",
+            "カ", "ka", "キ", "ki", "ク", "ku", "ケ", "ke", "コ", "ko",
+            "サ", "sa", "シ", "shi", "ス", "su", "セ", "se", "ソ", "so",
+            "タ", "ta", "チ", "chi", "ツ", "tsu", "テ", "te", "ト", "to",
+            "ナ", "na", "ニ", "ni", "ヌ", "nu", "ネ", "ne", "ノ", "no",
+            "ハ", "ha", "ヒ", "hi", "フ", "fu", "ヘ", "he", "ホ", "ho",
+            "マ", "ma", "ミ", "mi", "ム", "mu", "メ", "me", "モ", "mo",
+            "ヤ", "ya", "ユ", "yu", "ヨ", "yo",
+            "ラ", "ra", "リ", "ri", "ル", "ru", "レ", "re", "ロ", "ro",
+            "ワ", "wa", "ヲ", "wo", "ン", "n",
+            "ガ", "ga", "ギ", "gi", "グ", "gu", "ゲ", "ge", "ゴ", "go",
+            "ザ", "za", "ジ", "ji", "ズ", "zu", "ゼ", "ze", "ゾ", "zo",
+            "ダ", "da", "ヂ", "ji", "ヅ", "zu", "デ", "de", "ド", "do",
+            "バ", "ba", "ビ", "bi", "ブ", "bu", "ベ", "be", "ボ", "bo",
+            "パ", "pa", "ピ", "pi", "プ", "pu", "ペ", "pe", "ポ", "po",
+            "ヴ", "vu", "ァ", "a", "ィ", "i", "ゥ", "u", "ェ", "e", "ォ", "o",
+            "ャ", "ya", "ュ", "yu", "ョ", "yo", "ヮ", "wa",
+            "キャ", "kya", "キュ", "kyu", "キョ", "kyo", "シャ", "sha", "シュ", "shu", "ショ", "sho",
+            "チャ", "cha", "チュ", "chu", "チョ", "cho", "ニャ", "nya", "ニュ", "nyu", "ニョ", "nyo",
+            "ヒャ", "hya", "ヒュ", "hyu", "ヒョ", "hyo", "ミャ", "mya", "ミュ", "myu", "ミョ", "myo",
+            "リャ", "rya", "リュ", "ryu", "リョ", "ryo", "ギャ", "gya", "ギュ", "gyu", "ギョ", "gyo",
+            "ジャ", "ja", "ジュ", "ju", "ジョ", "jo", "ビャ", "bya", "ビュ", "byu", "ビョ", "byo",
+            "ピャ", "pya", "ピュ", "pyu", "ピョ", "pyo", "シェ", "she", "ジェ", "je", "チェ", "che",
+            "ティ", "ti", "ディ", "di", "ファ", "fa", "フィ", "fi", "フェ", "fe", "フォ", "fo",
+            "ヴァ", "va", "ヴィ", "vi", "ヴェ", "ve", "ヴォ", "vo"
+        };
+        Map<String, String> table = new HashMap<>();
+
+        for (int i = 0; i < pairs.length; i += 2) {
+            table.put(pairs[i], pairs[i + 1]);
+        }
+
+        return Map.copyOf(table);
+    }
+}
@@ -22,6 +22,7 @@ public class CategoryRestaurantService {
     }
 
     // 指定した店舗のカテゴリのidをリスト形式で取得する
+    @Transactional(readOnly = true)
     public List<Integer> findCategoryIdsByRestaurantOrderByIdAsc(Restaurant restaurant) {
         return categoryRestaurantRepository.findCategoryIdsByRestaurantOrderByIdAsc(restaurant);
     }
@@ -7,7 +7,13 @@ import org.springframework.data.domain.Page;
 import org.springframework.data.domain.Pageable;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
 
+import com.example.nagoyameshi.cache.ListingResultCache;
+import com.example.nagoyameshi.cache.SingleFlightLoader;
+import com.example.nagoyameshi.cache.SingleFlightLoaderFactory;
+import com.example.nagoyameshi.datasource.DataSourceRouting;
 import com.example.nagoyameshi.entity.Category;
 import com.example.nagoyameshi.form.CategoryEditForm;
 import com.example.nagoyameshi.form.CategoryRegisterForm;
@@ -16,9 +22,18 @@ import com.example.nagoyameshi.repository.CategoryRepository;
 @Service
 public class CategoryService {
     private final CategoryRepository categoryRepository;
-
-    public CategoryService(CategoryRepository categoryRepository) {
+    private final ListingResultCache listingResultCache;
+    private final SingleFlightLoader<String, List<Category>> allCategoriesLoader;
+    private final SingleFlightLoader<String, Optional<Category>> categoryByNameLoader;
+
+    public CategoryService(CategoryRepository categoryRepository,
+                           ListingResultCache listingResultCache,
+                           SingleFlightLoaderFactory singleFlightLoaderFactory)
+    {
         this.categoryRepository = categoryRepository;
+        this.listingResultCache = listingResultCache;
+        this.allCategoriesLoader = singleFlightLoaderFactory.create("categories");
+        this.categoryByNameLoader = singleFlightLoaderFactory.create("category-by-name");
     }
 
     // すべてのカテゴリをページングされた状態で取得する
@@ -27,33 +42,37 @@ public class CategoryService {
     }
 
     // 指定されたキーワードをカテゴリ名に含むカテゴリを、ページングされた状態で取得する
+    @Transactional(readOnly = true)
     public Page<Category> findCategoriesByNameLike(String keyword, Pageable pageable) {
         return categoryRepository.findByNameLike("%" + keyword + "%", pageable);
     }
 
     // 指定したidを持つカテゴリを取得する
+    @Transactional(readOnly = true)
     public Optional<Category> findCategoryById(Integer id) {
         return categoryRepository.findById(id);
     }
 
     // カテゴリのレコード数を取得する
+    @Transactional(readOnly = true)
     public long countCategories() {
         return categoryRepository.count();
     }
 
     // idが最も大きいカテゴリを取得する
+    @Transactional(readOnly = true)
     public Category findFirstCategoryByOrderByIdDesc() {
         return categoryRepository.findFirstByOrderByIdDesc();
     }
 
-    // すべてのカテゴリをリスト形式で取得する
+    // すべてのカテゴリをリスト形式で取得する（同時に読み込みが発生した場合は1回にまとめ、しばらくの間は読み込んだカテゴリを使い回す）
     public List<Category> findAllCategories() {
-        return categoryRepository.findAll();
+        return allCategoriesLoader.get("all", key -> DataSourceRouting.onPrimary(categoryRepository::findAll));
     }
     
-    // 指定したカテゴリ名を持つ最初のカテゴリを取得する
+    // 指定したカテゴリ名を持つ最初のカテゴリを取得する（同時に読み込みが発生した場合は1回にまとめ、しばらくの間は読み込んだカテゴリを使い回す）
     public Category findFirstCategoryByName(String name) {
-        return categoryRepository.findFirstByName(name);
+        return categoryByNameLoader.get(name, key -> DataSourceRouting.onPrimary(() -> Optional.ofNullable(categoryRepository.findFirstByName(key)))).orElse(null);
     } 
     
     @Transactional
@@ -63,6 +82,7 @@ public class CategoryService {
         category.setName(categoryRegisterForm.getName());
 
         categoryRepository.save(category);
+        evictCachedCategories();
     }
 
     @Transactional
@@ -70,11 +90,32 @@ public class CategoryService {
         category.setName(categoryEditForm.getName());
 
         categoryRepository.save(category);
+        // カテゴリ名はキーワード検索の対象のため、店舗一覧の検索結果を無効にする
+        listingResultCache.invalidateRestaurants(List.of(category.getId()));
+        evictCachedCategories();
     }
 
     @Transactional
     public void deleteCategory(Category category) {
         categoryRepository.delete(category);
+        listingResultCache.invalidateRestaurants(List.of(category.getId()));
+        evictCachedCategories();
+    }
+
+    // 使い回しているカテゴリを破棄する（トランザクション内であればコミット後に破棄する）
+    private void evictCachedCategories() {
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    allCategoriesLoader.invalidateAll();
+                    categoryByNameLoader.invalidateAll();
+                }
+            });
+        } else {
+            allCategoriesLoader.invalidateAll();
+            categoryByNameLoader.invalidateAll();
+        }
     }
 }
 
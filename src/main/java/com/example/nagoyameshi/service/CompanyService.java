@@ -16,6 +16,7 @@ public class CompanyService {
     }
 
     // idが最も大きい会社概要を取得する
+    @Transactional(readOnly = true)
     public Company findFirstCompanyByOrderByIdDesc() {
         return companyRepository.findFirstByOrderByIdDesc();
     }
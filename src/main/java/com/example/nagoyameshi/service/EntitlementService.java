@@ -0,0 +1,139 @@
+package com.example.nagoyameshi.service;
+
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import com.example.nagoyameshi.entity.EntitlementChange;
+import com.example.nagoyameshi.entity.User;
+import com.example.nagoyameshi.repository.EntitlementChangeRepository;
+import com.example.nagoyameshi.repository.UserRepository;
+
+import jakarta.annotation.PostConstruct;
+
+// ユーザーごとのロールとバージョンをメモリ上に保持し、変更履歴テーブルのポーリングで他のサーバーの変更を反映する
+@Service
+public class EntitlementService {
+    private static final long POLL_OVERLAP = 100L;
+
+    private final UserRepository userRepository;
+    private final EntitlementChangeRepository entitlementChangeRepository;
+    private final Map<Integer, Entitlement> entitlements = new ConcurrentHashMap<>();
+    private final int maxSize;
+    private volatile long lastChangeId;
+
+    public record Entitlement(Integer version, String roleName, boolean enabled) {
+    }
+
+    public EntitlementService(UserRepository userRepository,
+                              EntitlementChangeRepository entitlementChangeRepository,
+                              @Value("${entitlement.cache-max-size:100000}") int maxSize)
+    {
+        this.userRepository = userRepository;
+        this.entitlementChangeRepository = entitlementChangeRepository;
+        this.maxSize = maxSize;
+    }
+
+    // 起動時点までの変更履歴は読み飛ばす（キャッシュは空の状態から始まるため）
+    @PostConstruct
+    private void init() {
+        EntitlementChange latestChange = entitlementChangeRepository.findFirstByOrderByIdDesc();
+        lastChangeId = latestChange != null ? latestChange.getId() : 0L;
+    }
+
+    // 指定したidを持つユーザーの現在のロールとバージョンを返す（キャッシュにない場合のみデータベースから読み込む）
+    public Entitlement getEntitlement(Integer userId) {
+        Entitlement entitlement = entitlements.get(userId);
+
+        if (entitlement != null) {
+            return entitlement;
+        }
+
+        User user = userRepository.findById(userId).orElse(null);
+
+        if (user == null) {
+            return null;
+        }
+
+        entitlement = toEntitlement(user);
+
+        // 上限を超えた場合はすべて破棄する（次のリクエストから必要な分だけ読み込み直される）
+        if (entitlements.size() >= maxSize) {
+            entitlements.clear();
+        }
+
+        entitlements.put(userId, entitlement);
+
+        return entitlement;
+    }
+
+    // セッションの認証情報を差し替えるため、指定したidを持つユーザーを最新の状態で読み込む
+    @Transactional(readOnly = true)
+    public User findUser(Integer userId) {
+        return userRepository.findById(userId).orElse(null);
+    }
+
+    // ユーザーのロールなどが変更されたことを記録し、他のサーバーにも通知する（呼び出し元のトランザクション内で実行する）
+    @Transactional
+    public void recordChange(User user) {
+        EntitlementChange entitlementChange = new EntitlementChange();
+        entitlementChange.setUserId(user.getId());
+        entitlementChange.setVersion(user.getVersion());
+        entitlementChangeRepository.save(entitlementChange);
+
+        // コミットされた場合のみ自サーバーのキャッシュを更新する
+        Entitlement entitlement = toEntitlement(user);
+
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    entitlements.put(user.getId(), entitlement);
+                }
+            });
+        } else {
+            entitlements.put(user.getId(), entitlement);
+        }
+    }
+
+    // 前回以降の変更履歴を取得し、該当するユーザーのキャッシュを破棄する
+    // （採番順とコミット順が前後する場合に備えて、直近の一定件数は毎回読み直す）
+    @Scheduled(fixedDelayString = "${entitlement.poll-interval-ms:2000}")
+    public void pollChanges() {
+        List<EntitlementChange> entitlementChanges;
+
+        do {
+            entitlementChanges = entitlementChangeRepository.findTop1000ByIdGreaterThanOrderByIdAsc(Math.max(0L, lastChangeId - POLL_OVERLAP));
+
+            for (EntitlementChange entitlementChange : entitlementChanges) {
+                Entitlement entitlement = entitlements.get(entitlementChange.getUserId());
+
+                if (entitlement != null && !entitlement.version().equals(entitlementChange.getVersion())) {
+                    entitlements.remove(entitlementChange.getUserId());
+                }
+
+                lastChangeId = entitlementChange.getId();
+            }
+        } while (entitlementChanges.size() == 1000);
+    }
+
+    // 全サーバーが読み終えた古い変更履歴を削除する
+    @Scheduled(cron = "${entitlement.purge-cron:0 0 4 * * *}")
+    @Transactional
+    public void purgeChanges() {
+        entitlementChangeRepository.deleteByCreatedAtBefore(Timestamp.valueOf(LocalDateTime.now().minusDays(1)));
+    }
+
+    private Entitlement toEntitlement(User user) {
+        return new Entitlement(user.getVersion(), user.getRole().getName(), Boolean.TRUE.equals(user.getEnabled()));
+    }
+}
@@ -0,0 +1,284 @@
+package com.example.nagoyameshi.service;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.UncheckedIOException;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.sql.ResultSet;
+import java.sql.ResultSetMetaData;
+import java.sql.SQLException;
+import java.sql.Timestamp;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+
+import javax.sql.DataSource;
+
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.ResultSetExtractor;
+import org.springframework.stereotype.Service;
+
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonGenerator;
+
+@Service
+public class ExportService {
+    // 一度に送出する行数ごとに出力をフラッシュする
+    private static final int FLUSH_INTERVAL = 1000;
+
+    private static final String RESERVATIONS_SQL =
+        "SELECT res.id, res.reserved_datetime, res.number_of_people, res.restaurant_id, r.name AS restaurant_name, " +
+        "res.user_id, res.created_at, res.updated_at " +
+        "FROM reservations res " +
+        "INNER JOIN restaurants r ON r.id = res.restaurant_id";
+
+    private static final String USERS_SQL =
+        "SELECT u.id, u.name, u.furigana, u.postal_code, u.address, u.phone_number, u.birthday, u.occupation, u.email, " +
+        "ro.name AS role, u.enabled, u.created_at, u.updated_at " +
+        "FROM users u " +
+        "INNER JOIN roles ro ON ro.id = u.role_id";
+
+    private static final String REVIEWS_SQL =
+        "SELECT rev.id, rev.restaurant_id, r.name AS restaurant_name, rev.user_id, rev.score, rev.content, " +
+        "rev.created_at, rev.updated_at " +
+        "FROM reviews rev " +
+        "INNER JOIN restaurants r ON r.id = rev.restaurant_id";
+
+    public enum Format {
+        CSV("text/csv", "csv"),
+        NDJSON("application/x-ndjson", "ndjson");
+
+        private final String contentType;
+        private final String extension;
+
+        Format(String contentType, String extension) {
+            this.contentType = contentType;
+            this.extension = extension;
+        }
+
+        public String getContentType() {
+            return contentType;
+        }
+
+        public String getExtension() {
+            return extension;
+        }
+    }
+
+    private final JdbcTemplate streamingJdbcTemplate;
+    private final JsonFactory jsonFactory = new JsonFactory();
+
+    public ExportService(DataSource dataSource) {
+        // MySQLのドライバはfetchSizeにInteger.MIN_VALUEを指定した場合のみ結果セットを1行ずつストリーミングする
+        this.streamingJdbcTemplate = new JdbcTemplate(dataSource);
+        this.streamingJdbcTemplate.setFetchSize(Integer.MIN_VALUE);
+    }
+
+    // 予約データを指定した形式で出力する（予約日時と店舗で絞り込み可能）
+    public void exportReservations(LocalDate from, LocalDate to, Integer restaurantId, Format format, OutputStream outputStream) {
+        export(RESERVATIONS_SQL, "res.reserved_datetime", "res.restaurant_id", "res.id", from, to, restaurantId, format, outputStream);
+    }
+
+    // 会員データを指定した形式で出力する（登録日時で絞り込み可能）
+    public void exportUsers(LocalDate from, LocalDate to, Format format, OutputStream outputStream) {
+        export(USERS_SQL, "u.created_at", null, "u.id", from, to, null, format, outputStream);
+    }
+
+    // レビューデータを指定した形式で出力する（投稿日時と店舗で絞り込み可能）
+    public void exportReviews(LocalDate from, LocalDate to, Integer restaurantId, Format format, OutputStream outputStream) {
+        export(REVIEWS_SQL, "rev.created_at", "rev.restaurant_id", "rev.id", from, to, restaurantId, format, outputStream);
+    }
+
+    // トランザクションを開始せずにクエリを1本だけ発行し、結果セットを1行ずつ出力ストリームへ書き出す
+    private void export(String baseSql, String dateColumn, String restaurantColumn, String orderColumn,
+                        LocalDate from, LocalDate to, Integer restaurantId, Format format, OutputStream outputStream)
+    {
+        StringBuilder sql = new StringBuilder(baseSql);
+        List<Object> params = new ArrayList<>();
+        List<String> conditions = new ArrayList<>();
+
+        if (from != null) {
+            conditions.add(dateColumn + " >= ?");
+            params.add(Timestamp.valueOf(from.atStartOfDay()));
+        }
+
+        if (to != null) {
+            conditions.add(dateColumn + " < ?");
+            params.add(Timestamp.valueOf(to.plusDays(1).atStartOfDay()));
+        }
+
+        if (restaurantColumn != null && restaurantId != null) {
+            conditions.add(restaurantColumn + " = ?");
+            params.add(restaurantId);
+        }
+
+        if (!conditions.isEmpty()) {
+            sql.append(" WHERE ").append(String.join(" AND ", conditions));
+        }
+
+        sql.append(" ORDER BY ").append(orderColumn).append(" ASC");
+
+        Writer writer = new BufferedWriter(new OutputStreamWriter(outputStream, StandardCharsets.UTF_8));
+        RowWriter rowWriter = format == Format.NDJSON ? new NdjsonRowWriter(writer) : new CsvRowWriter(writer);
+
+        streamingJdbcTemplate.query(sql.toString(), rowWriter, params.toArray());
+
+        try {
+            rowWriter.finish();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    // 結果セットの行を1行ずつ書き出す処理の共通部分（0件の場合もヘッダーは出力する）
+    private abstract static class RowWriter implements ResultSetExtractor<Void> {
+        protected final Writer writer;
+        protected String[] columnNames;
+
+        RowWriter(Writer writer) {
+            this.writer = writer;
+        }
+
+        @Override
+        public Void extractData(ResultSet resultSet) throws SQLException {
+            try {
+                ResultSetMetaData metaData = resultSet.getMetaData();
+                columnNames = new String[metaData.getColumnCount()];
+
+                for (int i = 0; i < columnNames.length; i++) {
+                    columnNames[i] = metaData.getColumnLabel(i + 1);
+                }
+
+                writeHeader();
+
+                long rowCount = 0;
+
+                while (resultSet.next()) {
+                    writeRow(resultSet);
+
+                    if (++rowCount % FLUSH_INTERVAL == 0) {
+                        writer.flush();
+                    }
+                }
+            } catch (IOException e) {
+                // クライアントが接続を切断した場合などはクエリを中断する
+                throw new UncheckedIOException(e);
+            }
+
+            return null;
+        }
+
+        void finish() throws IOException {
+            writer.flush();
+        }
+
+        abstract void writeHeader() throws IOException;
+
+        abstract void writeRow(ResultSet resultSet) throws SQLException, IOException;
+    }
+
+    private static class CsvRowWriter extends RowWriter {
+        CsvRowWriter(Writer writer) {
+            super(writer);
+        }
+
+        @Override
+        void writeHeader() throws IOException {
+            // Excelで開いた際に文字化けしないようにBOMを付与する
+            writer.write('\uFEFF');
+
+            for (int i = 0; i < columnNames.length; i++) {
+                if (i > 0) {
+                    writer.write(',');
+                }
+                writeValue(columnNames[i]);
+            }
+
+            writer.write("\r\n");
+        }
+
+        @Override
+        void writeRow(ResultSet resultSet) throws SQLException, IOException {
+            for (int i = 0; i < columnNames.length; i++) {
+                if (i > 0) {
+                    writer.write(',');
+                }
+
+                Object value = resultSet.getObject(i + 1);
+
+                if (value != null) {
+                    writeValue(value.toString());
+                }
+            }
+
+            writer.write("\r\n");
+        }
+
+        private void writeValue(String value) throws IOException {
+            if (value.indexOf(',') < 0 && value.indexOf('"') < 0 && value.indexOf('\n') < 0 && value.indexOf('\r') < 0) {
+                writer.write(value);
+                return;
+            }
+
+            writer.write('"');
+            writer.write(value.replace("\"", "\"\""));
+            writer.write('"');
+        }
+    }
+
+    private class NdjsonRowWriter extends RowWriter {
+        private final JsonGenerator jsonGenerator;
+
+        NdjsonRowWriter(Writer writer) {
+            super(writer);
+
+            try {
+                this.jsonGenerator = jsonFactory.createGenerator(writer);
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+
+            // 1行ごとのflushで下位のストリームまでフラッシュしないようにする
+            this.jsonGenerator.configure(JsonGenerator.Feature.AUTO_CLOSE_TARGET, false);
+            this.jsonGenerator.configure(JsonGenerator.Feature.FLUSH_PASSED_TO_STREAM, false);
+            this.jsonGenerator.setRootValueSeparator(null);
+        }
+
+        @Override
+        void writeHeader() {
+        }
+
+        @Override
+        void writeRow(ResultSet resultSet) throws SQLException, IOException {
+            jsonGenerator.writeStartObject();
+
+            for (int i = 0; i < columnNames.length; i++) {
+                Object value = resultSet.getObject(i + 1);
+                jsonGenerator.writeFieldName(columnNames[i]);
+
+                if (value == null) {
+                    jsonGenerator.writeNull();
+                } else if (value instanceof Number number) {
+                    jsonGenerator.writeNumber(number.toString());
+                } else if (value instanceof Boolean bool) {
+                    jsonGenerator.writeBoolean(bool);
+                } else {
+                    jsonGenerator.writeString(value.toString());
+                }
+            }
+
+            jsonGenerator.writeEndObject();
+            jsonGenerator.flush();
+            writer.write('\n');
+        }
+
+        @Override
+        void finish() throws IOException {
+            jsonGenerator.flush();
+            super.finish();
+        }
+    }
+}
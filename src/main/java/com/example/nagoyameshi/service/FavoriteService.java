@@ -1,63 +1,195 @@
 package com.example.nagoyameshi.service;
 
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.List;
 import java.util.Optional;
+import java.util.Set;
+import java.util.TreeSet;
 
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.Pageable;
+import org.springframework.scheduling.annotation.Scheduled;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
 
+import com.example.nagoyameshi.cache.FavoriteCache;
+import com.example.nagoyameshi.cache.IntIntHashMap;
 import com.example.nagoyameshi.entity.Favorite;
+import com.example.nagoyameshi.entity.FavoriteChange;
 import com.example.nagoyameshi.entity.Restaurant;
 import com.example.nagoyameshi.entity.User;
+import com.example.nagoyameshi.repository.FavoriteChangeRepository;
 import com.example.nagoyameshi.repository.FavoriteRepository;
+import com.example.nagoyameshi.repository.FavoriteRepository.FavoriteListItem;
 
+import jakarta.annotation.PostConstruct;
+
+// お気に入りの追加と解除は変更履歴テーブルに記録し、ポーリングで他のサーバーのFavoriteCacheからも該当するユーザーを破棄する
 @Service
 public class FavoriteService {
+    private static final long POLL_OVERLAP = 100L;
+
     private final FavoriteRepository favoriteRepository;
+    private final FavoriteChangeRepository favoriteChangeRepository;
+    private final FavoriteCache favoriteCache;
+    // 直近の一定件数を読み直す際に、同じ変更履歴で何度も破棄しないよう処理済みのidを保持する
+    private final TreeSet<Long> polledChangeIds = new TreeSet<>();
+    private volatile long lastChangeId;
 
-    public FavoriteService(FavoriteRepository favoriteRepository) {
+    public FavoriteService(FavoriteRepository favoriteRepository, FavoriteChangeRepository favoriteChangeRepository, FavoriteCache favoriteCache) {
         this.favoriteRepository = favoriteRepository;
+        this.favoriteChangeRepository = favoriteChangeRepository;
+        this.favoriteCache = favoriteCache;
+    }
+
+    // 起動時点までの変更履歴は読み飛ばす（キャッシュは空の状態から始まるため）
+    @PostConstruct
+    private void init() {
+        FavoriteChange latestChange = favoriteChangeRepository.findFirstByOrderByIdDesc();
+        lastChangeId = latestChange != null ? latestChange.getId() : 0L;
     }
 
     // 指定したidを持つお気に入りを取得する
+    @Transactional(readOnly = true)
     public Optional<Favorite> findFavoriteById(Integer id) {
         return favoriteRepository.findById(id);
     }
 
     // 指定した店舗とユーザーが紐づいたお気に入りを取得する
+    @Transactional(readOnly = true)
     public Favorite findFavoriteByRestaurantAndUser(Restaurant restaurant, User user) {
         return favoriteRepository.findByRestaurantAndUser(restaurant, user);
     }
 
-    // 指定したユーザーのすべてのお気に入りを作成日時が新しい順に並べ替え、ページングされた状態で取得する
-    public Page<Favorite> findFavoritesByUserOrderByCreatedAtDesc(User user, Pageable pageable) {
-        return favoriteRepository.findByUserOrderByCreatedAtDesc(user, pageable);
+    // 指定したユーザーのすべてのお気に入りを作成日時が新しい順に並べ替え、一覧ページに表示する列のみページングされた状態で取得する
+    @Transactional(readOnly = true)
+    public Page<FavoriteListItem> findFavoritesByUserOrderByCreatedAtDesc(User user, Pageable pageable) {
+        return favoriteRepository.findListItemsByUserIdOrderByCreatedAtDesc(user.getId(), pageable);
     }
 
     // お気に入りのレコード数を取得する
+    @Transactional(readOnly = true)
     public long countFavorites() {
         return favoriteRepository.count();
     }
 
+    // 他のサーバーで追加済みのお気に入りはキャッシュに反映される前に再度追加されることがあるため、既存の行があればそれを使う
     @Transactional
     public void createFavorite(Restaurant restaurant, User user) {
-        Favorite favorite = new Favorite();
+        Favorite favorite = favoriteRepository.findByRestaurantAndUser(restaurant, user);
+        int userId = user.getId();
+        int restaurantId = restaurant.getId();
 
-        favorite.setRestaurant(restaurant);
-        favorite.setUser(user);
+        if (favorite == null) {
+            favorite = new Favorite();
 
-        favoriteRepository.save(favorite);
+            favorite.setRestaurant(restaurant);
+            favorite.setUser(user);
+
+            favorite = favoriteRepository.save(favorite);
+            recordChange(userId);
+        }
+
+        int favoriteId = favorite.getId();
+
+        afterCommit(() -> favoriteCache.put(userId, restaurantId, favoriteId));
     }
 
     @Transactional
     public void deleteFavorite(Favorite favorite) {
         favoriteRepository.delete(favorite);
+        int userId = favorite.getUser().getId();
+        int restaurantId = favorite.getRestaurant().getId();
+
+        recordChange(userId);
+        afterCommit(() -> favoriteCache.remove(userId, restaurantId));
+    }
+
+    // 前回以降の変更履歴を取得し、該当するユーザーのキャッシュを破棄する
+    // （採番順とコミット順が前後する場合に備えて、直近の一定件数は毎回読み直す）
+    @Scheduled(fixedDelayString = "${favorite-cache.poll-interval-ms:2000}")
+    public synchronized void pollChanges() {
+        List<FavoriteChange> favoriteChanges;
+
+        do {
+            favoriteChanges = favoriteChangeRepository.findTop1000ByIdGreaterThanOrderByIdAsc(Math.max(0L, lastChangeId - POLL_OVERLAP));
+
+            for (FavoriteChange favoriteChange : favoriteChanges) {
+                if (polledChangeIds.add(favoriteChange.getId())) {
+                    favoriteCache.evict(favoriteChange.getUserId());
+                }
+
+                lastChangeId = Math.max(lastChangeId, favoriteChange.getId());
+            }
+
+            polledChangeIds.headSet(lastChangeId - POLL_OVERLAP, true).clear();
+        } while (favoriteChanges.size() == 1000);
+    }
+
+    // 全サーバーが読み終えた古い変更履歴を削除する
+    @Scheduled(cron = "${favorite-cache.purge-cron:0 10 4 * * *}")
+    @Transactional
+    public void purgeChanges() {
+        favoriteChangeRepository.deleteByCreatedAtBefore(Timestamp.valueOf(LocalDateTime.now().minusDays(1)));
     }
 
     // 指定したユーザーが指定した店舗をすでにお気に入りに追加済みかどうかをチェックする
     public boolean isFavorite(Restaurant restaurant, User user) {
-        return favoriteRepository.findByRestaurantAndUser(restaurant, user) != null;
+        return getFavorites(user.getId()).containsKey(restaurant.getId());
+    }
+
+    // 指定したユーザーが指定した店舗をお気に入りに追加済みであればお気に入りのidを、そうでなければnullを返す
+    @Transactional(readOnly = true)
+    public Integer findFavoriteIdByRestaurantIdAndUserId(Integer restaurantId, Integer userId) {
+        int favoriteId = getFavorites(userId).get(restaurantId);
+        return favoriteId != FavoriteCache.NOT_FAVORITE ? favoriteId : null;
+    }
+
+    // 指定した店舗のうち、指定したユーザーがお気に入りに追加済みの店舗のidを返す（一覧ページでの一括判定用）
+    public Set<Integer> isFavorite(Integer userId, Collection<Integer> restaurantIds) {
+        IntIntHashMap favorites = getFavorites(userId);
+        Set<Integer> favoriteRestaurantIds = new HashSet<>();
+
+        for (Integer restaurantId : restaurantIds) {
+            if (favorites.containsKey(restaurantId)) {
+                favoriteRestaurantIds.add(restaurantId);
+            }
+        }
+
+        return favoriteRestaurantIds;
+    }
+
+    // お気に入りが変更されたことを記録する（呼び出し元のトランザクション内で実行する）
+    private void recordChange(Integer userId) {
+        FavoriteChange favoriteChange = new FavoriteChange();
+        favoriteChange.setUserId(userId);
+        favoriteChangeRepository.save(favoriteChange);
+    }
+
+    private IntIntHashMap getFavorites(Integer userId) {
+        return favoriteCache.get(userId, id -> {
+            List<Object[]> rows = favoriteRepository.findRestaurantIdAndIdByUserId(id);
+            return rows.stream().map(row -> new int[] { (Integer) row[0], (Integer) row[1] }).toList();
+        });
+    }
+
+    // トランザクション内であればコミット後に実行する（ロールバックされた追加や解除をキャッシュに反映しないため）
+    private static void afterCommit(Runnable runnable) {
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    runnable.run();
+                }
+            });
+        } else {
+            runnable.run();
+        }
     }
 }
 
@@ -0,0 +1,198 @@
+package com.example.nagoyameshi.service;
+
+import java.time.LocalDateTime;
+import java.time.LocalTime;
+import java.time.ZoneId;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import javax.sql.DataSource;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.event.TransactionalEventListener;
+
+import com.example.nagoyameshi.event.RestaurantChangedEvent;
+
+// 店舗の営業時間と定休日を、1週間を15分ごとの枠（7日×96枠）に分けたビットマップに変換してメモリ上に保持する
+// 「営業中」「指定した曜日・時刻に営業している」「深夜まで営業している」の絞り込みをビット演算のみで行う
+// 曜日はregular_holidays.day_indexと同じく日曜日を0、土曜日を6とする
+@Service
+public class OpeningHoursIndexService {
+    private static final Logger logger = LoggerFactory.getLogger(OpeningHoursIndexService.class);
+    private static final int MINUTES_PER_SLOT = 15;
+    private static final int SLOTS_PER_DAY = 24 * 60 / MINUTES_PER_SLOT;
+    private static final int SLOTS_PER_WEEK = SLOTS_PER_DAY * 7;
+    private static final int WORDS_PER_RESTAURANT = (SLOTS_PER_WEEK + 63) / 64;
+    // この時刻以降に営業している店舗を深夜営業とみなす
+    private static final LocalTime LATE_NIGHT_START = LocalTime.of(22, 0);
+
+    private final JdbcTemplate jdbcTemplate;
+    private final ZoneId zoneId;
+
+    // 店舗idを添字としたビットマップ（未登録の店舗はnull）。更新時は配列ごと差し替えるため、読み込み側はロック不要
+    private volatile long[][] bitmaps = new long[0][];
+
+    private record OpeningHours(int restaurantId, LocalTime openingTime, LocalTime closingTime) {
+    }
+
+    public OpeningHoursIndexService(DataSource dataSource, @Value("${opening-hours.zone:Asia/Tokyo}") String zoneId) {
+        this.jdbcTemplate = new JdbcTemplate(dataSource);
+        this.zoneId = ZoneId.of(zoneId);
+    }
+
+    // 起動時にすべての店舗のビットマップを作成する
+    @EventListener(ApplicationReadyEvent.class)
+    public synchronized void onApplicationReady() {
+        Map<Integer, Integer> holidayMasks = findHolidayMasks(null);
+        List<OpeningHours> openingHoursList = findOpeningHours(null);
+        int maxRestaurantId = openingHoursList.stream().mapToInt(OpeningHours::restaurantId).max().orElse(0);
+        long[][] newBitmaps = new long[maxRestaurantId + 1][];
+
+        for (OpeningHours openingHours : openingHoursList) {
+            newBitmaps[openingHours.restaurantId()] = compile(openingHours.openingTime(), openingHours.closingTime(), holidayMasks.getOrDefault(openingHours.restaurantId(), 0));
+        }
+
+        bitmaps = newBitmaps;
+        logger.info("{}件の店舗の営業時間のビットマップを作成しました", openingHoursList.size());
+    }
+
+    // 店舗の作成・更新（営業時間・定休日の変更を含む）・削除をコミット後に反映する
+    @TransactionalEventListener(fallbackExecution = true)
+    public synchronized void onRestaurantChanged(RestaurantChangedEvent restaurantChangedEvent) {
+        int restaurantId = restaurantChangedEvent.getRestaurantId();
+        long[] bitmap = null;
+
+        if (!restaurantChangedEvent.isDeleted()) {
+            List<OpeningHours> openingHoursList = findOpeningHours(restaurantId);
+
+            if (!openingHoursList.isEmpty()) {
+                OpeningHours openingHours = openingHoursList.get(0);
+                bitmap = compile(openingHours.openingTime(), openingHours.closingTime(), findHolidayMasks(restaurantId).getOrDefault(restaurantId, 0));
+            }
+        }
+
+        long[][] newBitmaps = Arrays.copyOf(bitmaps, Math.max(bitmaps.length, restaurantId + 1));
+        newBitmaps[restaurantId] = bitmap;
+        bitmaps = newBitmaps;
+    }
+
+    // 現在営業している店舗のidを返す
+    public BitSet findOpenNowRestaurantIds() {
+        LocalDateTime now = LocalDateTime.now(zoneId);
+
+        return findOpenRestaurantIds(now.getDayOfWeek().getValue() % 7, now.toLocalTime());
+    }
+
+    // 指定した曜日・時刻に営業している店舗のidを返す
+    public BitSet findOpenRestaurantIds(int dayIndex, LocalTime time) {
+        long[] mask = new long[WORDS_PER_RESTAURANT];
+        setSlot(mask, dayIndex * SLOTS_PER_DAY + time.toSecondOfDay() / 60 / MINUTES_PER_SLOT);
+
+        return findRestaurantIdsMatching(mask);
+    }
+
+    // 本日、深夜（22時以降）に営業している店舗のidを返す
+    public BitSet findOpenLateRestaurantIds() {
+        int dayIndex = LocalDateTime.now(zoneId).getDayOfWeek().getValue() % 7;
+        long[] mask = new long[WORDS_PER_RESTAURANT];
+
+        for (int slot = LATE_NIGHT_START.toSecondOfDay() / 60 / MINUTES_PER_SLOT; slot < SLOTS_PER_DAY; slot++) {
+            setSlot(mask, dayIndex * SLOTS_PER_DAY + slot);
+        }
+
+        return findRestaurantIdsMatching(mask);
+    }
+
+    // マスクと1ビットでも重なるビットマップを持つ店舗のidを返す
+    private BitSet findRestaurantIdsMatching(long[] mask) {
+        long[][] currentBitmaps = bitmaps;
+        BitSet restaurantIds = new BitSet(currentBitmaps.length);
+
+        for (int restaurantId = 0; restaurantId < currentBitmaps.length; restaurantId++) {
+            long[] bitmap = currentBitmaps[restaurantId];
+
+            if (bitmap == null) {
+                continue;
+            }
+
+            for (int i = 0; i < WORDS_PER_RESTAURANT; i++) {
+                if ((bitmap[i] & mask[i]) != 0) {
+                    restaurantIds.set(restaurantId);
+                    break;
+                }
+            }
+        }
+
+        return restaurantIds;
+    }
+
+    // 営業時間と定休日（day_indexのビットを立てた値）から1週間分のビットマップを作成する
+    // 閉店時刻が開店時刻以前の場合は翌日の閉店時刻まで営業するものとし、定休日の前日から続く深夜の営業は定休日にも含める
+    static long[] compile(LocalTime openingTime, LocalTime closingTime, int holidayMask) {
+        long[] bitmap = new long[WORDS_PER_RESTAURANT];
+        int openingMinutes = openingTime.toSecondOfDay() / 60;
+        int closingMinutes = closingTime.toSecondOfDay() / 60;
+
+        if (closingMinutes <= openingMinutes) {
+            closingMinutes += 24 * 60;
+        }
+
+        // 枠の途中で開店・閉店する場合は、その枠を営業時間に含めない
+        int startSlot = (openingMinutes + MINUTES_PER_SLOT - 1) / MINUTES_PER_SLOT;
+        int endSlot = closingMinutes / MINUTES_PER_SLOT;
+
+        for (int dayIndex = 0; dayIndex < 7; dayIndex++) {
+            if ((holidayMask & (1 << dayIndex)) != 0) {
+                continue;
+            }
+
+            for (int slot = startSlot; slot < endSlot; slot++) {
+                setSlot(bitmap, (dayIndex * SLOTS_PER_DAY + slot) % SLOTS_PER_WEEK);
+            }
+        }
+
+        return bitmap;
+    }
+
+    private static void setSlot(long[] bitmap, int slot) {
+        bitmap[slot >>> 6] |= 1L << (slot & 63);
+    }
+
+    // 店舗の営業時間を取得する（restaurantIdがnullの場合はすべての店舗）
+    private List<OpeningHours> findOpeningHours(Integer restaurantId) {
+        String condition = restaurantId == null ? "" : " AND id = ?";
+        Object[] args = restaurantId == null ? new Object[0] : new Object[] { restaurantId };
+
+        return jdbcTemplate.query("SELECT id, opening_time, closing_time FROM restaurants WHERE opening_time IS NOT NULL AND closing_time IS NOT NULL AND deleted_at IS NULL" + condition,
+                                  (resultSet, rowNum) -> new OpeningHours(resultSet.getInt("id"),
+                                                                          resultSet.getObject("opening_time", LocalTime.class),
+                                                                          resultSet.getObject("closing_time", LocalTime.class)),
+                                  args);
+    }
+
+    // 店舗ごとの定休日をday_indexのビットを立てた値で取得する（restaurantIdがnullの場合はすべての店舗。不定休は含めない）
+    private Map<Integer, Integer> findHolidayMasks(Integer restaurantId) {
+        String condition = restaurantId == null ? "" : " AND rhr.restaurant_id = ?";
+        Object[] args = restaurantId == null ? new Object[0] : new Object[] { restaurantId };
+        Map<Integer, Integer> holidayMasks = new HashMap<>();
+
+        jdbcTemplate.query("SELECT rhr.restaurant_id, rh.day_index FROM regular_holiday_restaurant rhr " +
+                           "JOIN regular_holidays rh ON rh.id = rhr.regular_holiday_id " +
+                           "WHERE rh.day_index IS NOT NULL" + condition,
+                           resultSet -> {
+                               holidayMasks.merge(resultSet.getInt("restaurant_id"), 1 << resultSet.getInt("day_index"), (a, b) -> a | b);
+                           },
+                           args);
+
+        return holidayMasks;
+    }
+}
@@ -0,0 +1,103 @@
+package com.example.nagoyameshi.service;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.io.Resource;
+import org.springframework.stereotype.Component;
+
+// 同梱の郵便番号データから、郵便番号に対応するおおよその緯度・経度を求める
+// 郵便番号は昇順に並べたint配列で保持し、二分探索で引く（完全に一致しない場合は上3桁の地域の中心を返す）
+@Component
+public class PostalCodeGazetteer {
+    private final int[] postalCodes;
+    private final float[] latitudes;
+    private final float[] longitudes;
+
+    // 緯度と経度の組み合わせ
+    public record Coordinates(double latitude, double longitude) {
+    }
+
+    public PostalCodeGazetteer(@Value("${gazetteer.location:classpath:gazetteer/postal-codes.csv}") Resource resource) {
+        int[] codes = new int[1024];
+        float[] lats = new float[1024];
+        float[] lngs = new float[1024];
+        int size = 0;
+
+        try (BufferedReader reader = new BufferedReader(new InputStreamReader(resource.getInputStream(), StandardCharsets.UTF_8))) {
+            String line;
+
+            while ((line = reader.readLine()) != null) {
+                if (line.isBlank() || line.startsWith("#")) {
+                    continue;
+                }
+
+                String[] fields = line.split(",");
+
+                if (size == codes.length) {
+                    codes = Arrays.copyOf(codes, size * 2);
+                    lats = Arrays.copyOf(lats, size * 2);
+                    lngs = Arrays.copyOf(lngs, size * 2);
+                }
+
+                codes[size] = Integer.parseInt(fields[0].trim());
+                lats[size] = Float.parseFloat(fields[1].trim());
+                lngs[size] = Float.parseFloat(fields[2].trim());
+                size++;
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException("郵便番号データを読み込めませんでした。", e);
+        }
+
+        // 郵便番号の昇順に並べ替える
+        Integer[] order = new Integer[size];
+
+        for (int i = 0; i < size; i++) {
+            order[i] = i;
+        }
+
+        int[] unsortedCodes = codes;
+        Arrays.sort(order, (a, b) -> Integer.compare(unsortedCodes[a], unsortedCodes[b]));
+
+        this.postalCodes = new int[size];
+        this.latitudes = new float[size];
+        this.longitudes = new float[size];
+
+        for (int i = 0; i < size; i++) {
+            this.postalCodes[i] = codes[order[i]];
+            this.latitudes[i] = lats[order[i]];
+            this.longitudes[i] = lngs[order[i]];
+        }
+    }
+
+    // 指定した郵便番号（ハイフンの有無は問わない）の緯度・経度を返す（該当する地域がない場合はnull）
+    public Coordinates lookup(String postalCode) {
+        if (postalCode == null) {
+            return null;
+        }
+
+        String digits = postalCode.replace("-", "").trim();
+
+        if (!digits.matches("[0-9]{7}")) {
+            return null;
+        }
+
+        int code = Integer.parseInt(digits);
+        int index = Arrays.binarySearch(postalCodes, code);
+
+        if (index < 0) {
+            index = Arrays.binarySearch(postalCodes, code / 10000 * 10000);
+        }
+
+        if (index < 0) {
+            return null;
+        }
+
+        return new Coordinates(latitudes[index], longitudes[index]);
+    }
+}
@@ -0,0 +1,374 @@
+package com.example.nagoyameshi.service;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+
+import javax.sql.DataSource;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import com.example.nagoyameshi.cache.IntIntHashMap;
+
+// お気に入りと予約の履歴から店舗同士の共起行列を作り、店舗ごと・ユーザーごとのおすすめ店舗をメモリ上に保持する
+// 画面からの参照はスナップショットのキー検索のみで、計算はすべてバッチで行う
+@Service
+public class RecommendationService {
+    private static final Logger logger = LoggerFactory.getLogger(RecommendationService.class);
+    // 前回の実行中にコミットされた行を取りこぼさないよう、差分の抽出範囲を重複させる件数（同じ組み合わせは二重に数えない）
+    private static final long POLL_OVERLAP = 100L;
+    // 1つのタスクで処理するユーザー数（これを超える場合は分割する）
+    private static final int PARTITION_SIZE = 2048;
+
+    private final JdbcTemplate jdbcTemplate;
+    private final JdbcTemplate streamingJdbcTemplate;
+    private final int neighborCount;
+
+    // 以下はバッチの実行中のみ参照・更新する（synchronizedメソッドからのみアクセスする）
+    // ユーザーidごとの、お気に入りに追加または予約したことのある店舗id（値は常に1）
+    private Map<Integer, IntIntHashMap> itemsByUserId = new HashMap<>();
+    // 店舗idを添字とした、他の店舗との共起回数
+    private IntIntHashMap[] cooccurrences = new IntIntHashMap[0];
+    // 店舗idを添字とした、お気に入りに追加または予約したユーザー数
+    private int[] userCounts = new int[0];
+    private long lastFavoriteId;
+    private long lastReservationId;
+
+    private volatile Snapshot snapshot = new Snapshot(new int[0][], Map.of());
+
+    // 店舗idを添字とした類似店舗のid、ユーザーidごとのおすすめ店舗のid（いずれも類似度の高い順）
+    private record Snapshot(int[][] neighborsByRestaurantId, Map<Integer, int[]> recommendationsByUserId) {
+    }
+
+    public RecommendationService(DataSource dataSource, @Value("${recommendation.neighbor-count:6}") int neighborCount) {
+        this.jdbcTemplate = new JdbcTemplate(dataSource);
+        this.streamingJdbcTemplate = new JdbcTemplate(dataSource);
+        this.streamingJdbcTemplate.setFetchSize(Integer.MIN_VALUE);
+        this.neighborCount = neighborCount;
+    }
+
+    // 指定した店舗を好きな人が好きな店舗のidを類似度の高い順に返す
+    public int[] findSimilarRestaurantIds(int restaurantId) {
+        int[][] neighborsByRestaurantId = snapshot.neighborsByRestaurantId();
+
+        if (restaurantId <= 0 || restaurantId >= neighborsByRestaurantId.length || neighborsByRestaurantId[restaurantId] == null) {
+            return new int[0];
+        }
+
+        return neighborsByRestaurantId[restaurantId];
+    }
+
+    // 指定したユーザーへのおすすめ店舗のidをおすすめ度の高い順に返す（お気に入りや予約済みの店舗は除く）
+    public int[] findRecommendedRestaurantIds(int userId) {
+        return snapshot.recommendationsByUserId().getOrDefault(userId, new int[0]);
+    }
+
+    // 起動時にすべての履歴から構築する
+    @EventListener(ApplicationReadyEvent.class)
+    public void onApplicationReady() {
+        rebuild();
+    }
+
+    // お気に入りの解除や予約のキャンセル（削除）を反映するため、1日1回すべての履歴から構築し直す
+    @Scheduled(cron = "${recommendation.rebuild-cron:0 0 3 * * *}")
+    public synchronized void rebuild() {
+        long startedAt = System.currentTimeMillis();
+
+        lastFavoriteId = findMaxId("favorites");
+        lastReservationId = findMaxId("reservations");
+
+        Map<Integer, IntIntHashMap> newItemsByUserId = new HashMap<>();
+        loadInteractions(0L, 0L, (userId, restaurantId) -> {
+            newItemsByUserId.computeIfAbsent(userId, key -> new IntIntHashMap(8, 0)).put(restaurantId, 1);
+        });
+
+        // ユーザーを一定数ずつに分けて並列に共起回数を数え、結果を足し合わせる
+        int[][] itemsByUser = newItemsByUserId.values().stream().map(IntIntHashMap::keys).toArray(int[][]::new);
+        Partial partial = ForkJoinPool.commonPool().invoke(new CountTask(itemsByUser, 0, itemsByUser.length));
+
+        itemsByUserId = newItemsByUserId;
+        cooccurrences = partial.cooccurrences;
+        userCounts = partial.userCounts;
+
+        int[][] neighborsByRestaurantId = new int[cooccurrences.length][];
+
+        for (int restaurantId = 1; restaurantId < cooccurrences.length; restaurantId++) {
+            neighborsByRestaurantId[restaurantId] = computeNeighbors(restaurantId);
+        }
+
+        Map<Integer, int[]> recommendationsByUserId = new HashMap<>();
+        itemsByUserId.forEach((userId, items) -> recommendationsByUserId.put(userId, computeRecommendations(items, neighborsByRestaurantId)));
+
+        snapshot = new Snapshot(neighborsByRestaurantId, recommendationsByUserId);
+        logger.info("{}人分の履歴からおすすめ店舗を構築しました（{}ms）", itemsByUserId.size(), System.currentTimeMillis() - startedAt);
+    }
+
+    // 前回以降に追加されたお気に入りと予約を共起行列に加え、影響を受けた店舗とユーザーのみ計算し直す
+    @Scheduled(fixedDelayString = "${recommendation.interval-ms:60000}", initialDelayString = "${recommendation.interval-ms:60000}")
+    public synchronized void update() {
+        List<int[]> newInteractions = new ArrayList<>();
+
+        long maxFavoriteId = findMaxId("favorites");
+        long maxReservationId = findMaxId("reservations");
+        loadInteractions(Math.max(0L, lastFavoriteId - POLL_OVERLAP), Math.max(0L, lastReservationId - POLL_OVERLAP),
+                         (userId, restaurantId) -> newInteractions.add(new int[] { userId, restaurantId }));
+        lastFavoriteId = maxFavoriteId;
+        lastReservationId = maxReservationId;
+
+        IntIntHashMap changedRestaurantIds = new IntIntHashMap(16, 0);
+        IntIntHashMap changedUserIds = new IntIntHashMap(16, 0);
+
+        for (int[] interaction : newInteractions) {
+            int userId = interaction[0];
+            int restaurantId = interaction[1];
+            IntIntHashMap items = itemsByUserId.computeIfAbsent(userId, key -> new IntIntHashMap(8, 0));
+
+            // 同じユーザーと店舗の組み合わせは一度だけ数える
+            if (items.containsKey(restaurantId)) {
+                continue;
+            }
+
+            ensureCapacity(restaurantId);
+            userCounts[restaurantId]++;
+
+            for (int otherRestaurantId : items.keys()) {
+                increment(restaurantId, otherRestaurantId);
+                increment(otherRestaurantId, restaurantId);
+                changedRestaurantIds.put(otherRestaurantId, 1);
+            }
+
+            items.put(restaurantId, 1);
+            changedRestaurantIds.put(restaurantId, 1);
+            changedUserIds.put(userId, 1);
+        }
+
+        if (changedRestaurantIds.size() == 0) {
+            return;
+        }
+
+        Snapshot currentSnapshot = snapshot;
+        int[][] neighborsByRestaurantId = Arrays.copyOf(currentSnapshot.neighborsByRestaurantId(), cooccurrences.length);
+
+        for (int restaurantId : changedRestaurantIds.keys()) {
+            neighborsByRestaurantId[restaurantId] = computeNeighbors(restaurantId);
+        }
+
+        // 履歴が追加されたユーザーのおすすめのみ計算し直す（他のユーザーは次回の再構築で反映される）
+        Map<Integer, int[]> recommendationsByUserId = new HashMap<>(currentSnapshot.recommendationsByUserId());
+
+        for (int userId : changedUserIds.keys()) {
+            recommendationsByUserId.put(userId, computeRecommendations(itemsByUserId.get(userId), neighborsByRestaurantId));
+        }
+
+        snapshot = new Snapshot(neighborsByRestaurantId, recommendationsByUserId);
+    }
+
+    // コサイン類似度（共起回数 / √(それぞれのユーザー数の積)）の高い順に、上位の店舗を求める
+    private int[] computeNeighbors(int restaurantId) {
+        IntIntHashMap row = cooccurrences[restaurantId];
+
+        if (row == null || row.size() == 0) {
+            return new int[0];
+        }
+
+        PriorityQueue<double[]> heap = newHeap();
+
+        for (int otherRestaurantId : row.keys()) {
+            double similarity = row.get(otherRestaurantId) / Math.sqrt((double) userCounts[restaurantId] * userCounts[otherRestaurantId]);
+            offer(heap, otherRestaurantId, similarity);
+        }
+
+        return drain(heap);
+    }
+
+    // ユーザーの履歴にある店舗の類似店舗を、順位に応じた重みで足し合わせて上位の店舗を求める
+    private int[] computeRecommendations(IntIntHashMap items, int[][] neighborsByRestaurantId) {
+        Map<Integer, Double> scores = new HashMap<>();
+
+        for (int restaurantId : items.keys()) {
+            int[] neighbors = restaurantId < neighborsByRestaurantId.length && neighborsByRestaurantId[restaurantId] != null
+                    ? neighborsByRestaurantId[restaurantId] : new int[0];
+
+            for (int rank = 0; rank < neighbors.length; rank++) {
+                if (!items.containsKey(neighbors[rank])) {
+                    scores.merge(neighbors[rank], 1.0 / (rank + 1), Double::sum);
+                }
+            }
+        }
+
+        PriorityQueue<double[]> heap = newHeap();
+        scores.forEach((restaurantId, score) -> offer(heap, restaurantId, score));
+
+        return drain(heap);
+    }
+
+    // 上位neighborCount件のみを保持する
+    private void offer(PriorityQueue<double[]> heap, int restaurantId, double score) {
+        heap.offer(new double[] { restaurantId, score });
+
+        if (heap.size() > neighborCount) {
+            heap.poll();
+        }
+    }
+
+    // 先頭が最も順位の低い要素となるヒープ（値が同じ場合は店舗idの大きい方を低くする）
+    private PriorityQueue<double[]> newHeap() {
+        return new PriorityQueue<>(neighborCount + 1, (a, b) -> a[1] != b[1] ? Double.compare(a[1], b[1]) : Double.compare(b[0], a[0]));
+    }
+
+    private int[] drain(PriorityQueue<double[]> heap) {
+        int[] result = new int[heap.size()];
+
+        for (int i = result.length - 1; i >= 0; i--) {
+            result[i] = (int) heap.poll()[0];
+        }
+
+        return result;
+    }
+
+    private void increment(int restaurantId, int otherRestaurantId) {
+        if (cooccurrences[restaurantId] == null) {
+            cooccurrences[restaurantId] = new IntIntHashMap(8, 0);
+        }
+
+        cooccurrences[restaurantId].put(otherRestaurantId, cooccurrences[restaurantId].get(otherRestaurantId) + 1);
+    }
+
+    private void ensureCapacity(int restaurantId) {
+        if (restaurantId >= cooccurrences.length) {
+            int capacity = Math.max(cooccurrences.length * 2, restaurantId + 1);
+            cooccurrences = Arrays.copyOf(cooccurrences, capacity);
+            userCounts = Arrays.copyOf(userCounts, capacity);
+        }
+    }
+
+    private long findMaxId(String tableName) {
+        Long maxId = jdbcTemplate.queryForObject("SELECT MAX(id) FROM " + tableName, Long.class);
+
+        return maxId != null ? maxId : 0L;
+    }
+
+    // 指定したidより後のお気に入りと予約を1行ずつ読み込む
+    private void loadInteractions(long afterFavoriteId, long afterReservationId, InteractionHandler handler) {
+        streamingJdbcTemplate.query("SELECT user_id, restaurant_id FROM favorites WHERE id > ?",
+                                    resultSet -> {
+                                        handler.handle(resultSet.getInt("user_id"), resultSet.getInt("restaurant_id"));
+                                    },
+                                    afterFavoriteId);
+        streamingJdbcTemplate.query("SELECT user_id, restaurant_id FROM reservations WHERE id > ?",
+                                    resultSet -> {
+                                        handler.handle(resultSet.getInt("user_id"), resultSet.getInt("restaurant_id"));
+                                    },
+                                    afterReservationId);
+    }
+
+    private interface InteractionHandler {
+        void handle(int userId, int restaurantId);
+    }
+
+    // 一部のユーザーから数えた共起回数とユーザー数
+    private static class Partial {
+        private IntIntHashMap[] cooccurrences;
+        private int[] userCounts;
+
+        Partial(int capacity) {
+            this.cooccurrences = new IntIntHashMap[capacity];
+            this.userCounts = new int[capacity];
+        }
+
+        void ensureCapacity(int restaurantId) {
+            if (restaurantId >= cooccurrences.length) {
+                int capacity = Math.max(cooccurrences.length * 2, restaurantId + 1);
+                cooccurrences = Arrays.copyOf(cooccurrences, capacity);
+                userCounts = Arrays.copyOf(userCounts, capacity);
+            }
+        }
+
+        void add(int restaurantId, int otherRestaurantId, int count) {
+            if (cooccurrences[restaurantId] == null) {
+                cooccurrences[restaurantId] = new IntIntHashMap(8, 0);
+            }
+
+            cooccurrences[restaurantId].put(otherRestaurantId, cooccurrences[restaurantId].get(otherRestaurantId) + count);
+        }
+
+        // 他方の結果を足し合わせる
+        Partial merge(Partial other) {
+            for (int restaurantId = 1; restaurantId < other.cooccurrences.length; restaurantId++) {
+                if (other.userCounts[restaurantId] == 0) {
+                    continue;
+                }
+
+                ensureCapacity(restaurantId);
+                userCounts[restaurantId] += other.userCounts[restaurantId];
+                IntIntHashMap row = other.cooccurrences[restaurantId];
+
+                if (row != null) {
+                    for (int otherRestaurantId : row.keys()) {
+                        add(restaurantId, otherRestaurantId, row.get(otherRestaurantId));
+                    }
+                }
+            }
+
+            return this;
+        }
+    }
+
+    // ユーザーの範囲を半分ずつに分割して共起回数を数える
+    private static class CountTask extends RecursiveTask<Partial> {
+        private static final long serialVersionUID = 1L;
+
+        private final int[][] itemsByUser;
+        private final int from;
+        private final int to;
+
+        CountTask(int[][] itemsByUser, int from, int to) {
+            this.itemsByUser = itemsByUser;
+            this.from = from;
+            this.to = to;
+        }
+
+        @Override
+        protected Partial compute() {
+            if (to - from > PARTITION_SIZE) {
+                int middle = (from + to) >>> 1;
+                CountTask left = new CountTask(itemsByUser, from, middle);
+                left.fork();
+                Partial right = new CountTask(itemsByUser, middle, to).compute();
+
+                return left.join().merge(right);
+            }
+
+            Partial partial = new Partial(16);
+
+            for (int i = from; i < to; i++) {
+                int[] items = itemsByUser[i];
+
+                for (int restaurantId : items) {
+                    partial.ensureCapacity(restaurantId);
+                    partial.userCounts[restaurantId]++;
+
+                    for (int otherRestaurantId : items) {
+                        if (otherRestaurantId != restaurantId) {
+                            partial.add(restaurantId, otherRestaurantId, 1);
+                        }
+                    }
+                }
+            }
+
+            return partial;
+        }
+    }
+}
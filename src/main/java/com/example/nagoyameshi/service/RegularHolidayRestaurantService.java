@@ -22,6 +22,7 @@ public class RegularHolidayRestaurantService {
     }
 
     // 指定した店舗の定休日のidをリスト形式で取得する
+    @Transactional(readOnly = true)
     public List<Integer> findRegularHolidayIdsByRestaurant(Restaurant restaurant) {
         return regularHolidayRestaurantRepository.findRegularHolidayIdsByRestaurant(restaurant);
     }
@@ -4,6 +4,7 @@ import java.util.List;
 import java.util.Optional;
 
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
 
 import com.example.nagoyameshi.entity.RegularHoliday;
 import com.example.nagoyameshi.repository.RegularHolidayRepository;
@@ -17,11 +18,13 @@ public class RegularHolidayService {
     }
 
     // 指定したidを持つ定休日を取得する
+    @Transactional(readOnly = true)
     public Optional<RegularHoliday> findRegularHolidayById(Integer id) {
         return regularHolidayRepository.findById(id);
     }
 
     // すべての定休日をリスト形式で取得する
+    @Transactional(readOnly = true)
     public List<RegularHoliday> findAllRegularHolidays() {
         return regularHolidayRepository.findAll();
     }
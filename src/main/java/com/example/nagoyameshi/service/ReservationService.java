@@ -9,36 +9,49 @@ import org.springframework.data.domain.Pageable;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 
+import com.example.nagoyameshi.cache.ListingResultCache;
 import com.example.nagoyameshi.entity.Reservation;
 import com.example.nagoyameshi.entity.Restaurant;
 import com.example.nagoyameshi.entity.User;
 import com.example.nagoyameshi.form.ReservationRegisterForm;
 import com.example.nagoyameshi.repository.ReservationRepository;
+import com.example.nagoyameshi.repository.ReservationRepository.ReservationListItem;
 
 @Service
 public class ReservationService {
     private final ReservationRepository reservationRepository;
+    private final RestaurantActivityService restaurantActivityService;
+    private final ListingResultCache listingResultCache;
 
-    public ReservationService(ReservationRepository reservationRepository) {
+    public ReservationService(ReservationRepository reservationRepository,
+                              RestaurantActivityService restaurantActivityService,
+                              ListingResultCache listingResultCache)
+    {
         this.reservationRepository = reservationRepository;
+        this.restaurantActivityService = restaurantActivityService;
+        this.listingResultCache = listingResultCache;
     }
 
     // 指定したidを持つ予約を取得する
+    @Transactional(readOnly = true)
     public Optional<Reservation> findReservationById(Integer id) {
         return reservationRepository.findById(id);
     }
 
-    // 指定されたユーザーに紐づく予約を予約日時が新しい順（未来→過去）に並べ替え、ページングされた状態で取得する
-    public Page<Reservation> findReservationsByUserOrderByReservedDatetimeDesc(User user, Pageable pageable) {
-        return reservationRepository.findByUserOrderByReservedDatetimeDesc(user, pageable);
+    // 指定されたユーザーに紐づく予約を予約日時が新しい順（未来→過去）に並べ替え、一覧ページに表示する列のみページングされた状態で取得する
+    @Transactional(readOnly = true)
+    public Page<ReservationListItem> findReservationsByUserOrderByReservedDatetimeDesc(User user, Pageable pageable) {
+        return reservationRepository.findListItemsByUserIdOrderByReservedDatetimeDesc(user.getId(), pageable);
     }
 
     // 予約のレコード数を取得する
+    @Transactional(readOnly = true)
     public long countReservations() {
         return reservationRepository.count();
     }
 
     // idが最も大きい予約を取得する
+    @Transactional(readOnly = true)
     public Reservation findFirstReservationByOrderByIdDesc() {
         return reservationRepository.findFirstByOrderByIdDesc();
     }
@@ -54,11 +67,15 @@ public class ReservationService {
         reservation.setUser(user);
 
         reservationRepository.save(reservation);
+        restaurantActivityService.recordReservation(restaurant.getId());
+        // 予約数の多い順の一覧を無効にする
+        listingResultCache.invalidateOrder("popularDesc");
     }
 
     @Transactional
     public void deleteReservation(Reservation reservation) {
         reservationRepository.delete(reservation);
+        listingResultCache.invalidateOrder("popularDesc");
     }
 
     // 予約日時が現在よりも2時間以上後であればtrueを返す
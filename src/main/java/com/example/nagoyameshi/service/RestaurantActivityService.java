@@ -0,0 +1,258 @@
+package com.example.nagoyameshi.service;
+
+import java.sql.Timestamp;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+
+import javax.sql.DataSource;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import com.example.nagoyameshi.cache.IntIntHashMap;
+import com.example.nagoyameshi.cache.ListingResultCache;
+
+import jakarta.annotation.PreDestroy;
+
+// 店舗ごとの閲覧数と予約数を時間帯（バケット）ごとにメモリ上で数え、数秒ごとにまとめてrestaurant_activityに書き込む
+// また、直近のバケットをリングバッファに保持し、新しいほど重みの大きい注目度スコアを計算する
+@Service
+public class RestaurantActivityService {
+    private static final long BUCKET_MILLIS = 60 * 60 * 1000L;
+    private static final double RESERVATION_WEIGHT = 10.0;
+
+    private final JdbcTemplate jdbcTemplate;
+    private final RestaurantCatalogService restaurantCatalogService;
+    private final ListingResultCache listingResultCache;
+    private final int windowBuckets;
+    private final double decayPerBucket;
+
+    // 未書き込みのカウンタ（キーは店舗idとバケットの組み合わせ）
+    private final Map<CounterKey, Counter> counters = new ConcurrentHashMap<>();
+
+    // バケット番号（エポックからの時間数）を窓の大きさで割った余りを添字とするリングバッファ（refreshからのみ更新する）
+    private final Bucket[] ring;
+
+    private volatile Snapshot snapshot = new Snapshot(new int[0], Map.of());
+
+    private record CounterKey(int restaurantId, long bucket) {
+    }
+
+    // 閲覧数と予約数（書き込み済みの値を差し引いて書き込むため、途中の加算が失われない）
+    private static class Counter {
+        private final LongAdder views = new LongAdder();
+        private final LongAdder reservations = new LongAdder();
+        private long flushedViews;
+        private long flushedReservations;
+    }
+
+    // 書き込みに成功した後で、カウンタの書き込み済みの値として反映する値
+    private record PendingFlush(Counter counter, long views, long reservations) {
+    }
+
+    private record Bucket(long bucket, IntIntHashMap views, IntIntHashMap reservations) {
+    }
+
+    // 注目度の高い順に並べた店舗のidと、店舗idごとの注目度スコア
+    private record Snapshot(int[] rankedRestaurantIds, Map<Integer, Double> scores) {
+    }
+
+    public RestaurantActivityService(DataSource dataSource,
+                                     RestaurantCatalogService restaurantCatalogService,
+                                     ListingResultCache listingResultCache,
+                                     @Value("${trending.window-hours:24}") int windowBuckets,
+                                     @Value("${trending.half-life-hours:6}") double halfLifeBuckets)
+    {
+        this.jdbcTemplate = new JdbcTemplate(dataSource);
+        this.restaurantCatalogService = restaurantCatalogService;
+        this.listingResultCache = listingResultCache;
+        this.windowBuckets = windowBuckets;
+        this.decayPerBucket = Math.pow(0.5, 1.0 / halfLifeBuckets);
+        this.ring = new Bucket[windowBuckets];
+    }
+
+    // 店舗の詳細ページが表示されたことを記録する
+    public void recordView(int restaurantId) {
+        counter(restaurantId).views.increment();
+    }
+
+    // 予約が作成されたことを記録する（トランザクション内であればコミット後に記録する）
+    public void recordReservation(int restaurantId) {
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    counter(restaurantId).reservations.increment();
+                }
+            });
+        } else {
+            counter(restaurantId).reservations.increment();
+        }
+    }
+
+    private Counter counter(int restaurantId) {
+        return counters.computeIfAbsent(new CounterKey(restaurantId, currentBucket()), key -> new Counter());
+    }
+
+    // 前回以降に加算された分をまとめて書き込む
+    @Scheduled(fixedDelayString = "${activity.flush-interval-ms:5000}")
+    @PreDestroy
+    public synchronized void flush() {
+        long currentBucket = currentBucket();
+        List<Object[]> batchArgs = new ArrayList<>();
+        List<PendingFlush> pendingFlushes = new ArrayList<>();
+        Iterator<Map.Entry<CounterKey, Counter>> iterator = counters.entrySet().iterator();
+
+        while (iterator.hasNext()) {
+            Map.Entry<CounterKey, Counter> entry = iterator.next();
+            Counter counter = entry.getValue();
+            long views = counter.views.sum();
+            long reservations = counter.reservations.sum();
+            long viewDelta = views - counter.flushedViews;
+            long reservationDelta = reservations - counter.flushedReservations;
+
+            if (viewDelta > 0 || reservationDelta > 0) {
+                batchArgs.add(new Object[] { entry.getKey().restaurantId(), new Timestamp(entry.getKey().bucket() * BUCKET_MILLIS), viewDelta, reservationDelta });
+                pendingFlushes.add(new PendingFlush(counter, views, reservations));
+            } else if (entry.getKey().bucket() < currentBucket - 1) {
+                // 終了してから1バケット以上経過し、加算されなくなったカウンタは破棄する
+                iterator.remove();
+            }
+        }
+
+        if (!batchArgs.isEmpty()) {
+            jdbcTemplate.batchUpdate("INSERT INTO restaurant_activity (restaurant_id, bucket_start, view_count, reservation_count) VALUES (?, ?, ?, ?) " +
+                                     "ON DUPLICATE KEY UPDATE view_count = view_count + VALUES(view_count), reservation_count = reservation_count + VALUES(reservation_count)",
+                                     batchArgs);
+
+            // 書き込みに失敗した場合は書き込み済みの値を進めず、次回にまとめて書き込む
+            for (PendingFlush pendingFlush : pendingFlushes) {
+                pendingFlush.counter().flushedViews = pendingFlush.views();
+                pendingFlush.counter().flushedReservations = pendingFlush.reservations();
+            }
+        }
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void onApplicationReady() {
+        refresh();
+    }
+
+    // 他のサーバーの分も含めて書き込まれた値を読み込み、注目度スコアを計算し直す
+    // 終了したバケットは一度読み込めば変わらないため、読み込むのは現在と直前のバケット、およびリングバッファにないバケットのみとする
+    @Scheduled(fixedDelayString = "${trending.refresh-interval-ms:60000}", initialDelayString = "${trending.refresh-interval-ms:60000}")
+    public synchronized void refresh() {
+        long currentBucket = currentBucket();
+
+        for (long bucket = currentBucket - windowBuckets + 1; bucket <= currentBucket; bucket++) {
+            int index = (int) Math.floorMod(bucket, (long) windowBuckets);
+
+            if (ring[index] == null || ring[index].bucket() != bucket || bucket >= currentBucket - 1) {
+                ring[index] = loadBucket(bucket);
+            }
+        }
+
+        Map<Integer, Double> scores = new HashMap<>();
+
+        for (Bucket bucket : ring) {
+            double weight = Math.pow(decayPerBucket, currentBucket - bucket.bucket());
+
+            for (int restaurantId : bucket.views().keys()) {
+                scores.merge(restaurantId, weight * bucket.views().get(restaurantId), Double::sum);
+            }
+
+            for (int restaurantId : bucket.reservations().keys()) {
+                scores.merge(restaurantId, weight * RESERVATION_WEIGHT * bucket.reservations().get(restaurantId), Double::sum);
+            }
+        }
+
+        int[] rankedRestaurantIds = scores.entrySet().stream()
+                                          .sorted(Map.Entry.<Integer, Double>comparingByValue().reversed().thenComparing(Map.Entry.comparingByKey()))
+                                          .mapToInt(Map.Entry::getKey)
+                                          .toArray();
+
+        Snapshot previousSnapshot = snapshot;
+        snapshot = new Snapshot(rankedRestaurantIds, Map.copyOf(scores));
+
+        writeTrendingScores(previousSnapshot.scores(), scores);
+        restaurantCatalogService.replaceTrendingScores(scores);
+    }
+
+    // 並べ替えに使えるよう、値が変わった店舗のみrestaurants.trending_scoreに書き込む
+    private void writeTrendingScores(Map<Integer, Double> previousScores, Map<Integer, Double> scores) {
+        List<Object[]> batchArgs = new ArrayList<>();
+
+        scores.forEach((restaurantId, score) -> {
+            if (!score.equals(previousScores.get(restaurantId))) {
+                batchArgs.add(new Object[] { score, restaurantId });
+            }
+        });
+
+        // 窓から外れた店舗は0に戻す
+        previousScores.keySet().stream()
+                      .filter(restaurantId -> !scores.containsKey(restaurantId))
+                      .forEach(restaurantId -> batchArgs.add(new Object[] { 0.0, restaurantId }));
+
+        // 起動直後は前回の値が分からないため、窓から外れた店舗をまとめて0に戻す
+        if (previousScores.isEmpty()) {
+            jdbcTemplate.update("UPDATE restaurants SET trending_score = 0, updated_at = updated_at WHERE trending_score <> 0");
+        }
+
+        for (int i = 0; i < batchArgs.size(); i += 500) {
+            jdbcTemplate.batchUpdate("UPDATE restaurants SET trending_score = ?, updated_at = updated_at WHERE id = ?", batchArgs.subList(i, Math.min(i + 500, batchArgs.size())));
+        }
+
+        // 注目度順の一覧を無効にする
+        if (previousScores.isEmpty() || !batchArgs.isEmpty()) {
+            listingResultCache.invalidateOrder("trendingDesc");
+        }
+    }
+
+    private Bucket loadBucket(long bucket) {
+        IntIntHashMap views = new IntIntHashMap(16, 0);
+        IntIntHashMap reservations = new IntIntHashMap(16, 0);
+
+        jdbcTemplate.query("SELECT restaurant_id, view_count, reservation_count FROM restaurant_activity WHERE bucket_start = ?",
+                           resultSet -> {
+                               if (resultSet.getInt("view_count") > 0) {
+                                   views.put(resultSet.getInt("restaurant_id"), resultSet.getInt("view_count"));
+                               }
+
+                               if (resultSet.getInt("reservation_count") > 0) {
+                                   reservations.put(resultSet.getInt("restaurant_id"), resultSet.getInt("reservation_count"));
+                               }
+                           },
+                           new Timestamp(bucket * BUCKET_MILLIS));
+
+        return new Bucket(bucket, views, reservations);
+    }
+
+    // 注目度の高い順に、上位の店舗のidを返す
+    public int[] findTrendingRestaurantIds(int limit) {
+        int[] rankedRestaurantIds = snapshot.rankedRestaurantIds();
+
+        return Arrays.copyOf(rankedRestaurantIds, Math.min(limit, rankedRestaurantIds.length));
+    }
+
+    // 1週間より古い集計を削除する
+    @Scheduled(cron = "${activity.purge-cron:0 15 4 * * *}")
+    public void purge() {
+        jdbcTemplate.update("DELETE FROM restaurant_activity WHERE bucket_start < ?", new Timestamp((currentBucket() - 24 * 7L) * BUCKET_MILLIS));
+    }
+
+    private long currentBucket() {
+        return System.currentTimeMillis() / BUCKET_MILLIS;
+    }
+}
@@ -0,0 +1,370 @@
+package com.example.nagoyameshi.service;
+
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.stream.Collectors;
+
+import javax.sql.DataSource;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.event.TransactionalEventListener;
+
+import com.example.nagoyameshi.event.RestaurantChangedEvent;
+
+// 店舗一覧の絞り込み・並べ替え・件数の集計（ファセット）に使う値を、店舗idを添字とした配列とビットマップでメモリ上に保持する
+// 保持する値は変更のたびに複製して丸ごと差し替えるため、検索はロックを取得せずに行える
+@Service
+public class RestaurantCatalogService {
+    private static final Logger logger = LoggerFactory.getLogger(RestaurantCatalogService.class);
+    // 予算の選択肢の刻み（円）と選択肢の数
+    private static final int PRICE_STEP = 500;
+    private static final int PRICE_OPTION_COUNT = 20;
+
+    private final JdbcTemplate jdbcTemplate;
+    private final JdbcTemplate streamingJdbcTemplate;
+
+    // 読み込みが完了するまではnull
+    private volatile Catalog catalog;
+
+    // 店舗idを添字とした列と、カテゴリ・定休日ごとの店舗idのビットマップ
+    private record Catalog(BitSet restaurantIds,
+                           int[] lowestPrices,
+                           long[] createdAts,
+                           double[] rankingScores,
+                           double[] trendingScores,
+                           int[] reservationCounts,
+                           Map<Integer, BitSet> restaurantIdsByCategoryId,
+                           Map<Integer, BitSet> restaurantIdsByRegularHolidayId)
+    {
+        // 配列を複製する（店舗idが配列に収まらない場合は拡張する）
+        Catalog copy(int restaurantId) {
+            int length = Math.max(lowestPrices.length, restaurantId + 1);
+
+            return new Catalog((BitSet) restaurantIds.clone(),
+                               Arrays.copyOf(lowestPrices, length),
+                               Arrays.copyOf(createdAts, length),
+                               Arrays.copyOf(rankingScores, length),
+                               Arrays.copyOf(trendingScores, length),
+                               Arrays.copyOf(reservationCounts, length),
+                               copyBitSets(restaurantIdsByCategoryId),
+                               copyBitSets(restaurantIdsByRegularHolidayId));
+        }
+
+        // 集計値の列だけを差し替える（他の列は共有する）
+        Catalog withStats(double[] newRankingScores, double[] newTrendingScores, int[] newReservationCounts) {
+            return new Catalog(restaurantIds, lowestPrices, createdAts, newRankingScores, newTrendingScores, newReservationCounts, restaurantIdsByCategoryId, restaurantIdsByRegularHolidayId);
+        }
+
+        private static Map<Integer, BitSet> copyBitSets(Map<Integer, BitSet> bitSets) {
+            Map<Integer, BitSet> copy = new HashMap<>();
+            bitSets.forEach((id, bitSet) -> copy.put(id, (BitSet) bitSet.clone()));
+
+            return copy;
+        }
+    }
+
+    // 絞り込みの条件（nullの条件では絞り込まない）
+    // excludedRegularHolidayIdを指定した場合はその定休日を持つ店舗を除き、restaurantIdsを指定した場合はそれに含まれる店舗に限る
+    public record CatalogQuery(Integer categoryId, Integer price, Integer excludedRegularHolidayId, BitSet restaurantIds) {
+    }
+
+    // 他の条件はそのままで、カテゴリ・予算・定休日の条件だけを変えた場合の件数
+    public record Facets(Map<Integer, Integer> categoryCounts, Map<Integer, Integer> priceCounts, Map<Integer, Integer> regularHolidayCounts) {
+    }
+
+    // 表示するページの店舗idと、条件に一致する店舗の件数
+    public record CatalogPage(int[] restaurantIds, int totalCount, Facets facets) {
+    }
+
+    public RestaurantCatalogService(DataSource dataSource) {
+        this.jdbcTemplate = new JdbcTemplate(dataSource);
+        this.streamingJdbcTemplate = new JdbcTemplate(dataSource);
+        this.streamingJdbcTemplate.setFetchSize(Integer.MIN_VALUE);
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public synchronized void onApplicationReady() {
+        long startedAt = System.currentTimeMillis();
+        Integer maxRestaurantId = jdbcTemplate.queryForObject("SELECT COALESCE(MAX(id), 0) FROM restaurants", Integer.class);
+        int length = maxRestaurantId + 1;
+        Catalog newCatalog = new Catalog(new BitSet(length), new int[length], new long[length], new double[length], new double[length], new int[length], new HashMap<>(), new HashMap<>());
+
+        streamingJdbcTemplate.query("SELECT id, lowest_price, created_at, ranking_score, trending_score FROM restaurants WHERE deleted_at IS NULL", resultSet -> {
+            int restaurantId = resultSet.getInt("id");
+
+            // 読み込み中に追加された店舗は、追加時のイベントで反映する
+            if (restaurantId < length) {
+                newCatalog.restaurantIds().set(restaurantId);
+                newCatalog.lowestPrices()[restaurantId] = resultSet.getInt("lowest_price");
+                newCatalog.createdAts()[restaurantId] = resultSet.getTimestamp("created_at").getTime();
+                newCatalog.rankingScores()[restaurantId] = resultSet.getDouble("ranking_score");
+                newCatalog.trendingScores()[restaurantId] = resultSet.getDouble("trending_score");
+            }
+        });
+
+        loadReservationCounts(newCatalog.reservationCounts());
+        loadBitSets("SELECT restaurant_id, category_id FROM category_restaurant", newCatalog.restaurantIdsByCategoryId());
+        loadBitSets("SELECT restaurant_id, regular_holiday_id FROM regular_holiday_restaurant", newCatalog.restaurantIdsByRegularHolidayId());
+
+        // 定休日に設定している店舗がない曜日も件数を数えられるよう、空のビットマップを用意する
+        for (Integer regularHolidayId : jdbcTemplate.queryForList("SELECT id FROM regular_holidays", Integer.class)) {
+            newCatalog.restaurantIdsByRegularHolidayId().putIfAbsent(regularHolidayId, new BitSet());
+        }
+
+        catalog = newCatalog;
+        logger.info("{}件の店舗をカタログに読み込みました（{}ms）", newCatalog.restaurantIds().cardinality(), System.currentTimeMillis() - startedAt);
+    }
+
+    // 読み込みが完了しているかどうか
+    public boolean isLoaded() {
+        return catalog != null;
+    }
+
+    // 店舗の作成・更新・削除をコミット後に反映する
+    @TransactionalEventListener(fallbackExecution = true)
+    public synchronized void onRestaurantChanged(RestaurantChangedEvent restaurantChangedEvent) {
+        if (catalog == null) {
+            return;
+        }
+
+        int restaurantId = restaurantChangedEvent.getRestaurantId();
+        Catalog newCatalog = catalog.copy(restaurantId);
+
+        newCatalog.restaurantIds().clear(restaurantId);
+        newCatalog.restaurantIdsByCategoryId().values().forEach(bitSet -> bitSet.clear(restaurantId));
+        newCatalog.restaurantIdsByRegularHolidayId().values().forEach(bitSet -> bitSet.clear(restaurantId));
+
+        if (!restaurantChangedEvent.isDeleted()) {
+            jdbcTemplate.query("SELECT lowest_price, created_at, ranking_score, trending_score FROM restaurants WHERE id = ? AND deleted_at IS NULL", resultSet -> {
+                newCatalog.restaurantIds().set(restaurantId);
+                newCatalog.lowestPrices()[restaurantId] = resultSet.getInt("lowest_price");
+                newCatalog.createdAts()[restaurantId] = resultSet.getTimestamp("created_at").getTime();
+                newCatalog.rankingScores()[restaurantId] = resultSet.getDouble("ranking_score");
+                newCatalog.trendingScores()[restaurantId] = resultSet.getDouble("trending_score");
+            }, restaurantId);
+
+            loadBitSets("SELECT restaurant_id, category_id FROM category_restaurant WHERE restaurant_id = ?", newCatalog.restaurantIdsByCategoryId(), restaurantId);
+            loadBitSets("SELECT restaurant_id, regular_holiday_id FROM regular_holiday_restaurant WHERE restaurant_id = ?", newCatalog.restaurantIdsByRegularHolidayId(), restaurantId);
+        }
+
+        catalog = newCatalog;
+    }
+
+    // ランキング用スコアの更新を反映する
+    public synchronized void updateRankingScores(Map<Integer, Double> rankingScores) {
+        if (catalog == null || rankingScores.isEmpty()) {
+            return;
+        }
+
+        double[] newRankingScores = catalog.rankingScores().clone();
+        rankingScores.forEach((restaurantId, rankingScore) -> {
+            if (restaurantId < newRankingScores.length) {
+                newRankingScores[restaurantId] = rankingScore;
+            }
+        });
+        catalog = catalog.withStats(newRankingScores, catalog.trendingScores(), catalog.reservationCounts());
+    }
+
+    // 注目度スコアを置き換える（含まれない店舗は0とする）
+    public synchronized void replaceTrendingScores(Map<Integer, Double> trendingScores) {
+        if (catalog == null) {
+            return;
+        }
+
+        double[] newTrendingScores = new double[catalog.trendingScores().length];
+        trendingScores.forEach((restaurantId, trendingScore) -> {
+            if (restaurantId < newTrendingScores.length) {
+                newTrendingScores[restaurantId] = trendingScore;
+            }
+        });
+        catalog = catalog.withStats(catalog.rankingScores(), newTrendingScores, catalog.reservationCounts());
+    }
+
+    // 予約数と、他のサーバーで更新されたスコアを定期的に読み込み直す
+    @Scheduled(fixedDelayString = "${catalog.stats-refresh-interval-ms:60000}", initialDelayString = "${catalog.stats-refresh-interval-ms:60000}")
+    public synchronized void refreshStats() {
+        if (catalog == null) {
+            return;
+        }
+
+        int length = catalog.lowestPrices().length;
+        double[] newRankingScores = new double[length];
+        double[] newTrendingScores = new double[length];
+        int[] newReservationCounts = new int[length];
+
+        streamingJdbcTemplate.query("SELECT id, ranking_score, trending_score FROM restaurants", resultSet -> {
+            int restaurantId = resultSet.getInt("id");
+
+            if (restaurantId < length) {
+                newRankingScores[restaurantId] = resultSet.getDouble("ranking_score");
+                newTrendingScores[restaurantId] = resultSet.getDouble("trending_score");
+            }
+        });
+
+        loadReservationCounts(newReservationCounts);
+
+        catalog = catalog.withStats(newRankingScores, newTrendingScores, newReservationCounts);
+    }
+
+    // 条件に一致する店舗を並べ替え、offset番目から最大limit件の店舗idと件数の集計を返す
+    public CatalogPage search(CatalogQuery query, String order, long offset, int limit) {
+        Catalog currentCatalog = catalog;
+        BitSet base = (BitSet) currentCatalog.restaurantIds().clone();
+
+        if (query.restaurantIds() != null) {
+            base.and(query.restaurantIds());
+        }
+
+        // 条件ごとに一致する店舗のビットマップを作る（定休日の条件は一致しない店舗）
+        BitSet categoryMatches = query.categoryId() == null ? null : currentCatalog.restaurantIdsByCategoryId().getOrDefault(query.categoryId(), new BitSet());
+        BitSet priceMatches = query.price() == null ? null : findPriceMatches(currentCatalog, base, query.price());
+        BitSet holidayExclusions = query.excludedRegularHolidayId() == null ? null : currentCatalog.restaurantIdsByRegularHolidayId().getOrDefault(query.excludedRegularHolidayId(), new BitSet());
+
+        BitSet matches = filter(base, categoryMatches, priceMatches, holidayExclusions);
+        Facets facets = new Facets(countByCategory(currentCatalog, filter(base, null, priceMatches, holidayExclusions)),
+                                   countByPrice(currentCatalog, filter(base, categoryMatches, null, holidayExclusions)),
+                                   countByRegularHoliday(currentCatalog, filter(base, categoryMatches, priceMatches, null)));
+
+        int[] sortedRestaurantIds = sort(currentCatalog, matches.stream().toArray(), order);
+        int from = (int) Math.min(offset, sortedRestaurantIds.length);
+        int to = (int) Math.min((long) from + limit, sortedRestaurantIds.length);
+
+        return new CatalogPage(Arrays.copyOfRange(sortedRestaurantIds, from, to), sortedRestaurantIds.length, facets);
+    }
+
+    // 指定した店舗（カタログにない店舗は除く）を並べ替え、offset番目から最大limit件の店舗idと件数を返す（件数の集計は行わない）
+    public CatalogPage sort(BitSet restaurantIds, String order, long offset, int limit) {
+        Catalog currentCatalog = catalog;
+        BitSet matches = (BitSet) currentCatalog.restaurantIds().clone();
+        matches.and(restaurantIds);
+
+        int[] sortedRestaurantIds = sort(currentCatalog, matches.stream().toArray(), order);
+        int from = (int) Math.min(offset, sortedRestaurantIds.length);
+        int to = (int) Math.min((long) from + limit, sortedRestaurantIds.length);
+
+        return new CatalogPage(Arrays.copyOfRange(sortedRestaurantIds, from, to), sortedRestaurantIds.length, null);
+    }
+
+    private static BitSet filter(BitSet base, BitSet categoryMatches, BitSet priceMatches, BitSet holidayExclusions) {
+        BitSet result = (BitSet) base.clone();
+
+        if (categoryMatches != null) {
+            result.and(categoryMatches);
+        }
+
+        if (priceMatches != null) {
+            result.and(priceMatches);
+        }
+
+        if (holidayExclusions != null) {
+            result.andNot(holidayExclusions);
+        }
+
+        return result;
+    }
+
+    private static BitSet findPriceMatches(Catalog catalog, BitSet base, int price) {
+        BitSet priceMatches = new BitSet();
+        base.stream().filter(restaurantId -> catalog.lowestPrices()[restaurantId] <= price).forEach(priceMatches::set);
+
+        return priceMatches;
+    }
+
+    // カテゴリごとの件数をカテゴリ単位で並列に数える
+    private static Map<Integer, Integer> countByCategory(Catalog catalog, BitSet restaurantIds) {
+        return catalog.restaurantIdsByCategoryId().entrySet().parallelStream()
+                      .collect(Collectors.toMap(Map.Entry::getKey, entry -> {
+                          BitSet bitSet = (BitSet) entry.getValue().clone();
+                          bitSet.and(restaurantIds);
+
+                          return bitSet.cardinality();
+                      }));
+    }
+
+    // 予算の選択肢（500円～10,000円）ごとに、最低価格がその金額以下の店舗の件数を数える
+    private static Map<Integer, Integer> countByPrice(Catalog catalog, BitSet restaurantIds) {
+        int[] histogram = new int[PRICE_OPTION_COUNT];
+
+        restaurantIds.stream().forEach(restaurantId -> {
+            int option = Math.max((catalog.lowestPrices()[restaurantId] + PRICE_STEP - 1) / PRICE_STEP - 1, 0);
+
+            if (option < PRICE_OPTION_COUNT) {
+                histogram[option]++;
+            }
+        });
+
+        Map<Integer, Integer> priceCounts = new HashMap<>();
+        int count = 0;
+
+        for (int option = 0; option < PRICE_OPTION_COUNT; option++) {
+            count += histogram[option];
+            priceCounts.put(PRICE_STEP * (option + 1), count);
+        }
+
+        return priceCounts;
+    }
+
+    // 定休日ごとに、その日が定休日ではない店舗の件数を並列に数える
+    private static Map<Integer, Integer> countByRegularHoliday(Catalog catalog, BitSet restaurantIds) {
+        return catalog.restaurantIdsByRegularHolidayId().entrySet().parallelStream()
+                      .collect(Collectors.toMap(Map.Entry::getKey, entry -> {
+                          BitSet bitSet = (BitSet) restaurantIds.clone();
+                          bitSet.andNot(entry.getValue());
+
+                          return bitSet.cardinality();
+                      }));
+    }
+
+    // 並べ替えの基準となる値を先に取り出してから並べ替える（同じ値の場合はidの昇順）
+    private static int[] sort(Catalog catalog, int[] restaurantIds, String order) {
+        Comparator<Integer> comparator;
+
+        if (order != null && order.equals("lowestPriceAsc")) {
+            int[] lowestPrices = catalog.lowestPrices();
+            comparator = Comparator.comparingInt(restaurantId -> lowestPrices[restaurantId]);
+        } else if (order != null && order.equals("ratingDesc")) {
+            double[] rankingScores = catalog.rankingScores();
+            comparator = Comparator.<Integer>comparingDouble(restaurantId -> rankingScores[restaurantId]).reversed();
+        } else if (order != null && order.equals("popularDesc")) {
+            int[] reservationCounts = catalog.reservationCounts();
+            comparator = Comparator.<Integer>comparingInt(restaurantId -> reservationCounts[restaurantId]).reversed();
+        } else if (order != null && order.equals("trendingDesc")) {
+            double[] trendingScores = catalog.trendingScores();
+            comparator = Comparator.<Integer>comparingDouble(restaurantId -> trendingScores[restaurantId]).reversed();
+        } else {
+            long[] createdAts = catalog.createdAts();
+            comparator = Comparator.<Integer>comparingLong(restaurantId -> createdAts[restaurantId]).reversed();
+        }
+
+        Integer[] boxedRestaurantIds = Arrays.stream(restaurantIds).boxed().toArray(Integer[]::new);
+        Arrays.parallelSort(boxedRestaurantIds, comparator.thenComparingInt(restaurantId -> restaurantId));
+
+        return Arrays.stream(boxedRestaurantIds).mapToInt(Integer::intValue).toArray();
+    }
+
+    private void loadReservationCounts(int[] reservationCounts) {
+        jdbcTemplate.query("SELECT restaurant_id, COUNT(*) AS reservation_count FROM reservations GROUP BY restaurant_id", resultSet -> {
+            int restaurantId = resultSet.getInt("restaurant_id");
+
+            if (restaurantId < reservationCounts.length) {
+                reservationCounts[restaurantId] = resultSet.getInt("reservation_count");
+            }
+        });
+    }
+
+    // 1列目を店舗id、2列目をキーとして、キーごとの店舗idのビットマップに追加する
+    private void loadBitSets(String sql, Map<Integer, BitSet> bitSets, Object... args) {
+        streamingJdbcTemplate.query(sql, resultSet -> {
+            bitSets.computeIfAbsent(resultSet.getInt(2), key -> new BitSet()).set(resultSet.getInt(1));
+        }, args);
+    }
+}
@@ -0,0 +1,270 @@
+package com.example.nagoyameshi.service;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+import javax.sql.DataSource;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.event.TransactionalEventListener;
+
+import com.example.nagoyameshi.event.RestaurantChangedEvent;
+import com.example.nagoyameshi.service.PostalCodeGazetteer.Coordinates;
+
+// 店舗の緯度・経度を一定の大きさの格子（グリッド）に分けてメモリ上に保持し、半径検索と近傍検索に答える
+@Service
+public class RestaurantGeoIndexService {
+    private static final Logger logger = LoggerFactory.getLogger(RestaurantGeoIndexService.class);
+    // 格子1つ分の大きさ（度）。名古屋付近では南北約1.1km、東西約0.9km
+    private static final double CELL_DEGREES = 0.01;
+    // 近傍検索で探す格子の最大の広がり（約100km）
+    private static final int MAX_RING = 100;
+    private static final double EARTH_RADIUS_KM = 6371.0;
+
+    private final JdbcTemplate jdbcTemplate;
+    private final PostalCodeGazetteer postalCodeGazetteer;
+
+    // 店舗idを添字とした緯度・経度（未登録の店舗はNaN）
+    private float[] latitudes = new float[0];
+    private float[] longitudes = new float[0];
+    // 格子ごとの店舗idの一覧
+    private final Map<Long, int[]> cells = new HashMap<>();
+    private final ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
+
+    public RestaurantGeoIndexService(DataSource dataSource, PostalCodeGazetteer postalCodeGazetteer) {
+        this.jdbcTemplate = new JdbcTemplate(dataSource);
+        this.postalCodeGazetteer = postalCodeGazetteer;
+    }
+
+    // 起動時、座標が未設定の店舗に郵便番号から座標を設定し、すべての店舗を索引に登録する
+    @EventListener(ApplicationReadyEvent.class)
+    public void onApplicationReady() {
+        backfillCoordinates();
+
+        jdbcTemplate.query("SELECT id, latitude, longitude FROM restaurants WHERE latitude IS NOT NULL AND longitude IS NOT NULL AND deleted_at IS NULL", resultSet -> {
+            put(resultSet.getInt("id"), resultSet.getDouble("latitude"), resultSet.getDouble("longitude"));
+        });
+
+        logger.info("店舗の位置情報の索引を構築しました（{}件の格子）", cells.size());
+    }
+
+    // 座標が未設定の店舗に郵便番号から座標を設定する（更新日時は変更しない）
+    public void backfillCoordinates() {
+        List<Object[]> batchArgs = new ArrayList<>();
+
+        jdbcTemplate.query("SELECT id, postal_code FROM restaurants WHERE latitude IS NULL OR longitude IS NULL", resultSet -> {
+            Coordinates coordinates = postalCodeGazetteer.lookup(resultSet.getString("postal_code"));
+
+            if (coordinates != null) {
+                batchArgs.add(new Object[] { coordinates.latitude(), coordinates.longitude(), resultSet.getInt("id") });
+            }
+        });
+
+        if (!batchArgs.isEmpty()) {
+            jdbcTemplate.batchUpdate("UPDATE restaurants SET latitude = ?, longitude = ?, updated_at = updated_at WHERE id = ?", batchArgs);
+        }
+    }
+
+    // 店舗の作成・更新・削除をコミット後に索引に反映する
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onRestaurantChanged(RestaurantChangedEvent restaurantChangedEvent) {
+        int restaurantId = restaurantChangedEvent.getRestaurantId();
+
+        if (restaurantChangedEvent.isDeleted()) {
+            remove(restaurantId);
+            return;
+        }
+
+        List<double[]> rows = jdbcTemplate.query("SELECT latitude, longitude FROM restaurants WHERE id = ? AND latitude IS NOT NULL AND longitude IS NOT NULL AND deleted_at IS NULL",
+                                                 (resultSet, rowNum) -> new double[] { resultSet.getDouble("latitude"), resultSet.getDouble("longitude") },
+                                                 restaurantId);
+
+        if (rows.isEmpty()) {
+            remove(restaurantId);
+        } else {
+            put(restaurantId, rows.get(0)[0], rows.get(0)[1]);
+        }
+    }
+
+    // 指定した地点から半径radiusKm以内にある店舗のidを近い順に返す
+    public int[] findWithinRadius(double latitude, double longitude, double radiusKm) {
+        double latitudeDelta = Math.toDegrees(radiusKm / EARTH_RADIUS_KM);
+        double longitudeDelta = latitudeDelta / Math.max(Math.cos(Math.toRadians(latitude)), 0.01);
+
+        lock.readLock().lock();
+
+        try {
+            List<double[]> matches = new ArrayList<>();
+
+            for (int latitudeCell = cell(latitude - latitudeDelta); latitudeCell <= cell(latitude + latitudeDelta); latitudeCell++) {
+                for (int longitudeCell = cell(longitude - longitudeDelta); longitudeCell <= cell(longitude + longitudeDelta); longitudeCell++) {
+                    for (int restaurantId : cells.getOrDefault(key(latitudeCell, longitudeCell), new int[0])) {
+                        double distance = distanceKm(latitude, longitude, latitudes[restaurantId], longitudes[restaurantId]);
+
+                        if (distance <= radiusKm) {
+                            matches.add(new double[] { restaurantId, distance });
+                        }
+                    }
+                }
+            }
+
+            return sortByDistance(matches, matches.size());
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    // 指定した地点に近い店舗のidを、近い順に最大limit件返す（excludeIdの店舗は除く）
+    public int[] findNearest(double latitude, double longitude, int limit, int excludeId) {
+        if (limit <= 0) {
+            return new int[0];
+        }
+
+        lock.readLock().lock();
+
+        try {
+            List<double[]> candidates = new ArrayList<>();
+            int centerLatitudeCell = cell(latitude);
+            int centerLongitudeCell = cell(longitude);
+            // 探索範囲内での格子1つ分の東西方向の距離の下限（南北方向はこれより長いため、探索の打ち切りの判定に使う）
+            double cellKm = Math.toRadians(CELL_DEGREES) * EARTH_RADIUS_KM * Math.cos(Math.toRadians(Math.abs(latitude) + CELL_DEGREES * MAX_RING));
+
+            for (int ring = 0; ring <= MAX_RING; ring++) {
+                // 中心から外側に向かって、1周ずつ格子を調べる
+                for (int latitudeCell = centerLatitudeCell - ring; latitudeCell <= centerLatitudeCell + ring; latitudeCell++) {
+                    for (int longitudeCell = centerLongitudeCell - ring; longitudeCell <= centerLongitudeCell + ring; longitudeCell++) {
+                        if (Math.abs(latitudeCell - centerLatitudeCell) != ring && Math.abs(longitudeCell - centerLongitudeCell) != ring) {
+                            continue;
+                        }
+
+                        for (int restaurantId : cells.getOrDefault(key(latitudeCell, longitudeCell), new int[0])) {
+                            if (restaurantId != excludeId) {
+                                candidates.add(new double[] { restaurantId, distanceKm(latitude, longitude, latitudes[restaurantId], longitudes[restaurantId]) });
+                            }
+                        }
+                    }
+                }
+
+                // 見つかった店舗のうちlimit番目の距離より、次の周の格子がすべて遠ければ打ち切る
+                if (candidates.size() >= limit) {
+                    candidates.sort((a, b) -> Double.compare(a[1], b[1]));
+
+                    if (candidates.get(limit - 1)[1] <= ring * cellKm) {
+                        break;
+                    }
+                }
+            }
+
+            return sortByDistance(candidates, limit);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    // 指定した地点から店舗までの距離（km）を返す（店舗が未登録の場合はnull）
+    public Double findDistanceKm(int restaurantId, double latitude, double longitude) {
+        lock.readLock().lock();
+
+        try {
+            if (restaurantId >= latitudes.length || Float.isNaN(latitudes[restaurantId])) {
+                return null;
+            }
+
+            return distanceKm(latitude, longitude, latitudes[restaurantId], longitudes[restaurantId]);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    private void put(int restaurantId, double latitude, double longitude) {
+        lock.writeLock().lock();
+
+        try {
+            removeFromCell(restaurantId);
+
+            if (restaurantId >= latitudes.length) {
+                int capacity = Math.max(latitudes.length * 2, restaurantId + 1);
+                int oldLength = latitudes.length;
+                latitudes = Arrays.copyOf(latitudes, capacity);
+                longitudes = Arrays.copyOf(longitudes, capacity);
+                Arrays.fill(latitudes, oldLength, capacity, Float.NaN);
+                Arrays.fill(longitudes, oldLength, capacity, Float.NaN);
+            }
+
+            latitudes[restaurantId] = (float) latitude;
+            longitudes[restaurantId] = (float) longitude;
+
+            long key = key(cell(latitude), cell(longitude));
+            int[] ids = cells.getOrDefault(key, new int[0]);
+            int[] newIds = Arrays.copyOf(ids, ids.length + 1);
+            newIds[ids.length] = restaurantId;
+            cells.put(key, newIds);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    private void remove(int restaurantId) {
+        lock.writeLock().lock();
+
+        try {
+            removeFromCell(restaurantId);
+
+            if (restaurantId < latitudes.length) {
+                latitudes[restaurantId] = Float.NaN;
+                longitudes[restaurantId] = Float.NaN;
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    // 登録済みの店舗を現在の格子から取り除く（書き込みロックを取得した状態で呼び出す）
+    private void removeFromCell(int restaurantId) {
+        if (restaurantId >= latitudes.length || Float.isNaN(latitudes[restaurantId])) {
+            return;
+        }
+
+        long key = key(cell(latitudes[restaurantId]), cell(longitudes[restaurantId]));
+        int[] newIds = Arrays.stream(cells.getOrDefault(key, new int[0])).filter(id -> id != restaurantId).toArray();
+
+        if (newIds.length == 0) {
+            cells.remove(key);
+        } else {
+            cells.put(key, newIds);
+        }
+    }
+
+    private int[] sortByDistance(List<double[]> matches, int limit) {
+        matches.sort((a, b) -> a[1] != b[1] ? Double.compare(a[1], b[1]) : Double.compare(a[0], b[0]));
+
+        return matches.stream().limit(limit).mapToInt(match -> (int) match[0]).toArray();
+    }
+
+    private static int cell(double degrees) {
+        return (int) Math.floor(degrees / CELL_DEGREES);
+    }
+
+    private static long key(int latitudeCell, int longitudeCell) {
+        return ((long) latitudeCell << 32) | (longitudeCell & 0xffffffffL);
+    }
+
+    // 2地点間の距離（km）をハバーサイン公式で求める
+    static double distanceKm(double latitude1, double longitude1, double latitude2, double longitude2) {
+        double latitudeDifference = Math.toRadians(latitude2 - latitude1);
+        double longitudeDifference = Math.toRadians(longitude2 - longitude1);
+        double a = Math.sin(latitudeDifference / 2) * Math.sin(latitudeDifference / 2)
+                 + Math.cos(Math.toRadians(latitude1)) * Math.cos(Math.toRadians(latitude2)) * Math.sin(longitudeDifference / 2) * Math.sin(longitudeDifference / 2);
+
+        return 2 * EARTH_RADIUS_KM * Math.asin(Math.sqrt(a));
+    }
+}
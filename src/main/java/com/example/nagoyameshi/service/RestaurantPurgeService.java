@@ -0,0 +1,73 @@
+package com.example.nagoyameshi.service;
+
+import java.util.List;
+
+import javax.sql.DataSource;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DataAccessException;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import com.example.nagoyameshi.cache.FavoriteCache;
+
+// 論理削除した店舗に紐づく行を、店舗idを指定した一括削除で取り除いてから店舗を物理削除する
+// 1回の削除文でロックする行数を抑えるため、テーブルごとに最大chunkSize行ずつ、それぞれ自動コミットで削除する
+// お気に入りを削除したユーザーは、削除した店舗がお気に入りとして残らないようFavoriteCacheから破棄し、変更履歴で他のサーバーにも通知する
+@Service
+public class RestaurantPurgeService {
+    private static final Logger logger = LoggerFactory.getLogger(RestaurantPurgeService.class);
+    // 店舗に紐づく行を持つテーブル（restaurant_rating_summariesとrestaurant_activityは店舗の削除に連動して削除される）
+    private static final List<String> DEPENDENT_TABLES = List.of("reviews", "reservations", "favorites", "category_restaurant", "regular_holiday_restaurant");
+
+    private final JdbcTemplate jdbcTemplate;
+    private final FavoriteCache favoriteCache;
+    private final int chunkSize;
+
+    public RestaurantPurgeService(DataSource dataSource,
+                                  FavoriteCache favoriteCache,
+                                  @Value("${restaurant-purge.chunk-size:1000}") int chunkSize)
+    {
+        this.jdbcTemplate = new JdbcTemplate(dataSource);
+        this.favoriteCache = favoriteCache;
+        this.chunkSize = chunkSize;
+    }
+
+    // 論理削除した店舗をすべて物理削除する
+    @Scheduled(fixedDelayString = "${restaurant-purge.interval-ms:60000}", initialDelayString = "${restaurant-purge.interval-ms:60000}")
+    public synchronized void purge() {
+        for (Integer restaurantId : jdbcTemplate.queryForList("SELECT id FROM restaurants WHERE deleted_at IS NOT NULL", Integer.class)) {
+            try {
+                purge(restaurantId);
+            } catch (DataAccessException e) {
+                // 削除中に紐づく行が追加された場合などは、次回の実行で削除し直す
+                logger.warn("論理削除した店舗を物理削除できませんでした: restaurantId={}", restaurantId, e);
+            }
+        }
+    }
+
+    private void purge(int restaurantId) {
+        long startedAt = System.currentTimeMillis();
+        long deletedRows = 0;
+        List<Integer> favoriteUserIds = jdbcTemplate.queryForList("SELECT DISTINCT user_id FROM favorites WHERE restaurant_id = ?", Integer.class, restaurantId);
+
+        for (String table : DEPENDENT_TABLES) {
+            int deleted;
+
+            do {
+                deleted = jdbcTemplate.update("DELETE FROM " + table + " WHERE restaurant_id = ? LIMIT ?", restaurantId, chunkSize);
+                deletedRows += deleted;
+            } while (deleted == chunkSize);
+        }
+
+        // 削除の途中で読み込まれたお気に入りも残らないよう、すべて削除した後に破棄する
+        jdbcTemplate.batchUpdate("INSERT INTO favorite_changes (user_id) VALUES (?)", favoriteUserIds.stream().map(userId -> new Object[] { userId }).toList());
+        favoriteUserIds.forEach(favoriteCache::evict);
+
+        jdbcTemplate.update("DELETE FROM restaurants WHERE id = ? AND deleted_at IS NOT NULL", restaurantId);
+        logger.info("論理削除した店舗{}と紐づく{}行を削除しました（{}ms）", restaurantId, deletedRows, System.currentTimeMillis() - startedAt);
+    }
+}
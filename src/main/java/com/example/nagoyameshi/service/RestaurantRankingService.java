@@ -0,0 +1,203 @@
+package com.example.nagoyameshi.service;
+
+import java.sql.Timestamp;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.stream.Collectors;
+
+import javax.sql.DataSource;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import com.example.nagoyameshi.cache.ListingResultCache;
+
+// 店舗のランキング用スコア（ベイズ平均）を一括で計算し、restaurants.ranking_scoreに書き込む
+// レビュー数が少ない店舗の平均評価は全体の平均評価に引き寄せられるため、件数の多い高評価の店舗が上位になる
+@Service
+public class RestaurantRankingService {
+    private static final Logger logger = LoggerFactory.getLogger(RestaurantRankingService.class);
+    private static final int BATCH_SIZE = 500;
+    // 前回の実行中にコミットされた変更を取りこぼさないよう、差分の抽出範囲を重複させる秒数
+    private static final int OVERLAP_SECONDS = 60;
+
+    private final JdbcTemplate jdbcTemplate;
+    private final JdbcTemplate streamingJdbcTemplate;
+    private final RestaurantCatalogService restaurantCatalogService;
+    private final ListingResultCache listingResultCache;
+    private final double priorWeight;
+    private final double halfLifeDays;
+    private Timestamp lastRankedAt;
+
+    public RestaurantRankingService(DataSource dataSource,
+                                    RestaurantCatalogService restaurantCatalogService,
+                                    ListingResultCache listingResultCache,
+                                    @Value("${ranking.prior-weight:5}") double priorWeight,
+                                    @Value("${ranking.half-life-days:0}") double halfLifeDays)
+    {
+        this.jdbcTemplate = new JdbcTemplate(dataSource);
+        this.streamingJdbcTemplate = new JdbcTemplate(dataSource);
+        this.streamingJdbcTemplate.setFetchSize(Integer.MIN_VALUE);
+        this.restaurantCatalogService = restaurantCatalogService;
+        this.listingResultCache = listingResultCache;
+        this.priorWeight = priorWeight;
+        this.halfLifeDays = halfLifeDays;
+    }
+
+    // 起動時にすべての店舗のスコアを計算する
+    @EventListener(ApplicationReadyEvent.class)
+    public void onApplicationReady() {
+        rankAllRestaurants();
+    }
+
+    // 全体の平均評価の変化や時間減衰を反映するため、1日1回すべての店舗のスコアを計算し直す
+    @Scheduled(cron = "${ranking.full-cron:0 30 3 * * *}")
+    public synchronized void rankAllRestaurants() {
+        long startedAt = System.currentTimeMillis();
+        Timestamp now = jdbcTemplate.queryForObject("SELECT NOW()", Timestamp.class);
+
+        int count = rank(null);
+
+        lastRankedAt = now;
+        logger.info("{}件の店舗のランキング用スコアを計算しました（{}ms）", count, System.currentTimeMillis() - startedAt);
+    }
+
+    // 前回の実行以降にレビューが投稿・編集・削除された店舗のスコアのみを計算し直す
+    @Scheduled(fixedDelayString = "${ranking.interval-ms:60000}", initialDelayString = "${ranking.interval-ms:60000}")
+    public synchronized void rankChangedRestaurants() {
+        if (lastRankedAt == null) {
+            rankAllRestaurants();
+            return;
+        }
+
+        Timestamp now = jdbcTemplate.queryForObject("SELECT NOW()", Timestamp.class);
+        List<Integer> restaurantIds = jdbcTemplate.queryForList("SELECT restaurant_id FROM restaurant_rating_summaries WHERE updated_at >= ?",
+                                                                Integer.class,
+                                                                new Timestamp(lastRankedAt.getTime() - OVERLAP_SECONDS * 1000L));
+
+        for (int i = 0; i < restaurantIds.size(); i += BATCH_SIZE) {
+            rank(restaurantIds.subList(i, Math.min(i + BATCH_SIZE, restaurantIds.size())));
+        }
+
+        lastRankedAt = now;
+    }
+
+    // 指定した店舗（nullの場合はすべての店舗）のスコアを計算して書き込み、件数を返す
+    private int rank(List<Integer> restaurantIds) {
+        double priorMean = findPriorMean();
+        String condition = restaurantIds == null ? "" : " WHERE restaurant_id IN (" + String.join(",", Collections.nCopies(restaurantIds.size(), "?")) + ")";
+        Object[] args = restaurantIds == null ? new Object[0] : restaurantIds.toArray();
+        JdbcTemplate template = restaurantIds == null ? streamingJdbcTemplate : jdbcTemplate;
+        ScoreWriter scoreWriter = new ScoreWriter(priorMean);
+
+        if (halfLifeDays <= 0) {
+            // 時間減衰を行わない場合は評価の集計だけで計算できる
+            template.query("SELECT restaurant_id, review_count, score_sum FROM restaurant_rating_summaries" + condition,
+                           resultSet -> {
+                               scoreWriter.add(resultSet.getInt("restaurant_id"), resultSet.getInt("score_sum"), resultSet.getInt("review_count"));
+                               scoreWriter.flush();
+                           },
+                           args);
+        } else {
+            // 投稿からの経過日数に応じて、半減期ごとにレビューの重みを半分にする
+            template.query("SELECT restaurant_id, score, TIMESTAMPDIFF(SECOND, created_at, NOW()) AS age_seconds FROM reviews" + condition + " ORDER BY restaurant_id",
+                           resultSet -> {
+                               double weight = Math.pow(0.5, resultSet.getLong("age_seconds") / 86400.0 / halfLifeDays);
+                               scoreWriter.add(resultSet.getInt("restaurant_id"), resultSet.getInt("score") * weight, weight);
+                           },
+                           args);
+
+            // レビューがすべて削除された店舗はreviewsに行がないため、集計から0件の店舗を別途書き込む
+            template.query("SELECT restaurant_id FROM restaurant_rating_summaries" + condition + (condition.isEmpty() ? " WHERE" : " AND") + " review_count = 0",
+                           resultSet -> {
+                               scoreWriter.add(resultSet.getInt("restaurant_id"), 0, 0);
+                           },
+                           args);
+        }
+
+        return scoreWriter.finish();
+    }
+
+    // 全レビューの平均評価（事前分布の平均）を取得する
+    private double findPriorMean() {
+        return jdbcTemplate.query("SELECT SUM(score_sum), SUM(review_count) FROM restaurant_rating_summaries", resultSet -> {
+            if (!resultSet.next() || resultSet.getLong(2) == 0) {
+                return 0.0;
+            }
+
+            return (double) resultSet.getLong(1) / resultSet.getLong(2);
+        });
+    }
+
+    // 重み付きの評価の合計と件数から、ベイズ平均によるスコアを計算する（レビューがない場合は0）
+    static double bayesianScore(double weightedScoreSum, double weightedCount, double priorMean, double priorWeight) {
+        if (weightedCount <= 0) {
+            return 0.0;
+        }
+
+        return (priorMean * priorWeight + weightedScoreSum) / (priorWeight + weightedCount);
+    }
+
+    // 店舗ごとに評価を足し合わせ、一定件数ごとにまとめて書き込む（店舗id順に渡されることを前提とする）
+    private class ScoreWriter {
+        private final double priorMean;
+        private final List<Object[]> batchArgs = new ArrayList<>();
+        private int currentRestaurantId;
+        private double weightedScoreSum;
+        private double weightedCount;
+        private int count;
+
+        ScoreWriter(double priorMean) {
+            this.priorMean = priorMean;
+        }
+
+        void add(int restaurantId, double score, double weight) {
+            if (restaurantId != currentRestaurantId) {
+                flush();
+                currentRestaurantId = restaurantId;
+            }
+
+            weightedScoreSum += score;
+            weightedCount += weight;
+        }
+
+        void flush() {
+            if (currentRestaurantId == 0) {
+                return;
+            }
+
+            batchArgs.add(new Object[] { bayesianScore(weightedScoreSum, weightedCount, priorMean, priorWeight), currentRestaurantId });
+            currentRestaurantId = 0;
+            weightedScoreSum = 0;
+            weightedCount = 0;
+            count++;
+
+            if (batchArgs.size() >= BATCH_SIZE) {
+                write();
+            }
+        }
+
+        int finish() {
+            flush();
+            write();
+
+            return count;
+        }
+
+        private void write() {
+            if (!batchArgs.isEmpty()) {
+                jdbcTemplate.batchUpdate("UPDATE restaurants SET ranking_score = ?, updated_at = updated_at WHERE id = ?", batchArgs);
+                restaurantCatalogService.updateRankingScores(batchArgs.stream().collect(Collectors.toMap(args -> (Integer) args[1], args -> (Double) args[0])));
+                listingResultCache.invalidateOrder("ratingDesc");
+                batchArgs.clear();
+            }
+        }
+    }
+}
@@ -5,54 +5,330 @@ import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.Paths;
 import java.time.LocalTime;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.Optional;
+import java.util.Set;
 import java.util.UUID;
+import java.util.function.Function;
+import java.util.stream.Collectors;
 
 import org.springframework.data.domain.Page;
+import org.springframework.data.domain.PageImpl;
+import org.springframework.data.domain.PageRequest;
 import org.springframework.data.domain.Pageable;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.event.TransactionalEventListener;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
 import org.springframework.web.multipart.MultipartFile;
 
+import com.example.nagoyameshi.cache.ListingResultCache;
+import com.example.nagoyameshi.cache.ListingResultCache.Criteria;
+import com.example.nagoyameshi.cache.ListingResultCache.Lookup;
+import com.example.nagoyameshi.cache.SingleFlightLoader;
+import com.example.nagoyameshi.cache.SingleFlightLoaderFactory;
+import com.example.nagoyameshi.datasource.DataSourceRouting;
 import com.example.nagoyameshi.entity.Restaurant;
+import com.example.nagoyameshi.entity.RestaurantRatingSummary;
+import com.example.nagoyameshi.event.RestaurantChangedEvent;
+import com.example.nagoyameshi.event.RestaurantChangedEventPublisher;
 import com.example.nagoyameshi.form.RestaurantEditForm;
 import com.example.nagoyameshi.form.RestaurantRegisterForm;
 import com.example.nagoyameshi.repository.RestaurantRepository;
+import com.example.nagoyameshi.repository.RestaurantRepository.RestaurantCard;
+import com.example.nagoyameshi.service.PostalCodeGazetteer.Coordinates;
+import com.example.nagoyameshi.service.RestaurantCatalogService.CatalogPage;
 
 @Service
 public class RestaurantService {
+    // 距離以外で並べ替えられる並び順（カタログの配列で並べ替える）
+    private static final Set<String> SORTABLE_ORDERS = Set.of("createdAtDesc", "lowestPriceAsc", "ratingDesc", "popularDesc", "trendingDesc");
+
     private final RestaurantRepository restaurantRepository;
     private final CategoryRestaurantService categoryRestaurantService;
     private final RegularHolidayRestaurantService regularHolidayRestaurantService;
+    private final PostalCodeGazetteer postalCodeGazetteer;
+    private final RestaurantGeoIndexService restaurantGeoIndexService;
+    private final RestaurantChangedEventPublisher restaurantChangedEventPublisher;
+    private final ListingResultCache listingResultCache;
+    private final RestaurantActivityService restaurantActivityService;
+    private final SingleFlightLoader<Integer, Optional<RestaurantDetail>> restaurantLoader;
+    private final SingleFlightLoader<String, HomeRestaurants> homeRestaurantsLoader;
+    private final RestaurantCatalogService restaurantCatalogService;
+
+    // トップページに表示する店舗（評価が高い順・注目度が高い順・新着順）
+    public record HomeRestaurants(List<Restaurant> highlyRatedRestaurants, List<Restaurant> trendingRestaurants, List<Restaurant> newRestaurants) {
+    }
+
+    // 店舗詳細ページに表示する店舗（複数のリクエストで共有するため、エンティティではなく変更できない値として保持する）
+    // ratingCountsは評価1～5のレビュー数を順に並べたもの
+    public record RestaurantDetail(Integer id,
+                                   String name,
+                                   String image,
+                                   String description,
+                                   Integer lowestPrice,
+                                   Integer highestPrice,
+                                   String postalCode,
+                                   String address,
+                                   LocalTime openingTime,
+                                   LocalTime closingTime,
+                                   Integer seatingCapacity,
+                                   Double latitude,
+                                   Double longitude,
+                                   List<String> categoryNames,
+                                   List<String> regularHolidayDays,
+                                   List<Integer> ratingCounts,
+                                   int reviewCount,
+                                   int scoreSum)
+    {
+        public static RestaurantDetail of(Restaurant restaurant) {
+            RestaurantRatingSummary ratingSummary = restaurant.getRatingSummary();
+            List<Integer> ratingCounts = ratingSummary != null ? List.of(ratingSummary.getCount(1), ratingSummary.getCount(2), ratingSummary.getCount(3), ratingSummary.getCount(4), ratingSummary.getCount(5))
+                                                               : List.of(0, 0, 0, 0, 0);
+
+            return new RestaurantDetail(restaurant.getId(),
+                                        restaurant.getName(),
+                                        restaurant.getImage(),
+                                        restaurant.getDescription(),
+                                        restaurant.getLowestPrice(),
+                                        restaurant.getHighestPrice(),
+                                        restaurant.getPostalCode(),
+                                        restaurant.getAddress(),
+                                        restaurant.getOpeningTime(),
+                                        restaurant.getClosingTime(),
+                                        restaurant.getSeatingCapacity(),
+                                        restaurant.getLatitude(),
+                                        restaurant.getLongitude(),
+                                        restaurant.getCategoriesRestaurants().stream().map(categoryRestaurant -> categoryRestaurant.getCategory().getName()).toList(),
+                                        restaurant.getRegularHolidaysRestaurants().stream().map(regularHolidayRestaurant -> regularHolidayRestaurant.getRegularHoliday().getDay()).toList(),
+                                        ratingCounts,
+                                        ratingSummary != null ? ratingSummary.getReviewCount() : 0,
+                                        ratingSummary != null ? ratingSummary.getScoreSum() : 0);
+        }
+
+        // 平均評価を取得する
+        public double getAverageScore() {
+            return reviewCount > 0 ? (double) scoreSum / reviewCount : 0.0;
+        }
+
+        // 指定した評価（1～5）のレビュー数を取得する
+        public int getCount(int score) {
+            if (score < 1 || score > 5) {
+                throw new IllegalArgumentException("評価は1～5で指定してください。");
+            }
+
+            return ratingCounts.get(score - 1);
+        }
+
+        // 指定した評価（1～5）のレビュー数が全体に占める割合（%）を取得する
+        public int getPercentage(int score) {
+            return reviewCount > 0 ? Math.round(getCount(score) * 100f / reviewCount) : 0;
+        }
+    }
 
-    public RestaurantService(RestaurantRepository restaurantRepository, CategoryRestaurantService categoryRestaurantService, RegularHolidayRestaurantService regularHolidayRestaurantService) {
+    public RestaurantService(RestaurantRepository restaurantRepository,
+                             CategoryRestaurantService categoryRestaurantService,
+                             RegularHolidayRestaurantService regularHolidayRestaurantService,
+                             PostalCodeGazetteer postalCodeGazetteer,
+                             RestaurantGeoIndexService restaurantGeoIndexService,
+                             RestaurantChangedEventPublisher restaurantChangedEventPublisher,
+                             ListingResultCache listingResultCache,
+                             RestaurantActivityService restaurantActivityService,
+                             SingleFlightLoaderFactory singleFlightLoaderFactory,
+                             RestaurantCatalogService restaurantCatalogService)
+    {
         this.restaurantRepository = restaurantRepository;
         this.categoryRestaurantService = categoryRestaurantService;
         this.regularHolidayRestaurantService = regularHolidayRestaurantService;
+        this.postalCodeGazetteer = postalCodeGazetteer;
+        this.restaurantGeoIndexService = restaurantGeoIndexService;
+        this.restaurantChangedEventPublisher = restaurantChangedEventPublisher;
+        this.listingResultCache = listingResultCache;
+        this.restaurantActivityService = restaurantActivityService;
+        this.restaurantLoader = singleFlightLoaderFactory.create("restaurant");
+        this.homeRestaurantsLoader = singleFlightLoaderFactory.create("home");
+        this.restaurantCatalogService = restaurantCatalogService;
     }
 
     // すべての店舗をページングされた状態で取得する
+    @Transactional(readOnly = true)
     public Page<Restaurant> findAllRestaurants(Pageable pageable) {
         return restaurantRepository.findAll(pageable);
     }
 
     // 指定されたキーワードを店舗名に含む店舗を、ページングされた状態で取得する
+    @Transactional(readOnly = true)
     public Page<Restaurant> findRestaurantsByNameLike(String keyword, Pageable pageable) {
         return restaurantRepository.findByNameLike("%" + keyword + "%", pageable);
     }
 
     // 指定したidを持つ店舗を取得する
+    @Transactional(readOnly = true)
     public Optional<Restaurant> findRestaurantById(Integer id) {
         return restaurantRepository.findById(id);
     }
 
+    // 指定したidを持つ店舗を表示用に取得する（同時に読み込みが発生した場合は1回にまとめ、しばらくの間は読み込んだ店舗を使い回す）
+    // 読み込んだエンティティは他のリクエストと共有せず、表示に使う値だけを写したRestaurantDetailを使い回す（更新にはfindRestaurantByIdを使う）
+    // 使い回す値にレプリカの遅延による古い値が残らないよう、プライマリから読み込む（以下のキャッシュへの読み込みも同様）
+    public Optional<RestaurantDetail> findCachedRestaurantById(Integer id) {
+        return restaurantLoader.get(id, key -> DataSourceRouting.onPrimary(() -> restaurantRepository.findById(key).map(RestaurantDetail::of)));
+    }
+
+    // トップページに表示する店舗を取得する（同時に読み込みが発生した場合は1回にまとめ、しばらくの間は読み込んだ店舗を使い回す）
+    public HomeRestaurants findHomeRestaurants() {
+        return homeRestaurantsLoader.get("home", key -> DataSourceRouting.onPrimary(() -> new HomeRestaurants(findAllRestaurantsByOrderByRankingScoreDesc(PageRequest.of(0, 6)).getContent(),
+                                                                                                             findRestaurantsByIds(restaurantActivityService.findTrendingRestaurantIds(6)),
+                                                                                                             findAllRestaurantsByOrderByCreatedAtDesc(PageRequest.of(0, 6)).getContent())));
+    }
+
+    // 表示用に読み込んだ店舗と、評価を表示するトップページの店舗を破棄する（トランザクション内であればコミット後に破棄する）
+    public void evictCachedRestaurant(Integer id) {
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    restaurantLoader.invalidate(id);
+                    homeRestaurantsLoader.invalidateAll();
+                }
+            });
+        } else {
+            restaurantLoader.invalidate(id);
+            homeRestaurantsLoader.invalidateAll();
+        }
+    }
+
+    // 店舗の作成・更新・削除をコミット後に反映する
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onRestaurantChanged(RestaurantChangedEvent restaurantChangedEvent) {
+        restaurantLoader.invalidate(restaurantChangedEvent.getRestaurantId());
+        homeRestaurantsLoader.invalidateAll();
+    }
+
+    // 指定したidを持つ店舗を、idの並び順のまま取得する（存在しないidは除く）
+    @Transactional(readOnly = true)
+    public List<Restaurant> findRestaurantsByIds(int[] ids) {
+        List<Integer> idList = new ArrayList<>(ids.length);
+
+        for (int id : ids) {
+            idList.add(id);
+        }
+
+        Map<Integer, Restaurant> restaurantsById = restaurantRepository.findWithRatingSummaryByIdIn(idList).stream()
+                                                                       .collect(Collectors.toMap(Restaurant::getId, Function.identity()));
+
+        return idList.stream().map(restaurantsById::get).filter(restaurant -> restaurant != null).toList();
+    }
+
+    // 指定したidを持つ店舗を、カードに表示する列のみidの並び順のまま取得する（存在しないidは除く）
+    @Transactional(readOnly = true)
+    public List<RestaurantCard> findRestaurantCardsByIds(int[] ids) {
+        List<Integer> idList = Arrays.stream(ids).boxed().toList();
+
+        if (idList.isEmpty()) {
+            return List.of();
+        }
+
+        Map<Integer, RestaurantCard> restaurantCardsById = restaurantRepository.findCardsByIdIn(idList).stream()
+                                                                               .collect(Collectors.toMap(RestaurantCard::getId, Function.identity()));
+
+        return idList.stream().map(restaurantCardsById::get).filter(restaurantCard -> restaurantCard != null).toList();
+    }
+
+    // 指定した郵便番号の地域から半径radiusKm以内にある店舗（restaurantIdsがnullでなければそのうち含まれるもの）を並べ替え、ページングされた状態で取得する（郵便番号に該当する地域がない場合は空）
+    @Transactional(readOnly = true)
+    public Page<Restaurant> findRestaurantsNear(String postalCode, double radiusKm, BitSet restaurantIds, String order, Pageable pageable) {
+        Coordinates coordinates = postalCodeGazetteer.lookup(postalCode);
+
+        if (coordinates == null) {
+            return Page.empty(pageable);
+        }
+
+        int[] ids = restaurantGeoIndexService.findWithinRadius(coordinates.latitude(), coordinates.longitude(), radiusKm);
+
+        // 営業時間でも絞り込む場合は、該当しない店舗を除く
+        if (restaurantIds != null) {
+            ids = Arrays.stream(ids).filter(restaurantIds::get).toArray();
+        }
+
+        // 近い順であれば、索引が返した順のまま表示するページの店舗のみ読み込む
+        if (order == null || !SORTABLE_ORDERS.contains(order)) {
+            int from = (int) Math.min(pageable.getOffset(), ids.length);
+            int to = Math.min(from + pageable.getPageSize(), ids.length);
+
+            return new PageImpl<>(findRestaurantsByIds(Arrays.copyOfRange(ids, from, to)), pageable, ids.length);
+        }
+
+        BitSet nearRestaurantIds = new BitSet();
+        Arrays.stream(ids).forEach(nearRestaurantIds::set);
+
+        return sortRestaurants(nearRestaurantIds, order, pageable);
+    }
+
+    // 指定したキーワードに一致する店舗のうち、restaurantIdsに含まれるものを並べ替え、ページングされた状態で取得する（営業時間で絞り込む場合に使う）
+    @Transactional(readOnly = true)
+    public Page<Restaurant> findRestaurantsByKeywordIn(String keyword, BitSet restaurantIds, String order, Pageable pageable) {
+        BitSet keywordRestaurantIds = new BitSet();
+        restaurantRepository.findIdsByNameLikeOrAddressLikeOrCategoryNameLike(keyword.strip()).forEach(keywordRestaurantIds::set);
+        keywordRestaurantIds.and(restaurantIds);
+
+        return sortRestaurants(keywordRestaurantIds, order, pageable);
+    }
+
+    // カタログの価格・日時・スコアの配列で店舗idを並べ替え、表示するページの店舗のみ読み込む
+    // （起動直後でカタログの読み込みが完了していない場合は、データベースで並べ替える）
+    private Page<Restaurant> sortRestaurants(BitSet restaurantIds, String order, Pageable pageable) {
+        if (!restaurantCatalogService.isLoaded()) {
+            return findRestaurantsByIdIn(restaurantIds, order, pageable);
+        }
+
+        CatalogPage catalogPage = restaurantCatalogService.sort(restaurantIds, order, pageable.getOffset(), pageable.getPageSize());
+
+        return new PageImpl<>(findRestaurantsByIds(catalogPage.restaurantIds()), pageable, catalogPage.totalCount());
+    }
+
+    // 指定した郵便番号の地域から各店舗までの距離（km）を取得する
+    public Map<Integer, Double> findDistances(String postalCode, List<Restaurant> restaurants) {
+        Coordinates coordinates = postalCodeGazetteer.lookup(postalCode);
+        Map<Integer, Double> distances = new HashMap<>();
+
+        if (coordinates != null) {
+            for (Restaurant restaurant : restaurants) {
+                Double distance = restaurantGeoIndexService.findDistanceKm(restaurant.getId(), coordinates.latitude(), coordinates.longitude());
+
+                if (distance != null) {
+                    distances.put(restaurant.getId(), distance);
+                }
+            }
+        }
+
+        return distances;
+    }
+
+    // 指定した店舗の近くにある店舗を近い順に取得する
+    @Transactional(readOnly = true)
+    public List<RestaurantCard> findNearbyRestaurants(RestaurantDetail restaurant, int limit) {
+        if (restaurant.latitude() == null || restaurant.longitude() == null) {
+            return List.of();
+        }
+
+        return findRestaurantCardsByIds(restaurantGeoIndexService.findNearest(restaurant.latitude(), restaurant.longitude(), limit, restaurant.id()));
+    }
+
     // 店舗のレコード数を取得する
+    @Transactional(readOnly = true)
     public long countRestaurants() {
         return restaurantRepository.count();
     }
 
     // idが最も大きい店舗を取得する
+    @Transactional(readOnly = true)
     public Restaurant findFirstRestaurantByOrderByIdDesc() {
         return restaurantRepository.findFirstByOrderByIdDesc();
     }
@@ -67,9 +343,9 @@ public class RestaurantService {
         return restaurantRepository.findAllByOrderByLowestPriceAsc(pageable);
     }
 
-    // すべての店舗を平均評価が高い順に並べ替え、ページングされた状態で取得する
-    public Page<Restaurant> findAllRestaurantsByOrderByAverageScoreDesc(Pageable pageable) {
-        return restaurantRepository.findAllByOrderByAverageScoreDesc(pageable);
+    // すべての店舗をランキングスコアが高い順に並べ替え、ページングされた状態で取得する
+    public Page<Restaurant> findAllRestaurantsByOrderByRankingScoreDesc(Pageable pageable) {
+        return restaurantRepository.findAllByOrderByRankingScoreDesc(pageable);
     }
     
     // すべての店舗を予約数が多い順に並べ替え、ページングされた状態で取得する
@@ -77,67 +353,179 @@ public class RestaurantService {
         return restaurantRepository.findAllByOrderByReservationCountDesc(pageable);
     }    
 
+    // すべての店舗を注目度が高い順に並べ替え、ページングされた状態で取得する
+    public Page<Restaurant> findAllRestaurantsByOrderByTrendingScoreDesc(Pageable pageable) {
+        return restaurantRepository.findAllByOrderByTrendingScoreDesc(pageable);
+    }
+
     // 指定されたキーワードを店舗名または住所またはカテゴリ名に含む店舗を作成日時が新しい順に並べ替え、ページングされた状態で取得する
+    @Transactional(readOnly = true)
     public Page<Restaurant> findRestaurantsByNameLikeOrAddressLikeOrCategoryNameLikeOrderByCreatedAtDesc(String nameKeyword, String addressKeyword, String categoryNameKeyword, Pageable pageable) {
         return restaurantRepository.findByNameLikeOrAddressLikeOrCategoryNameLikeOrderByCreatedAtDesc(nameKeyword, addressKeyword, categoryNameKeyword, pageable);
     }
 
     // 指定されたキーワードを店舗名または住所またはカテゴリ名に含む店舗を最低価格が安い順に並べ替え、ページングされた状態で取得する
+    @Transactional(readOnly = true)
     public Page<Restaurant> findRestaurantsByNameLikeOrAddressLikeOrCategoryNameLikeOrderByLowestPriceAsc(String nameKeyword, String addressKeyword, String categoryNameKeyword, Pageable pageable) {
         return restaurantRepository.findByNameLikeOrAddressLikeOrCategoryNameLikeOrderByLowestPriceAsc(nameKeyword, addressKeyword, categoryNameKeyword, pageable);
     }
 
-    // 指定されたキーワードを店舗名または住所またはカテゴリ名に含む店舗を平均評価が高い順に並べ替え、ページングされた状態で取得する
-    public Page<Restaurant> findRestaurantsByNameLikeOrAddressLikeOrCategoryNameLikeOrderByAverageScoreDesc(String nameKeyword, String addressKeyword, String categoryNameKeyword, Pageable pageable) {
-        return restaurantRepository.findByNameLikeOrAddressLikeOrCategoryNameLikeOrderByAverageScoreDesc(nameKeyword, addressKeyword, categoryNameKeyword, pageable);
+    // 指定されたキーワードを店舗名または住所またはカテゴリ名に含む店舗をランキングスコアが高い順に並べ替え、ページングされた状態で取得する
+    @Transactional(readOnly = true)
+    public Page<Restaurant> findRestaurantsByNameLikeOrAddressLikeOrCategoryNameLikeOrderByRankingScoreDesc(String nameKeyword, String addressKeyword, String categoryNameKeyword, Pageable pageable) {
+        return restaurantRepository.findByNameLikeOrAddressLikeOrCategoryNameLikeOrderByRankingScoreDesc(nameKeyword, addressKeyword, categoryNameKeyword, pageable);
     }
     
     // 指定されたキーワードを店舗名または住所またはカテゴリ名に含む店舗を予約数が多い順に並べ替え、ページングされた状態で取得する
+    @Transactional(readOnly = true)
     public Page<Restaurant> findRestaurantsByNameLikeOrAddressLikeOrCategoryNameLikeOrderByReservationCountDesc(String nameKeyword, String addressKeyword, String categoryNameKeyword, Pageable pageable) {
         return restaurantRepository.findByNameLikeOrAddressLikeOrCategoryNameLikeOrderByReservationCountDesc(nameKeyword, addressKeyword, categoryNameKeyword, pageable);
     }    
 
+    // 指定されたキーワードを店舗名または住所またはカテゴリ名に含む店舗を注目度が高い順に並べ替え、ページングされた状態で取得する
+    @Transactional(readOnly = true)
+    public Page<Restaurant> findRestaurantsByNameLikeOrAddressLikeOrCategoryNameLikeOrderByTrendingScoreDesc(String nameKeyword, String addressKeyword, String categoryNameKeyword, Pageable pageable) {
+        return restaurantRepository.findByNameLikeOrAddressLikeOrCategoryNameLikeOrderByTrendingScoreDesc(nameKeyword, addressKeyword, categoryNameKeyword, pageable);
+    }
+
     // 指定されたidのカテゴリが設定された店舗を作成日時が新しい順に並べ替え、ページングされた状態で取得する
+    @Transactional(readOnly = true)
     public Page<Restaurant> findRestaurantsByCategoryIdOrderByCreatedAtDesc(Integer categoryId, Pageable pageable) {
         return restaurantRepository.findByCategoryIdOrderByCreatedAtDesc(categoryId, pageable);
     }
 
     // 指定されたidのカテゴリが設定された店舗を最低価格が安い順に並べ替え、ページングされた状態で取得する
+    @Transactional(readOnly = true)
     public Page<Restaurant> findRestaurantsByCategoryIdOrderByLowestPriceAsc(Integer categoryId, Pageable pageable) {
         return restaurantRepository.findByCategoryIdOrderByLowestPriceAsc(categoryId, pageable);
     }
 
-    // 指定されたidのカテゴリが設定された店舗を平均評価が高い順に並べ替え、ページングされた状態で取得する
-    public Page<Restaurant> findRestaurantsByCategoryIdOrderByAverageScoreDesc(Integer categoryId, Pageable pageable) {
-        return restaurantRepository.findByCategoryIdOrderByAverageScoreDesc(categoryId, pageable);
+    // 指定されたidのカテゴリが設定された店舗をランキングスコアが高い順に並べ替え、ページングされた状態で取得する
+    @Transactional(readOnly = true)
+    public Page<Restaurant> findRestaurantsByCategoryIdOrderByRankingScoreDesc(Integer categoryId, Pageable pageable) {
+        return restaurantRepository.findByCategoryIdOrderByRankingScoreDesc(categoryId, pageable);
     }
     
     // 指定されたidのカテゴリが設定された店舗を予約数が多い順に並べ替え、ページングされた状態で取得する
+    @Transactional(readOnly = true)
     public Page<Restaurant> findRestaurantsByCategoryIdOrderByReservationCountDesc(Integer categoryId, Pageable pageable) {
         return restaurantRepository.findByCategoryIdOrderByReservationCountDesc(categoryId, pageable);
     }    
 
+    // 指定されたidのカテゴリが設定された店舗を注目度が高い順に並べ替え、ページングされた状態で取得する
+    @Transactional(readOnly = true)
+    public Page<Restaurant> findRestaurantsByCategoryIdOrderByTrendingScoreDesc(Integer categoryId, Pageable pageable) {
+        return restaurantRepository.findByCategoryIdOrderByTrendingScoreDesc(categoryId, pageable);
+    }
+
     // 指定された最低価格以下の店舗を作成日時が新しい順に並べ替え、ページングされた状態で取得する
+    @Transactional(readOnly = true)
     public Page<Restaurant> findRestaurantsByLowestPriceLessThanEqualOrderByCreatedAtDesc(Integer price, Pageable pageable) {
         return restaurantRepository.findByLowestPriceLessThanEqualOrderByCreatedAtDesc(price, pageable);
     }
 
     // 指定された最低価格以下の店舗を最低価格が安い順に並べ替え、ページングされた状態で取得する
+    @Transactional(readOnly = true)
     public Page<Restaurant> findRestaurantsByLowestPriceLessThanEqualOrderByLowestPriceAsc(Integer price, Pageable pageable) {
         return restaurantRepository.findByLowestPriceLessThanEqualOrderByLowestPriceAsc(price, pageable);
     }
 
-    // 指定された最低価格以下の店舗を平均評価が高い順に並べ替え、ページングされた状態で取得する
-    public Page<Restaurant> findRestaurantsByLowestPriceLessThanEqualOrderByAverageScoreDesc(Integer price, Pageable pageable) {
-        return restaurantRepository.findByLowestPriceLessThanEqualOrderByAverageScoreDesc(price, pageable);
+    // 指定された最低価格以下の店舗をランキングスコアが高い順に並べ替え、ページングされた状態で取得する
+    @Transactional(readOnly = true)
+    public Page<Restaurant> findRestaurantsByLowestPriceLessThanEqualOrderByRankingScoreDesc(Integer price, Pageable pageable) {
+        return restaurantRepository.findByLowestPriceLessThanEqualOrderByRankingScoreDesc(price, pageable);
     }
     
     // 指定された最低価格以下の店舗を予約数が多い順に並べ替え、ページングされた状態で取得する
+    @Transactional(readOnly = true)
     public Page<Restaurant> findRestaurantsByLowestPriceLessThanEqualOrderByReservationCountDesc(Integer price, Pageable pageable) {
         return restaurantRepository.findByLowestPriceLessThanEqualOrderByReservationCountDesc(price, pageable);
     }   
+
+    // 指定された最低価格以下の店舗を注目度が高い順に並べ替え、ページングされた状態で取得する
+    @Transactional(readOnly = true)
+    public Page<Restaurant> findRestaurantsByLowestPriceLessThanEqualOrderByTrendingScoreDesc(Integer price, Pageable pageable) {
+        return restaurantRepository.findByLowestPriceLessThanEqualOrderByTrendingScoreDesc(price, pageable);
+    }
     
+    // キーワード・カテゴリ・予算（この順に優先）で絞り込んだ店舗を並べ替え、ページングされた状態で取得する
+    // 同じ条件・ページの結果は関係する更新があるまでキャッシュした店舗idから読み込み、検索クエリを実行しない（キャッシュに登録する検索はプライマリで実行する）
+    public Page<Restaurant> findRestaurantsByCriteria(String keyword, Integer categoryId, Integer price, String order, Pageable pageable) {
+        Criteria criteria = Criteria.of(keyword, categoryId, price, order);
+        Lookup lookup = listingResultCache.lookup(criteria, pageable.getPageNumber(), pageable.getPageSize(), pageable.getSort().toString());
+
+        if (lookup.result() != null) {
+            return new PageImpl<>(findRestaurantsByIds(lookup.result().restaurantIds()), pageable, lookup.result().totalCount());
+        }
+
+        Page<Restaurant> restaurantPage = DataSourceRouting.onPrimary(() -> queryRestaurantsByCriteria(criteria, pageable));
+        listingResultCache.put(lookup, restaurantPage.getContent().stream().mapToInt(Restaurant::getId).toArray(), restaurantPage.getTotalElements());
+
+        return restaurantPage;
+    }
+
+    private Page<Restaurant> queryRestaurantsByCriteria(Criteria criteria, Pageable pageable) {
+        String keyword = criteria.keyword();
+
+        if (keyword != null) {
+            return switch (criteria.order()) {
+                case "lowestPriceAsc" -> findRestaurantsByNameLikeOrAddressLikeOrCategoryNameLikeOrderByLowestPriceAsc(keyword, keyword, keyword, pageable);
+                case "ratingDesc" -> findRestaurantsByNameLikeOrAddressLikeOrCategoryNameLikeOrderByRankingScoreDesc(keyword, keyword, keyword, pageable);
+                case "popularDesc" -> findRestaurantsByNameLikeOrAddressLikeOrCategoryNameLikeOrderByReservationCountDesc(keyword, keyword, keyword, pageable);
+                case "trendingDesc" -> findRestaurantsByNameLikeOrAddressLikeOrCategoryNameLikeOrderByTrendingScoreDesc(keyword, keyword, keyword, pageable);
+                default -> findRestaurantsByNameLikeOrAddressLikeOrCategoryNameLikeOrderByCreatedAtDesc(keyword, keyword, keyword, pageable);
+            };
+        } else if (criteria.categoryId() != null) {
+            return switch (criteria.order()) {
+                case "lowestPriceAsc" -> findRestaurantsByCategoryIdOrderByLowestPriceAsc(criteria.categoryId(), pageable);
+                case "ratingDesc" -> findRestaurantsByCategoryIdOrderByRankingScoreDesc(criteria.categoryId(), pageable);
+                case "popularDesc" -> findRestaurantsByCategoryIdOrderByReservationCountDesc(criteria.categoryId(), pageable);
+                case "trendingDesc" -> findRestaurantsByCategoryIdOrderByTrendingScoreDesc(criteria.categoryId(), pageable);
+                default -> findRestaurantsByCategoryIdOrderByCreatedAtDesc(criteria.categoryId(), pageable);
+            };
+        } else if (criteria.price() != null) {
+            return switch (criteria.order()) {
+                case "lowestPriceAsc" -> findRestaurantsByLowestPriceLessThanEqualOrderByLowestPriceAsc(criteria.price(), pageable);
+                case "ratingDesc" -> findRestaurantsByLowestPriceLessThanEqualOrderByRankingScoreDesc(criteria.price(), pageable);
+                case "popularDesc" -> findRestaurantsByLowestPriceLessThanEqualOrderByReservationCountDesc(criteria.price(), pageable);
+                case "trendingDesc" -> findRestaurantsByLowestPriceLessThanEqualOrderByTrendingScoreDesc(criteria.price(), pageable);
+                default -> findRestaurantsByLowestPriceLessThanEqualOrderByCreatedAtDesc(criteria.price(), pageable);
+            };
+        } else {
+            return switch (criteria.order()) {
+                case "lowestPriceAsc" -> findAllRestaurantsByOrderByLowestPriceAsc(pageable);
+                case "ratingDesc" -> findAllRestaurantsByOrderByRankingScoreDesc(pageable);
+                case "popularDesc" -> findAllRestaurantsByOrderByReservationCountDesc(pageable);
+                case "trendingDesc" -> findAllRestaurantsByOrderByTrendingScoreDesc(pageable);
+                default -> findAllRestaurantsByOrderByCreatedAtDesc(pageable);
+            };
+        }
+    }
+
+    // 営業時間で絞り込んだ店舗を並べ替え、ページングされた状態で取得する
+    @Transactional(readOnly = true)
+    public Page<Restaurant> findRestaurantsByIdIn(BitSet restaurantIds, String order, Pageable pageable) {
+        if (restaurantIds.isEmpty()) {
+            return Page.empty(pageable);
+        }
+
+        List<Integer> ids = restaurantIds.stream().boxed().toList();
+
+        if (order != null && order.equals("lowestPriceAsc")) {
+            return restaurantRepository.findByIdInOrderByLowestPriceAsc(ids, pageable);
+        } else if (order != null && order.equals("ratingDesc")) {
+            return restaurantRepository.findByIdInOrderByRankingScoreDesc(ids, pageable);
+        } else if (order != null && order.equals("popularDesc")) {
+            return restaurantRepository.findByIdInOrderByReservationCountDesc(ids, pageable);
+        } else if (order != null && order.equals("trendingDesc")) {
+            return restaurantRepository.findByIdInOrderByTrendingScoreDesc(ids, pageable);
+        } else {
+            return restaurantRepository.findByIdInOrderByCreatedAtDesc(ids, pageable);
+        }
+    }
+
     // 指定された店舗の定休日のday_indexフィールドの値をリストで取得する
+    @Transactional(readOnly = true)
     public List<Integer> findDayIndexesByRestaurantId(Integer restaurantId) {
         return restaurantRepository.findDayIndexesByRestaurantId(restaurantId);
     }  
@@ -166,6 +554,7 @@ public class RestaurantService {
         restaurant.setOpeningTime(restaurantRegisterForm.getOpeningTime());
         restaurant.setClosingTime(restaurantRegisterForm.getClosingTime());
         restaurant.setSeatingCapacity(restaurantRegisterForm.getSeatingCapacity());
+        setCoordinates(restaurant);
 
         restaurantRepository.save(restaurant);
         
@@ -175,6 +564,9 @@ public class RestaurantService {
         if (regularHolidayIds != null) {
             regularHolidayRestaurantService.createRegularHolidaysRestaurants(regularHolidayIds, restaurant);
         }        
+
+        restaurantChangedEventPublisher.publishRestaurantChangedEvent(restaurant.getId());
+        listingResultCache.invalidateRestaurants(categoryIds != null ? categoryIds : List.of());
     }
 
     @Transactional
@@ -200,16 +592,40 @@ public class RestaurantService {
         restaurant.setOpeningTime(restaurantEditForm.getOpeningTime());
         restaurant.setClosingTime(restaurantEditForm.getClosingTime());
         restaurant.setSeatingCapacity(restaurantEditForm.getSeatingCapacity());
+        setCoordinates(restaurant);
+
+        // 変更前に属していたカテゴリの一覧も無効にする
+        List<Integer> affectedCategoryIds = new ArrayList<>(categoryRestaurantService.findCategoryIdsByRestaurantOrderByIdAsc(restaurant));
+
+        if (categoryIds != null) {
+            affectedCategoryIds.addAll(categoryIds);
+        }
 
         restaurantRepository.save(restaurant);
         
         categoryRestaurantService.syncCategoriesRestaurants(categoryIds, restaurant);
         regularHolidayRestaurantService.syncRegularHolidaysRestaurants(regularHolidayIds, restaurant);
+
+        restaurantChangedEventPublisher.publishRestaurantChangedEvent(restaurant.getId());
+        listingResultCache.invalidateRestaurants(affectedCategoryIds);
     }
 
+    // 店舗を論理削除する（紐づくレビュー・予約・お気に入りなどを読み込んで1行ずつ削除すると時間がかかるため、RestaurantPurgeServiceがまとめて削除する）
     @Transactional
     public void deleteRestaurant(Restaurant restaurant) {
-        restaurantRepository.delete(restaurant);
+        List<Integer> affectedCategoryIds = categoryRestaurantService.findCategoryIdsByRestaurantOrderByIdAsc(restaurant);
+
+        restaurantRepository.softDeleteById(restaurant.getId());
+        restaurantChangedEventPublisher.publishRestaurantDeletedEvent(restaurant.getId());
+        listingResultCache.invalidateRestaurants(affectedCategoryIds);
+    }
+
+    // 郵便番号から緯度・経度を求めて設定する（該当する地域がない場合は未設定とする）
+    private void setCoordinates(Restaurant restaurant) {
+        Coordinates coordinates = postalCodeGazetteer.lookup(restaurant.getPostalCode());
+
+        restaurant.setLatitude(coordinates != null ? coordinates.latitude() : null);
+        restaurant.setLongitude(coordinates != null ? coordinates.longitude() : null);
     }
 
     // UUIDを使って生成したファイル名を返す
@@ -8,36 +8,56 @@ import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 
 import com.example.nagoyameshi.entity.Restaurant;
+import com.example.nagoyameshi.entity.RestaurantRatingSummary;
 import com.example.nagoyameshi.entity.Review;
 import com.example.nagoyameshi.entity.User;
 import com.example.nagoyameshi.form.ReviewEditForm;
 import com.example.nagoyameshi.form.ReviewRegisterForm;
+import com.example.nagoyameshi.repository.RestaurantRatingSummaryRepository;
 import com.example.nagoyameshi.repository.ReviewRepository;
+import com.example.nagoyameshi.repository.ReviewRepository.ReviewListItem;
 
 @Service
 public class ReviewService {
     private final ReviewRepository reviewRepository;
+    private final RestaurantRatingSummaryRepository restaurantRatingSummaryRepository;
+    private final RestaurantService restaurantService;
 
-    public ReviewService(ReviewRepository reviewRepository) {
+    public ReviewService(ReviewRepository reviewRepository,
+                         RestaurantRatingSummaryRepository restaurantRatingSummaryRepository,
+                         RestaurantService restaurantService)
+    {
         this.reviewRepository = reviewRepository;
+        this.restaurantRatingSummaryRepository = restaurantRatingSummaryRepository;
+        this.restaurantService = restaurantService;
     }
 
     // 指定したidを持つレビューを取得する
+    @Transactional(readOnly = true)
     public Optional<Review> findReviewById(Integer id) {
         return reviewRepository.findById(id);
     }
 
-    // 指定した店舗のすべてのレビューを作成日時が新しい順に並べ替え、ページングされた状態で取得する
-    public Page<Review> findReviewsByRestaurantOrderByCreatedAtDesc(Restaurant restaurant, Pageable pageable) {
-        return reviewRepository.findByRestaurantOrderByCreatedAtDesc(restaurant, pageable);
+    // 指定した店舗のすべてのレビューを作成日時が新しい順に並べ替え、一覧ページに表示する列のみページングされた状態で取得する
+    @Transactional(readOnly = true)
+    public Page<ReviewListItem> findReviewsByRestaurantIdOrderByCreatedAtDesc(Integer restaurantId, Pageable pageable) {
+        return reviewRepository.findListItemsByRestaurantIdOrderByCreatedAtDesc(restaurantId, pageable);
+    }
+
+    // 指定した店舗の評価の集計を取得する
+    @Transactional(readOnly = true)
+    public Optional<RestaurantRatingSummary> findRatingSummaryByRestaurantId(Integer restaurantId) {
+        return restaurantRatingSummaryRepository.findById(restaurantId);
     }
 
     // レビューのレコード数を取得する
+    @Transactional(readOnly = true)
     public long countReviews() {
         return reviewRepository.count();
     }
 
     // idが最も大きいレビューを取得する
+    @Transactional(readOnly = true)
     public Review findFirstReviewByOrderByIdDesc() {
         return reviewRepository.findFirstByOrderByIdDesc();
     }
@@ -52,24 +72,38 @@ public class ReviewService {
         review.setUser(user);
 
         reviewRepository.save(review);
+        restaurantRatingSummaryRepository.addScore(restaurant.getId(), review.getScore());
+        // 店舗の詳細ページに表示する評価の集計を読み込み直す
+        restaurantService.evictCachedRestaurant(restaurant.getId());
     }
 
     @Transactional
     public void updateReview(ReviewEditForm reviewEditForm, Review review) {
+        Integer oldScore = review.getScore();
+
         review.setScore(reviewEditForm.getScore());
         review.setContent(reviewEditForm.getContent());
 
         reviewRepository.save(review);
+
+        // 評価が変更された場合は、変更前の評価から変更後の評価に付け替える
+        if (!oldScore.equals(review.getScore())) {
+            restaurantRatingSummaryRepository.changeScore(review.getRestaurant().getId(), oldScore, review.getScore());
+            restaurantService.evictCachedRestaurant(review.getRestaurant().getId());
+        }
     }
 
     @Transactional
     public void deleteReview(Review review) {
         reviewRepository.delete(review);
+        restaurantRatingSummaryRepository.removeScore(review.getRestaurant().getId(), review.getScore());
+        restaurantService.evictCachedRestaurant(review.getRestaurant().getId());
     }
 
     // 指定したユーザーが指定した店舗のレビューをすでに投稿済みかどうかをチェックする
-    public boolean hasUserAlreadyReviewed(Restaurant restaurant, User user) {
-        return reviewRepository.findByRestaurantAndUser(restaurant, user) != null;
+    @Transactional(readOnly = true)
+    public boolean hasUserAlreadyReviewed(Integer restaurantId, User user) {
+        return reviewRepository.existsByRestaurantIdAndUser(restaurantId, user);
     }
 }
 
@@ -0,0 +1,37 @@
+package com.example.nagoyameshi.service;
+
+import java.text.Normalizer;
+import java.util.Locale;
+
+// 検索用のキーを生成する（全角・半角の統一、ひらがなのカタカナへの変換、空白の除去、英字の小文字化）
+public final class SearchKeyNormalizer {
+    private SearchKeyNormalizer() {
+    }
+
+    public static String normalize(String value) {
+        if (value == null) {
+            return null;
+        }
+
+        // 半角カナや全角英数字などを統一する
+        String normalized = Normalizer.normalize(value, Normalizer.Form.NFKC);
+        StringBuilder stringBuilder = new StringBuilder(normalized.length());
+
+        for (int i = 0; i < normalized.length(); i++) {
+            char c = normalized.charAt(i);
+
+            if (Character.isWhitespace(c) || Character.isSpaceChar(c)) {
+                continue;
+            }
+
+            // ひらがな（ぁ～ゖ、ゝ、ゞ）を対応するカタカナに変換する
+            if ((c >= 'ぁ' && c <= 'ゖ') || c == 'ゝ' || c == 'ゞ') {
+                c = (char) (c + 0x60);
+            }
+
+            stringBuilder.append(c);
+        }
+
+        return stringBuilder.toString().toLowerCase(Locale.ROOT);
+    }
+}
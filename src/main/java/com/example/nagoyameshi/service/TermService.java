@@ -16,6 +16,7 @@ public class TermService {
     }
 
     // idが最も大きい利用規約を取得する
+    @Transactional(readOnly = true)
     public Term findFirstTermByOrderByIdDesc() {
         return termRepository.findFirstByOrderByIdDesc();
     }
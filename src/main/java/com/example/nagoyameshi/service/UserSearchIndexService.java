@@ -0,0 +1,239 @@
+package com.example.nagoyameshi.service;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+import javax.sql.DataSource;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Service;
+
+import com.example.nagoyameshi.entity.User;
+
+// 会員検索用のキーの移行と、任意で有効にできる部分一致検索用のバイグラム索引を管理する
+@Service
+public class UserSearchIndexService {
+    private static final Logger logger = LoggerFactory.getLogger(UserSearchIndexService.class);
+    private static final int BACKFILL_BATCH_SIZE = 500;
+
+    private final JdbcTemplate jdbcTemplate;
+    private final JdbcTemplate streamingJdbcTemplate;
+    private final boolean ngramIndexEnabled;
+
+    // バイグラム（2文字を1つのintにまとめたもの）ごとの、昇順に並んだユーザーidの一覧
+    private final Map<Integer, PostingList> postingLists = new HashMap<>();
+    // ユーザーidを添字とした、氏名・フリガナ・メールアドレスを正規化して連結した文字列
+    private String[] texts = new String[1024];
+    private final ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
+    private volatile boolean ready;
+
+    public UserSearchIndexService(DataSource dataSource, @Value("${user-search.ngram-index.enabled:false}") boolean ngramIndexEnabled) {
+        this.jdbcTemplate = new JdbcTemplate(dataSource);
+        this.streamingJdbcTemplate = new JdbcTemplate(dataSource);
+        this.streamingJdbcTemplate.setFetchSize(Integer.MIN_VALUE);
+        this.ngramIndexEnabled = ngramIndexEnabled;
+    }
+
+    // 起動時、検索用のキーが未設定のユーザーを移行し、索引が有効であればバックグラウンドで構築する
+    @EventListener(ApplicationReadyEvent.class)
+    public void onApplicationReady() {
+        backfillSearchKeys();
+
+        if (ngramIndexEnabled) {
+            Thread thread = new Thread(this::buildIndex, "user-search-index");
+            thread.setDaemon(true);
+            thread.start();
+        }
+    }
+
+    // 検索用のキーが未設定のユーザーにキーを設定する（更新日時やバージョンは変更しない）
+    public void backfillSearchKeys() {
+        int updatedCount;
+
+        do {
+            List<Object[]> batchArgs = new ArrayList<>();
+
+            jdbcTemplate.query("SELECT id, name, furigana FROM users WHERE name_search_key IS NULL OR furigana_search_key IS NULL LIMIT " + BACKFILL_BATCH_SIZE,
+                               resultSet -> {
+                                   batchArgs.add(new Object[] {
+                                       SearchKeyNormalizer.normalize(resultSet.getString("name")),
+                                       SearchKeyNormalizer.normalize(resultSet.getString("furigana")),
+                                       resultSet.getInt("id")
+                                   });
+                               });
+
+            if (!batchArgs.isEmpty()) {
+                jdbcTemplate.batchUpdate("UPDATE users SET name_search_key = ?, furigana_search_key = ?, updated_at = updated_at WHERE id = ?", batchArgs);
+            }
+
+            updatedCount = batchArgs.size();
+        } while (updatedCount == BACKFILL_BATCH_SIZE);
+    }
+
+    // 全ユーザーを1行ずつ読み込んで索引を構築する
+    private void buildIndex() {
+        long startedAt = System.currentTimeMillis();
+
+        streamingJdbcTemplate.query("SELECT id, name, furigana, email FROM users ORDER BY id", resultSet -> {
+            index(resultSet.getInt("id"), resultSet.getString("name"), resultSet.getString("furigana"), resultSet.getString("email"), false);
+        });
+
+        ready = true;
+        logger.info("会員検索用の索引を構築しました（{}ms）", System.currentTimeMillis() - startedAt);
+    }
+
+    // 部分一致検索用の索引が利用可能であればtrueを返す
+    public boolean isReady() {
+        return ngramIndexEnabled && ready;
+    }
+
+    // ユーザーの作成・更新を索引に反映する
+    public void update(User user) {
+        if (ngramIndexEnabled) {
+            index(user.getId(), user.getName(), user.getFurigana(), user.getEmail(), true);
+        }
+    }
+
+    private void index(int id, String name, String furigana, String email, boolean overwrite) {
+        String text = SearchKeyNormalizer.normalize(name) + "\n" + SearchKeyNormalizer.normalize(furigana) + "\n" + SearchKeyNormalizer.normalize(email);
+
+        lock.writeLock().lock();
+
+        try {
+            if (id >= texts.length) {
+                texts = Arrays.copyOf(texts, Math.max(texts.length * 2, id + 1));
+            }
+
+            // 構築中に更新されたユーザーを古い値で上書きしないようにする
+            if (!overwrite && texts[id] != null) {
+                return;
+            }
+
+            texts[id] = text;
+
+            // 古いバイグラムの登録は残るが、検索時に本文と照合するため結果には影響しない
+            for (int i = 0; i + 1 < text.length(); i++) {
+                // 区切り文字をまたぐ組み合わせは対象外とする
+                if (text.charAt(i) == '\n' || text.charAt(i + 1) == '\n') {
+                    continue;
+                }
+
+                postingLists.computeIfAbsent(toBigram(text.charAt(i), text.charAt(i + 1)), key -> new PostingList()).add(id);
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    // 正規化したキーワードを氏名・フリガナ・メールアドレスのいずれかに含むユーザーのidを昇順で返す（キーワードは2文字以上）
+    public int[] search(String keyword) {
+        String normalizedKeyword = SearchKeyNormalizer.normalize(keyword);
+
+        if (normalizedKeyword.length() < 2) {
+            throw new IllegalArgumentException("キーワードは2文字以上で指定してください。");
+        }
+
+        lock.readLock().lock();
+
+        try {
+            // 最も短い一覧から順に積集合を求める
+            List<PostingList> lists = new ArrayList<>();
+
+            for (int i = 0; i + 1 < normalizedKeyword.length(); i++) {
+                PostingList postingList = postingLists.get(toBigram(normalizedKeyword.charAt(i), normalizedKeyword.charAt(i + 1)));
+
+                if (postingList == null) {
+                    return new int[0];
+                }
+
+                lists.add(postingList);
+            }
+
+            lists.sort((a, b) -> Integer.compare(a.size, b.size));
+
+            int[] candidates = Arrays.copyOf(lists.get(0).ids, lists.get(0).size);
+            int candidateCount = candidates.length;
+
+            for (int i = 1; i < lists.size() && candidateCount > 0; i++) {
+                candidateCount = intersect(candidates, candidateCount, lists.get(i));
+            }
+
+            // 候補を本文と照合し、バイグラムの並びが一致しないものや古い登録を除外する
+            int matchCount = 0;
+
+            for (int i = 0; i < candidateCount; i++) {
+                String text = texts[candidates[i]];
+
+                if (text != null && text.contains(normalizedKeyword)) {
+                    candidates[matchCount++] = candidates[i];
+                }
+            }
+
+            return Arrays.copyOf(candidates, matchCount);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    private int intersect(int[] candidates, int candidateCount, PostingList postingList) {
+        int count = 0;
+        int j = 0;
+
+        for (int i = 0; i < candidateCount && j < postingList.size; i++) {
+            while (j < postingList.size && postingList.ids[j] < candidates[i]) {
+                j++;
+            }
+
+            if (j < postingList.size && postingList.ids[j] == candidates[i]) {
+                candidates[count++] = candidates[i];
+            }
+        }
+
+        return count;
+    }
+
+    private int toBigram(char first, char second) {
+        return (first << 16) | second;
+    }
+
+    // 昇順に並んだユーザーidの可変長配列
+    private static class PostingList {
+        private int[] ids = new int[4];
+        private int size;
+
+        void add(int id) {
+            // 新規登録のidは常に最大なので、ほとんどの場合は末尾への追加となる
+            if (size > 0 && ids[size - 1] >= id) {
+                int position = Arrays.binarySearch(ids, 0, size, id);
+
+                if (position >= 0) {
+                    return;
+                }
+
+                insert(-position - 1, id);
+                return;
+            }
+
+            insert(size, id);
+        }
+
+        private void insert(int position, int id) {
+            if (size == ids.length) {
+                ids = Arrays.copyOf(ids, size * 2);
+            }
+
+            System.arraycopy(ids, position, ids, position + 1, size - position);
+            ids[position] = id;
+            size++;
+        }
+    }
+}
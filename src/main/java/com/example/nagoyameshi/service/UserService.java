@@ -2,19 +2,26 @@ package com.example.nagoyameshi.service;
 
 import java.time.LocalDate;
 import java.time.format.DateTimeFormatter;
-import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.List;
+import java.util.Map;
+import java.util.Objects;
 import java.util.Optional;
+import java.util.function.Function;
+import java.util.stream.Collectors;
 
 import org.springframework.data.domain.Page;
+import org.springframework.data.domain.PageImpl;
 import org.springframework.data.domain.Pageable;
 import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
 import org.springframework.security.core.Authentication;
-import org.springframework.security.core.authority.SimpleGrantedAuthority;
+import org.springframework.security.core.context.SecurityContext;
 import org.springframework.security.core.context.SecurityContextHolder;
-import org.springframework.security.crypto.password.PasswordEncoder;
+import org.springframework.security.web.context.HttpSessionSecurityContextRepository;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
+import org.springframework.web.context.request.RequestContextHolder;
+import org.springframework.web.context.request.ServletRequestAttributes;
 
 import com.example.nagoyameshi.entity.Role;
 import com.example.nagoyameshi.entity.User;
@@ -22,26 +29,36 @@ import com.example.nagoyameshi.form.SignupForm;
 import com.example.nagoyameshi.form.UserEditForm;
 import com.example.nagoyameshi.repository.RoleRepository;
 import com.example.nagoyameshi.repository.UserRepository;
+import com.example.nagoyameshi.security.UserDetailsImpl;
+
+import jakarta.servlet.http.HttpSession;
 
 @Service
 public class UserService {
     private final UserRepository userRepository;
     private final RoleRepository roleRepository;
-    private final PasswordEncoder passwordEncoder;
+    private final EntitlementService entitlementService;
+    private final UserSearchIndexService userSearchIndexService;
 
-    public UserService(UserRepository userRepository, RoleRepository roleRepository, PasswordEncoder passwordEncoder) {
+    public UserService(UserRepository userRepository, RoleRepository roleRepository,
+                       EntitlementService entitlementService, UserSearchIndexService userSearchIndexService)
+    {
         this.userRepository = userRepository;
         this.roleRepository = roleRepository;
-        this.passwordEncoder = passwordEncoder;
+        this.entitlementService = entitlementService;
+        this.userSearchIndexService = userSearchIndexService;
     }
 
+    // パスワードはトランザクションの外（コネクションを取得する前）でハッシュ化したものを受け取る
     @Transactional
-    public User createUser(SignupForm signupForm) {
+    public User createUser(SignupForm signupForm, String encodedPassword) {
         User user = new User();
         Role role = roleRepository.findByName("ROLE_FREE_MEMBER");
 
         user.setName(signupForm.getName());
         user.setFurigana(signupForm.getFurigana());
+        user.setNameSearchKey(SearchKeyNormalizer.normalize(signupForm.getName()));
+        user.setFuriganaSearchKey(SearchKeyNormalizer.normalize(signupForm.getFurigana()));
         user.setPostalCode(signupForm.getPostalCode());
         user.setAddress(signupForm.getAddress());
         user.setPhoneNumber(signupForm.getPhoneNumber());
@@ -59,17 +76,22 @@ public class UserService {
         }
 
         user.setEmail(signupForm.getEmail());
-        user.setPassword(passwordEncoder.encode(signupForm.getPassword()));
+        user.setPassword(encodedPassword);
         user.setRole(role);
         user.setEnabled(false);
 
-        return userRepository.save(user);
+        User savedUser = userRepository.save(user);
+        userSearchIndexService.update(savedUser);
+
+        return savedUser;
     }
 
     @Transactional
     public void updateUser(UserEditForm userEditForm, User user) {
         user.setName(userEditForm.getName());
         user.setFurigana(userEditForm.getFurigana());
+        user.setNameSearchKey(SearchKeyNormalizer.normalize(userEditForm.getName()));
+        user.setFuriganaSearchKey(SearchKeyNormalizer.normalize(userEditForm.getFurigana()));
         user.setPostalCode(userEditForm.getPostalCode());
         user.setAddress(userEditForm.getAddress());
         user.setPhoneNumber(userEditForm.getPhoneNumber());
@@ -88,7 +110,9 @@ public class UserService {
 
         user.setEmail(userEditForm.getEmail());
 
-        userRepository.save(user);
+        User savedUser = userRepository.saveAndFlush(user);
+        entitlementService.recordChange(savedUser);
+        userSearchIndexService.update(savedUser);
     }
 
     // メールアドレスが登録済みかどうかをチェックする
@@ -106,7 +130,10 @@ public class UserService {
     @Transactional
     public void enableUser(User user) {
         user.setEnabled(true);
-        userRepository.save(user);
+
+        // バージョンが上がるため、他のサーバーにも変更を通知する
+        User savedUser = userRepository.saveAndFlush(user);
+        entitlementService.recordChange(savedUser);
     }
 
     // メールアドレスが変更されたかどうかをチェックする
@@ -120,21 +147,48 @@ public class UserService {
     }
 
     // すべてのユーザーをページングされた状態で取得する
+    @Transactional(readOnly = true)
     public Page<User> findAllUsers(Pageable pageable) {
         return userRepository.findAll(pageable);
     }
 
-    // 指定されたキーワードを氏名またはフリガナに含むユーザーを、ページングされた状態で取得する
-    public Page<User> findUsersByNameLikeOrFuriganaLike(String nameKeyword, String furiganaKeyword, Pageable pageable) {
-        return userRepository.findByNameLikeOrFuriganaLike("%" + nameKeyword + "%", "%" + furiganaKeyword + "%", pageable);
+    // 指定されたキーワードでユーザーを検索し、ページングされた状態で取得する
+    // （部分一致検索用の索引が利用可能であれば部分一致、そうでなければ検索用のキーとメールアドレスの前方一致で検索する）
+    // （メールアドレスも同じ正規化で全角英数字を半角に、英字を小文字にして照合する）
+    @Transactional(readOnly = true)
+    public Page<User> searchUsers(String keyword, Pageable pageable) {
+        String searchKey = SearchKeyNormalizer.normalize(keyword);
+
+        if (userSearchIndexService.isReady() && searchKey.length() >= 2) {
+            int[] ids = userSearchIndexService.search(keyword);
+            int fromIndex = (int) Math.min(pageable.getOffset(), ids.length);
+            int toIndex = Math.min(fromIndex + pageable.getPageSize(), ids.length);
+            List<Integer> pageIds = Arrays.stream(ids, fromIndex, toIndex).boxed().toList();
+
+            // 取得したユーザーを索引のid順（昇順）に並べ直す
+            Map<Integer, User> usersById = userRepository.findAllById(pageIds).stream()
+                                                         .collect(Collectors.toMap(User::getId, Function.identity()));
+            List<User> users = pageIds.stream().map(usersById::get).filter(Objects::nonNull).toList();
+
+            return new PageImpl<>(users, pageable, ids.length);
+        }
+
+        return userRepository.findByNameSearchKeyStartingWithOrFuriganaSearchKeyStartingWithOrEmailStartingWith(searchKey, searchKey, searchKey, pageable);
     }
 
     // 指定したidを持つユーザーを取得する
+    @Transactional(readOnly = true)
     public Optional<User> findUserById(Integer id) {
         return userRepository.findById(id);
     }
+
+    // 指定したidを持つユーザーの参照を取得する（関連付けや検索条件に使うだけであればSELECT文は発行されない）
+    public User getUserReference(Integer id) {
+        return userRepository.getReferenceById(id);
+    }
     
     // 指定したロール名に紐づくユーザーのレコード数を取得する
+    @Transactional(readOnly = true)
     public long countUsersByRole_Name(String roleName) {
         return userRepository.countByRole_Name(roleName);
     }
@@ -142,28 +196,47 @@ public class UserService {
     @Transactional
     public void saveStripeCustomerId(User user, String stripeCustomerId) {
         user.setStripeCustomerId(stripeCustomerId);
-        userRepository.save(user);
+
+        // バージョンが上がるため、他のサーバーにも変更を通知する
+        User savedUser = userRepository.saveAndFlush(user);
+        entitlementService.recordChange(savedUser);
     }
 
     @Transactional
     public void updateRole(User user, String roleName) {
         Role role = roleRepository.findByName(roleName);
         user.setRole(role);
-        userRepository.save(user);
+
+        // 他のセッションや他のサーバーにもロールの変更を反映させる
+        User savedUser = userRepository.saveAndFlush(user);
+        entitlementService.recordChange(savedUser);
     }
 
-    // 認証情報のロールを更新する
-    public void refreshAuthenticationByRole(String newRole) {
+    // 認証情報をユーザーの最新の状態で更新する
+    public void refreshAuthentication(User user) {
         // 現在の認証情報を取得する
         Authentication currentAuthentication = SecurityContextHolder.getContext().getAuthentication();
 
         // 新しい認証情報を作成する
-        List<SimpleGrantedAuthority> simpleGrantedAuthorities = new ArrayList<>();
-        simpleGrantedAuthorities.add(new SimpleGrantedAuthority(newRole));
-        Authentication newAuthentication = new UsernamePasswordAuthenticationToken(currentAuthentication.getPrincipal(),
-                currentAuthentication.getCredentials(), simpleGrantedAuthorities);
+        UserDetailsImpl userDetailsImpl = new UserDetailsImpl(user);
+        userDetailsImpl.eraseCredentials();
+        Authentication newAuthentication = new UsernamePasswordAuthenticationToken(userDetailsImpl,
+                currentAuthentication.getCredentials(), userDetailsImpl.getAuthorities());
 
         // 認証情報を更新する
-        SecurityContextHolder.getContext().setAuthentication(newAuthentication);
+        SecurityContext securityContext = SecurityContextHolder.createEmptyContext();
+        securityContext.setAuthentication(newAuthentication);
+        SecurityContextHolder.setContext(securityContext);
+
+        // セッションの属性を上書きし、外部のセッションストアにも変更を反映させる
+        ServletRequestAttributes requestAttributes = (ServletRequestAttributes) RequestContextHolder.getRequestAttributes();
+
+        if (requestAttributes != null) {
+            HttpSession httpSession = requestAttributes.getRequest().getSession(false);
+
+            if (httpSession != null) {
+                httpSession.setAttribute(HttpSessionSecurityContextRepository.SPRING_SECURITY_CONTEXT_KEY, securityContext);
+            }
+        }
     }
 }
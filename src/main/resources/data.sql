@@ -2056,4 +2056,18 @@ INSERT IGNORE INTO favorites (id, restaurant_id, user_id) VALUES
 (447,47,5),
 (448,22,5),
 (449,28,5),
-(450,60,6);
\ No newline at end of file
+(450,60,6);
+
+/* restaurant_rating_summariesテーブル */
+INSERT IGNORE INTO restaurant_rating_summaries (restaurant_id, count_1, count_2, count_3, count_4, count_5, review_count, score_sum, last_reviewed_at)
+SELECT restaurant_id,
+       SUM(CASE WHEN score = 1 THEN 1 ELSE 0 END),
+       SUM(CASE WHEN score = 2 THEN 1 ELSE 0 END),
+       SUM(CASE WHEN score = 3 THEN 1 ELSE 0 END),
+       SUM(CASE WHEN score = 4 THEN 1 ELSE 0 END),
+       SUM(CASE WHEN score = 5 THEN 1 ELSE 0 END),
+       COUNT(*),
+       SUM(score),
+       MAX(created_at)
+FROM reviews
+GROUP BY restaurant_id;
\ No newline at end of file
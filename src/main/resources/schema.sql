@@ -7,6 +7,8 @@ CREATE TABLE IF NOT EXISTS users (
     id INT NOT NULL AUTO_INCREMENT PRIMARY KEY,
     name VARCHAR(50) NOT NULL,
     furigana VARCHAR(50) NOT NULL,
+    name_search_key VARCHAR(100),
+    furigana_search_key VARCHAR(100),
     postal_code VARCHAR(50) NOT NULL,
     address VARCHAR(255) NOT NULL,
     phone_number VARCHAR(50) NOT NULL,
@@ -17,9 +19,12 @@ CREATE TABLE IF NOT EXISTS users (
     role_id INT NOT NULL,
     enabled BOOLEAN NOT NULL,
     stripe_customer_id VARCHAR(255) UNIQUE,
+    version INT NOT NULL DEFAULT 0,
     created_at DATETIME NOT NULL DEFAULT CURRENT_TIMESTAMP,
     updated_at DATETIME NOT NULL DEFAULT CURRENT_TIMESTAMP ON UPDATE CURRENT_TIMESTAMP,
-    FOREIGN KEY (role_id) REFERENCES roles (id)
+    FOREIGN KEY (role_id) REFERENCES roles (id),
+    INDEX idx_users_name_search_key (name_search_key),
+    INDEX idx_users_furigana_search_key (furigana_search_key)
 );
 
 CREATE TABLE IF NOT EXISTS verification_tokens (
@@ -28,7 +33,8 @@ CREATE TABLE IF NOT EXISTS verification_tokens (
     token VARCHAR(255) NOT NULL,
     created_at DATETIME NOT NULL DEFAULT CURRENT_TIMESTAMP,
     updated_at DATETIME NOT NULL DEFAULT CURRENT_TIMESTAMP ON UPDATE CURRENT_TIMESTAMP,
-    FOREIGN KEY (user_id) REFERENCES users (id)
+    FOREIGN KEY (user_id) REFERENCES users (id),
+    INDEX idx_verification_tokens_token (token)
 );
 
 CREATE TABLE IF NOT EXISTS restaurants (
@@ -43,8 +49,17 @@ CREATE TABLE IF NOT EXISTS restaurants (
     opening_time TIME NOT NULL,
     closing_time TIME NOT NULL,
     seating_capacity INT NOT NULL,
+    latitude DOUBLE,
+    longitude DOUBLE,
+    ranking_score DOUBLE NOT NULL DEFAULT 0,
+    trending_score DOUBLE NOT NULL DEFAULT 0,
     created_at DATETIME NOT NULL DEFAULT CURRENT_TIMESTAMP,
-    updated_at DATETIME NOT NULL DEFAULT CURRENT_TIMESTAMP ON UPDATE CURRENT_TIMESTAMP
+    updated_at DATETIME NOT NULL DEFAULT CURRENT_TIMESTAMP ON UPDATE CURRENT_TIMESTAMP,
+    deleted_at DATETIME,
+    INDEX idx_restaurants_lowest_price (lowest_price),
+    INDEX idx_restaurants_created_at (created_at),
+    INDEX idx_restaurants_ranking_score_id (ranking_score DESC, id),
+    INDEX idx_restaurants_trending_score_id (trending_score DESC, id)
 );
 
 CREATE TABLE IF NOT EXISTS categories (
@@ -111,7 +126,33 @@ CREATE TABLE IF NOT EXISTS reviews (
     updated_at DATETIME NOT NULL DEFAULT CURRENT_TIMESTAMP ON UPDATE CURRENT_TIMESTAMP,
     UNIQUE (restaurant_id, user_id),
     FOREIGN KEY (restaurant_id) REFERENCES restaurants (id),
-    FOREIGN KEY (user_id) REFERENCES users (id)
+    FOREIGN KEY (user_id) REFERENCES users (id),
+    INDEX idx_reviews_restaurant_id_created_at (restaurant_id, created_at)
+);
+
+CREATE TABLE IF NOT EXISTS restaurant_rating_summaries (
+    restaurant_id INT NOT NULL PRIMARY KEY,
+    count_1 INT NOT NULL DEFAULT 0,
+    count_2 INT NOT NULL DEFAULT 0,
+    count_3 INT NOT NULL DEFAULT 0,
+    count_4 INT NOT NULL DEFAULT 0,
+    count_5 INT NOT NULL DEFAULT 0,
+    review_count INT NOT NULL DEFAULT 0,
+    score_sum INT NOT NULL DEFAULT 0,
+    last_reviewed_at DATETIME,
+    updated_at DATETIME NOT NULL DEFAULT CURRENT_TIMESTAMP ON UPDATE CURRENT_TIMESTAMP,
+    FOREIGN KEY (restaurant_id) REFERENCES restaurants (id) ON DELETE CASCADE,
+    INDEX idx_restaurant_rating_summaries_updated_at (updated_at)
+);
+
+CREATE TABLE IF NOT EXISTS restaurant_activity (
+    restaurant_id INT NOT NULL,
+    bucket_start DATETIME NOT NULL,
+    view_count INT NOT NULL DEFAULT 0,
+    reservation_count INT NOT NULL DEFAULT 0,
+    PRIMARY KEY (restaurant_id, bucket_start),
+    INDEX idx_restaurant_activity_bucket_start (bucket_start),
+    FOREIGN KEY (restaurant_id) REFERENCES restaurants (id) ON DELETE CASCADE
 );
 
 CREATE TABLE IF NOT EXISTS reservations (
@@ -123,7 +164,8 @@ CREATE TABLE IF NOT EXISTS reservations (
     created_at DATETIME NOT NULL DEFAULT CURRENT_TIMESTAMP,
     updated_at DATETIME NOT NULL DEFAULT CURRENT_TIMESTAMP ON UPDATE CURRENT_TIMESTAMP,
     FOREIGN KEY (restaurant_id) REFERENCES restaurants (id),
-    FOREIGN KEY (user_id) REFERENCES users (id)
+    FOREIGN KEY (user_id) REFERENCES users (id),
+    INDEX idx_reservations_user_id_reserved_datetime (user_id, reserved_datetime)
 );
 
 CREATE TABLE IF NOT EXISTS favorites (
@@ -134,5 +176,154 @@ CREATE TABLE IF NOT EXISTS favorites (
     updated_at DATETIME NOT NULL DEFAULT CURRENT_TIMESTAMP ON UPDATE CURRENT_TIMESTAMP,
     UNIQUE (restaurant_id, user_id),
     FOREIGN KEY (restaurant_id) REFERENCES restaurants (id),
-    FOREIGN KEY (user_id) REFERENCES users (id)
-);
\ No newline at end of file
+    FOREIGN KEY (user_id) REFERENCES users (id),
+    INDEX idx_favorites_user_id_created_at (user_id, created_at)
+);
+
+CREATE TABLE IF NOT EXISTS entitlement_changes (
+    id BIGINT NOT NULL AUTO_INCREMENT PRIMARY KEY,
+    user_id INT NOT NULL,
+    version INT NOT NULL,
+    created_at DATETIME NOT NULL DEFAULT CURRENT_TIMESTAMP,
+    INDEX idx_entitlement_changes_created_at (created_at)
+);
+
+CREATE TABLE IF NOT EXISTS favorite_changes (
+    id BIGINT NOT NULL AUTO_INCREMENT PRIMARY KEY,
+    user_id INT NOT NULL,
+    created_at DATETIME NOT NULL DEFAULT CURRENT_TIMESTAMP,
+    INDEX idx_favorite_changes_created_at (created_at)
+);
+
+CREATE TABLE IF NOT EXISTS restaurant_changes (
+    id BIGINT NOT NULL AUTO_INCREMENT PRIMARY KEY,
+    restaurant_id INT NOT NULL,
+    deleted BOOLEAN NOT NULL,
+    created_at DATETIME NOT NULL DEFAULT CURRENT_TIMESTAMP,
+    INDEX idx_restaurant_changes_created_at (created_at)
+);
+
+CREATE TABLE IF NOT EXISTS SPRING_SESSION (
+    PRIMARY_ID CHAR(36) NOT NULL,
+    SESSION_ID CHAR(36) NOT NULL,
+    CREATION_TIME BIGINT NOT NULL,
+    LAST_ACCESS_TIME BIGINT NOT NULL,
+    MAX_INACTIVE_INTERVAL INT NOT NULL,
+    EXPIRY_TIME BIGINT NOT NULL,
+    PRINCIPAL_NAME VARCHAR(100),
+    CONSTRAINT SPRING_SESSION_PK PRIMARY KEY (PRIMARY_ID),
+    CONSTRAINT SPRING_SESSION_IX1 UNIQUE (SESSION_ID),
+    INDEX SPRING_SESSION_IX2 (EXPIRY_TIME),
+    INDEX SPRING_SESSION_IX3 (PRINCIPAL_NAME)
+) ENGINE=InnoDB ROW_FORMAT=DYNAMIC;
+
+CREATE TABLE IF NOT EXISTS SPRING_SESSION_ATTRIBUTES (
+    SESSION_PRIMARY_ID CHAR(36) NOT NULL,
+    ATTRIBUTE_NAME VARCHAR(200) NOT NULL,
+    ATTRIBUTE_BYTES BLOB NOT NULL,
+    CONSTRAINT SPRING_SESSION_ATTRIBUTES_PK PRIMARY KEY (SESSION_PRIMARY_ID, ATTRIBUTE_NAME),
+    CONSTRAINT SPRING_SESSION_ATTRIBUTES_FK FOREIGN KEY (SESSION_PRIMARY_ID) REFERENCES SPRING_SESSION (PRIMARY_ID) ON DELETE CASCADE
+) ENGINE=InnoDB ROW_FORMAT=DYNAMIC;
+
+/* 既存のデータベースへの列の追加（追加済みの列は追加しない） */
+SET @statement = (SELECT IF(COUNT(*) = 0, 'ALTER TABLE users ADD COLUMN version INT NOT NULL DEFAULT 0', 'DO 0') FROM information_schema.columns WHERE table_schema = DATABASE() AND table_name = 'users' AND column_name = 'version');
+PREPARE statement FROM @statement;
+EXECUTE statement;
+DEALLOCATE PREPARE statement;
+
+SET @statement = (SELECT IF(COUNT(*) = 0, 'ALTER TABLE users ADD COLUMN name_search_key VARCHAR(100)', 'DO 0') FROM information_schema.columns WHERE table_schema = DATABASE() AND table_name = 'users' AND column_name = 'name_search_key');
+PREPARE statement FROM @statement;
+EXECUTE statement;
+DEALLOCATE PREPARE statement;
+
+SET @statement = (SELECT IF(COUNT(*) = 0, 'ALTER TABLE users ADD COLUMN furigana_search_key VARCHAR(100)', 'DO 0') FROM information_schema.columns WHERE table_schema = DATABASE() AND table_name = 'users' AND column_name = 'furigana_search_key');
+PREPARE statement FROM @statement;
+EXECUTE statement;
+DEALLOCATE PREPARE statement;
+
+SET @statement = (SELECT IF(COUNT(*) = 0, 'ALTER TABLE restaurants ADD COLUMN ranking_score DOUBLE NOT NULL DEFAULT 0', 'DO 0') FROM information_schema.columns WHERE table_schema = DATABASE() AND table_name = 'restaurants' AND column_name = 'ranking_score');
+PREPARE statement FROM @statement;
+EXECUTE statement;
+DEALLOCATE PREPARE statement;
+
+SET @statement = (SELECT IF(COUNT(*) = 0, 'ALTER TABLE restaurants ADD COLUMN trending_score DOUBLE NOT NULL DEFAULT 0', 'DO 0') FROM information_schema.columns WHERE table_schema = DATABASE() AND table_name = 'restaurants' AND column_name = 'trending_score');
+PREPARE statement FROM @statement;
+EXECUTE statement;
+DEALLOCATE PREPARE statement;
+
+SET @statement = (SELECT IF(COUNT(*) = 0, 'ALTER TABLE restaurants ADD COLUMN latitude DOUBLE', 'DO 0') FROM information_schema.columns WHERE table_schema = DATABASE() AND table_name = 'restaurants' AND column_name = 'latitude');
+PREPARE statement FROM @statement;
+EXECUTE statement;
+DEALLOCATE PREPARE statement;
+
+SET @statement = (SELECT IF(COUNT(*) = 0, 'ALTER TABLE restaurants ADD COLUMN longitude DOUBLE', 'DO 0') FROM information_schema.columns WHERE table_schema = DATABASE() AND table_name = 'restaurants' AND column_name = 'longitude');
+PREPARE statement FROM @statement;
+EXECUTE statement;
+DEALLOCATE PREPARE statement;
+
+SET @statement = (SELECT IF(COUNT(*) = 0, 'ALTER TABLE restaurants ADD COLUMN deleted_at DATETIME', 'DO 0') FROM information_schema.columns WHERE table_schema = DATABASE() AND table_name = 'restaurants' AND column_name = 'deleted_at');
+PREPARE statement FROM @statement;
+EXECUTE statement;
+DEALLOCATE PREPARE statement;
+
+/* 既存のデータベースへの索引の追加（作成済みの索引は作成しない） */
+SET @statement = (SELECT IF(COUNT(*) = 0, 'CREATE INDEX idx_verification_tokens_token ON verification_tokens (token)', 'DO 0') FROM information_schema.statistics WHERE table_schema = DATABASE() AND table_name = 'verification_tokens' AND index_name = 'idx_verification_tokens_token');
+PREPARE statement FROM @statement;
+EXECUTE statement;
+DEALLOCATE PREPARE statement;
+
+SET @statement = (SELECT IF(COUNT(*) = 0, 'CREATE INDEX idx_restaurants_lowest_price ON restaurants (lowest_price)', 'DO 0') FROM information_schema.statistics WHERE table_schema = DATABASE() AND table_name = 'restaurants' AND index_name = 'idx_restaurants_lowest_price');
+PREPARE statement FROM @statement;
+EXECUTE statement;
+DEALLOCATE PREPARE statement;
+
+SET @statement = (SELECT IF(COUNT(*) = 0, 'CREATE INDEX idx_restaurants_created_at ON restaurants (created_at)', 'DO 0') FROM information_schema.statistics WHERE table_schema = DATABASE() AND table_name = 'restaurants' AND index_name = 'idx_restaurants_created_at');
+PREPARE statement FROM @statement;
+EXECUTE statement;
+DEALLOCATE PREPARE statement;
+
+SET @statement = (SELECT IF(COUNT(*) = 0, 'CREATE INDEX idx_users_name_search_key ON users (name_search_key)', 'DO 0') FROM information_schema.statistics WHERE table_schema = DATABASE() AND table_name = 'users' AND index_name = 'idx_users_name_search_key');
+PREPARE statement FROM @statement;
+EXECUTE statement;
+DEALLOCATE PREPARE statement;
+
+SET @statement = (SELECT IF(COUNT(*) = 0, 'CREATE INDEX idx_users_furigana_search_key ON users (furigana_search_key)', 'DO 0') FROM information_schema.statistics WHERE table_schema = DATABASE() AND table_name = 'users' AND index_name = 'idx_users_furigana_search_key');
+PREPARE statement FROM @statement;
+EXECUTE statement;
+DEALLOCATE PREPARE statement;
+
+SET @statement = (SELECT IF(COUNT(*) = 0, 'CREATE INDEX idx_restaurants_ranking_score_id ON restaurants (ranking_score DESC, id)', 'DO 0') FROM information_schema.statistics WHERE table_schema = DATABASE() AND table_name = 'restaurants' AND index_name = 'idx_restaurants_ranking_score_id');
+PREPARE statement FROM @statement;
+EXECUTE statement;
+DEALLOCATE PREPARE statement;
+
+SET @statement = (SELECT IF(COUNT(*) = 0, 'CREATE INDEX idx_restaurants_trending_score_id ON restaurants (trending_score DESC, id)', 'DO 0') FROM information_schema.statistics WHERE table_schema = DATABASE() AND table_name = 'restaurants' AND index_name = 'idx_restaurants_trending_score_id');
+PREPARE statement FROM @statement;
+EXECUTE statement;
+DEALLOCATE PREPARE statement;
+
+SET @statement = (SELECT IF(COUNT(*) = 0, 'CREATE INDEX idx_reviews_restaurant_id_created_at ON reviews (restaurant_id, created_at)', 'DO 0') FROM information_schema.statistics WHERE table_schema = DATABASE() AND table_name = 'reviews' AND index_name = 'idx_reviews_restaurant_id_created_at');
+PREPARE statement FROM @statement;
+EXECUTE statement;
+DEALLOCATE PREPARE statement;
+
+SET @statement = (SELECT IF(COUNT(*) = 0, 'CREATE INDEX idx_reservations_user_id_reserved_datetime ON reservations (user_id, reserved_datetime)', 'DO 0') FROM information_schema.statistics WHERE table_schema = DATABASE() AND table_name = 'reservations' AND index_name = 'idx_reservations_user_id_reserved_datetime');
+PREPARE statement FROM @statement;
+EXECUTE statement;
+DEALLOCATE PREPARE statement;
+
+SET @statement = (SELECT IF(COUNT(*) = 0, 'CREATE INDEX idx_favorites_user_id_created_at ON favorites (user_id, created_at)', 'DO 0') FROM information_schema.statistics WHERE table_schema = DATABASE() AND table_name = 'favorites' AND index_name = 'idx_favorites_user_id_created_at');
+PREPARE statement FROM @statement;
+EXECUTE statement;
+DEALLOCATE PREPARE statement;
+
+/* 並び順の同点を店舗idで並べる索引に置き換えた、以前の索引の削除 */
+SET @statement = (SELECT IF(COUNT(*) > 0, 'DROP INDEX idx_restaurants_ranking_score ON restaurants', 'DO 0') FROM information_schema.statistics WHERE table_schema = DATABASE() AND table_name = 'restaurants' AND index_name = 'idx_restaurants_ranking_score');
+PREPARE statement FROM @statement;
+EXECUTE statement;
+DEALLOCATE PREPARE statement;
+
+SET @statement = (SELECT IF(COUNT(*) > 0, 'DROP INDEX idx_restaurants_trending_score ON restaurants', 'DO 0') FROM information_schema.statistics WHERE table_schema = DATABASE() AND table_name = 'restaurants' AND index_name = 'idx_restaurants_trending_score');
+PREPARE statement FROM @statement;
+EXECUTE statement;
+DEALLOCATE PREPARE statement;
@@ -0,0 +1,60 @@
+// 検索ボックスの入力候補を表示する（data-autocomplete属性を持つ入力欄が対象）
+document.querySelectorAll('input[data-autocomplete]').forEach((input) => {
+    const form = input.form;
+    const list = document.createElement('ul');
+    let timer = null;
+
+    input.setAttribute('autocomplete', 'off');
+    form.classList.add('position-relative');
+    list.className = 'list-group position-absolute w-100 shadow-sm d-none';
+    list.style.top = '100%';
+    list.style.left = '0';
+    list.style.zIndex = '1000';
+    form.appendChild(list);
+
+    const hideList = () => list.classList.add('d-none');
+
+    // 入力が止まってから候補を取得する
+    input.addEventListener('input', () => {
+        clearTimeout(timer);
+        timer = setTimeout(async () => {
+            const query = input.value.trim();
+
+            if (query === '') {
+                hideList();
+                return;
+            }
+
+            const response = await fetch(`/restaurants/suggestions?q=${encodeURIComponent(query)}`);
+            const suggestions = response.ok ? await response.json() : [];
+
+            list.replaceChildren(...suggestions.map((suggestion) => {
+                const item = document.createElement('li');
+                const badge = { restaurant: '店舗', category: 'カテゴリ', area: 'エリア' }[suggestion.type];
+
+                item.className = 'list-group-item list-group-item-action';
+                item.style.cursor = 'pointer';
+                item.textContent = suggestion.label;
+                item.insertAdjacentHTML('afterbegin', `<span class="badge bg-secondary me-2">${badge}</span>`);
+
+                // 店舗は詳細ページに移動し、カテゴリとエリアはキーワードとして検索する
+                item.addEventListener('mousedown', (event) => {
+                    event.preventDefault();
+
+                    if (suggestion.type === 'restaurant') {
+                        location.href = `/restaurants/${suggestion.restaurantId}`;
+                    } else {
+                        input.value = suggestion.label;
+                        form.submit();
+                    }
+                });
+
+                return item;
+            }));
+
+            list.classList.toggle('d-none', suggestions.length === 0);
+        }, 150);
+    });
+
+    input.addEventListener('blur', hideList);
+});
@@ -0,0 +1,48 @@
+package com.example.nagoyameshi.cache;
+
+import static org.assertj.core.api.Assertions.*;
+
+import org.junit.jupiter.api.Test;
+
+import com.example.nagoyameshi.cache.ListingResultCache.Criteria;
+import com.example.nagoyameshi.cache.ListingResultCache.Lookup;
+
+public class ListingResultCacheTest {
+    @Test
+    public void 登録した検索結果は同じ条件とページで引ける() {
+        ListingResultCache listingResultCache = new ListingResultCache(100, 60);
+        Criteria criteria = Criteria.of("名古屋", null, null, "lowestPriceAsc");
+
+        listingResultCache.put(listingResultCache.lookup(criteria, 0, 15, "UNSORTED"), new int[] { 3, 1, 2 }, 3);
+        Lookup lookup = listingResultCache.lookup(criteria, 0, 15, "UNSORTED");
+
+        assertThat(lookup.result()).isNotNull();
+        assertThat(lookup.result().restaurantIds()).containsExactly(3, 1, 2);
+        assertThat(lookup.result().totalCount()).isEqualTo(3);
+        assertThat(listingResultCache.lookup(criteria, 1, 15, "UNSORTED").result()).isNull();
+    }
+
+    @Test
+    public void 有効期間を過ぎた検索結果は世代番号が変わっていなくても引けない() {
+        ListingResultCache listingResultCache = new ListingResultCache(100, 0);
+        Criteria criteria = Criteria.of("名古屋", null, null, "lowestPriceAsc");
+
+        listingResultCache.put(listingResultCache.lookup(criteria, 0, 15, "UNSORTED"), new int[] { 3, 1, 2 }, 3);
+
+        assertThat(listingResultCache.lookup(criteria, 0, 15, "UNSORTED").result()).isNull();
+    }
+
+    @Test
+    public void 並び順の世代番号を進めるとその並び順の検索結果のみ引けなくなる() {
+        ListingResultCache listingResultCache = new ListingResultCache(100, 60);
+        Criteria ratingCriteria = Criteria.of("名古屋", null, null, "ratingDesc");
+        Criteria priceCriteria = Criteria.of("名古屋", null, null, "lowestPriceAsc");
+
+        listingResultCache.put(listingResultCache.lookup(ratingCriteria, 0, 15, "UNSORTED"), new int[] { 1 }, 1);
+        listingResultCache.put(listingResultCache.lookup(priceCriteria, 0, 15, "UNSORTED"), new int[] { 1 }, 1);
+        listingResultCache.invalidateOrder("ratingDesc");
+
+        assertThat(listingResultCache.lookup(ratingCriteria, 0, 15, "UNSORTED").result()).isNull();
+        assertThat(listingResultCache.lookup(priceCriteria, 0, 15, "UNSORTED").result()).isNotNull();
+    }
+}
@@ -0,0 +1,130 @@
+package com.example.nagoyameshi.cache;
+
+import static org.assertj.core.api.Assertions.*;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.junit.jupiter.api.Test;
+
+public class SingleFlightLoaderTest {
+    @Test
+    public void 同じキーの読み込みが1000件同時に発生した場合は読み込みが1回にまとめられる() throws Exception {
+        SingleFlightLoader<Integer, String> singleFlightLoader = new SingleFlightLoader<>(10000, 60000, 10000, 100);
+        AtomicInteger loadCount = new AtomicInteger();
+        CountDownLatch startLatch = new CountDownLatch(1);
+        CountDownLatch releaseLatch = new CountDownLatch(1);
+        List<Future<String>> futures = new ArrayList<>();
+
+        try (ExecutorService executorService = Executors.newFixedThreadPool(1000)) {
+            for (int i = 0; i < 1000; i++) {
+                futures.add(executorService.submit(() -> {
+                    startLatch.await();
+
+                    return singleFlightLoader.get(1, key -> {
+                        loadCount.incrementAndGet();
+
+                        // すべての呼び出し元が待機に入るまで読み込みを終えない（データベースへの重いクエリの代わり）
+                        try {
+                            releaseLatch.await(5, TimeUnit.SECONDS);
+                        } catch (InterruptedException e) {
+                            Thread.currentThread().interrupt();
+                        }
+
+                        return "店舗" + key;
+                    });
+                }));
+            }
+
+            startLatch.countDown();
+            Thread.sleep(500);
+            releaseLatch.countDown();
+
+            for (Future<String> future : futures) {
+                assertThat(future.get(10, TimeUnit.SECONDS)).isEqualTo("店舗1");
+            }
+        }
+
+        assertThat(loadCount.get()).isEqualTo(1);
+    }
+
+    @Test
+    public void 保持期間を過ぎても猶予期間内であれば古い値を返しつつ裏側で1回だけ読み込み直す() throws Exception {
+        AtomicLong clock = new AtomicLong();
+        SingleFlightLoader<Integer, String> singleFlightLoader = new SingleFlightLoader<>(1000, 60000, 3000, 100, clock::get);
+        AtomicInteger loadCount = new AtomicInteger();
+        CountDownLatch releaseLatch = new CountDownLatch(1);
+        CountDownLatch reloadedLatch = new CountDownLatch(1);
+
+        assertThat(singleFlightLoader.get(1, key -> "古い値")).isEqualTo("古い値");
+
+        clock.addAndGet(TimeUnit.SECONDS.toNanos(2));
+
+        // 読み込み直している間も、古い値がすぐに返される
+        for (int i = 0; i < 3; i++) {
+            assertThat(singleFlightLoader.get(1, key -> {
+                loadCount.incrementAndGet();
+
+                try {
+                    releaseLatch.await(5, TimeUnit.SECONDS);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+
+                reloadedLatch.countDown();
+
+                return "新しい値";
+            })).isEqualTo("古い値");
+        }
+
+        releaseLatch.countDown();
+        reloadedLatch.await(5, TimeUnit.SECONDS);
+
+        // 裏側の読み込みが終われば新しい値が返される
+        for (int i = 0; i < 100 && !singleFlightLoader.get(1, key -> "使われない値").equals("新しい値"); i++) {
+            Thread.sleep(10);
+        }
+
+        assertThat(singleFlightLoader.get(1, key -> "使われない値")).isEqualTo("新しい値");
+        assertThat(loadCount.get()).isEqualTo(1);
+    }
+
+    @Test
+    public void 読み込みがタイムアウトした場合は次の呼び出し元が読み込み直す() throws Exception {
+        SingleFlightLoader<Integer, String> singleFlightLoader = new SingleFlightLoader<>(10000, 60000, 100, 100);
+        CountDownLatch startedLatch = new CountDownLatch(1);
+        CountDownLatch releaseLatch = new CountDownLatch(1);
+
+        try (ExecutorService executorService = Executors.newSingleThreadExecutor()) {
+            // 応答しない読み込み
+            executorService.submit(() -> singleFlightLoader.get(1, key -> {
+                startedLatch.countDown();
+
+                try {
+                    releaseLatch.await(5, TimeUnit.SECONDS);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+
+                return "古い値";
+            }));
+
+            startedLatch.await(5, TimeUnit.SECONDS);
+
+            assertThatThrownBy(() -> singleFlightLoader.get(1, key -> "使われない値")).isInstanceOf(IllegalStateException.class);
+            assertThat(singleFlightLoader.get(1, key -> "新しい値")).isEqualTo("新しい値");
+
+            releaseLatch.countDown();
+        }
+
+        // 後から終わった読み込みの結果で上書きされない
+        assertThat(singleFlightLoader.get(1, key -> "使われない値")).isEqualTo("新しい値");
+    }
+}
@@ -0,0 +1,96 @@
+package com.example.nagoyameshi.controller;
+
+import static org.assertj.core.api.Assertions.*;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.*;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.*;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.security.test.context.support.WithUserDetails;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.MvcResult;
+
+@SpringBootTest
+@AutoConfigureMockMvc
+@ActiveProfiles("test")
+public class AdminExportControllerTest {
+    @Autowired
+    private MockMvc mockMvc;
+
+    @Test
+    public void 未ログインの場合は管理者用のデータ出力ページからログインページにリダイレクトする() throws Exception {
+        mockMvc.perform(get("/admin/exports"))
+               .andExpect(status().is3xxRedirection())
+               .andExpect(redirectedUrl("http://localhost/login"));
+    }
+
+    @Test
+    @WithUserDetails("taro.samurai@example.com")
+    public void 一般ユーザーとしてログイン済みの場合は管理者用のデータ出力ページが表示されずに403エラーが発生する() throws Exception {
+        mockMvc.perform(get("/admin/exports"))
+               .andExpect(status().isForbidden());
+    }
+
+    @Test
+    @WithUserDetails("hanako.samurai@example.com")
+    public void 管理者としてログイン済みの場合は管理者用のデータ出力ページが正しく表示される() throws Exception {
+        mockMvc.perform(get("/admin/exports"))
+               .andExpect(status().isOk())
+               .andExpect(view().name("admin/exports/index"));
+    }
+
+    @Test
+    @WithUserDetails("taro.samurai@example.com")
+    public void 一般ユーザーとしてログイン済みの場合は予約データを出力せずに403エラーが発生する() throws Exception {
+        mockMvc.perform(get("/admin/exports/reservations"))
+               .andExpect(status().isForbidden());
+    }
+
+    @Test
+    @WithUserDetails("hanako.samurai@example.com")
+    public void 管理者としてログイン済みの場合は予約データがCSV形式で出力される() throws Exception {
+        MvcResult mvcResult = mockMvc.perform(get("/admin/exports/reservations").param("restaurantId", "1"))
+                                     .andExpect(request().asyncStarted())
+                                     .andReturn();
+
+        String content = mockMvc.perform(asyncDispatch(mvcResult))
+                                .andExpect(status().isOk())
+                                .andExpect(header().string("Content-Type", "text/csv;charset=UTF-8"))
+                                .andReturn().getResponse().getContentAsString();
+
+        assertThat(content).contains("reserved_datetime");
+    }
+
+    @Test
+    @WithUserDetails("hanako.samurai@example.com")
+    public void 管理者としてログイン済みの場合は会員データがNDJSON形式で出力される() throws Exception {
+        MvcResult mvcResult = mockMvc.perform(get("/admin/exports/users").param("format", "ndjson"))
+                                     .andExpect(request().asyncStarted())
+                                     .andReturn();
+
+        String content = mockMvc.perform(asyncDispatch(mvcResult))
+                                .andExpect(status().isOk())
+                                .andReturn().getResponse().getContentAsString();
+
+        assertThat(content).contains("\"email\":\"taro.samurai@example.com\"");
+        assertThat(content).doesNotContain("password");
+    }
+
+    @Test
+    @WithUserDetails("hanako.samurai@example.com")
+    public void 管理者としてログイン済みの場合はレビューデータが期間で絞り込まれて出力される() throws Exception {
+        MvcResult mvcResult = mockMvc.perform(get("/admin/exports/reviews").param("from", "2000-01-01").param("to", "2000-01-02"))
+                                     .andExpect(request().asyncStarted())
+                                     .andReturn();
+
+        String content = mockMvc.perform(asyncDispatch(mvcResult))
+                                .andExpect(status().isOk())
+                                .andReturn().getResponse().getContentAsString();
+
+        // 該当するレビューがない場合もCSVのヘッダー行は出力される
+        assertThat(content).isEqualTo("\uFEFFid,restaurant_id,restaurant_name,user_id,score,content,created_at,updated_at\r\n");
+    }
+}
@@ -0,0 +1,47 @@
+package com.example.nagoyameshi.controller;
+
+import static org.hamcrest.Matchers.*;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.*;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.*;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.security.test.context.support.WithUserDetails;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.web.servlet.MockMvc;
+
+@SpringBootTest
+@AutoConfigureMockMvc
+@ActiveProfiles("test")
+public class AdminMetricsControllerTest {
+    @Autowired
+    private MockMvc mockMvc;
+
+    @Test
+    public void 未ログインの場合は管理者用の計測値ページからログインページにリダイレクトする() throws Exception {
+        mockMvc.perform(get("/admin/metrics"))
+               .andExpect(status().is3xxRedirection())
+               .andExpect(redirectedUrl("http://localhost/login"));
+    }
+
+    @Test
+    @WithUserDetails("taro.samurai@example.com")
+    public void 一般ユーザーとしてログイン済みの場合は管理者用の計測値ページが表示されずに403エラーが発生する() throws Exception {
+        mockMvc.perform(get("/admin/metrics"))
+               .andExpect(status().isForbidden());
+    }
+
+    @Test
+    @WithUserDetails("hanako.samurai@example.com")
+    public void 管理者としてログイン済みの場合は管理者用の計測値ページが正しく表示される() throws Exception {
+        mockMvc.perform(get("/restaurants"));
+
+        mockMvc.perform(get("/admin/metrics"))
+               .andExpect(status().isOk())
+               .andExpect(view().name("admin/metrics/index"))
+               .andExpect(model().attributeExists("timers", "values"))
+               .andExpect(content().string(containsString("http_handler_seconds")));
+    }
+}
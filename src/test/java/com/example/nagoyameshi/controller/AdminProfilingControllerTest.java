@@ -0,0 +1,78 @@
+package com.example.nagoyameshi.controller;
+
+import static org.assertj.core.api.Assertions.*;
+import static org.springframework.security.test.web.servlet.request.SecurityMockMvcRequestPostProcessors.*;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.*;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.*;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.security.test.context.support.WithUserDetails;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.MvcResult;
+
+import com.example.nagoyameshi.metrics.FlightRecorderProfiler;
+
+@SpringBootTest
+@AutoConfigureMockMvc
+@ActiveProfiles("test")
+public class AdminProfilingControllerTest {
+    @Autowired
+    private MockMvc mockMvc;
+
+    @Autowired
+    private FlightRecorderProfiler flightRecorderProfiler;
+
+    @Test
+    public void 未ログインの場合は管理者用のプロファイリングページからログインページにリダイレクトする() throws Exception {
+        mockMvc.perform(get("/admin/profiling"))
+               .andExpect(status().is3xxRedirection())
+               .andExpect(redirectedUrl("http://localhost/login"));
+    }
+
+    @Test
+    @WithUserDetails("taro.samurai@example.com")
+    public void 一般ユーザーとしてログイン済みの場合は管理者用のプロファイリングページが表示されずに403エラーが発生する() throws Exception {
+        mockMvc.perform(get("/admin/profiling"))
+               .andExpect(status().isForbidden());
+    }
+
+    @Test
+    @WithUserDetails("hanako.samurai@example.com")
+    public void 管理者としてログイン済みの場合は管理者用のプロファイリングページが正しく表示される() throws Exception {
+        mockMvc.perform(get("/admin/profiling"))
+               .andExpect(status().isOk())
+               .andExpect(view().name("admin/profiling/index"));
+    }
+
+    @Test
+    @WithUserDetails("taro.samurai@example.com")
+    public void 一般ユーザーとしてログイン済みの場合は記録を開始せずに403エラーが発生する() throws Exception {
+        mockMvc.perform(post("/admin/profiling/recordings").with(csrf()).param("profile", "CPU").param("duration", "1"))
+               .andExpect(status().isForbidden());
+
+        assertThat(flightRecorderProfiler.isRecording()).isFalse();
+    }
+
+    @Test
+    @WithUserDetails("hanako.samurai@example.com")
+    public void 管理者としてログイン済みの場合は記録ファイルが出力され記録中は新しい記録を開始できない() throws Exception {
+        MvcResult mvcResult = mockMvc.perform(post("/admin/profiling/recordings").with(csrf()).param("profile", "CPU").param("duration", "1"))
+                                     .andExpect(request().asyncStarted())
+                                     .andReturn();
+
+        mockMvc.perform(post("/admin/profiling/recordings").with(csrf()).param("profile", "ALLOCATION").param("duration", "1"))
+               .andExpect(status().isConflict());
+
+        byte[] content = mockMvc.perform(asyncDispatch(mvcResult))
+                                .andExpect(status().isOk())
+                                .andExpect(header().string("Content-Type", "application/octet-stream"))
+                                .andReturn().getResponse().getContentAsByteArray();
+
+        assertThat(new String(content, 0, 3)).isEqualTo("FLR");
+        assertThat(flightRecorderProfiler.getLastSummary().profile()).isEqualTo(FlightRecorderProfiler.Profile.CPU);
+    }
+}
@@ -8,13 +8,17 @@ import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.Paths;
+import java.util.List;
 import java.util.Optional;
 
+import javax.sql.DataSource;
+
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.io.TempDir;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
 import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.jdbc.core.JdbcTemplate;
 import org.springframework.mock.web.MockMultipartFile;
 import org.springframework.security.test.context.support.WithUserDetails;
 import org.springframework.test.context.ActiveProfiles;
@@ -22,7 +26,10 @@ import org.springframework.test.web.servlet.MockMvc;
 import org.springframework.test.web.servlet.request.MockMvcRequestBuilders;
 import org.springframework.transaction.annotation.Transactional;
 
+import com.example.nagoyameshi.cache.FavoriteCache;
 import com.example.nagoyameshi.entity.Restaurant;
+import com.example.nagoyameshi.service.FavoriteService;
+import com.example.nagoyameshi.service.RestaurantPurgeService;
 import com.example.nagoyameshi.service.RestaurantService;
 
 @SpringBootTest
@@ -35,6 +42,18 @@ public class AdminRestaurantControllerTest {
     @Autowired
     private RestaurantService restaurantService;
 
+    @Autowired
+    private FavoriteService favoriteService;
+
+    @Autowired
+    private FavoriteCache favoriteCache;
+
+    @Autowired
+    private DataSource dataSource;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
     @TempDir
     Path tempDir;  // JUnitがテスト時に自動で一時ディレクトリを作成
 
@@ -424,5 +443,32 @@ public class AdminRestaurantControllerTest {
         Optional<Restaurant> optionalRestaurant = restaurantService.findRestaurantById(1);
         assertThat(optionalRestaurant).isEmpty();
     }
+
+    @Test
+    @WithUserDetails("hanako.samurai@example.com")
+    @Transactional
+    public void 管理者が削除した店舗は論理削除され紐づく行とともに後から物理削除される() throws Exception {
+        mockMvc.perform(post("/admin/restaurants/1/delete").with(csrf()))
+               .andExpect(status().is3xxRedirection())
+               .andExpect(redirectedUrl("/admin/restaurants"));
+
+        assertThat(jdbcTemplate.queryForObject("SELECT COUNT(*) FROM restaurants WHERE id = 1 AND deleted_at IS NOT NULL", Integer.class)).isEqualTo(1);
+        assertThat(jdbcTemplate.queryForObject("SELECT COUNT(*) FROM reservations WHERE restaurant_id = 1", Integer.class)).isGreaterThan(1);
+
+        // お気に入りに追加していたユーザーのお気に入りをキャッシュに読み込ませておく
+        Integer favoriteUserId = jdbcTemplate.queryForObject("SELECT MIN(user_id) FROM favorites WHERE restaurant_id = 1", Integer.class);
+        assertThat(favoriteService.findFavoriteIdByRestaurantIdAndUserId(1, favoriteUserId)).isNotNull();
+
+        // 1行ずつ削除して、テーブルごとの削除の繰り返しを通す
+        new RestaurantPurgeService(dataSource, favoriteCache, 1).purge();
+
+        assertThat(jdbcTemplate.queryForObject("SELECT COUNT(*) FROM restaurants WHERE id = 1", Integer.class)).isZero();
+
+        for (String table : List.of("reviews", "reservations", "favorites", "category_restaurant", "regular_holiday_restaurant", "restaurant_rating_summaries")) {
+            assertThat(jdbcTemplate.queryForObject("SELECT COUNT(*) FROM " + table + " WHERE restaurant_id = 1", Integer.class)).as(table).isZero();
+        }
+
+        assertThat(favoriteService.findFavoriteIdByRestaurantIdAndUserId(1, favoriteUserId)).isNull();
+    }
 }
 
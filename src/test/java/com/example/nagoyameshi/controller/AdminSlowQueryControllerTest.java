@@ -0,0 +1,66 @@
+package com.example.nagoyameshi.controller;
+
+import static org.hamcrest.Matchers.*;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.*;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.*;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.http.MediaType;
+import org.springframework.security.test.context.support.WithUserDetails;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.web.servlet.MockMvc;
+
+import com.example.nagoyameshi.metrics.SlowQueryLog;
+
+@SpringBootTest
+@AutoConfigureMockMvc
+@ActiveProfiles("test")
+public class AdminSlowQueryControllerTest {
+    @Autowired
+    private MockMvc mockMvc;
+
+    @Autowired
+    private SlowQueryLog slowQueryLog;
+
+    @Test
+    public void 未ログインの場合は管理者用の遅いSQL文ページからログインページにリダイレクトする() throws Exception {
+        mockMvc.perform(get("/admin/slow-queries"))
+               .andExpect(status().is3xxRedirection())
+               .andExpect(redirectedUrl("http://localhost/login"));
+    }
+
+    @Test
+    @WithUserDetails("taro.samurai@example.com")
+    public void 一般ユーザーとしてログイン済みの場合は管理者用の遅いSQL文ページが表示されずに403エラーが発生する() throws Exception {
+        mockMvc.perform(get("/admin/slow-queries"))
+               .andExpect(status().isForbidden());
+    }
+
+    @Test
+    @WithUserDetails("hanako.samurai@example.com")
+    public void 管理者としてログイン済みの場合は管理者用の遅いSQL文ページが正しく表示される() throws Exception {
+        mockMvc.perform(get("/admin/slow-queries"))
+               .andExpect(status().isOk())
+               .andExpect(view().name("admin/slow-queries/index"));
+    }
+
+    @Test
+    @WithUserDetails("hanako.samurai@example.com")
+    public void 管理者としてログイン済みの場合は遅いSQL文がバインドした文字列を伏せてJSON形式で出力される() throws Exception {
+        slowQueryLog.record("SELECT * FROM users WHERE email = ? AND id = ?", List.of("taro.samurai@example.com", 1), TimeUnit.MILLISECONDS.toNanos(500));
+
+        mockMvc.perform(get("/admin/slow-queries/export"))
+               .andExpect(status().isOk())
+               .andExpect(content().contentTypeCompatibleWith(MediaType.APPLICATION_JSON))
+               .andExpect(jsonPath("$[0].sql").value("SELECT * FROM users WHERE email = ? AND id = ?"))
+               .andExpect(jsonPath("$[0].parameters[0]").value("<string:24>"))
+               .andExpect(jsonPath("$[0].parameters[1]").value("1"))
+               .andExpect(content().string(not(containsString("taro.samurai"))));
+    }
+}
@@ -1,5 +1,6 @@
 package com.example.nagoyameshi.controller;
 
+import static org.hamcrest.Matchers.*;
 import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.*;
 import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.*;
 
@@ -40,6 +41,28 @@ public class AdminUserControllerTest {
                .andExpect(view().name("admin/users/index"));
     }
 
+    @Test
+    @WithUserDetails("hanako.samurai@example.com")
+    public void 管理者としてログイン済みの場合はひらがなや半角カナのキーワードでもフリガナが前方一致する会員を検索できる() throws Exception {
+        mockMvc.perform(get("/admin/users").param("keyword", "さむらい たろう"))
+               .andExpect(status().isOk())
+               .andExpect(content().string(containsString("侍 太郎")));
+
+        mockMvc.perform(get("/admin/users").param("keyword", "ｻﾑﾗｲﾀﾛｳ"))
+               .andExpect(status().isOk())
+               .andExpect(content().string(containsString("侍 太郎")))
+               .andExpect(content().string(not(containsString("侍 次郎"))));
+    }
+
+    @Test
+    @WithUserDetails("hanako.samurai@example.com")
+    public void 管理者としてログイン済みの場合は大文字や全角のキーワードでもメールアドレスが前方一致する会員を検索できる() throws Exception {
+        mockMvc.perform(get("/admin/users").param("keyword", "ＴＡＲＯ.Samurai"))
+               .andExpect(status().isOk())
+               .andExpect(content().string(containsString("侍 太郎")))
+               .andExpect(content().string(not(containsString("侍 次郎"))));
+    }
+
     @Test
     public void 未ログインの場合は管理者用の会員詳細ページからログインページにリダイレクトする() throws Exception {
         mockMvc.perform(get("/admin/users/1"))
@@ -0,0 +1,59 @@
+package com.example.nagoyameshi.controller;
+
+import static org.assertj.core.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+import static org.springframework.security.test.web.servlet.request.SecurityMockMvcRequestBuilders.*;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.*;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.mock.mockito.SpyBean;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.security.crypto.bcrypt.BCryptPasswordEncoder;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.transaction.annotation.Transactional;
+
+import com.example.nagoyameshi.security.PasswordHashingExecutor;
+import com.example.nagoyameshi.security.PasswordHashingRejectedException;
+
+@SpringBootTest
+@AutoConfigureMockMvc
+@ActiveProfiles("test")
+public class AuthControllerTest {
+    @Autowired
+    private MockMvc mockMvc;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @SpyBean
+    private PasswordHashingExecutor passwordHashingExecutor;
+
+    @Test
+    @Transactional
+    public void ログイン成功時に設定と異なるコストで保存されたパスワードが再ハッシュ化される() throws Exception {
+        jdbcTemplate.update("UPDATE users SET password = ? WHERE email = ?", new BCryptPasswordEncoder(4).encode("password"), "taro.samurai@example.com");
+
+        mockMvc.perform(formLogin("/login").user("taro.samurai@example.com").password("password"))
+               .andExpect(status().is3xxRedirection())
+               .andExpect(redirectedUrl("/?loggedIn"));
+
+        String password = jdbcTemplate.queryForObject("SELECT password FROM users WHERE email = ?", String.class, "taro.samurai@example.com");
+
+        assertThat(password).startsWith("$2a$10$");
+        assertThat(new BCryptPasswordEncoder().matches("password", password)).isTrue();
+    }
+
+    @Test
+    public void パスワードの処理が混雑している場合はログインページに混雑のメッセージ付きでリダイレクトする() throws Exception {
+        doThrow(new PasswordHashingRejectedException("パスワードの処理が混雑しています。", null)).when(passwordHashingExecutor).execute(any());
+
+        mockMvc.perform(formLogin("/login").user("taro.samurai@example.com").password("password"))
+               .andExpect(status().is3xxRedirection())
+               .andExpect(redirectedUrl("/login?busy"));
+    }
+}
@@ -1,5 +1,6 @@
 package com.example.nagoyameshi.controller;
 
+import static com.example.nagoyameshi.support.QueryResultMatchers.*;
 import static org.assertj.core.api.Assertions.*;
 import static org.springframework.security.test.web.servlet.request.SecurityMockMvcRequestPostProcessors.*;
 import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.*;
@@ -11,6 +12,7 @@ import org.junit.jupiter.api.Test;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
 import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.context.annotation.Import;
 import org.springframework.security.test.context.support.WithUserDetails;
 import org.springframework.test.context.ActiveProfiles;
 import org.springframework.test.web.servlet.MockMvc;
@@ -18,10 +20,12 @@ import org.springframework.transaction.annotation.Transactional;
 
 import com.example.nagoyameshi.entity.Favorite;
 import com.example.nagoyameshi.service.FavoriteService;
+import com.example.nagoyameshi.support.QueryCountingConfiguration;
 
 @SpringBootTest
 @AutoConfigureMockMvc
 @ActiveProfiles("test")
+@Import(QueryCountingConfiguration.class)
 public class FavoriteControllerTest {
     @Autowired
     private MockMvc mockMvc;
@@ -52,6 +56,26 @@ public class FavoriteControllerTest {
                .andExpect(view().name("favorites/index"));
     }
 
+    @Test
+    @WithUserDetails("jiro.samurai@example.com")
+    public void お気に入り一覧ページの表示で実行されるSQL文の件数と取得する行数が上限以内に収まる() throws Exception {
+        mockMvc.perform(get("/favorites"))
+               .andExpect(status().isOk())
+               .andExpect(queries().statementCountAtMost(10))
+               .andExpect(queries().rowCountAtMost(30))
+               .andExpect(queries().repeatedStatementsAtMost(1));
+    }
+
+    @Test
+    @WithUserDetails("jiro.samurai@example.com")
+    public void お気に入り一覧ページで実行されるSQL文の件数は表示件数によらず一定である() throws Exception {
+        // どちらも総件数より少ない表示件数にして、件数の取得の有無をそろえる
+        int smallPageStatementCount = statementCountOf(mockMvc.perform(get("/favorites").param("size", "1")).andExpect(status().isOk()).andReturn());
+        int largePageStatementCount = statementCountOf(mockMvc.perform(get("/favorites").param("size", "15")).andExpect(status().isOk()).andReturn());
+
+        assertThat(largePageStatementCount).isEqualTo(smallPageStatementCount);
+    }
+
     @Test
     @WithUserDetails("hanako.samurai@example.com")
     public void 管理者としてログイン済みの場合はお気に入り一覧ページが表示されずに403エラーが発生する() throws Exception {
@@ -1,8 +1,12 @@
 package com.example.nagoyameshi.controller;
 
+import static org.assertj.core.api.Assertions.*;
+import static org.hamcrest.Matchers.*;
 import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.*;
 import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.*;
 
+import java.util.List;
+
 import org.junit.jupiter.api.Test;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
@@ -10,6 +14,9 @@ import org.springframework.boot.test.context.SpringBootTest;
 import org.springframework.security.test.context.support.WithUserDetails;
 import org.springframework.test.context.ActiveProfiles;
 import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.MvcResult;
+
+import com.example.nagoyameshi.repository.RestaurantRepository.RestaurantCard;
 
 @SpringBootTest
 @AutoConfigureMockMvc
@@ -32,5 +39,26 @@ public class HomeControllerTest {
                .andExpect(status().isOk())
                .andExpect(view().name("index"));
     }
-}
 
+    @Test
+    public void 未ログインの場合はトップページにおすすめの店舗が表示されない() throws Exception {
+        mockMvc.perform(get("/"))
+               .andExpect(status().isOk())
+               .andExpect(model().attribute("recommendedRestaurants", empty()));
+    }
+
+    @Test
+    @WithUserDetails("jiro.samurai@example.com")
+    @SuppressWarnings("unchecked")
+    public void お気に入りがあるユーザーの場合はトップページにお気に入り以外のおすすめの店舗が表示される() throws Exception {
+        MvcResult mvcResult = mockMvc.perform(get("/"))
+                                     .andExpect(status().isOk())
+                                     .andReturn();
+
+        List<RestaurantCard> recommendedRestaurants = (List<RestaurantCard>) mvcResult.getModelAndView().getModel().get("recommendedRestaurants");
+
+        // お気に入りに追加済みの店舗（id=5, 10, 15, 20, 25, 30）はおすすめに含めない
+        assertThat(recommendedRestaurants).isNotEmpty();
+        assertThat(recommendedRestaurants).extracting(RestaurantCard::getId).doesNotContain(5, 10, 15, 20, 25, 30);
+    }
+}
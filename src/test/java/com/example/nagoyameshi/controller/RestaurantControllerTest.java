@@ -1,23 +1,61 @@
 package com.example.nagoyameshi.controller;
 
+import static com.example.nagoyameshi.support.QueryResultMatchers.*;
+import static org.assertj.core.api.Assertions.*;
+import static org.hamcrest.Matchers.*;
 import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.*;
 import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.*;
 
+import java.time.LocalTime;
+import java.util.List;
+import java.util.Map;
+
 import org.junit.jupiter.api.Test;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
 import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.context.annotation.Import;
+import org.springframework.data.domain.Page;
+import org.springframework.jdbc.core.JdbcTemplate;
 import org.springframework.security.test.context.support.WithUserDetails;
 import org.springframework.test.context.ActiveProfiles;
 import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.MvcResult;
+
+import com.example.nagoyameshi.cache.ListingResultCache;
+import com.example.nagoyameshi.cache.ListingResultCache.Criteria;
+import com.example.nagoyameshi.cache.ListingResultCache.CriteriaStatistics;
+import com.example.nagoyameshi.entity.Restaurant;
+import com.example.nagoyameshi.event.RestaurantChangedEventPublisher;
+import com.example.nagoyameshi.repository.RestaurantRepository.RestaurantCard;
+import com.example.nagoyameshi.service.RestaurantActivityService;
+import com.example.nagoyameshi.service.RestaurantCatalogService.Facets;
+import com.example.nagoyameshi.service.RestaurantService;
+import com.example.nagoyameshi.support.QueryCountingConfiguration;
 
 @SpringBootTest
 @AutoConfigureMockMvc
 @ActiveProfiles("test")
+@Import(QueryCountingConfiguration.class)
 public class RestaurantControllerTest {
     @Autowired
     private MockMvc mockMvc;
 
+    @Autowired
+    private RestaurantActivityService restaurantActivityService;
+
+    @Autowired
+    private RestaurantService restaurantService;
+
+    @Autowired
+    private ListingResultCache listingResultCache;
+
+    @Autowired
+    private RestaurantChangedEventPublisher restaurantChangedEventPublisher;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
     @Test
     public void 未ログインの場合は会員用の店舗一覧ページが正しく表示される() throws Exception {
         mockMvc.perform(get("/restaurants"))
@@ -25,6 +63,45 @@ public class RestaurantControllerTest {
                .andExpect(view().name("restaurants/index"));
     }
 
+    // 上限は1ページ目（店舗15件・評価の集計を結合）・カテゴリ20行・定休日19行・定休日の一覧9行の4文63行に余裕を持たせたもの
+    @Test
+    public void 会員用の店舗一覧ページの表示で実行されるSQL文の件数と取得する行数が上限以内に収まる() throws Exception {
+        // カテゴリと定休日を2次キャッシュに載せてから計測する
+        mockMvc.perform(get("/restaurants")).andExpect(status().isOk());
+
+        mockMvc.perform(get("/restaurants"))
+               .andExpect(status().isOk())
+               .andExpect(queries().statementCountAtMost(6))
+               .andExpect(queries().rowCountAtMost(80))
+               .andExpect(queries().repeatedStatementsAtMost(1));
+    }
+
+    @Test
+    public void 会員用の店舗一覧ページで実行されるSQL文の件数は表示件数によらず一定である() throws Exception {
+        // カテゴリと定休日を2次キャッシュに載せてから比較する
+        mockMvc.perform(get("/restaurants").param("size", "15")).andExpect(status().isOk());
+
+        int smallPageStatementCount = statementCountOf(mockMvc.perform(get("/restaurants").param("size", "1")).andExpect(status().isOk()).andReturn());
+        int largePageStatementCount = statementCountOf(mockMvc.perform(get("/restaurants").param("size", "15")).andExpect(status().isOk()).andReturn());
+
+        assertThat(largePageStatementCount).isEqualTo(smallPageStatementCount);
+    }
+
+    @Test
+    public void キーワード検索で実行されるSQL文の件数は表示件数によらず一定である() throws Exception {
+        // カテゴリと定休日を2次キャッシュに載せてから比較する（表示件数ごとに別の条件としてキャッシュされるため、どちらも検索クエリを実行する）
+        mockMvc.perform(get("/restaurants").param("size", "15")).andExpect(status().isOk());
+
+        int smallPageStatementCount = statementCountOf(mockMvc.perform(get("/restaurants").param("keyword", "名古屋市").param("order", "trendingDesc").param("size", "1"))
+                                                              .andExpect(status().isOk())
+                                                              .andReturn());
+        int largePageStatementCount = statementCountOf(mockMvc.perform(get("/restaurants").param("keyword", "名古屋市").param("order", "trendingDesc").param("size", "15"))
+                                                              .andExpect(status().isOk())
+                                                              .andReturn());
+
+        assertThat(largePageStatementCount).isEqualTo(smallPageStatementCount);
+    }
+
     @Test
     @WithUserDetails("taro.samurai@example.com")
     public void 一般ユーザーとしてログイン済みの場合は会員用の店舗一覧ページが正しく表示される() throws Exception {
@@ -60,6 +137,240 @@ public class RestaurantControllerTest {
     public void 管理者としてログイン済みの場合は会員用の店舗詳細ページが表示されずに403エラーが発生する() throws Exception {
         mockMvc.perform(get("/restaurants/1"))
                .andExpect(status().isForbidden());
-    }    
-}
+    }
+
+    @Test
+    @WithUserDetails("jiro.samurai@example.com")
+    public void 有料会員としてログイン済みの場合はお気に入りに追加済みの店舗の詳細ページでお気に入りの状態が正しく表示される() throws Exception {
+        mockMvc.perform(get("/restaurants/5"))
+               .andExpect(status().isOk())
+               .andExpect(model().attribute("isFavorite", true))
+               .andExpect(model().attribute("favoriteId", 1));
+
+        mockMvc.perform(get("/restaurants/6"))
+               .andExpect(status().isOk())
+               .andExpect(model().attribute("isFavorite", false))
+               .andExpect(model().attribute("favoriteId", nullValue()));
+    }
+
+    @Test
+    public void 未ログインの場合は会員用の店舗一覧ページでお気に入りの状態が空になる() throws Exception {
+        mockMvc.perform(get("/restaurants"))
+               .andExpect(status().isOk())
+               .andExpect(model().attribute("favoriteRestaurantIds", empty()));
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    public void 評価が高い順に並べ替えた場合は店舗一覧がランキングスコアの高い順に表示される() throws Exception {
+        MvcResult mvcResult = mockMvc.perform(get("/restaurants").param("order", "ratingDesc"))
+                                     .andExpect(status().isOk())
+                                     .andReturn();
+
+        Page<Restaurant> restaurantPage = (Page<Restaurant>) mvcResult.getModelAndView().getModel().get("restaurantPage");
+        List<Double> rankingScores = restaurantPage.getContent().stream().map(Restaurant::getRankingScore).toList();
+
+        assertThat(rankingScores).isNotEmpty();
+        assertThat(rankingScores).isSortedAccordingTo((a, b) -> Double.compare(b, a));
+        assertThat(rankingScores.get(0)).isGreaterThan(0.0);
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    public void お気に入りに追加されている店舗の詳細ページには類似の店舗が表示される() throws Exception {
+        MvcResult mvcResult = mockMvc.perform(get("/restaurants/5"))
+                                     .andExpect(status().isOk())
+                                     .andReturn();
+
+        List<RestaurantCard> similarRestaurants = (List<RestaurantCard>) mvcResult.getModelAndView().getModel().get("similarRestaurants");
+
+        assertThat(similarRestaurants).isNotEmpty();
+        assertThat(similarRestaurants).extracting(RestaurantCard::getId).doesNotContain(5);
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    public void 注目度が高い順に並べ替えた場合は閲覧された店舗が注目度の高い順に表示される() throws Exception {
+        mockMvc.perform(get("/restaurants/3"))
+               .andExpect(status().isOk());
+
+        // 閲覧数の書き込みと注目度の計算はスケジュールを待たずに実行する
+        restaurantActivityService.flush();
+        restaurantActivityService.refresh();
+
+        assertThat(restaurantService.findRestaurantById(3).orElseThrow().getTrendingScore()).isGreaterThan(0.0);
+
+        MvcResult mvcResult = mockMvc.perform(get("/restaurants").param("order", "trendingDesc"))
+                                     .andExpect(status().isOk())
+                                     .andReturn();
 
+        Page<Restaurant> restaurantPage = (Page<Restaurant>) mvcResult.getModelAndView().getModel().get("restaurantPage");
+        List<Double> trendingScores = restaurantPage.getContent().stream().map(Restaurant::getTrendingScore).toList();
+
+        assertThat(trendingScores).isSortedAccordingTo((a, b) -> Double.compare(b, a));
+        assertThat(trendingScores.get(0)).isGreaterThan(0.0);
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    public void 郵便番号から検索した場合は半径以内の店舗が近い順に表示される() throws Exception {
+        MvcResult mvcResult = mockMvc.perform(get("/restaurants").param("near", "4500000").param("radius", "3").param("order", "distanceAsc"))
+                                     .andExpect(status().isOk())
+                                     .andExpect(model().attribute("near", "4500000"))
+                                     .andReturn();
+
+        Page<Restaurant> restaurantPage = (Page<Restaurant>) mvcResult.getModelAndView().getModel().get("restaurantPage");
+        Map<Integer, Double> distances = (Map<Integer, Double>) mvcResult.getModelAndView().getModel().get("distances");
+        List<Double> pageDistances = restaurantPage.getContent().stream().map(restaurant -> distances.get(restaurant.getId())).toList();
+
+        assertThat(pageDistances).isNotEmpty();
+        assertThat(pageDistances).allSatisfy(distance -> assertThat(distance).isLessThanOrEqualTo(3.0));
+        assertThat(pageDistances).isSortedAccordingTo(Double::compare);
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    public void 郵便番号から検索して価格順に並べ替えた場合は半径以内の店舗が安い順に表示される() throws Exception {
+        MvcResult mvcResult = mockMvc.perform(get("/restaurants").param("near", "4500000").param("radius", "3").param("order", "lowestPriceAsc"))
+                                     .andExpect(status().isOk())
+                                     .andReturn();
+
+        Page<Restaurant> restaurantPage = (Page<Restaurant>) mvcResult.getModelAndView().getModel().get("restaurantPage");
+        Map<Integer, Double> distances = (Map<Integer, Double>) mvcResult.getModelAndView().getModel().get("distances");
+
+        assertThat(restaurantPage.getContent()).isNotEmpty();
+        assertThat(restaurantPage.getContent()).hasSizeLessThanOrEqualTo(restaurantPage.getSize());
+        assertThat(restaurantPage.getContent()).allSatisfy(restaurant -> assertThat(distances.get(restaurant.getId())).isLessThanOrEqualTo(3.0));
+        assertThat(restaurantPage.getContent().stream().map(Restaurant::getLowestPrice).toList()).isSorted();
+    }
+
+    @Test
+    public void 該当する地域がない郵便番号から検索した場合は店舗一覧が空になる() throws Exception {
+        mockMvc.perform(get("/restaurants").param("near", "0000000"))
+               .andExpect(status().isOk())
+               .andExpect(model().attribute("restaurantPage", hasProperty("totalElements", is(0L))));
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    public void 曜日と時刻を指定して検索した場合はその時刻に営業している店舗のみ表示される() throws Exception {
+        // 店舗1は10:00～20:00、店舗2は13:00～23:00の営業
+        MvcResult mvcResult = mockMvc.perform(get("/restaurants").param("open", "at").param("day", "3").param("time", "21:30").param("size", "100"))
+                                     .andExpect(status().isOk())
+                                     .andExpect(model().attribute("open", "at"))
+                                     .andReturn();
+
+        Page<Restaurant> restaurantPage = (Page<Restaurant>) mvcResult.getModelAndView().getModel().get("restaurantPage");
+
+        assertThat(restaurantPage.getContent()).isNotEmpty();
+        assertThat(restaurantPage.getContent()).extracting(Restaurant::getId).doesNotContain(1);
+        assertThat(restaurantPage.getContent()).allSatisfy(restaurant -> assertThat(restaurant.getClosingTime()).isAfter(LocalTime.of(21, 30)));
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    public void キーワードと曜日と時刻を指定して検索した場合はキーワードに一致しその時刻に営業している店舗のみ表示される() throws Exception {
+        // 店舗1は名古屋市の店舗だが10:00～20:00の営業
+        MvcResult mvcResult = mockMvc.perform(get("/restaurants").param("keyword", "名古屋市").param("open", "at").param("day", "3").param("time", "21:30").param("size", "100"))
+                                     .andExpect(status().isOk())
+                                     .andExpect(model().attribute("open", "at"))
+                                     .andReturn();
+
+        Page<Restaurant> restaurantPage = (Page<Restaurant>) mvcResult.getModelAndView().getModel().get("restaurantPage");
+
+        assertThat(restaurantPage.getContent()).isNotEmpty();
+        assertThat(restaurantPage.getTotalElements()).isEqualTo(restaurantPage.getContent().size());
+        assertThat(restaurantPage.getContent()).extracting(Restaurant::getId).doesNotContain(1);
+        assertThat(restaurantPage.getContent()).allSatisfy(restaurant -> {
+            assertThat(restaurant.getAddress()).contains("名古屋市");
+            assertThat(restaurant.getClosingTime()).isAfter(LocalTime.of(21, 30));
+        });
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    public void 他のサーバーで変更された店舗は変更履歴のポーリングで店舗一覧に反映される() throws Exception {
+        // 他のサーバーでの店舗1の最低価格の変更を再現する
+        jdbcTemplate.update("UPDATE restaurants SET lowest_price = 100 WHERE id = 1");
+        jdbcTemplate.update("INSERT INTO restaurant_changes (restaurant_id, deleted) VALUES (1, FALSE)");
+
+        try {
+            restaurantChangedEventPublisher.pollChanges();
+
+            MvcResult mvcResult = mockMvc.perform(get("/restaurants").param("order", "lowestPriceAsc").param("size", "1"))
+                                         .andExpect(status().isOk())
+                                         .andReturn();
+
+            Page<Restaurant> restaurantPage = (Page<Restaurant>) mvcResult.getModelAndView().getModel().get("restaurantPage");
+
+            assertThat(restaurantPage.getContent()).extracting(Restaurant::getId).containsExactly(1);
+        } finally {
+            jdbcTemplate.update("UPDATE restaurants SET lowest_price = 3000 WHERE id = 1");
+            jdbcTemplate.update("INSERT INTO restaurant_changes (restaurant_id, deleted) VALUES (1, FALSE)");
+            restaurantChangedEventPublisher.pollChanges();
+        }
+    }
+
+    @Test
+    public void 店舗名の一部をひらがなやローマ字で入力した場合は入力候補に店舗が含まれる() throws Exception {
+        // 店舗4は「油そば専門店ブラブラ 半田店」
+        mockMvc.perform(get("/restaurants/suggestions").param("q", "ぶら"))
+               .andExpect(status().isOk())
+               .andExpect(jsonPath("$[*].restaurantId", hasItem(4)));
+
+        mockMvc.perform(get("/restaurants/suggestions").param("q", "bura"))
+               .andExpect(status().isOk())
+               .andExpect(jsonPath("$[*].restaurantId", hasItem(4)));
+    }
+
+    @Test
+    public void 住所の一部を入力した場合は入力候補にエリアが含まれる() throws Exception {
+        mockMvc.perform(get("/restaurants/suggestions").param("q", "名古屋"))
+               .andExpect(status().isOk())
+               .andExpect(jsonPath("$[*].label", hasItem("名古屋市中区")));
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    public void 予算と営業日を組み合わせて検索した場合は両方の条件に一致する店舗と件数の集計が表示される() throws Exception {
+        // 店舗1は月曜日と水曜日が定休日
+        MvcResult mvcResult = mockMvc.perform(get("/restaurants").param("price", "3000").param("holidayId", "1").param("size", "100"))
+                                     .andExpect(status().isOk())
+                                     .andExpect(model().attribute("facets", notNullValue()))
+                                     .andReturn();
+
+        Page<Restaurant> restaurantPage = (Page<Restaurant>) mvcResult.getModelAndView().getModel().get("restaurantPage");
+        Facets facets = (Facets) mvcResult.getModelAndView().getModel().get("facets");
+
+        assertThat(restaurantPage.getContent()).isNotEmpty();
+        assertThat(restaurantPage.getContent()).allSatisfy(restaurant -> assertThat(restaurant.getLowestPrice()).isLessThanOrEqualTo(3000));
+        assertThat(restaurantPage.getContent()).extracting(Restaurant::getId).doesNotContain(1);
+        assertThat(facets.priceCounts().get(3000)).isEqualTo((int) restaurantPage.getTotalElements());
+        assertThat(facets.regularHolidayCounts().get(1)).isEqualTo((int) restaurantPage.getTotalElements());
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    public void 同じ条件でキーワード検索を繰り返した場合は2回目以降はキャッシュした結果が表示される() throws Exception {
+        MvcResult firstResult = mockMvc.perform(get("/restaurants").param("keyword", " 半田 ").param("order", "lowestPriceAsc"))
+                                       .andExpect(status().isOk())
+                                       .andReturn();
+        MvcResult secondResult = mockMvc.perform(get("/restaurants").param("keyword", "半田").param("order", "lowestPriceAsc"))
+                                        .andExpect(status().isOk())
+                                        .andReturn();
+
+        Page<Restaurant> firstPage = (Page<Restaurant>) firstResult.getModelAndView().getModel().get("restaurantPage");
+        Page<Restaurant> secondPage = (Page<Restaurant>) secondResult.getModelAndView().getModel().get("restaurantPage");
+
+        assertThat(firstPage.getContent()).isNotEmpty();
+        assertThat(secondPage.getContent()).extracting(Restaurant::getId).containsExactlyElementsOf(firstPage.getContent().stream().map(Restaurant::getId).toList());
+        assertThat(secondPage.getTotalElements()).isEqualTo(firstPage.getTotalElements());
+
+        CriteriaStatistics criteriaStatistics = listingResultCache.findTopStatistics(Integer.MAX_VALUE).stream()
+                                                                  .filter(statistics -> statistics.criteria().equals(Criteria.of("半田", null, null, "lowestPriceAsc")))
+                                                                  .findFirst()
+                                                                  .orElseThrow();
+
+        assertThat(criteriaStatistics.hits()).isGreaterThanOrEqualTo(1);
+    }
+}
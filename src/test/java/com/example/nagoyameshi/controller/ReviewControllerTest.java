@@ -1,27 +1,36 @@
 package com.example.nagoyameshi.controller;
 
+import static com.example.nagoyameshi.support.QueryResultMatchers.*;
 import static org.assertj.core.api.Assertions.*;
 import static org.springframework.security.test.web.servlet.request.SecurityMockMvcRequestPostProcessors.*;
 import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.*;
 import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.*;
 
+import java.sql.Timestamp;
 import java.util.Optional;
 
 import org.junit.jupiter.api.Test;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
 import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.context.annotation.Import;
+import org.springframework.jdbc.core.JdbcTemplate;
 import org.springframework.security.test.context.support.WithUserDetails;
 import org.springframework.test.context.ActiveProfiles;
 import org.springframework.test.web.servlet.MockMvc;
 import org.springframework.transaction.annotation.Transactional;
 
+import jakarta.persistence.EntityManager;
+
+import com.example.nagoyameshi.entity.RestaurantRatingSummary;
 import com.example.nagoyameshi.entity.Review;
 import com.example.nagoyameshi.service.ReviewService;
+import com.example.nagoyameshi.support.QueryCountingConfiguration;
 
 @SpringBootTest
 @AutoConfigureMockMvc
 @ActiveProfiles("test")
+@Import(QueryCountingConfiguration.class)
 public class ReviewControllerTest {
     @Autowired
     private MockMvc mockMvc;
@@ -29,6 +38,12 @@ public class ReviewControllerTest {
     @Autowired
     private ReviewService reviewService;
 
+    @Autowired
+    private EntityManager entityManager;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
     @Test
     public void 未ログインの場合はレビュー一覧ページからログインページにリダイレクトする() throws Exception {
         mockMvc.perform(get("/restaurants/1/reviews"))
@@ -52,6 +67,30 @@ public class ReviewControllerTest {
                .andExpect(view().name("reviews/index"));
     }
 
+    // 上限は店舗をキャッシュから取得できなかった場合（店舗のEAGERなコレクションを読み込む）も含めたもの
+    @Test
+    @WithUserDetails("jiro.samurai@example.com")
+    public void レビュー一覧ページの表示で実行されるSQL文の件数と取得する行数が上限以内に収まる() throws Exception {
+        mockMvc.perform(get("/restaurants/1/reviews"))
+               .andExpect(status().isOk())
+               .andExpect(queries().statementCountAtMost(20))
+               .andExpect(queries().rowCountAtMost(100))
+               .andExpect(queries().repeatedStatementsAtMost(5));
+    }
+
+    @Test
+    @WithUserDetails("jiro.samurai@example.com")
+    public void レビュー一覧ページで実行されるSQL文の件数は表示件数と店舗のレビュー数によらず一定である() throws Exception {
+        // 店舗をキャッシュに載せてから比較する（どちらも総件数より少ない表示件数にして、件数の取得の有無をそろえる）
+        mockMvc.perform(get("/restaurants/1/reviews")).andExpect(status().isOk());
+        mockMvc.perform(get("/restaurants/20/reviews")).andExpect(status().isOk());
+
+        int smallPageStatementCount = statementCountOf(mockMvc.perform(get("/restaurants/1/reviews").param("size", "1")).andExpect(status().isOk()).andReturn());
+        int largePageStatementCount = statementCountOf(mockMvc.perform(get("/restaurants/20/reviews").param("size", "10")).andExpect(status().isOk()).andReturn());
+
+        assertThat(largePageStatementCount).isEqualTo(smallPageStatementCount);
+    }
+
     @Test
     @WithUserDetails("hanako.samurai@example.com")
     public void 管理者としてログイン済みの場合はレビュー一覧ページが表示されずに403エラーが発生する() throws Exception {
@@ -146,6 +185,48 @@ public class ReviewControllerTest {
         assertThat(review.getContent()).isEqualTo("テスト感想");
     }
 
+    @Test
+    @WithUserDetails("jiro.samurai@example.com")
+    @Transactional
+    public void 有料会員としてログイン済みの場合はレビュー投稿後に店舗の評価の集計が更新される() throws Exception {
+        RestaurantRatingSummary summaryBefore = reviewService.findRatingSummaryByRestaurantId(1).orElseThrow();
+        int reviewCountBefore = summaryBefore.getReviewCount();
+        int count5Before = summaryBefore.getCount5();
+        int scoreSumBefore = summaryBefore.getScoreSum();
+
+        mockMvc.perform(post("/restaurants/1/reviews/create").with(csrf()).param("score", "5").param("content", "テスト感想"))
+               .andExpect(status().is3xxRedirection())
+               .andExpect(redirectedUrl("/restaurants/1"));
+
+        // 集計は一括更新のクエリで更新されるため、テストのトランザクションで読み込んだ古い値を破棄してから読み直す
+        entityManager.clear();
+        RestaurantRatingSummary summaryAfter = reviewService.findRatingSummaryByRestaurantId(1).orElseThrow();
+        assertThat(summaryAfter.getReviewCount()).isEqualTo(reviewCountBefore + 1);
+        assertThat(summaryAfter.getCount5()).isEqualTo(count5Before + 1);
+        assertThat(summaryAfter.getScoreSum()).isEqualTo(scoreSumBefore + 5);
+    }
+
+    @Test
+    @WithUserDetails("jiro.samurai@example.com")
+    @Transactional
+    public void 有料会員としてログイン済みの場合は自身のレビュー更新後に店舗の評価の集計が付け替えられる() throws Exception {
+        // レビュー（id=1）は店舗（id=2）に対する評価3のレビュー
+        RestaurantRatingSummary summaryBefore = reviewService.findRatingSummaryByRestaurantId(2).orElseThrow();
+        int reviewCountBefore = summaryBefore.getReviewCount();
+        int count3Before = summaryBefore.getCount3();
+        int count5Before = summaryBefore.getCount5();
+
+        mockMvc.perform(post("/restaurants/2/reviews/1/update").with(csrf()).param("score", "5").param("content", "テスト感想"))
+               .andExpect(status().is3xxRedirection())
+               .andExpect(redirectedUrl("/restaurants/2"));
+
+        entityManager.clear();
+        RestaurantRatingSummary summaryAfter = reviewService.findRatingSummaryByRestaurantId(2).orElseThrow();
+        assertThat(summaryAfter.getReviewCount()).isEqualTo(reviewCountBefore);
+        assertThat(summaryAfter.getCount3()).isEqualTo(count3Before - 1);
+        assertThat(summaryAfter.getCount5()).isEqualTo(count5Before + 1);
+    }
+
     @Test
     @WithUserDetails("hanako.samurai@example.com")
     @Transactional
@@ -309,6 +390,26 @@ public class ReviewControllerTest {
         assertThat(optionalReview).isEmpty();
     }
 
+    @Test
+    @WithUserDetails("jiro.samurai@example.com")
+    @Transactional
+    public void 有料会員としてログイン済みの場合は自身のレビュー削除後に店舗の評価の集計と最終レビュー日時が更新される() throws Exception {
+        // 最新のレビューを削除しても最終レビュー日時が残っているレビューの日時に戻るよう、削除するレビューを最新にしておく
+        jdbcTemplate.update("UPDATE reviews SET created_at = '2100-01-01 00:00:00' WHERE id = 1");
+        int reviewCountBefore = reviewService.findRatingSummaryByRestaurantId(2).orElseThrow().getReviewCount();
+
+        mockMvc.perform(post("/restaurants/2/reviews/1/delete").with(csrf()))
+               .andExpect(status().is3xxRedirection())
+               .andExpect(redirectedUrl("/restaurants/2"));
+
+        entityManager.clear();
+        RestaurantRatingSummary summaryAfter = reviewService.findRatingSummaryByRestaurantId(2).orElseThrow();
+        Timestamp lastCreatedAt = jdbcTemplate.queryForObject("SELECT MAX(created_at) FROM reviews WHERE restaurant_id = 2", Timestamp.class);
+
+        assertThat(summaryAfter.getReviewCount()).isEqualTo(reviewCountBefore - 1);
+        assertThat(summaryAfter.getLastReviewedAt()).isEqualTo(lastCreatedAt);
+    }
+
     @Test
     @WithUserDetails("jiro.samurai@example.com")
     @Transactional
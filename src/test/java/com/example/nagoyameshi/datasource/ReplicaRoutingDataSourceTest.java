@@ -0,0 +1,154 @@
+package com.example.nagoyameshi.datasource;
+
+import static org.assertj.core.api.Assertions.*;
+
+import java.lang.reflect.Proxy;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.util.concurrent.atomic.AtomicLong;
+
+import javax.sql.DataSource;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.jdbc.datasource.AbstractDataSource;
+import org.springframework.jdbc.datasource.DataSourceTransactionManager;
+import org.springframework.jdbc.datasource.DataSourceUtils;
+import org.springframework.jdbc.datasource.LazyConnectionDataSourceProxy;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.transaction.support.TransactionTemplate;
+import org.springframework.web.context.request.RequestContextHolder;
+import org.springframework.web.context.request.ServletRequestAttributes;
+
+public class ReplicaRoutingDataSourceTest {
+    private final AtomicLong clock = new AtomicLong();
+    private ReplicaRoutingDataSource replicaRoutingDataSource;
+    private ReadYourWritesTracker readYourWritesTracker;
+    private DataSource dataSource;
+    private TransactionTemplate readOnlyTransactionTemplate;
+    private TransactionTemplate readWriteTransactionTemplate;
+
+    // 接続先の名前をカタログ名として返すだけのデータベース（プライマリとレプリカの代わり）
+    private static class InMemoryDataSource extends AbstractDataSource {
+        private final String name;
+
+        private InMemoryDataSource(String name) {
+            this.name = name;
+        }
+
+        @Override
+        public Connection getConnection() {
+            return (Connection) Proxy.newProxyInstance(getClass().getClassLoader(), new Class<?>[] { Connection.class }, (proxy, method, args) -> switch (method.getName()) {
+                case "getCatalog" -> name;
+                case "getAutoCommit" -> true;
+                case "getTransactionIsolation" -> Connection.TRANSACTION_READ_COMMITTED;
+                case "isReadOnly", "isClosed" -> false;
+                case "hashCode" -> System.identityHashCode(proxy);
+                case "equals" -> proxy == args[0];
+                default -> null;
+            });
+        }
+
+        @Override
+        public Connection getConnection(String username, String password) {
+            return getConnection();
+        }
+    }
+
+    @BeforeEach
+    public void setUp() {
+        readYourWritesTracker = new ReadYourWritesTracker(5000, clock::get);
+        replicaRoutingDataSource = new ReplicaRoutingDataSource(new InMemoryDataSource("primary"), new InMemoryDataSource("replica"), readYourWritesTracker);
+        replicaRoutingDataSource.afterPropertiesSet();
+        replicaRoutingDataSource.updateReplicaStatus(true, 0);
+        dataSource = new LazyConnectionDataSourceProxy(replicaRoutingDataSource);
+
+        DataSourceTransactionManager transactionManager = new DataSourceTransactionManager(dataSource);
+        readOnlyTransactionTemplate = new TransactionTemplate(transactionManager);
+        readOnlyTransactionTemplate.setReadOnly(true);
+        readWriteTransactionTemplate = new TransactionTemplate(transactionManager);
+    }
+
+    @AfterEach
+    public void tearDown() {
+        RequestContextHolder.resetRequestAttributes();
+    }
+
+    @Test
+    public void 読み取り専用のトランザクションはレプリカにそれ以外はプライマリに振り分けられる() {
+        assertThat(readOnlyCatalog()).isEqualTo("replica");
+        assertThat(readWriteCatalog()).isEqualTo("primary");
+        assertThat(currentCatalog()).isEqualTo("primary");
+
+        assertThat(replicaRoutingDataSource.getRouteCount(ReplicaRoutingDataSource.Route.REPLICA)).isEqualTo(1);
+    }
+
+    @Test
+    public void レプリカの遅延が許容範囲を超えている場合は読み取り専用のトランザクションもプライマリに振り分けられる() {
+        replicaRoutingDataSource.updateReplicaStatus(false, 30);
+
+        assertThat(readOnlyCatalog()).isEqualTo("primary");
+    }
+
+    @Test
+    public void キャッシュへの読み込みは読み取り専用のトランザクションでもプライマリに振り分けられる() {
+        assertThat(DataSourceRouting.onPrimary(this::readOnlyCatalog)).isEqualTo("primary");
+        assertThat(readOnlyCatalog()).isEqualTo("replica");
+    }
+
+    @Test
+    public void GET以外のリクエストでは読み取り専用のトランザクションもプライマリに振り分けられる() {
+        startRequest(new MockHttpServletRequest("POST", "/restaurants/1/reviews/create"));
+
+        assertThat(readOnlyCatalog()).isEqualTo("primary");
+    }
+
+    @Test
+    public void 更新したセッションでは一定時間だけ読み取り専用のトランザクションもプライマリに振り分けられる() {
+        MockHttpServletRequest writeRequest = new MockHttpServletRequest("POST", "/restaurants/1/reviews/create");
+        startRequest(writeRequest);
+        readYourWritesTracker.markWritten();
+
+        MockHttpServletRequest readRequest = new MockHttpServletRequest("GET", "/restaurants/1/reviews");
+        readRequest.setSession(writeRequest.getSession());
+        startRequest(readRequest);
+
+        assertThat(readOnlyCatalog()).isEqualTo("primary");
+
+        // 別のセッションのリクエストはレプリカから読み込む
+        startRequest(new MockHttpServletRequest("GET", "/restaurants/1/reviews"));
+
+        assertThat(readOnlyCatalog()).isEqualTo("replica");
+
+        // 期限を過ぎた後はレプリカから読み込む
+        clock.addAndGet(5000);
+        startRequest(readRequest);
+
+        assertThat(readOnlyCatalog()).isEqualTo("replica");
+    }
+
+    private static void startRequest(MockHttpServletRequest request) {
+        RequestContextHolder.setRequestAttributes(new ServletRequestAttributes(request));
+    }
+
+    private String readOnlyCatalog() {
+        return readOnlyTransactionTemplate.execute(status -> currentCatalog());
+    }
+
+    private String readWriteCatalog() {
+        return readWriteTransactionTemplate.execute(status -> currentCatalog());
+    }
+
+    private String currentCatalog() {
+        Connection connection = DataSourceUtils.getConnection(dataSource);
+
+        try {
+            return connection.getCatalog();
+        } catch (SQLException e) {
+            throw new IllegalStateException(e);
+        } finally {
+            DataSourceUtils.releaseConnection(connection, dataSource);
+        }
+    }
+}
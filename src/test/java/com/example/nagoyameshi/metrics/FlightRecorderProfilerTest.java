@@ -0,0 +1,70 @@
+package com.example.nagoyameshi.metrics;
+
+import static org.assertj.core.api.Assertions.*;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+
+import org.junit.jupiter.api.Test;
+
+import com.example.nagoyameshi.metrics.FlightRecorderProfiler.Profile;
+import com.example.nagoyameshi.metrics.FlightRecorderProfiler.Session;
+
+public class FlightRecorderProfilerTest {
+    @Test
+    public void 記録中と出力中は次の記録を開始できず出力を終えると開始できる() throws Exception {
+        FlightRecorderProfiler flightRecorderProfiler = new FlightRecorderProfiler(5, 16);
+
+        try {
+            Session session = flightRecorderProfiler.start(Profile.CPU, 1);
+
+            assertThat(session).isNotNull();
+            assertThat(flightRecorderProfiler.start(Profile.CPU, 1)).isNull();
+
+            ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
+            session.streamTo(outputStream);
+
+            assertThat(outputStream.size()).isGreaterThan(0);
+            assertThat(flightRecorderProfiler.getLastSummary()).isNotNull();
+            assertThat(flightRecorderProfiler.isRecording()).isFalse();
+            assertThat(flightRecorderProfiler.start(Profile.CPU, 1)).isNotNull();
+        } finally {
+            flightRecorderProfiler.close();
+        }
+    }
+
+    @Test
+    public void 出力されずに期間を過ぎた記録は次の記録の開始時に破棄される() throws Exception {
+        FlightRecorderProfiler flightRecorderProfiler = new FlightRecorderProfiler(5, 16);
+
+        try {
+            Session staleSession = flightRecorderProfiler.start(Profile.CPU, 1);
+            awaitNotRecording(flightRecorderProfiler);
+
+            Session session = flightRecorderProfiler.start(Profile.CPU, 1);
+
+            assertThat(session).isNotNull();
+            assertThatThrownBy(() -> staleSession.streamTo(new ByteArrayOutputStream())).isInstanceOf(IOException.class);
+
+            // 破棄された記録の出力に失敗しても、新しい記録は記録中のまま残る
+            assertThat(flightRecorderProfiler.isRecording()).isTrue();
+
+            ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
+            session.streamTo(outputStream);
+
+            assertThat(outputStream.size()).isGreaterThan(0);
+        } finally {
+            flightRecorderProfiler.close();
+        }
+    }
+
+    private static void awaitNotRecording(FlightRecorderProfiler flightRecorderProfiler) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + 10000;
+
+        while (flightRecorderProfiler.isRecording() && System.currentTimeMillis() < deadline) {
+            Thread.sleep(50);
+        }
+
+        assertThat(flightRecorderProfiler.isRecording()).isFalse();
+    }
+}
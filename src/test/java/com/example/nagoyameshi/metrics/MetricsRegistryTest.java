@@ -0,0 +1,80 @@
+package com.example.nagoyameshi.metrics;
+
+import static org.assertj.core.api.Assertions.*;
+
+import java.io.StringWriter;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.jupiter.api.Test;
+
+public class MetricsRegistryTest {
+    @Test
+    public void 処理時間はsummaryと最大値のgaugeとしてPrometheusのテキスト形式で出力される() throws Exception {
+        MetricsRegistry metricsRegistry = new MetricsRegistry(60000, 10);
+
+        metricsRegistry.record("http_server_requests_seconds", TimeUnit.MILLISECONDS.toNanos(1), "uri", "/restaurants", "outcome", "SUCCESS");
+        metricsRegistry.record("http_server_requests_seconds", TimeUnit.MILLISECONDS.toNanos(2), "uri", "/restaurants", "outcome", "SUCCESS");
+
+        List<String> lines = writePrometheus(metricsRegistry);
+
+        // 1ミリ秒は上限が1024マイクロ秒のバケットに入り、2ミリ秒のパーセンタイルは最大値で抑えられる
+        assertThat(lines).containsExactly(
+            "# TYPE http_server_requests_seconds summary",
+            "http_server_requests_seconds{uri=\"/restaurants\",outcome=\"SUCCESS\",quantile=\"0.5\"} 0.001024",
+            "http_server_requests_seconds{uri=\"/restaurants\",outcome=\"SUCCESS\",quantile=\"0.95\"} 0.002",
+            "http_server_requests_seconds{uri=\"/restaurants\",outcome=\"SUCCESS\",quantile=\"0.99\"} 0.002",
+            "http_server_requests_seconds_count{uri=\"/restaurants\",outcome=\"SUCCESS\"} 2.0",
+            "http_server_requests_seconds_sum{uri=\"/restaurants\",outcome=\"SUCCESS\"} 0.003",
+            "# TYPE http_server_requests_seconds_max gauge",
+            "http_server_requests_seconds_max{uri=\"/restaurants\",outcome=\"SUCCESS\"} 0.002");
+    }
+
+    @Test
+    public void カウンタとゲージは名前順に型とともに出力されラベルの値はエスケープされる() throws Exception {
+        MetricsRegistry metricsRegistry = new MetricsRegistry(60000, 10);
+
+        metricsRegistry.gauge("jvm_threads_live", () -> 12);
+        metricsRegistry.counter("cache_requests_total", () -> 3, "cache", "a\"b\\c\nd");
+
+        List<String> lines = writePrometheus(metricsRegistry);
+
+        assertThat(lines).containsExactly(
+            "# TYPE cache_requests_total counter",
+            "cache_requests_total{cache=\"a\\\"b\\\\c\\nd\"} 3.0",
+            "# TYPE jvm_threads_live gauge",
+            "jvm_threads_live 12.0");
+    }
+
+    @Test
+    public void 値の取得に失敗したゲージはNaNとして出力される() throws Exception {
+        MetricsRegistry metricsRegistry = new MetricsRegistry(60000, 10);
+
+        metricsRegistry.gauge("broken", () -> {
+            throw new IllegalStateException();
+        });
+
+        assertThat(writePrometheus(metricsRegistry)).containsExactly("# TYPE broken gauge", "broken NaN");
+    }
+
+    @Test
+    public void ラベルの組み合わせが上限に達した場合は新しい組み合わせを記録しない() throws Exception {
+        MetricsRegistry metricsRegistry = new MetricsRegistry(60000, 1);
+
+        metricsRegistry.record("repository_seconds", 1000, "method", "a");
+        metricsRegistry.record("repository_seconds", 1000, "method", "b");
+        metricsRegistry.record("repository_seconds", 1000, "method", "a");
+
+        assertThat(metricsRegistry.findSlowestTimers(10)).singleElement().satisfies(timerSnapshot -> {
+            assertThat(timerSnapshot.id().labelText()).isEqualTo("method=a");
+            assertThat(timerSnapshot.snapshot().count()).isEqualTo(2);
+        });
+    }
+
+    private static List<String> writePrometheus(MetricsRegistry metricsRegistry) throws Exception {
+        StringWriter writer = new StringWriter();
+        metricsRegistry.writePrometheus(writer);
+
+        return writer.toString().lines().toList();
+    }
+}
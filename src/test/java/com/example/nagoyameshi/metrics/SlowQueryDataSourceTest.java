@@ -0,0 +1,77 @@
+package com.example.nagoyameshi.metrics;
+
+import static org.assertj.core.api.Assertions.*;
+
+import java.lang.reflect.Proxy;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.Types;
+
+import javax.sql.DataSource;
+
+import org.junit.jupiter.api.Test;
+
+public class SlowQueryDataSourceTest {
+    @Test
+    public void バインドした値が記録されsetNullの値はnullとして記録される() throws Exception {
+        SlowQueryLog slowQueryLog = new SlowQueryLog(true, 0, 10, 1);
+        SlowQueryDataSource slowQueryDataSource = new SlowQueryDataSource(stubDataSource(), slowQueryLog);
+
+        try (Connection connection = slowQueryDataSource.getConnection();
+             PreparedStatement preparedStatement = connection.prepareStatement("SELECT * FROM restaurants WHERE id = ? AND name = ? AND address = ?"))
+        {
+            preparedStatement.setInt(1, 5);
+            preparedStatement.setNull(2, Types.VARCHAR);
+            preparedStatement.setString(3, "名古屋市");
+            preparedStatement.executeQuery();
+        }
+
+        assertThat(slowQueryLog.findAll()).singleElement().satisfies(slowQuery -> {
+            assertThat(slowQuery.getSql()).isEqualTo("SELECT * FROM restaurants WHERE id = ? AND name = ? AND address = ?");
+            assertThat(slowQuery.getParameters()).containsExactly("5", "NULL", "<string:4>");
+        });
+    }
+
+    @Test
+    public void 値をバインドせずに実行した文は値なしで記録される() throws Exception {
+        SlowQueryLog slowQueryLog = new SlowQueryLog(true, 0, 10, 1);
+        SlowQueryDataSource slowQueryDataSource = new SlowQueryDataSource(stubDataSource(), slowQueryLog);
+
+        try (Connection connection = slowQueryDataSource.getConnection();
+             PreparedStatement preparedStatement = connection.prepareStatement("SELECT COUNT(*) FROM restaurants"))
+        {
+            preparedStatement.setInt(1, 1);
+            preparedStatement.clearParameters();
+            preparedStatement.executeQuery();
+        }
+
+        assertThat(slowQueryLog.findAll()).singleElement().satisfies(slowQuery -> assertThat(slowQuery.getParameters()).isEmpty());
+    }
+
+    // すべての呼び出しに既定値を返すDataSource（prepareStatementは同様のPreparedStatementを返す）
+    private static DataSource stubDataSource() {
+        PreparedStatement preparedStatement = stub(PreparedStatement.class, null);
+        Connection connection = stub(Connection.class, preparedStatement);
+
+        return stub(DataSource.class, connection);
+    }
+
+    @SuppressWarnings("unchecked")
+    private static <T> T stub(Class<T> type, Object returnedObject) {
+        return (T) Proxy.newProxyInstance(SlowQueryDataSourceTest.class.getClassLoader(), new Class<?>[] { type }, (proxy, method, args) -> {
+            Class<?> returnType = method.getReturnType();
+
+            if (returnedObject != null && returnType.isInstance(returnedObject)) {
+                return returnedObject;
+            } else if (returnType == boolean.class) {
+                return false;
+            } else if (returnType == int.class) {
+                return 0;
+            } else if (returnType == long.class) {
+                return 0L;
+            }
+
+            return null;
+        });
+    }
+}
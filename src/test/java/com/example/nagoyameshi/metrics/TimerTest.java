@@ -0,0 +1,87 @@
+package com.example.nagoyameshi.metrics;
+
+import static org.assertj.core.api.Assertions.*;
+
+import java.util.concurrent.TimeUnit;
+
+import org.junit.jupiter.api.Test;
+
+public class TimerTest {
+    @Test
+    public void 小さい値はそのままの番号のバケットに入る() {
+        assertThat(Timer.bucketOf(-1)).isEqualTo(0);
+        assertThat(Timer.bucketOf(0)).isEqualTo(0);
+        assertThat(Timer.bucketOf(1)).isEqualTo(1);
+        assertThat(Timer.bucketOf(3)).isEqualTo(3);
+    }
+
+    @Test
+    public void バケットは2のべき乗ごとに4つに分割される() {
+        // 4～7マイクロ秒は1マイクロ秒ずつ、8～15マイクロ秒は2マイクロ秒ずつのバケットに入る
+        assertThat(Timer.bucketOf(4)).isEqualTo(8);
+        assertThat(Timer.bucketOf(7)).isEqualTo(11);
+        assertThat(Timer.bucketOf(8)).isEqualTo(12);
+        assertThat(Timer.bucketOf(9)).isEqualTo(12);
+        assertThat(Timer.bucketOf(10)).isEqualTo(13);
+        assertThat(Timer.bucketOf(15)).isEqualTo(15);
+        assertThat(Timer.bucketOf(16)).isEqualTo(16);
+        assertThat(Timer.bucketOf(1024)).isEqualTo(40);
+        assertThat(Timer.bucketOf(1279)).isEqualTo(40);
+        assertThat(Timer.bucketOf(1280)).isEqualTo(41);
+    }
+
+    @Test
+    public void 値はバケットの上限未満に収まり上限との誤差は25パーセント以内になる() {
+        int previousBucket = 0;
+
+        for (long micros = 0; micros < 1_000_000; micros = micros < 4096 ? micros + 1 : micros + 997) {
+            int bucket = Timer.bucketOf(micros);
+            long upperBound = Timer.upperBoundMicros(bucket);
+
+            assertThat(bucket).isGreaterThanOrEqualTo(previousBucket);
+            assertThat(upperBound).isGreaterThan(micros);
+
+            if (bucket > 0) {
+                assertThat(Timer.upperBoundMicros(bucket - 1)).isLessThanOrEqualTo(micros);
+            }
+
+            if (micros >= 4) {
+                assertThat((double) (upperBound - micros) / micros).isLessThanOrEqualTo(0.25);
+            }
+
+            previousBucket = bucket;
+        }
+    }
+
+    @Test
+    public void 非常に大きい値は最後のバケットを超えない() {
+        assertThat(Timer.bucketOf(Long.MAX_VALUE)).isLessThan(64 * 4);
+    }
+
+    @Test
+    public void パーセンタイルはバケットの上限で近似され最大値を超えない() {
+        Timer timer = new Timer(60000);
+
+        // 1～100ミリ秒を1件ずつ記録する
+        for (int millis = 1; millis <= 100; millis++) {
+            timer.record(TimeUnit.MILLISECONDS.toNanos(millis));
+        }
+
+        assertThat(timer.getCount()).isEqualTo(100);
+        assertThat(timer.getTotalSeconds()).isCloseTo(5.05, within(1e-9));
+        assertThat(timer.getMaxSeconds()).isEqualTo(0.1);
+        assertThat(timer.getPercentileSeconds(0.5)).isBetween(0.05, 0.05 * 1.25);
+        assertThat(timer.getPercentileSeconds(0.95)).isBetween(0.095, 0.1);
+        assertThat(timer.getPercentileSeconds(0.99)).isBetween(0.099, 0.1);
+        assertThat(timer.getPercentileSeconds(1.0)).isEqualTo(0.1);
+    }
+
+    @Test
+    public void 記録がない場合のパーセンタイルと最大値は0になる() {
+        Timer timer = new Timer(60000);
+
+        assertThat(timer.getPercentileSeconds(0.99)).isEqualTo(0);
+        assertThat(timer.getMaxSeconds()).isEqualTo(0);
+        assertThat(timer.snapshot().meanMillis()).isEqualTo(0);
+    }
+}
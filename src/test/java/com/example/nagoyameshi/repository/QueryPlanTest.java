@@ -0,0 +1,232 @@
+package com.example.nagoyameshi.repository;
+
+import static org.assertj.core.api.Assertions.*;
+
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Parameter;
+import java.sql.Connection;
+import java.sql.Timestamp;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import javax.sql.DataSource;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.aop.framework.AopProxyUtils;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.context.ApplicationContext;
+import org.springframework.context.annotation.Import;
+import org.springframework.core.io.ClassPathResource;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.repository.Repository;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.DataSourceUtils;
+import org.springframework.jdbc.datasource.init.ScriptUtils;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.transaction.annotation.Transactional;
+
+import com.example.nagoyameshi.support.QueryCountingConfiguration;
+import com.example.nagoyameshi.support.QueryRecording;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import jakarta.persistence.EntityManager;
+
+// リポジトリのすべてのクエリの実行計画を、データを増やした状態で検証する
+//  1. 初期データに対して各クエリメソッドを呼び出し、発行されたSQL文とバインドした値を記録する
+//  2. 検証用のデータを投入し（テスト終了時にロールバックする）、記録したSQL文をEXPLAIN FORMAT=JSONで確認する
+//  3. 大きなテーブルの全件走査と、多くの行のファイルソートを検出した場合は失敗する
+@SpringBootTest
+@ActiveProfiles("test")
+@Import(QueryCountingConfiguration.class)
+public class QueryPlanTest {
+    private static final String REPOSITORY_PACKAGE = "com.example.nagoyameshi.repository";
+    // 全件走査を許容しない行数
+    private static final long LARGE_TABLE_ROWS = 1000;
+    // ファイルソートを許容しない、並べ替え対象の推定行数
+    private static final long LARGE_SORT_ROWS = 100;
+
+    // 実行計画が全件走査やファイルソートになることを許容するクエリと、その理由
+    private static final Map<String, String> ALLOWED = Map.ofEntries(
+        Map.entry("RestaurantRepository.findAll", "条件も並び順もないため先頭からLIMITの行数だけ読み込む（管理者向けの店舗一覧でのみ使う）"),
+        Map.entry("RestaurantRepository.findByNameLike", "部分一致検索のため索引を使えない（管理者向けの店舗名検索でのみ使う）"),
+        Map.entry("RestaurantRepository.findByNameLikeOrAddressLikeOrCategoryNameLikeOrderByCreatedAtDesc", "部分一致検索のため索引を使えない（会員向けのキーワード検索で実行し、結果のidはListingResultCacheで使い回す）"),
+        Map.entry("RestaurantRepository.findByNameLikeOrAddressLikeOrCategoryNameLikeOrderByLowestPriceAsc", "部分一致検索のため索引を使えない（会員向けのキーワード検索で実行し、結果のidはListingResultCacheで使い回す）"),
+        Map.entry("RestaurantRepository.findByNameLikeOrAddressLikeOrCategoryNameLikeOrderByRankingScoreDesc", "部分一致検索のため索引を使えない（会員向けのキーワード検索で実行し、結果のidはListingResultCacheで使い回す）"),
+        Map.entry("RestaurantRepository.findByNameLikeOrAddressLikeOrCategoryNameLikeOrderByReservationCountDesc", "部分一致検索のため索引を使えない（会員向けのキーワード検索で実行し、結果のidはListingResultCacheで使い回す）"),
+        Map.entry("RestaurantRepository.findByNameLikeOrAddressLikeOrCategoryNameLikeOrderByTrendingScoreDesc", "部分一致検索のため索引を使えない（会員向けのキーワード検索で実行し、結果のidはListingResultCacheで使い回す）"),
+        Map.entry("RestaurantRepository.findIdsByNameLikeOrAddressLikeOrCategoryNameLike", "部分一致検索のため索引を使えない（会員向けのキーワード検索を営業時間で絞り込む場合にのみ使う）"),
+        Map.entry("RestaurantRepository.findAllByOrderByReservationCountDesc", "予約数の集計結果で並べ替えるため（会員向けの一覧はカタログで行う）"),
+        Map.entry("RestaurantRepository.findByLowestPriceLessThanEqualOrderByCreatedAtDesc", "予算の範囲と並び順の列が異なるため（会員向けの一覧はカタログで行う）"),
+        Map.entry("RestaurantRepository.findByLowestPriceLessThanEqualOrderByRankingScoreDesc", "予算の範囲と並び順の列が異なるため（会員向けの一覧はカタログで行う）"),
+        Map.entry("RestaurantRepository.findByLowestPriceLessThanEqualOrderByReservationCountDesc", "予約数の集計結果で並べ替えるため（会員向けの一覧はカタログで行う）"),
+        Map.entry("RestaurantRepository.findByLowestPriceLessThanEqualOrderByTrendingScoreDesc", "予算の範囲と並び順の列が異なるため（会員向けの一覧はカタログで行う）")
+    );
+
+    @Autowired
+    private ApplicationContext applicationContext;
+
+    @Autowired
+    private EntityManager entityManager;
+
+    @Autowired
+    private DataSource dataSource;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    private final ObjectMapper objectMapper = new ObjectMapper();
+
+    private record ExecutedStatement(String method, String sql, List<Object> parameterValues) {
+    }
+
+    @Test
+    @Transactional
+    public void リポジトリのクエリが大きなテーブルの全件走査や多くの行のファイルソートを行わない() throws Exception {
+        List<ExecutedStatement> statements = recordRepositoryStatements();
+
+        assertThat(statements).isNotEmpty();
+
+        Connection connection = DataSourceUtils.getConnection(dataSource);
+        ScriptUtils.executeSqlScript(connection, new ClassPathResource("query-plan/dataset.sql"));
+
+        List<String> violations = new ArrayList<>();
+
+        for (ExecutedStatement statement : statements) {
+            if (ALLOWED.containsKey(statement.method())) {
+                continue;
+            }
+
+            String plan = jdbcTemplate.queryForObject("EXPLAIN FORMAT=JSON " + statement.sql(), String.class, statement.parameterValues().toArray());
+            List<String> problems = new ArrayList<>();
+            inspect(objectMapper.readTree(plan), false, problems);
+
+            if (!problems.isEmpty()) {
+                violations.add(statement.method() + "\n    " + statement.sql() + "\n    " + String.join("\n    ", problems));
+            }
+        }
+
+        assertThat(violations).as("実行計画が全件走査またはファイルソートになったクエリ:\n%s", String.join("\n\n", violations)).isEmpty();
+    }
+
+    // 各リポジトリのクエリメソッドを呼び出し、発行されたSELECT文を重複を除いて記録する（更新系のメソッドは呼び出さない）
+    private List<ExecutedStatement> recordRepositoryStatements() throws Exception {
+        Map<String, ExecutedStatement> statements = new LinkedHashMap<>();
+
+        for (Object repository : applicationContext.getBeansOfType(Repository.class).values()) {
+            Class<?> repositoryInterface = repositoryInterface(repository);
+
+            if (repositoryInterface == null) {
+                continue;
+            }
+
+            List<Method> methods = new ArrayList<>(List.of(repositoryInterface.getDeclaredMethods()));
+            methods.sort(Comparator.comparing(Method::getName));
+
+            for (Method method : methods) {
+                if (method.isAnnotationPresent(Modifying.class) || method.isSynthetic()) {
+                    continue;
+                }
+
+                String methodName = repositoryInterface.getSimpleName() + "." + method.getName();
+                QueryRecording recording = QueryRecording.start(methodName);
+
+                try {
+                    method.invoke(repository, arguments(method));
+                } catch (InvocationTargetException e) {
+                    throw new AssertionError(methodName + " の呼び出しに失敗しました", e.getTargetException());
+                } finally {
+                    QueryRecording.stop();
+                    entityManager.clear();
+                }
+
+                for (QueryRecording.Statement statement : recording.getStatements()) {
+                    if (statement.getSql().regionMatches(true, 0, "select", 0, 6)) {
+                        statements.putIfAbsent(statement.getSql(), new ExecutedStatement(methodName, statement.getSql(), statement.getParameterValues()));
+                    }
+                }
+            }
+        }
+
+        return new ArrayList<>(statements.values());
+    }
+
+    private static Class<?> repositoryInterface(Object repository) {
+        for (Class<?> proxiedInterface : AopProxyUtils.proxiedUserInterfaces(repository)) {
+            if (proxiedInterface.getName().startsWith(REPOSITORY_PACKAGE)) {
+                return proxiedInterface;
+            }
+        }
+
+        return null;
+    }
+
+    // 引数の型と名前から、初期データで結果が得られる値を作る
+    private Object[] arguments(Method method) {
+        Parameter[] parameters = method.getParameters();
+        Object[] arguments = new Object[parameters.length];
+
+        for (int i = 0; i < parameters.length; i++) {
+            Class<?> type = parameters[i].getType();
+            String name = parameters[i].getName().toLowerCase();
+
+            if (type == Integer.class || type == int.class) {
+                arguments[i] = name.contains("price") ? 3000 : 1;
+            } else if (type == Long.class || type == long.class) {
+                arguments[i] = 1L;
+            } else if (type == String.class) {
+                arguments[i] = name.contains("keyword") || method.getName().contains("Like") ? "%名古屋%" : "a";
+            } else if (type == Pageable.class) {
+                arguments[i] = PageRequest.of(0, 15);
+            } else if (Collection.class.isAssignableFrom(type)) {
+                arguments[i] = List.of(1, 2, 3);
+            } else if (type == Timestamp.class) {
+                arguments[i] = new Timestamp(System.currentTimeMillis());
+            } else if (type.getPackageName().equals("com.example.nagoyameshi.entity")) {
+                arguments[i] = entityManager.find(type, 1);
+            } else {
+                throw new AssertionError(method + " の引数 " + parameters[i] + " の値を作れません");
+            }
+        }
+
+        return arguments;
+    }
+
+    // 実行計画を再帰的にたどり、大きなテーブルの全件走査と、多くの行のファイルソートを検出する（行数はオプティマイザの推定値）
+    private static void inspect(JsonNode node, boolean sorted, List<String> problems) {
+        if (node.isArray()) {
+            node.forEach(child -> inspect(child, sorted, problems));
+            return;
+        }
+
+        if (!node.isObject()) {
+            return;
+        }
+
+        boolean sorting = sorted || node.path("using_filesort").asBoolean(false);
+
+        if (node.has("table_name") && node.has("access_type")) {
+            String tableName = node.get("table_name").asText();
+            String accessType = node.get("access_type").asText();
+            long examinedRows = node.path("rows_examined_per_scan").asLong(0);
+
+            if (accessType.equals("ALL") && examinedRows >= LARGE_TABLE_ROWS) {
+                problems.add("full scan of " + tableName + " (" + examinedRows + " rows)");
+            }
+
+            if (sorting && examinedRows >= LARGE_SORT_ROWS) {
+                problems.add("filesort over " + tableName + " (" + examinedRows + " rows, access_type=" + accessType + ")");
+            }
+        }
+
+        node.fields().forEachRemaining(field -> inspect(field.getValue(), sorting, problems));
+    }
+}
@@ -0,0 +1,131 @@
+package com.example.nagoyameshi.repository;
+
+import static org.assertj.core.api.Assertions.*;
+
+import java.util.List;
+import java.util.function.Supplier;
+
+import org.hibernate.SessionFactory;
+import org.hibernate.stat.CacheRegionStatistics;
+import org.hibernate.stat.Statistics;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.context.annotation.Import;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import com.example.nagoyameshi.entity.Category;
+import com.example.nagoyameshi.entity.Restaurant;
+import com.example.nagoyameshi.support.QueryCountingConfiguration;
+import com.example.nagoyameshi.support.QueryRecording;
+
+import jakarta.persistence.EntityManagerFactory;
+
+// カテゴリ・定休日・ロールが2次キャッシュから取得され、SQL文の結合や再読み込みが不要になることを検証する
+// 統計は他のテストやスケジュールされた処理と共有するため、差分のみを比較し、SQL文はこのスレッドで発行したものだけを数える
+@SpringBootTest
+@ActiveProfiles("test")
+@Import(QueryCountingConfiguration.class)
+public class SecondLevelCacheTest {
+    @Autowired
+    private RestaurantRepository restaurantRepository;
+
+    @Autowired
+    private RoleRepository roleRepository;
+
+    @Autowired
+    private CategoryRepository categoryRepository;
+
+    @Autowired
+    private EntityManagerFactory entityManagerFactory;
+
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+
+    @Test
+    public void 店舗の一覧を読み込み直す場合はカテゴリと定休日が2次キャッシュから取得される() {
+        Statistics statistics = entityManagerFactory.unwrap(SessionFactory.class).getStatistics();
+        CacheRegionStatistics categoryStatistics = statistics.getDomainDataRegionStatistics(Category.class.getName());
+
+        // 1回目でキャッシュに読み込む
+        inTransaction(() -> touchCategoriesAndRegularHolidays(restaurantRepository.findAllByOrderByCreatedAtDesc(PageRequest.of(0, 15)).getContent()));
+
+        long categoryHits = categoryStatistics.getHitCount();
+        long categoryMisses = categoryStatistics.getMissCount();
+
+        QueryRecording recording = QueryRecording.start("2回目の店舗一覧");
+
+        try {
+            inTransaction(() -> touchCategoriesAndRegularHolidays(restaurantRepository.findAllByOrderByCreatedAtDesc(PageRequest.of(0, 15)).getContent()));
+        } finally {
+            QueryRecording.stop();
+        }
+
+        assertThat(categoryStatistics.getHitCount()).isGreaterThan(categoryHits);
+        assertThat(categoryStatistics.getMissCount()).isEqualTo(categoryMisses);
+        // カテゴリと定休日のテーブルはSQL文で読み込まない
+        assertThat(recording.getStatements())
+            .noneMatch(statement -> statement.getSql().contains(" categories ") || statement.getSql().contains(" regular_holidays "));
+    }
+
+    @Test
+    public void ロール名での検索を繰り返す場合はクエリキャッシュから取得されSQL文が発行されない() {
+        inTransaction(() -> roleRepository.findByName("ROLE_FREE_MEMBER"));
+
+        QueryRecording recording = QueryRecording.start("2回目のロール名での検索");
+
+        try {
+            assertThat(inTransaction(() -> roleRepository.findByName("ROLE_FREE_MEMBER")).getName()).isEqualTo("ROLE_FREE_MEMBER");
+        } finally {
+            QueryRecording.stop();
+        }
+
+        assertThat(recording.getStatementCount()).isZero();
+    }
+
+    @Test
+    public void カテゴリを更新した場合は2次キャッシュとクエリキャッシュの古い値が使われない() {
+        Category category = inTransaction(() -> categoryRepository.findFirstByOrderByIdDesc());
+        String name = category.getName();
+
+        inTransaction(() -> categoryRepository.findById(category.getId()));
+        inTransaction(() -> categoryRepository.findFirstByName(name));
+
+        try {
+            inTransaction(() -> {
+                Category editedCategory = categoryRepository.findById(category.getId()).orElseThrow();
+                editedCategory.setName(name + "（変更後）");
+                return categoryRepository.save(editedCategory);
+            });
+
+            assertThat(inTransaction(() -> categoryRepository.findById(category.getId()).orElseThrow().getName())).isEqualTo(name + "（変更後）");
+            assertThat(inTransaction(() -> categoryRepository.findFirstByName(name))).isNull();
+        } finally {
+            inTransaction(() -> {
+                Category editedCategory = categoryRepository.findById(category.getId()).orElseThrow();
+                editedCategory.setName(name);
+                return categoryRepository.save(editedCategory);
+            });
+        }
+    }
+
+    // 店舗カードに表示するカテゴリ名と定休日を参照する
+    private static int touchCategoriesAndRegularHolidays(List<Restaurant> restaurants) {
+        int length = 0;
+
+        for (Restaurant restaurant : restaurants) {
+            length += restaurant.getCategoriesRestaurants().stream().mapToInt(categoryRestaurant -> categoryRestaurant.getCategory().getName().length()).sum();
+            length += restaurant.getRegularHolidaysRestaurants().stream().mapToInt(regularHolidayRestaurant -> regularHolidayRestaurant.getRegularHoliday().getDay().length()).sum();
+        }
+
+        return length;
+    }
+
+    // トランザクションごとに別の永続化コンテキストで実行する（1次キャッシュではなく2次キャッシュから取得させるため）
+    private <T> T inTransaction(Supplier<T> supplier) {
+        return new TransactionTemplate(transactionManager).execute(status -> supplier.get());
+    }
+}
@@ -0,0 +1,39 @@
+package com.example.nagoyameshi.security;
+
+import static org.assertj.core.api.Assertions.*;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.security.crypto.bcrypt.BCryptPasswordEncoder;
+
+public class AdaptivePasswordEncoderTest {
+    private final PasswordHashingExecutor passwordHashingExecutor = new PasswordHashingExecutor(1, 10, 5000);
+
+    @AfterEach
+    public void shutdown() {
+        passwordHashingExecutor.shutdown();
+    }
+
+    @Test
+    public void 設定と異なるコストで保存されたハッシュは照合でき再ハッシュ化の対象となる() {
+        AdaptivePasswordEncoder adaptivePasswordEncoder = new AdaptivePasswordEncoder(5, passwordHashingExecutor);
+        String oldHash = new BCryptPasswordEncoder(4).encode("password");
+
+        assertThat(adaptivePasswordEncoder.matches("password", oldHash)).isTrue();
+        assertThat(adaptivePasswordEncoder.upgradeEncoding(oldHash)).isTrue();
+
+        String newHash = adaptivePasswordEncoder.encode("password");
+
+        assertThat(newHash).startsWith("$2a$05$");
+        assertThat(adaptivePasswordEncoder.upgradeEncoding(newHash)).isFalse();
+    }
+
+    @Test
+    public void BCrypt形式でないハッシュはスレッドプールを使わずに不一致となる() {
+        AdaptivePasswordEncoder adaptivePasswordEncoder = new AdaptivePasswordEncoder(5, passwordHashingExecutor);
+
+        assertThat(adaptivePasswordEncoder.matches("password", "password")).isFalse();
+        assertThat(adaptivePasswordEncoder.upgradeEncoding("password")).isFalse();
+        assertThat(passwordHashingExecutor.getCompletedCount()).isZero();
+    }
+}
@@ -0,0 +1,109 @@
+package com.example.nagoyameshi.security;
+
+import static org.hamcrest.Matchers.*;
+import static org.springframework.security.test.web.servlet.request.SecurityMockMvcRequestBuilders.*;
+import static org.springframework.security.test.web.servlet.request.SecurityMockMvcRequestPostProcessors.*;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.*;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.*;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.MvcResult;
+import org.springframework.test.web.servlet.request.RequestPostProcessor;
+import org.springframework.transaction.annotation.Transactional;
+
+import com.example.nagoyameshi.entity.User;
+import com.example.nagoyameshi.repository.UserRepository;
+import com.example.nagoyameshi.service.EntitlementService;
+
+import jakarta.servlet.http.Cookie;
+
+@SpringBootTest
+@AutoConfigureMockMvc
+@ActiveProfiles("test")
+public class EntitlementFilterTest {
+    @Autowired
+    private MockMvc mockMvc;
+
+    @Autowired
+    private EntitlementService entitlementService;
+
+    @Autowired
+    private UserRepository userRepository;
+
+    @Test
+    @Transactional
+    public void 別のセッションで会員情報を更新すると他のセッションの認証情報も氏名を含めて差し替えられる() throws Exception {
+        MvcResult firstLogin = login("taro.samurai@example.com");
+        MvcResult secondLogin = login("taro.samurai@example.com");
+
+        // 2つ目のセッションで一度アクセスし、更新前のロールとバージョンをキャッシュさせる
+        mockMvc.perform(get("/").with(session(secondLogin)))
+               .andExpect(status().isOk())
+               .andExpect(content().string(containsString("侍 太郎")));
+
+        mockMvc.perform(post("/user/update")
+                .with(session(firstLogin))
+                .with(csrf())
+                .param("name", "テスト氏名")
+                .param("furigana", "テストフリガナ")
+                .param("postalCode", "1010022")
+                .param("address", "東京都千代田区神田練塀町300番地")
+                .param("phoneNumber", "09012345678")
+                .param("birthday", "19900101")
+                .param("occupation", "エンジニア")
+                .param("email", "taro.samurai@example.com"))
+            .andExpect(status().is3xxRedirection())
+            .andExpect(redirectedUrl("/user"));
+
+        // テストのトランザクションはコミットされないため、他のサーバーと同じく変更履歴のポーリングでキャッシュを破棄させる
+        entitlementService.pollChanges();
+
+        mockMvc.perform(get("/").with(session(secondLogin)))
+               .andExpect(status().isOk())
+               .andExpect(content().string(containsString("テスト氏名")));
+    }
+
+    @Test
+    @Transactional
+    public void 別のセッションで無効化されたユーザーはログアウトされる() throws Exception {
+        MvcResult login = login("taro.samurai@example.com");
+
+        mockMvc.perform(get("/user").with(session(login)))
+               .andExpect(status().isOk());
+
+        User user = userRepository.findByEmail("taro.samurai@example.com");
+        user.setEnabled(false);
+        entitlementService.recordChange(userRepository.saveAndFlush(user));
+        entitlementService.pollChanges();
+
+        mockMvc.perform(get("/user").with(session(login)))
+               .andExpect(status().is3xxRedirection())
+               .andExpect(redirectedUrl("http://localhost/login"));
+    }
+
+    private MvcResult login(String email) throws Exception {
+        return mockMvc.perform(formLogin("/login").user(email).password("password"))
+                      .andExpect(redirectedUrl("/?loggedIn"))
+                      .andReturn();
+    }
+
+    // ログイン時のセッションを引き継ぐ（外部のセッションストアを利用している場合はCookieでセッションを指定する）
+    private RequestPostProcessor session(MvcResult login) {
+        return request -> {
+            Cookie cookie = login.getResponse().getCookie("SESSION");
+
+            if (cookie != null) {
+                request.setCookies(cookie);
+            } else {
+                request.setSession(login.getRequest().getSession(false));
+            }
+
+            return request;
+        };
+    }
+}
@@ -0,0 +1,100 @@
+package com.example.nagoyameshi.security;
+
+import static org.assertj.core.api.Assertions.*;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.jupiter.api.Test;
+
+public class PasswordHashingExecutorTest {
+    @Test
+    public void 実行中の処理とキューが上限に達している場合は待たずに拒否される() throws Exception {
+        PasswordHashingExecutor passwordHashingExecutor = new PasswordHashingExecutor(1, 1, 5000);
+        CountDownLatch startedLatch = new CountDownLatch(1);
+        CountDownLatch releaseLatch = new CountDownLatch(1);
+
+        try (ExecutorService executorService = Executors.newFixedThreadPool(2)) {
+            // 1件目でスレッドを占有し、2件目をキューに積む
+            Future<Integer> running = executorService.submit(() -> passwordHashingExecutor.execute(() -> {
+                startedLatch.countDown();
+                releaseLatch.await(5, TimeUnit.SECONDS);
+                return 1;
+            }));
+            assertThat(startedLatch.await(5, TimeUnit.SECONDS)).isTrue();
+
+            Future<Integer> queued = executorService.submit(() -> passwordHashingExecutor.execute(() -> 2));
+            awaitQueueSize(passwordHashingExecutor, 1);
+
+            assertThatThrownBy(() -> passwordHashingExecutor.execute(() -> 3)).isInstanceOf(PasswordHashingRejectedException.class);
+            assertThat(passwordHashingExecutor.getRejectedCount()).isEqualTo(1);
+
+            releaseLatch.countDown();
+
+            assertThat(running.get(5, TimeUnit.SECONDS)).isEqualTo(1);
+            assertThat(queued.get(5, TimeUnit.SECONDS)).isEqualTo(2);
+        } finally {
+            passwordHashingExecutor.shutdown();
+        }
+
+        assertThat(passwordHashingExecutor.getCompletedCount()).isEqualTo(2);
+    }
+
+    @Test
+    public void タイムアウトした実行待ちの処理はキューから取り除かれる() throws Exception {
+        PasswordHashingExecutor passwordHashingExecutor = new PasswordHashingExecutor(1, 1, 100);
+        CountDownLatch startedLatch = new CountDownLatch(1);
+        CountDownLatch releaseLatch = new CountDownLatch(1);
+
+        try (ExecutorService executorService = Executors.newSingleThreadExecutor()) {
+            executorService.submit(() -> passwordHashingExecutor.execute(() -> {
+                startedLatch.countDown();
+                releaseLatch.await(5, TimeUnit.SECONDS);
+                return 1;
+            }));
+            assertThat(startedLatch.await(5, TimeUnit.SECONDS)).isTrue();
+
+            assertThatThrownBy(() -> passwordHashingExecutor.execute(() -> 2)).isInstanceOf(PasswordHashingRejectedException.class);
+
+            // タイムアウトした処理がキューに残らず、枠が空いている
+            assertThat(passwordHashingExecutor.getQueueSize()).isZero();
+
+            releaseLatch.countDown();
+        } finally {
+            passwordHashingExecutor.shutdown();
+        }
+    }
+
+    @Test
+    public void 最長の処理時間は同時に完了した処理のうち最も長いものになる() throws Exception {
+        PasswordHashingExecutor passwordHashingExecutor = new PasswordHashingExecutor(4, 100, 5000);
+
+        try (ExecutorService executorService = Executors.newFixedThreadPool(4)) {
+            for (int i = 1; i <= 4; i++) {
+                long sleepMillis = i * 50L;
+                executorService.submit(() -> passwordHashingExecutor.execute(() -> {
+                    Thread.sleep(sleepMillis);
+                    return sleepMillis;
+                }));
+            }
+        } finally {
+            passwordHashingExecutor.shutdown();
+        }
+
+        assertThat(passwordHashingExecutor.getCompletedCount()).isEqualTo(4);
+        assertThat(passwordHashingExecutor.getMaxMillis()).isGreaterThanOrEqualTo(200);
+    }
+
+    private void awaitQueueSize(PasswordHashingExecutor passwordHashingExecutor, int expected) throws InterruptedException {
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+
+        while (passwordHashingExecutor.getQueueSize() < expected && System.nanoTime() < deadline) {
+            Thread.sleep(10);
+        }
+
+        assertThat(passwordHashingExecutor.getQueueSize()).isEqualTo(expected);
+    }
+}
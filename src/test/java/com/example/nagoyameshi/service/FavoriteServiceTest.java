@@ -0,0 +1,119 @@
+package com.example.nagoyameshi.service;
+
+import static org.assertj.core.api.Assertions.*;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import com.example.nagoyameshi.entity.Favorite;
+import com.example.nagoyameshi.entity.Restaurant;
+import com.example.nagoyameshi.entity.User;
+
+@SpringBootTest
+@ActiveProfiles("test")
+public class FavoriteServiceTest {
+    @Autowired
+    private FavoriteService favoriteService;
+
+    @Autowired
+    private RestaurantService restaurantService;
+
+    @Autowired
+    private UserService userService;
+
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Test
+    public void ロールバックされたお気に入りの追加はキャッシュに反映されない() {
+        TransactionTemplate transactionTemplate = new TransactionTemplate(transactionManager);
+
+        // 追加前の状態をキャッシュに読み込ませておく
+        assertThat(favoriteService.findFavoriteIdByRestaurantIdAndUserId(1, 1)).isNull();
+
+        transactionTemplate.executeWithoutResult(status -> {
+            Restaurant restaurant = restaurantService.findRestaurantById(1).orElseThrow();
+            User user = userService.findUserById(1).orElseThrow();
+
+            favoriteService.createFavorite(restaurant, user);
+            status.setRollbackOnly();
+        });
+
+        assertThat(favoriteService.findFavoriteIdByRestaurantIdAndUserId(1, 1)).isNull();
+    }
+
+    @Test
+    public void コミットされたお気に入りの追加と解除はキャッシュに反映される() {
+        TransactionTemplate transactionTemplate = new TransactionTemplate(transactionManager);
+
+        assertThat(favoriteService.findFavoriteIdByRestaurantIdAndUserId(1, 1)).isNull();
+
+        transactionTemplate.executeWithoutResult(status -> {
+            favoriteService.createFavorite(restaurantService.findRestaurantById(1).orElseThrow(), userService.findUserById(1).orElseThrow());
+        });
+
+        Integer favoriteId = favoriteService.findFavoriteIdByRestaurantIdAndUserId(1, 1);
+
+        assertThat(favoriteId).isNotNull();
+
+        transactionTemplate.executeWithoutResult(status -> {
+            Favorite favorite = favoriteService.findFavoriteById(favoriteId).orElseThrow();
+            favoriteService.deleteFavorite(favorite);
+        });
+
+        assertThat(favoriteService.findFavoriteIdByRestaurantIdAndUserId(1, 1)).isNull();
+    }
+
+    @Test
+    public void 追加済みのお気に入りを再度追加しても行は増えず既存のお気に入りが使われる() {
+        TransactionTemplate transactionTemplate = new TransactionTemplate(transactionManager);
+
+        transactionTemplate.executeWithoutResult(status -> {
+            favoriteService.createFavorite(restaurantService.findRestaurantById(1).orElseThrow(), userService.findUserById(1).orElseThrow());
+        });
+
+        Integer favoriteId = favoriteService.findFavoriteIdByRestaurantIdAndUserId(1, 1);
+
+        try {
+            transactionTemplate.executeWithoutResult(status -> {
+                favoriteService.createFavorite(restaurantService.findRestaurantById(1).orElseThrow(), userService.findUserById(1).orElseThrow());
+            });
+
+            assertThat(jdbcTemplate.queryForObject("SELECT COUNT(*) FROM favorites WHERE restaurant_id = 1 AND user_id = 1", Integer.class)).isEqualTo(1);
+            assertThat(favoriteService.findFavoriteIdByRestaurantIdAndUserId(1, 1)).isEqualTo(favoriteId);
+        } finally {
+            transactionTemplate.executeWithoutResult(status -> {
+                favoriteService.deleteFavorite(favoriteService.findFavoriteById(favoriteId).orElseThrow());
+            });
+        }
+    }
+
+    @Test
+    public void 他のサーバーで記録された変更履歴をポーリングするとキャッシュが読み込み直される() {
+        assertThat(favoriteService.findFavoriteIdByRestaurantIdAndUserId(1, 1)).isNull();
+
+        // 他のサーバーでのお気に入りの追加を再現する
+        jdbcTemplate.update("INSERT INTO favorites (restaurant_id, user_id) VALUES (1, 1)");
+        jdbcTemplate.update("INSERT INTO favorite_changes (user_id) VALUES (1)");
+
+        try {
+            assertThat(favoriteService.findFavoriteIdByRestaurantIdAndUserId(1, 1)).isNull();
+
+            favoriteService.pollChanges();
+
+            assertThat(favoriteService.findFavoriteIdByRestaurantIdAndUserId(1, 1)).isNotNull();
+        } finally {
+            jdbcTemplate.update("DELETE FROM favorites WHERE restaurant_id = 1 AND user_id = 1");
+            jdbcTemplate.update("INSERT INTO favorite_changes (user_id) VALUES (1)");
+            favoriteService.pollChanges();
+        }
+    }
+}
@@ -0,0 +1,72 @@
+package com.example.nagoyameshi.service;
+
+import static org.assertj.core.api.Assertions.*;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import com.example.nagoyameshi.entity.Review;
+import com.example.nagoyameshi.entity.User;
+import com.example.nagoyameshi.form.ReviewRegisterForm;
+import com.example.nagoyameshi.service.RestaurantService.HomeRestaurants;
+import com.example.nagoyameshi.service.RestaurantService.RestaurantDetail;
+
+@SpringBootTest
+@ActiveProfiles("test")
+public class ReviewServiceTest {
+    @Autowired
+    private ReviewService reviewService;
+
+    @Autowired
+    private RestaurantService restaurantService;
+
+    @Autowired
+    private UserService userService;
+
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+
+    @Test
+    public void レビューの投稿と削除はコミット後に店舗詳細とトップページのキャッシュに反映される() {
+        TransactionTemplate transactionTemplate = new TransactionTemplate(transactionManager);
+        User user = userService.findUserById(1).orElseThrow();
+
+        assertThat(reviewService.hasUserAlreadyReviewed(1, user)).isFalse();
+
+        // 投稿前の状態をキャッシュに読み込ませておく
+        RestaurantDetail before = restaurantService.findCachedRestaurantById(1).orElseThrow();
+        HomeRestaurants homeRestaurants = restaurantService.findHomeRestaurants();
+
+        transactionTemplate.executeWithoutResult(status -> {
+            ReviewRegisterForm reviewRegisterForm = new ReviewRegisterForm();
+            reviewRegisterForm.setScore(5);
+            reviewRegisterForm.setContent("テスト");
+
+            reviewService.createReview(reviewRegisterForm, restaurantService.findRestaurantById(1).orElseThrow(), user);
+
+            // コミット前は投稿前の値を使い回す
+            assertThat(restaurantService.findCachedRestaurantById(1).orElseThrow()).isSameAs(before);
+        });
+
+        RestaurantDetail created = restaurantService.findCachedRestaurantById(1).orElseThrow();
+
+        assertThat(created.reviewCount()).isEqualTo(before.reviewCount() + 1);
+        assertThat(created.getCount(5)).isEqualTo(before.getCount(5) + 1);
+        assertThat(restaurantService.findHomeRestaurants()).isNotSameAs(homeRestaurants);
+
+        transactionTemplate.executeWithoutResult(status -> {
+            Review review = reviewService.findFirstReviewByOrderByIdDesc();
+            reviewService.deleteReview(review);
+        });
+
+        RestaurantDetail deleted = restaurantService.findCachedRestaurantById(1).orElseThrow();
+
+        assertThat(deleted.reviewCount()).isEqualTo(before.reviewCount());
+        assertThat(deleted.getCount(5)).isEqualTo(before.getCount(5));
+        assertThat(reviewService.hasUserAlreadyReviewed(1, user)).isFalse();
+    }
+}
@@ -0,0 +1,104 @@
+package com.example.nagoyameshi.service;
+
+import static org.assertj.core.api.Assertions.*;
+
+import java.io.ByteArrayOutputStream;
+import java.io.ObjectOutputStream;
+import java.nio.charset.StandardCharsets;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
+import org.springframework.security.core.context.SecurityContext;
+import org.springframework.security.core.context.SecurityContextHolder;
+import org.springframework.security.web.context.HttpSessionSecurityContextRepository;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.web.context.request.RequestContextHolder;
+import org.springframework.web.context.request.ServletRequestAttributes;
+
+import com.example.nagoyameshi.entity.EntitlementChange;
+import com.example.nagoyameshi.entity.User;
+import com.example.nagoyameshi.repository.EntitlementChangeRepository;
+import com.example.nagoyameshi.security.UserDetailsImpl;
+
+@SpringBootTest
+@ActiveProfiles("test")
+public class UserServiceTest {
+    @Autowired
+    private UserService userService;
+
+    @Autowired
+    private EntitlementChangeRepository entitlementChangeRepository;
+
+    @AfterEach
+    public void clearContext() {
+        SecurityContextHolder.clearContext();
+        RequestContextHolder.resetRequestAttributes();
+    }
+
+    @Test
+    @Transactional
+    public void ロールを変更するとバージョンが上がりセッションの認証情報が新しいロールで差し替えられる() {
+        User user = userService.findUserByEmail("taro.samurai@example.com");
+        UserDetailsImpl currentUserDetailsImpl = new UserDetailsImpl(user);
+        currentUserDetailsImpl.eraseCredentials();
+        SecurityContextHolder.getContext().setAuthentication(new UsernamePasswordAuthenticationToken(currentUserDetailsImpl, null, currentUserDetailsImpl.getAuthorities()));
+
+        MockHttpServletRequest request = new MockHttpServletRequest();
+        request.getSession(true);
+        RequestContextHolder.setRequestAttributes(new ServletRequestAttributes(request));
+
+        userService.updateRole(user, "ROLE_PAID_MEMBER");
+        userService.refreshAuthentication(user);
+
+        UserDetailsImpl refreshedUserDetailsImpl = (UserDetailsImpl) SecurityContextHolder.getContext().getAuthentication().getPrincipal();
+
+        assertThat(refreshedUserDetailsImpl.getRoleName()).isEqualTo("ROLE_PAID_MEMBER");
+        assertThat(refreshedUserDetailsImpl.getAuthorities()).extracting("authority").containsExactly("ROLE_PAID_MEMBER");
+        assertThat(refreshedUserDetailsImpl.getVersion()).isGreaterThan(currentUserDetailsImpl.getVersion());
+        assertThat(refreshedUserDetailsImpl.getPassword()).isNull();
+
+        // 外部のセッションストアに保存されるセッションの属性も差し替えられている
+        SecurityContext securityContext = (SecurityContext) request.getSession().getAttribute(HttpSessionSecurityContextRepository.SPRING_SECURITY_CONTEXT_KEY);
+
+        assertThat(securityContext.getAuthentication().getPrincipal()).isSameAs(refreshedUserDetailsImpl);
+    }
+
+    @Test
+    @Transactional
+    public void バージョンが上がる更新は他のサーバーに通知するため変更履歴に記録される() {
+        User user = userService.findUserByEmail("taro.samurai@example.com");
+        Integer currentVersion = user.getVersion();
+
+        userService.saveStripeCustomerId(user, "cus_test");
+
+        EntitlementChange entitlementChange = entitlementChangeRepository.findFirstByOrderByIdDesc();
+
+        assertThat(user.getVersion()).isGreaterThan(currentVersion);
+        assertThat(entitlementChange.getUserId()).isEqualTo(user.getId());
+        assertThat(entitlementChange.getVersion()).isEqualTo(user.getVersion());
+    }
+
+    @Test
+    @Transactional(readOnly = true)
+    public void セッションに保存される認証情報はエンティティとパスワードを含まない() throws Exception {
+        User user = userService.findUserByEmail("taro.samurai@example.com");
+        UserDetailsImpl userDetailsImpl = new UserDetailsImpl(user);
+        userDetailsImpl.eraseCredentials();
+
+        ByteArrayOutputStream byteArrayOutputStream = new ByteArrayOutputStream();
+
+        try (ObjectOutputStream objectOutputStream = new ObjectOutputStream(byteArrayOutputStream)) {
+            objectOutputStream.writeObject(userDetailsImpl);
+        }
+
+        String serialized = byteArrayOutputStream.toString(StandardCharsets.ISO_8859_1);
+
+        assertThat(serialized).doesNotContain("com.example.nagoyameshi.entity");
+        assertThat(serialized).doesNotContain(user.getPassword());
+    }
+}
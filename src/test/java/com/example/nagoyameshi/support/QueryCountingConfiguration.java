@@ -0,0 +1,60 @@
+package com.example.nagoyameshi.support;
+
+import java.io.IOException;
+
+import javax.sql.DataSource;
+
+import org.springframework.beans.factory.config.BeanPostProcessor;
+import org.springframework.boot.test.context.TestConfiguration;
+import org.springframework.boot.web.servlet.FilterRegistrationBean;
+import org.springframework.context.annotation.Bean;
+import org.springframework.core.Ordered;
+import org.springframework.web.filter.OncePerRequestFilter;
+
+import jakarta.servlet.FilterChain;
+import jakarta.servlet.ServletException;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+
+// DataSourceをQueryCountingDataSourceで包み、MockMvcの各リクエストで実行されたSQL文を記録する
+// 記録はリクエストの属性に保存され、QueryResultMatchersで検証する
+@TestConfiguration
+public class QueryCountingConfiguration {
+    public static final String RECORDING_ATTRIBUTE = QueryRecording.class.getName();
+
+    @Bean
+    public static BeanPostProcessor queryCountingDataSourcePostProcessor() {
+        return new BeanPostProcessor() {
+            @Override
+            public Object postProcessAfterInitialization(Object bean, String beanName) {
+                if (bean instanceof DataSource dataSource && !(bean instanceof QueryCountingDataSource)) {
+                    return new QueryCountingDataSource(dataSource);
+                }
+
+                return bean;
+            }
+        };
+    }
+
+    // Spring Securityやセッションのフィルタで実行される文も含めるため、最初に実行する
+    @Bean
+    public FilterRegistrationBean<OncePerRequestFilter> queryRecordingFilter() {
+        FilterRegistrationBean<OncePerRequestFilter> registrationBean = new FilterRegistrationBean<>(new OncePerRequestFilter() {
+            @Override
+            protected void doFilterInternal(HttpServletRequest request, HttpServletResponse response, FilterChain filterChain) throws ServletException, IOException {
+                String query = request.getQueryString();
+                QueryRecording recording = QueryRecording.start(request.getMethod() + " " + request.getRequestURI() + (query != null ? "?" + query : ""));
+                request.setAttribute(RECORDING_ATTRIBUTE, recording);
+
+                try {
+                    filterChain.doFilter(request, response);
+                } finally {
+                    QueryRecording.stop();
+                }
+            }
+        });
+        registrationBean.setOrder(Ordered.HIGHEST_PRECEDENCE);
+
+        return registrationBean;
+    }
+}
@@ -0,0 +1,131 @@
+package com.example.nagoyameshi.support;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.sql.CallableStatement;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+
+import javax.sql.DataSource;
+
+import org.springframework.jdbc.datasource.DelegatingDataSource;
+
+// 取得したコネクションで実行されたSQL文を、現在のスレッドのQueryRecordingに記録するDataSource
+// Statement・PreparedStatement・ResultSetを動的プロキシで包み、文・パラメータ・取得した行数を数える
+public class QueryCountingDataSource extends DelegatingDataSource {
+    private static final Set<String> EXECUTE_METHODS = Set.of("execute", "executeQuery", "executeUpdate", "executeLargeUpdate");
+    private static final Set<String> BATCH_METHODS = Set.of("executeBatch", "executeLargeBatch");
+
+    public QueryCountingDataSource(DataSource targetDataSource) {
+        super(targetDataSource);
+    }
+
+    @Override
+    public Connection getConnection() throws SQLException {
+        return wrapConnection(super.getConnection());
+    }
+
+    @Override
+    public Connection getConnection(String username, String password) throws SQLException {
+        return wrapConnection(super.getConnection(username, password));
+    }
+
+    private static Connection wrapConnection(Connection connection) {
+        return proxy(Connection.class, connection, (proxy, method, args) -> {
+            Object result = invoke(connection, method, args);
+
+            if (result instanceof CallableStatement callableStatement) {
+                return wrapStatement(CallableStatement.class, callableStatement, (String) args[0]);
+            } else if (result instanceof PreparedStatement preparedStatement) {
+                return wrapStatement(PreparedStatement.class, preparedStatement, (String) args[0]);
+            } else if (result instanceof Statement statement) {
+                return wrapStatement(Statement.class, statement, null);
+            }
+
+            return result;
+        });
+    }
+
+    // preparedSqlはPreparedStatementの場合のみ指定する（Statementの場合は実行時の引数のSQL文を記録する）
+    private static <T extends Statement> T wrapStatement(Class<T> type, T statement, String preparedSql) {
+        List<Object> parameters = new ArrayList<>();
+        int[] batchSize = new int[1];
+        QueryRecording.Statement[] lastRecorded = new QueryRecording.Statement[1];
+
+        return proxy(type, statement, (proxy, method, args) -> {
+            String name = method.getName();
+
+            if (name.startsWith("set") && args != null && args.length >= 2 && args[0] instanceof Integer index) {
+                setParameter(parameters, index, args[1]);
+            } else if (name.equals("clearParameters")) {
+                parameters.clear();
+            } else if (name.equals("addBatch")) {
+                batchSize[0]++;
+            } else if (EXECUTE_METHODS.contains(name)) {
+                String sql = preparedSql != null ? preparedSql : (String) args[0];
+                lastRecorded[0] = QueryRecording.record(sql, preparedSql != null ? parameters : List.of());
+            } else if (BATCH_METHODS.contains(name)) {
+                lastRecorded[0] = QueryRecording.record(preparedSql != null ? preparedSql : "batch", List.of("batch of " + batchSize[0]));
+                batchSize[0] = 0;
+            }
+
+            Object result = invoke(statement, method, args);
+
+            if (result instanceof ResultSet resultSet && (name.equals("executeQuery") || name.equals("getResultSet"))) {
+                return wrapResultSet(resultSet, lastRecorded[0]);
+            }
+
+            return result;
+        });
+    }
+
+    private static ResultSet wrapResultSet(ResultSet resultSet, QueryRecording.Statement recorded) {
+        if (recorded == null) {
+            return resultSet;
+        }
+
+        return proxy(ResultSet.class, resultSet, (proxy, method, args) -> {
+            Object result = invoke(resultSet, method, args);
+
+            if (method.getName().equals("next") && Boolean.TRUE.equals(result)) {
+                recorded.addRow();
+            }
+
+            return result;
+        });
+    }
+
+    private static void setParameter(List<Object> parameters, int index, Object value) {
+        while (parameters.size() < index) {
+            parameters.add(null);
+        }
+
+        parameters.set(index - 1, value);
+    }
+
+    private static Object invoke(Object target, Method method, Object[] args) throws Throwable {
+        try {
+            return method.invoke(target, args);
+        } catch (InvocationTargetException e) {
+            throw e.getTargetException();
+        }
+    }
+
+    // equalsとhashCodeはプロキシ自身で判定し、それ以外をhandlerに任せる
+    @SuppressWarnings("unchecked")
+    private static <T> T proxy(Class<T> type, T target, InvocationHandler handler) {
+        return (T) Proxy.newProxyInstance(QueryCountingDataSource.class.getClassLoader(), new Class<?>[] { type }, (proxy, method, args) -> switch (method.getName()) {
+            case "equals" -> args.length == 1 && proxy == args[0];
+            case "hashCode" -> args == null ? System.identityHashCode(proxy) : handler.invoke(proxy, method, args);
+            default -> handler.invoke(proxy, method, args);
+        });
+    }
+}
@@ -0,0 +1,167 @@
+package com.example.nagoyameshi.support;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+// 1つのリクエストの処理中に実行されたSQL文（パラメータと取得した行数を含む）を記録する
+// 記録中のスレッドはThreadLocalで管理し、他のスレッド（スケジュール実行や非同期処理）の文は含めない
+public class QueryRecording {
+    private static final ThreadLocal<QueryRecording> CURRENT = new ThreadLocal<>();
+    private static final int MAX_SQL_LENGTH = 200;
+    private static final int MAX_SAMPLES = 5;
+
+    private final String description;
+    private final List<Statement> statements = Collections.synchronizedList(new ArrayList<>());
+
+    // 実行されたSQL文
+    public static class Statement {
+        private final String sql;
+        private final List<Object> parameterValues;
+        private final List<String> parameters;
+        private int rows;
+
+        private Statement(String sql, List<Object> parameterValues) {
+            this.sql = sql;
+            this.parameterValues = Collections.unmodifiableList(new ArrayList<>(parameterValues));
+            this.parameters = parameterValues.stream().map(Statement::format).toList();
+        }
+
+        public String getSql() {
+            return sql;
+        }
+
+        // バインドした値（EXPLAINなどで同じ値を使って再実行する場合に使う）
+        public List<Object> getParameterValues() {
+            return parameterValues;
+        }
+
+        // バインドした値の表示用の文字列
+        public List<String> getParameters() {
+            return parameters;
+        }
+
+        public int getRows() {
+            return rows;
+        }
+
+        void addRow() {
+            rows++;
+        }
+
+        private static String format(Object value) {
+            return value instanceof byte[] bytes ? "byte[" + bytes.length + "]" : String.valueOf(value);
+        }
+    }
+
+    // 同じSQL文が繰り返し実行された記録（異なるパラメータで繰り返している場合はN+1の可能性がある）
+    public record RepeatedStatement(String sql, int count, int distinctParameters, List<List<String>> samples) {
+    }
+
+    private QueryRecording(String description) {
+        this.description = description;
+    }
+
+    // 現在のスレッドで記録を開始する
+    public static QueryRecording start(String description) {
+        QueryRecording recording = new QueryRecording(description);
+        CURRENT.set(recording);
+
+        return recording;
+    }
+
+    // 現在のスレッドの記録を終了する
+    public static void stop() {
+        CURRENT.remove();
+    }
+
+    // 現在のスレッドで記録中であれば、実行したSQL文を追加する（記録中でなければnullを返す）
+    static Statement record(String sql, List<Object> parameterValues) {
+        QueryRecording recording = CURRENT.get();
+
+        if (recording == null) {
+            return null;
+        }
+
+        Statement statement = new Statement(sql.strip().replaceAll("\\s+", " "), parameterValues);
+        recording.statements.add(statement);
+
+        return statement;
+    }
+
+    public String getDescription() {
+        return description;
+    }
+
+    public List<Statement> getStatements() {
+        synchronized (statements) {
+            return List.copyOf(statements);
+        }
+    }
+
+    public int getStatementCount() {
+        return statements.size();
+    }
+
+    public int getRowCount() {
+        return getStatements().stream().mapToInt(Statement::getRows).sum();
+    }
+
+    // 実行回数がminCount回以上のSQL文を、実行回数が多い順に返す
+    public List<RepeatedStatement> findRepeatedStatements(int minCount) {
+        Map<String, List<Statement>> statementsBySql = new LinkedHashMap<>();
+
+        for (Statement statement : getStatements()) {
+            statementsBySql.computeIfAbsent(statement.getSql(), key -> new ArrayList<>()).add(statement);
+        }
+
+        return statementsBySql.entrySet().stream()
+                              .filter(entry -> entry.getValue().size() >= minCount)
+                              .map(entry -> {
+                                  List<List<String>> distinctParameters = entry.getValue().stream().map(Statement::getParameters).distinct().toList();
+
+                                  return new RepeatedStatement(entry.getKey(),
+                                                               entry.getValue().size(),
+                                                               distinctParameters.size(),
+                                                               distinctParameters.stream().limit(MAX_SAMPLES).toList());
+                              })
+                              .sorted((a, b) -> Integer.compare(b.count(), a.count()))
+                              .toList();
+    }
+
+    // 失敗時に表示するレポート（繰り返し実行された文と、実行したすべての文）
+    public String report(int repeatThreshold) {
+        StringBuilder report = new StringBuilder();
+        List<Statement> recorded = getStatements();
+
+        report.append(description).append(": ")
+              .append(recorded.size()).append(" statements, ")
+              .append(getRowCount()).append(" rows\n");
+
+        List<RepeatedStatement> repeatedStatements = findRepeatedStatements(repeatThreshold);
+
+        if (!repeatedStatements.isEmpty()) {
+            report.append("\nRepeated statements (N+1 candidates):\n");
+
+            for (RepeatedStatement repeatedStatement : repeatedStatements) {
+                report.append(String.format("  %4dx (%d distinct parameter sets) %s%n", repeatedStatement.count(), repeatedStatement.distinctParameters(), abbreviate(repeatedStatement.sql())));
+                report.append("        e.g. ").append(repeatedStatement.samples()).append('\n');
+            }
+        }
+
+        report.append("\nAll statements:\n");
+
+        for (int i = 0; i < recorded.size(); i++) {
+            Statement statement = recorded.get(i);
+            report.append(String.format("  %4d. %s %s -> %d rows%n", i + 1, abbreviate(statement.getSql()), statement.getParameters(), statement.getRows()));
+        }
+
+        return report.toString();
+    }
+
+    private static String abbreviate(String sql) {
+        return sql.length() <= MAX_SQL_LENGTH ? sql : sql.substring(0, MAX_SQL_LENGTH) + "...";
+    }
+}
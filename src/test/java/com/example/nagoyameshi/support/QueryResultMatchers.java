@@ -0,0 +1,66 @@
+package com.example.nagoyameshi.support;
+
+import org.springframework.test.web.servlet.MvcResult;
+import org.springframework.test.web.servlet.ResultMatcher;
+
+// MockMvcのリクエストで実行されたSQL文の件数・取得した行数・繰り返しを検証する
+// 使用するテストクラスには@Import(QueryCountingConfiguration.class)を付ける
+public class QueryResultMatchers {
+    // 繰り返しの上限を指定しない検証でも、レポートで繰り返しとして表示する回数
+    private static final int DEFAULT_REPEAT_THRESHOLD = 3;
+
+    private QueryResultMatchers() {
+    }
+
+    public static QueryResultMatchers queries() {
+        return new QueryResultMatchers();
+    }
+
+    // 実行したSQL文がmax件以下であること
+    public ResultMatcher statementCountAtMost(int max) {
+        return result -> {
+            QueryRecording recording = recording(result);
+
+            if (recording.getStatementCount() > max) {
+                throw new AssertionError("Expected at most " + max + " statements\n" + recording.report(DEFAULT_REPEAT_THRESHOLD));
+            }
+        };
+    }
+
+    // 取得した行数の合計がmax行以下であること
+    public ResultMatcher rowCountAtMost(int max) {
+        return result -> {
+            QueryRecording recording = recording(result);
+
+            if (recording.getRowCount() > max) {
+                throw new AssertionError("Expected at most " + max + " rows\n" + recording.report(DEFAULT_REPEAT_THRESHOLD));
+            }
+        };
+    }
+
+    // 同じSQL文（パラメータのみが異なるものを含む）の実行がmax回以下であること（N+1の検出）
+    public ResultMatcher repeatedStatementsAtMost(int max) {
+        return result -> {
+            QueryRecording recording = recording(result);
+
+            if (!recording.findRepeatedStatements(max + 1).isEmpty()) {
+                throw new AssertionError("Expected no statement to be executed more than " + max + " times\n" + recording.report(max + 1));
+            }
+        };
+    }
+
+    // リクエストで実行したSQL文の件数（表示件数などを変えたリクエスト同士の比較に使う）
+    public static int statementCountOf(MvcResult result) {
+        return recording(result).getStatementCount();
+    }
+
+    private static QueryRecording recording(MvcResult result) {
+        Object recording = result.getRequest().getAttribute(QueryCountingConfiguration.RECORDING_ATTRIBUTE);
+
+        if (recording == null) {
+            throw new AssertionError("No statements were recorded. Import QueryCountingConfiguration into the test class.");
+        }
+
+        return (QueryRecording) recording;
+    }
+}
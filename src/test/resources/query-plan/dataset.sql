@@ -0,0 +1,38 @@
+/* 実行計画の検証用のデータ（初期データを複製して各テーブルを数千〜数万件に増やす。テストのトランザクション内で投入し、終了時にロールバックする） */
+
+/* 会員：初期データ×20 */
+INSERT INTO users (name, furigana, name_search_key, furigana_search_key, postal_code, address, phone_number, birthday, occupation, email, password, role_id, enabled)
+SELECT u.name, u.furigana, u.name_search_key, u.furigana_search_key, u.postal_code, u.address, u.phone_number, u.birthday, u.occupation, CONCAT('plan', x.id, '.', u.email), u.password, u.role_id, u.enabled
+FROM users u CROSS JOIN (SELECT id FROM restaurants ORDER BY id LIMIT 20) x;
+
+/* 店舗：初期データ×20（予算と登録日をずらす） */
+INSERT INTO restaurants (name, image, description, lowest_price, highest_price, postal_code, address, opening_time, closing_time, seating_capacity, latitude, longitude, ranking_score, trending_score, created_at)
+SELECT r.name, r.image, r.description, r.lowest_price + x.id * 100, r.highest_price + x.id * 100, r.postal_code, r.address, r.opening_time, r.closing_time, r.seating_capacity, r.latitude, r.longitude, r.ranking_score, r.trending_score, DATE_SUB(r.created_at, INTERVAL x.id DAY)
+FROM restaurants r CROSS JOIN (SELECT id FROM restaurants ORDER BY id LIMIT 20) x;
+
+/* 店舗とカテゴリ・定休日の関連付け：関連付けのない店舗に1件ずつ */
+INSERT INTO category_restaurant (restaurant_id, category_id)
+SELECT r.id, (SELECT MIN(c.id) FROM categories c) + r.id % (SELECT COUNT(*) FROM categories c)
+FROM restaurants r WHERE r.id NOT IN (SELECT cr.restaurant_id FROM category_restaurant cr);
+
+INSERT INTO regular_holiday_restaurant (restaurant_id, regular_holiday_id)
+SELECT r.id, (SELECT MIN(rh.id) FROM regular_holidays rh) + r.id % (SELECT COUNT(*) FROM regular_holidays rh)
+FROM restaurants r WHERE r.id NOT IN (SELECT rhr.restaurant_id FROM regular_holiday_restaurant rhr);
+
+/* 予約：初期データ×40（予約日時をずらす） */
+INSERT INTO reservations (reserved_datetime, number_of_people, restaurant_id, user_id)
+SELECT DATE_ADD(rs.reserved_datetime, INTERVAL x.id DAY), rs.number_of_people, rs.restaurant_id, rs.user_id
+FROM reservations rs CROSS JOIN (SELECT id FROM restaurants ORDER BY id LIMIT 40) x;
+
+/* レビュー・お気に入り：すべての店舗に対して5人ずつ（店舗と会員の組み合わせが重複するものは除く） */
+INSERT IGNORE INTO reviews (content, score, restaurant_id, user_id, created_at)
+SELECT '実行計画の検証用のレビューです。', 1 + (r.id + u.id) % 5, r.id, u.id, DATE_SUB(NOW(), INTERVAL r.id HOUR)
+FROM restaurants r CROSS JOIN (SELECT id FROM users ORDER BY id LIMIT 5) u;
+
+INSERT IGNORE INTO favorites (restaurant_id, user_id, created_at)
+SELECT r.id, u.id, DATE_SUB(NOW(), INTERVAL r.id HOUR)
+FROM restaurants r CROSS JOIN (SELECT id FROM users ORDER BY id LIMIT 5 OFFSET 5) u;
+
+/* 認証用トークン：トークンのない会員に1件ずつ */
+INSERT IGNORE INTO verification_tokens (user_id, token)
+SELECT u.id, UUID() FROM users u;